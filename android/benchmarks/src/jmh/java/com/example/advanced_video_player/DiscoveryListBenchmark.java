@@ -0,0 +1,88 @@
+package com.example.advanced_video_player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Construcción de la lista de dispositivos que recibe Dart en cada
+ * {@code discoverDevices}: con el catálogo caliente (lo habitual durante un
+ * escaneo) y extrayendo todas las rutas desde cero.
+ */
+@State(Scope.Benchmark)
+public class DiscoveryListBenchmark {
+    /** Ruta con los campos que expone un MediaRouter.RouteInfo. */
+    static final class FakeRoute {
+        final String id;
+        final String name;
+        final boolean available;
+
+        FakeRoute(String id, String name, boolean available) {
+            this.id = id;
+            this.name = name;
+            this.available = available;
+        }
+    }
+
+    private static final DeviceCatalog.RouteReader<FakeRoute> READER = new DeviceCatalog.RouteReader<FakeRoute>() {
+        @Override
+        public String id(FakeRoute route) {
+            return route.id;
+        }
+
+        @Override
+        public String name(FakeRoute route) {
+            return route.name;
+        }
+
+        @Override
+        public boolean isAvailable(FakeRoute route) {
+            return route.available;
+        }
+
+        @Override
+        public Map<String, Object> extract(FakeRoute route) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("id", route.id);
+            entry.put("type", CastModels.TYPE_CHROMECAST);
+            entry.put("modelName", "Chromecast Ultra");
+            entry.put("ipAddress", "192.168.1." + (route.id.hashCode() & 0xff));
+            entry.put("port", 8009);
+            return entry;
+        }
+    };
+
+    @Param({"4", "32"})
+    public int routes;
+
+    private List<FakeRoute> list;
+    private DeviceCatalog<FakeRoute> warm;
+
+    @Setup
+    public void setUp() {
+        list = new ArrayList<>(routes);
+        for (int i = 0; i < routes; i++) {
+            // Una de cada ocho rutas ocupada por otra app
+            list.add(new FakeRoute("route-" + i, "Televisor " + i, i % 8 != 7));
+        }
+        warm = new DeviceCatalog<>(READER, "bench.discovery");
+        warm.describe(list);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> warmCatalog() {
+        return warm.describe(list);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> coldCatalog() {
+        return new DeviceCatalog<>(READER, "bench.discovery").describe(list);
+    }
+}
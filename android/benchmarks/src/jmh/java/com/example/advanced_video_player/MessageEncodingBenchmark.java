@@ -0,0 +1,120 @@
+package com.example.advanced_video_player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codificación de mensajes: una llamada típica del canal en formato de
+ * grabación, y la consulta y respuesta mDNS de un receptor Cast.
+ */
+@State(Scope.Thread)
+public class MessageEncodingBenchmark {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final List<String> SERVICES = Collections.singletonList(CastMdnsBrowser.SERVICE);
+
+    private MethodCallRecording.Encoder encoder;
+    private Map<String, Object> arguments;
+    private long micros;
+    private byte[] response;
+
+    @Setup
+    public void setUp() {
+        encoder = new MethodCallRecording.Encoder();
+        arguments = new HashMap<>();
+        arguments.put("deviceId", "mdns:Chromecast-5f1c2a");
+        arguments.put("url", "https://cdn.example.com/vod/episode-12/master.m3u8");
+        arguments.put("title", "Episodio 12");
+        arguments.put("position", 123456L);
+        arguments.put("autoplay", true);
+        // Calienta la tabla de cadenas como en una grabación en curso
+        encoder.encode(0, "advanced_video_player", "shareVideo", arguments);
+        response = castResponse();
+    }
+
+    @Benchmark
+    public byte[] encodeMethodCall() {
+        micros += 1000;
+        return encoder.encode(micros, "advanced_video_player", "shareVideo", arguments);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeMdnsQuery() {
+        return MdnsMessage.query(SERVICES, MdnsMessage.TYPE_PTR, true);
+    }
+
+    @Benchmark
+    public List<MdnsMessage.Record> parseMdnsResponse() throws IOException {
+        return MdnsMessage.parse(response, response.length);
+    }
+
+    // Respuesta PTR + SRV + TXT + A sin compresión de nombres
+    private static byte[] castResponse() {
+        String instance = "Chromecast-5f1c2a." + CastMdnsBrowser.SERVICE;
+        String host = "5f1c2a.local";
+        ByteBuffer out = ByteBuffer.allocate(1500);
+        out.putShort((short) 0);
+        out.putShort((short) (MdnsMessage.FLAG_RESPONSE | 0x0400));
+        out.putShort((short) 0);
+        out.putShort((short) 4);
+        out.putShort((short) 0);
+        out.putShort((short) 0);
+
+        MdnsMessage.writeName(out, CastMdnsBrowser.SERVICE);
+        header(out, MdnsMessage.TYPE_PTR);
+        int at = out.position();
+        out.putShort((short) 0);
+        MdnsMessage.writeName(out, instance);
+        patchLength(out, at);
+
+        MdnsMessage.writeName(out, instance);
+        header(out, MdnsMessage.TYPE_SRV);
+        at = out.position();
+        out.putShort((short) 0);
+        out.putShort((short) 0);
+        out.putShort((short) 0);
+        out.putShort((short) 8009);
+        MdnsMessage.writeName(out, host);
+        patchLength(out, at);
+
+        MdnsMessage.writeName(out, instance);
+        header(out, MdnsMessage.TYPE_TXT);
+        at = out.position();
+        out.putShort((short) 0);
+        for (String entry : new String[]{"id=5f1c2a9b", "fn=Salón", "md=Chromecast Ultra", "ca=201221", "st=0"}) {
+            byte[] bytes = entry.getBytes(UTF_8);
+            out.put((byte) bytes.length);
+            out.put(bytes);
+        }
+        patchLength(out, at);
+
+        MdnsMessage.writeName(out, host);
+        header(out, MdnsMessage.TYPE_A);
+        out.putShort((short) 4);
+        out.put(new byte[]{(byte) 192, (byte) 168, 1, 42});
+
+        byte[] packet = new byte[out.position()];
+        out.flip();
+        out.get(packet);
+        return packet;
+    }
+
+    private static void header(ByteBuffer out, int type) {
+        out.putShort((short) type);
+        out.putShort((short) (MdnsMessage.CLASS_IN | MdnsMessage.CLASS_FLAG));
+        out.putInt(120);
+    }
+
+    private static void patchLength(ByteBuffer out, int at) {
+        out.putShort(at, (short) (out.position() - at - 2));
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.advanced_video_player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Máquina de estados de la sesión Cast: un ciclo completo de inicio,
+ * suspensión, reanudación y fin, y un evento fuera de lugar.
+ */
+@State(Scope.Thread)
+public class SessionStateBenchmark {
+    private final CastSessionState state = new CastSessionState();
+
+    @Benchmark
+    public int fullCycle() {
+        state.on(CastSessionState.EVENT_STARTING, null);
+        state.on(CastSessionState.EVENT_STARTED, "session-1");
+        state.on(CastSessionState.EVENT_SUSPENDED, null);
+        state.on(CastSessionState.EVENT_RESUMING, "session-1");
+        state.on(CastSessionState.EVENT_RESUMED, null);
+        state.on(CastSessionState.EVENT_ENDING, null);
+        return state.on(CastSessionState.EVENT_ENDED, null);
+    }
+
+    @Benchmark
+    public int unexpectedEvent() {
+        return state.on(CastSessionState.EVENT_RESUMED, null);
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.advanced_video_player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Detección del tipo de contenido de la URL que se envía al receptor.
+ */
+@State(Scope.Benchmark)
+public class UrlClassificationBenchmark {
+    @Param({
+            "https://cdn.example.com/vod/episode-12/master.m3u8",
+            "https://cdn.example.com/clip.MP4?token=eyJhbGciOiJIUzI1NiJ9.payload.signature&expires=1735689600",
+            "https://cdn.example.com/play?file=index.m3u8&sig=abc123",
+            "https://cdn.example.com/stream/1234567890"
+    })
+    public String url;
+
+    @Benchmark
+    public String forUrl() {
+        return ContentTypes.forUrl(url);
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.advanced_video_player;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/**
+ * Cliente SOAP del servicio AVTransport de un renderizador UPnP.
+ *
+ * Las acciones van por {@link HttpURLConnection} con keep-alive: la respuesta se lee
+ * completa y nunca se llama a {@code disconnect()}, así el socket vuelve al pool de
+ * conexiones del sistema y las órdenes siguientes al mismo renderizador (pausa,
+ * reanudar, buscar) no abren una conexión TCP nueva cada vez. Los errores UPnP
+ * (HTTP 500 con {@code UPnPError}) se lanzan como {@link IOException}.
+ */
+final class AvTransportClient {
+    static final String SERVICE = "urn:schemas-upnp-org:service:AVTransport:1";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final int timeoutMs;
+
+    AvTransportClient(int timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    void setUri(String controlUrl, String uri, String title, String mimeType) throws IOException {
+        String metadata = didl(uri, title, mimeType);
+        invoke(controlUrl, "SetAVTransportURI", "<CurrentURI>" + escape(uri) + "</CurrentURI>"
+                + "<CurrentURIMetaData>" + escape(metadata) + "</CurrentURIMetaData>");
+    }
+
+    void play(String controlUrl) throws IOException {
+        invoke(controlUrl, "Play", "<Speed>1</Speed>");
+    }
+
+    void pause(String controlUrl) throws IOException {
+        invoke(controlUrl, "Pause", "");
+    }
+
+    void stop(String controlUrl) throws IOException {
+        invoke(controlUrl, "Stop", "");
+    }
+
+    void seek(String controlUrl, double seconds) throws IOException {
+        invoke(controlUrl, "Seek", "<Unit>REL_TIME</Unit><Target>" + time(seconds) + "</Target>");
+    }
+
+    /** Posición en segundos ({@code RelTime} de GetPositionInfo), o -1 si el renderizador no la informa. */
+    double position(String controlUrl) throws IOException {
+        return seconds(between(invoke(controlUrl, "GetPositionInfo", ""), "<RelTime>", "</RelTime>"));
+    }
+
+    /** Si el renderizador está reproduciendo ({@code CurrentTransportState} de GetTransportInfo). */
+    boolean isPlaying(String controlUrl) throws IOException {
+        String state = between(invoke(controlUrl, "GetTransportInfo", ""),
+                "<CurrentTransportState>", "</CurrentTransportState>");
+        return "PLAYING".equals(state);
+    }
+
+    /** Ejecuta una acción y devuelve el cuerpo de la respuesta. */
+    String invoke(String controlUrl, String action, String arguments) throws IOException {
+        byte[] body = ("<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+                + "<s:Envelope xmlns:s=\"http://schemas.xmlsoap.org/soap/envelope/\""
+                + " s:encodingStyle=\"http://schemas.xmlsoap.org/soap/encoding/\">"
+                + "<s:Body><u:" + action + " xmlns:u=\"" + SERVICE + "\">"
+                + "<InstanceID>0</InstanceID>" + arguments
+                + "</u:" + action + "></s:Body></s:Envelope>").getBytes(UTF_8);
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(controlUrl).openConnection();
+        connection.setConnectTimeout(timeoutMs);
+        connection.setReadTimeout(timeoutMs);
+        connection.setDoOutput(true);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "text/xml; charset=\"utf-8\"");
+        connection.setRequestProperty("SOAPACTION", "\"" + SERVICE + "#" + action + "\"");
+        connection.setFixedLengthStreamingMode(body.length);
+        OutputStream out = connection.getOutputStream();
+        try {
+            out.write(body);
+        } finally {
+            out.close();
+        }
+
+        int status = connection.getResponseCode();
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        String response = in != null ? readFully(in) : "";
+        if (status >= 400) {
+            throw new IOException(action + " falló (HTTP " + status + ")" + upnpError(response));
+        }
+        return response;
+    }
+
+    // Leer hasta el final y cerrar el stream devuelve la conexión al pool
+    private static String readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] chunk = new byte[2048];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                bytes.write(chunk, 0, read);
+            }
+            return new String(bytes.toByteArray(), UTF_8);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String upnpError(String response) {
+        String code = between(response, "<errorCode>", "</errorCode>");
+        String description = between(response, "<errorDescription>", "</errorDescription>");
+        if (code == null) {
+            return "";
+        }
+        return ": UPnP " + code + (description != null ? " " + description : "");
+    }
+
+    private static String between(String text, String open, String close) {
+        int start = text.indexOf(open);
+        if (start < 0) {
+            return null;
+        }
+        int end = text.indexOf(close, start);
+        return end < 0 ? null : text.substring(start + open.length(), end).trim();
+    }
+
+    /** Metadatos DIDL-Lite mínimos; algunos televisores rechazan la URI sin ellos. */
+    static String didl(String uri, String title, String mimeType) {
+        return "<DIDL-Lite xmlns=\"urn:schemas-upnp-org:metadata-1-0/DIDL-Lite/\""
+                + " xmlns:dc=\"http://purl.org/dc/elements/1.1/\""
+                + " xmlns:upnp=\"urn:schemas-upnp-org:metadata-1-0/upnp/\">"
+                + "<item id=\"0\" parentID=\"-1\" restricted=\"1\">"
+                + "<dc:title>" + escape(title != null ? title : "Video") + "</dc:title>"
+                + "<upnp:class>object.item.videoItem</upnp:class>"
+                + "<res protocolInfo=\"http-get:*:" + escape(mimeType) + ":*\">" + escape(uri) + "</res>"
+                + "</item></DIDL-Lite>";
+    }
+
+    /** Posición en formato {@code H:MM:SS} de REL_TIME. */
+    static String time(double seconds) {
+        long total = Math.max(0, Math.round(seconds));
+        return String.format(Locale.US, "%d:%02d:%02d", total / 3600, (total / 60) % 60, total % 60);
+    }
+
+    /** Segundos de una posición {@code H:MM:SS[.fff]}, o -1 si no tiene ese formato. */
+    static double seconds(String time) {
+        if (time == null) {
+            return -1;
+        }
+        String[] parts = time.split(":");
+        if (parts.length != 3) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(parts[0]) * 3600 + Long.parseLong(parts[1]) * 60 + Double.parseDouble(parts[2]);
+        } catch (NumberFormatException e) {
+            // NOT_IMPLEMENTED y similares
+            return -1;
+        }
+    }
+
+    static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length() + 16);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    escaped.append("&amp;");
+                    break;
+                case '<':
+                    escaped.append("&lt;");
+                    break;
+                case '>':
+                    escaped.append("&gt;");
+                    break;
+                case '"':
+                    escaped.append("&quot;");
+                    break;
+                default:
+                    escaped.append(c);
+                    break;
+            }
+        }
+        return escaped.toString();
+    }
+}
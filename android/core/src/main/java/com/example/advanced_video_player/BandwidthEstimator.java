@@ -0,0 +1,123 @@
+package com.example.advanced_video_player;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Estimación del ancho de banda de bajada a partir de las descargas del plugin.
+ *
+ * Cada descarga aporta una muestra (bytes y tiempo de transferencia). La estimación
+ * es la mediana ponderada de las últimas {@link #MAX_SAMPLES}, con peso raíz de los
+ * bytes, como el {@code SlidingPercentile} de ExoPlayer: una descarga grande pesa
+ * más, pero no tapa a las demás. Las muestras caducan a los {@link #MAX_AGE_MS},
+ * porque la red del teléfono cambia (Wi-Fi, datos móviles).
+ *
+ * Las descargas de menos de {@link #MIN_SAMPLE_BYTES} se descartan: en ellas manda la
+ * latencia y subestimarían la red. Para lo mismo, quien mide debería contar desde el
+ * primer byte recibido y no desde la petición.
+ */
+final class BandwidthEstimator {
+    static final int MAX_SAMPLES = 20;
+    static final long MAX_AGE_MS = 5 * 60 * 1000;
+    static final long MIN_SAMPLE_BYTES = 16 * 1024;
+
+    private static final BandwidthEstimator INSTANCE = new BandwidthEstimator();
+
+    private static final Comparator<long[]> BY_BITRATE = new Comparator<long[]>() {
+        @Override
+        public int compare(long[] a, long[] b) {
+            return a[BITRATE] < b[BITRATE] ? -1 : (a[BITRATE] == b[BITRATE] ? 0 : 1);
+        }
+    };
+
+    // Cada muestra: bits por segundo, bytes y momento (ms)
+    private static final int BITRATE = 0;
+    private static final int BYTES = 1;
+    private static final int AT_MS = 2;
+
+    private final long[][] samples = new long[MAX_SAMPLES][3];
+    private int count;
+    private int next;
+    private long recorded;
+    private long discarded;
+
+    /** Estimador del proceso, al que aportan todas las descargas del plugin. */
+    static BandwidthEstimator get() {
+        return INSTANCE;
+    }
+
+    BandwidthEstimator() {
+    }
+
+    /** Aporta una descarga medida ahora con {@link System#nanoTime()}. */
+    boolean record(long bytes, long elapsedNanos) {
+        return record(bytes, elapsedNanos, System.nanoTime() / 1000000L);
+    }
+
+    /**
+     * Aporta una descarga de {@code bytes} que tardó {@code elapsedNanos}. Devuelve
+     * false si es demasiado pequeña o su tiempo no es válido.
+     */
+    synchronized boolean record(long bytes, long elapsedNanos, long nowMs) {
+        if (bytes < MIN_SAMPLE_BYTES || elapsedNanos <= 0) {
+            discarded++;
+            return false;
+        }
+        long[] sample = samples[next];
+        sample[BITRATE] = bytes * 8L * 1000000000L / elapsedNanos;
+        sample[BYTES] = bytes;
+        sample[AT_MS] = nowMs;
+        next = (next + 1) % MAX_SAMPLES;
+        count = Math.min(count + 1, MAX_SAMPLES);
+        recorded++;
+        return true;
+    }
+
+    /** Ancho de banda estimado en bits por segundo, o -1 sin muestras recientes. */
+    long estimate() {
+        return estimate(System.nanoTime() / 1000000L);
+    }
+
+    synchronized long estimate(long nowMs) {
+        long[][] recent = new long[count][];
+        int size = 0;
+        double totalWeight = 0;
+        for (int i = 0; i < count; i++) {
+            if (nowMs - samples[i][AT_MS] <= MAX_AGE_MS) {
+                recent[size++] = samples[i];
+                totalWeight += Math.sqrt(samples[i][BYTES]);
+            }
+        }
+        if (size == 0) {
+            return -1;
+        }
+        Arrays.sort(recent, 0, size, BY_BITRATE);
+        double half = totalWeight / 2;
+        double accumulated = 0;
+        for (int i = 0; i < size; i++) {
+            accumulated += Math.sqrt(recent[i][BYTES]);
+            if (accumulated >= half) {
+                return recent[i][BITRATE];
+            }
+        }
+        return recent[size - 1][BITRATE];
+    }
+
+    /** Olvida las muestras (la red cambió). */
+    synchronized void reset() {
+        count = 0;
+        next = 0;
+    }
+
+    /** Estado para {@code getBandwidthEstimate}. */
+    synchronized Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("bitsPerSecond", estimate());
+        snapshot.put("samples", count);
+        snapshot.put("recorded", recorded);
+        snapshot.put("discarded", discarded);
+        return snapshot;
+    }
+}
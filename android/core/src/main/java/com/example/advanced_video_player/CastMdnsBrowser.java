@@ -0,0 +1,452 @@
+package com.example.advanced_video_player;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Descubrimiento de receptores Cast por mDNS/DNS-SD ({@code _googlecast._tcp}) sin
+ * Google Play Services.
+ *
+ * Envía consultas "one-shot" (RFC 6762, sección 5.1) desde un puerto efímero: los
+ * respondedores contestan en unicast a ese puerto, así que no hace falta unirse al
+ * grupo multicast ni ocupar el puerto 5353 (y funciona desde API 21). Un único hilo
+ * atiende un {@link DatagramChannel} no bloqueante con un {@link Selector}; entre
+ * respuestas el hilo duerme hasta la siguiente consulta o la siguiente caducidad.
+ *
+ * Los registros se guardan con su TTL y caducan solos; un TTL 0 (despedida) los
+ * elimina al momento. Las consultas se repiten con espera creciente (1 s, 2 s, 4 s...
+ * hasta {@link #MAX_QUERY_INTERVAL_MS}) y antes de que caduque un registro PTR, así la
+ * lista se mantiene al día. Cada cambio en los dispositivos resueltos se notifica al
+ * {@link Listener} con el mismo formato de mapa que {@code discoverDevices}.
+ *
+ * No usa clases de Android: se prueba en la JVM contra un respondedor en loopback.
+ */
+final class CastMdnsBrowser {
+    static final String SERVICE = "_googlecast._tcp.local";
+    static final InetSocketAddress MDNS_GROUP = new InetSocketAddress("224.0.0.251", 5353);
+
+    // Prefijo de los ids de dispositivos descubiertos por mDNS
+    static final String ID_PREFIX = "mdns:";
+    static final String SOURCE = "mdns";
+
+    static final long MIN_QUERY_INTERVAL_MS = 1000;
+    static final long MAX_QUERY_INTERVAL_MS = 60000;
+
+    // Bits del campo "ca" del TXT (los mismos que CastDevice.CAPABILITY_*)
+    private static final int CAPABILITY_VIDEO_OUT = 1;
+    private static final int CAPABILITY_VIDEO_IN = 2;
+    private static final int CAPABILITY_AUDIO_OUT = 4;
+    private static final int CAPABILITY_AUDIO_IN = 8;
+    private static final int CAPABILITY_MULTIZONE_GROUP = 32;
+
+    /** Cambios en los dispositivos resueltos. Se llama desde el hilo del navegador. */
+    interface Listener {
+        void onDeviceFound(Map<String, Object> device);
+
+        void onDeviceLost(String id);
+    }
+
+    private static final class CachedRecord {
+        final MdnsMessage.Record record;
+        final long expiresAtNanos;
+
+        CachedRecord(MdnsMessage.Record record, long expiresAtNanos) {
+            this.record = record;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    private final InetSocketAddress target;
+    private final InetSocketAddress bindAddress;
+    private final Listener listener;
+
+    // Solo la usa el hilo del navegador
+    private final Map<String, CachedRecord> cache = new HashMap<>();
+    // Dispositivos publicados, por id
+    private final Map<String, Map<String, Object>> devices = new HashMap<>();
+    private final byte[] receiveBuffer = new byte[9000];
+
+    private DatagramChannel channel;
+    private Selector selector;
+    private Thread thread;
+    private volatile boolean running;
+    private volatile boolean queryRequested;
+    private long queryIntervalMs = MIN_QUERY_INTERVAL_MS;
+    private long nextQueryNanos;
+    private volatile int queries;
+
+    /**
+     * @param target      destino de las consultas ({@link #MDNS_GROUP} en la red)
+     * @param bindAddress dirección local; puerto 0 para uno efímero
+     */
+    CastMdnsBrowser(InetSocketAddress target, InetSocketAddress bindAddress, Listener listener) {
+        this.target = target;
+        this.bindAddress = bindAddress;
+        this.listener = listener;
+    }
+
+    /** Navegador para la red local: consulta al grupo mDNS desde un puerto efímero. */
+    static CastMdnsBrowser forLocalNetwork(Listener listener) {
+        return new CastMdnsBrowser(MDNS_GROUP, new InetSocketAddress(0), listener);
+    }
+
+    /** Abre el canal y arranca el hilo; la primera consulta sale enseguida. */
+    synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        channel.socket().setReuseAddress(true);
+        channel.socket().bind(bindAddress);
+        selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+        running = true;
+        queryRequested = true;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "CastMdnsBrowser");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Detiene el hilo y cierra el canal. */
+    void stop() {
+        Thread worker;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            worker = thread;
+            thread = null;
+            selector.wakeup();
+        }
+        try {
+            worker.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeQuietly();
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    /** Consulta otra vez ya y reinicia la espera entre consultas. */
+    void requery() {
+        queryRequested = true;
+        Selector current = selector;
+        if (current != null) {
+            current.wakeup();
+        }
+    }
+
+    /** Puerto local del canal (para tests), o 0 si no está abierto. */
+    synchronized int localPort() {
+        return channel != null ? channel.socket().getLocalPort() : 0;
+    }
+
+    /** Consultas enviadas desde que arrancó. */
+    int queries() {
+        return queries;
+    }
+
+    /** Dispositivos resueltos ahora mismo (copias). */
+    List<Map<String, Object>> devices() {
+        synchronized (devices) {
+            List<Map<String, Object>> copy = new ArrayList<>(devices.size());
+            for (Map<String, Object> device : devices.values()) {
+                copy.add(new HashMap<>(device));
+            }
+            return copy;
+        }
+    }
+
+    private void loop() {
+        while (running) {
+            try {
+                long now = System.nanoTime();
+                if (queryRequested) {
+                    queryRequested = false;
+                    queryIntervalMs = MIN_QUERY_INTERVAL_MS;
+                    nextQueryNanos = now;
+                }
+                if (now - nextQueryNanos >= 0) {
+                    sendQuery();
+                    nextQueryNanos = now + queryIntervalMs * 1000000L;
+                    queryIntervalMs = Math.min(queryIntervalMs * 2, MAX_QUERY_INTERVAL_MS);
+                }
+                if (expire(now)) {
+                    publish();
+                }
+
+                long refresh = nextPtrRefresh(now);
+                if (refresh != Long.MAX_VALUE && refresh - nextQueryNanos < 0) {
+                    nextQueryNanos = refresh;
+                }
+                long wait = nextQueryNanos - now;
+                long expiry = nextExpiry();
+                if (expiry != Long.MAX_VALUE) {
+                    wait = Math.min(wait, expiry - now);
+                }
+                long timeoutMs = Math.max(1, (wait + 999999L) / 1000000L);
+                selector.select(timeoutMs);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    keys.next();
+                    keys.remove();
+                    receiveAll();
+                }
+            } catch (IOException e) {
+                if (running) {
+                    // Un error de red no detiene la búsqueda; se reintenta en el siguiente ciclo
+                    sleepQuietly(MIN_QUERY_INTERVAL_MS);
+                }
+            }
+        }
+    }
+
+    private void sendQuery() throws IOException {
+        List<String> names = new ArrayList<>();
+        names.add(SERVICE);
+        ByteBuffer query = MdnsMessage.query(names, MdnsMessage.TYPE_PTR, true);
+        channel.send(query, target);
+        queries++;
+    }
+
+    private void receiveAll() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(receiveBuffer);
+        boolean changed = false;
+        while (true) {
+            buffer.clear();
+            if (channel.receive(buffer) == null) {
+                break;
+            }
+            List<MdnsMessage.Record> records;
+            try {
+                records = MdnsMessage.parse(receiveBuffer, buffer.position());
+            } catch (IOException e) {
+                // Paquetes de otros servicios o corruptos: se ignoran
+                continue;
+            }
+            long now = System.nanoTime();
+            for (MdnsMessage.Record record : records) {
+                changed |= store(record, now);
+            }
+        }
+        if (changed) {
+            publish();
+        }
+    }
+
+    private boolean store(MdnsMessage.Record record, long now) {
+        String key = record.key();
+        if (record.ttlSeconds == 0) {
+            // Despedida del respondedor
+            return cache.remove(key) != null;
+        }
+        CachedRecord previous = cache.put(key,
+                new CachedRecord(record, now + record.ttlSeconds * 1000000000L));
+        // Solo cambia la lista si el registro es nuevo o, en TXT, cambian los datos
+        return previous == null
+                || (record.type == MdnsMessage.TYPE_TXT && !previous.record.txt.equals(record.txt));
+    }
+
+    private boolean expire(long now) {
+        boolean changed = false;
+        Iterator<CachedRecord> it = cache.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().expiresAtNanos >= 0) {
+                it.remove();
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // Próxima renovación de un PTR: al 80 % de su vida (RFC 6762, sección 5.2)
+    private long nextPtrRefresh(long now) {
+        long next = Long.MAX_VALUE;
+        for (CachedRecord cached : cache.values()) {
+            if (cached.record.type != MdnsMessage.TYPE_PTR) {
+                continue;
+            }
+            long refresh = cached.expiresAtNanos - cached.record.ttlSeconds * 200000000L;
+            if (refresh - now > 0 && refresh < next) {
+                next = refresh;
+            }
+        }
+        return next;
+    }
+
+    private long nextExpiry() {
+        long next = Long.MAX_VALUE;
+        for (CachedRecord cached : cache.values()) {
+            if (cached.expiresAtNanos < next) {
+                next = cached.expiresAtNanos;
+            }
+        }
+        return next;
+    }
+
+    // Recalcula los dispositivos resueltos y notifica las diferencias
+    private void publish() {
+        Map<String, Map<String, Object>> resolved = resolve();
+        List<Map<String, Object>> found = new ArrayList<>();
+        List<String> lost = new ArrayList<>();
+        synchronized (devices) {
+            for (Map.Entry<String, Map<String, Object>> entry : resolved.entrySet()) {
+                if (!entry.getValue().equals(devices.get(entry.getKey()))) {
+                    found.add(entry.getValue());
+                }
+            }
+            for (String id : devices.keySet()) {
+                if (!resolved.containsKey(id)) {
+                    lost.add(id);
+                }
+            }
+            devices.clear();
+            devices.putAll(resolved);
+        }
+        for (Map<String, Object> device : found) {
+            listener.onDeviceFound(Collections.unmodifiableMap(device));
+        }
+        for (String id : lost) {
+            listener.onDeviceLost(id);
+        }
+    }
+
+    private Map<String, Map<String, Object>> resolve() {
+        Map<String, MdnsMessage.Record> srvByName = new HashMap<>();
+        Map<String, MdnsMessage.Record> txtByName = new HashMap<>();
+        Map<String, InetAddress> addressByHost = new HashMap<>();
+        List<String> instances = new ArrayList<>();
+        for (CachedRecord cached : cache.values()) {
+            MdnsMessage.Record record = cached.record;
+            switch (record.type) {
+                case MdnsMessage.TYPE_PTR:
+                    if (SERVICE.equals(record.name)) {
+                        instances.add(record.target);
+                    }
+                    break;
+                case MdnsMessage.TYPE_SRV:
+                    srvByName.put(record.name, record);
+                    break;
+                case MdnsMessage.TYPE_TXT:
+                    txtByName.put(record.name, record);
+                    break;
+                default:
+                    // Se prefiere IPv4: una A reemplaza a una AAAA, no al revés
+                    InetAddress previous = addressByHost.get(record.name);
+                    if (previous == null || record.type == MdnsMessage.TYPE_A) {
+                        addressByHost.put(record.name, record.address);
+                    }
+                    break;
+            }
+        }
+
+        Map<String, Map<String, Object>> resolved = new HashMap<>();
+        for (String instance : instances) {
+            MdnsMessage.Record txt = txtByName.get(instance);
+            MdnsMessage.Record srv = srvByName.get(instance);
+            if (txt == null || srv == null) {
+                continue;
+            }
+            InetAddress address = addressByHost.get(srv.target);
+            Map<String, Object> device = describe(instance, txt.txt, srv.port, address);
+            resolved.put((String) device.get("id"), device);
+        }
+        return resolved;
+    }
+
+    // Mismo formato que CastDeviceCatalog
+    private static Map<String, Object> describe(String instance, Map<String, String> txt, int port,
+                                                InetAddress address) {
+        String deviceId = txt.containsKey("id") ? txt.get("id") : instance;
+        String name = txt.containsKey("fn") ? txt.get("fn") : instance;
+        String model = txt.get("md");
+        int ca = parseInt(txt.get("ca"));
+        boolean group = (ca & CAPABILITY_MULTIZONE_GROUP) != 0;
+
+        Map<String, Object> device = new HashMap<>();
+        device.put("id", ID_PREFIX + deviceId);
+        device.put("name", name);
+        device.put("type", group ? CastModels.TYPE_GROUP : CastModels.TYPE_CHROMECAST);
+        device.put("source", SOURCE);
+        device.put("isConnected", false);
+        device.put("deviceId", deviceId);
+        device.put("modelName", model);
+        device.put("deviceVersion", txt.get("ve"));
+        device.put("ipAddress", address != null ? address.getHostAddress() : null);
+        device.put("servicePort", port);
+        device.put("isOnLocalNetwork", true);
+        if ((ca & CAPABILITY_VIDEO_OUT) != 0) {
+            device.put("deviceType", "tv");
+        } else if ((ca & CAPABILITY_AUDIO_OUT) != 0) {
+            device.put("deviceType", "speaker");
+        } else {
+            device.put("deviceType", "unknown");
+        }
+
+        Map<String, Object> capabilities = new HashMap<>();
+        capabilities.put("videoOut", (ca & CAPABILITY_VIDEO_OUT) != 0);
+        capabilities.put("videoIn", (ca & CAPABILITY_VIDEO_IN) != 0);
+        capabilities.put("audioOut", (ca & CAPABILITY_AUDIO_OUT) != 0);
+        capabilities.put("audioIn", (ca & CAPABILITY_AUDIO_IN) != 0);
+        capabilities.put("multizoneGroup", group);
+        device.put("capabilities", capabilities);
+        device.put("supports4k", group ? null : CastModels.supports4k(model));
+        device.put("supportsHevc", group ? null : CastModels.supportsHevc(model));
+        return device;
+    }
+
+    private static int parseInt(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private synchronized void closeQuietly() {
+        try {
+            if (selector != null) {
+                selector.close();
+            }
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException ignored) {
+            // Ya se está cerrando
+        }
+        selector = null;
+        channel = null;
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.advanced_video_player;
+
+/**
+ * Capacidades de vídeo deducidas del modelo de un receptor Cast.
+ *
+ * Ni el SDK de Cast ni el registro TXT de mDNS informan de los códecs ni de la
+ * resolución máxima; esta tabla cubre los modelos de Google más comunes. Para
+ * modelos que no están en la tabla (televisores con Cast integrado, Android TV de
+ * otros fabricantes) se devuelve null: la app decide qué variante enviar.
+ */
+final class CastModels {
+    // Valores de "type" en la lista de dispositivos que recibe Dart
+    static final String TYPE_CHROMECAST = "chromecast";
+    static final String TYPE_GROUP = "group";
+    static final String TYPE_REMOTE = "remote";
+
+    // {nombre de modelo, 4K, HEVC}. Se comparan sin distinguir mayúsculas.
+    private static final Object[][] KNOWN_MODELS = {
+            {"Chromecast Ultra", true, true},
+            {"Google TV Streamer", true, true},
+            {"Chromecast HD", false, true},
+            {"Chromecast", false, false},
+    };
+
+    private CastModels() {
+    }
+
+    /** Si el modelo reproduce 4K, o null si el modelo no es conocido. */
+    static Boolean supports4k(String modelName) {
+        Object[] model = find(modelName);
+        return model != null ? (Boolean) model[1] : null;
+    }
+
+    /** Si el modelo decodifica HEVC, o null si el modelo no es conocido. */
+    static Boolean supportsHevc(String modelName) {
+        Object[] model = find(modelName);
+        return model != null ? (Boolean) model[2] : null;
+    }
+
+    private static Object[] find(String modelName) {
+        if (modelName == null) {
+            return null;
+        }
+        String name = modelName.trim();
+        for (Object[] model : KNOWN_MODELS) {
+            if (((String) model[0]).equalsIgnoreCase(name)) {
+                return model;
+            }
+        }
+        return null;
+    }
+}
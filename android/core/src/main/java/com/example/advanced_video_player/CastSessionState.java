@@ -0,0 +1,141 @@
+package com.example.advanced_video_player;
+
+/**
+ * Máquina de estados de la sesión Cast del proceso, alimentada con los eventos de
+ * {@code SessionManagerListener} que recibe {@code CastHub}.
+ *
+ * Las transiciones están en una tabla {@code [estado][evento]}. Un evento que no
+ * corresponde al estado actual (el SDK a veces omite {@code starting} o repite
+ * {@code resumed}) se aplica igual si lleva a un estado bien definido, y se cuenta
+ * como inesperado si no: el estado no cambia. {@code ended} siempre vuelve a
+ * {@link #IDLE}.
+ */
+final class CastSessionState {
+    static final int IDLE = 0;
+    static final int STARTING = 1;
+    static final int ACTIVE = 2;
+    static final int SUSPENDED = 3;
+    static final int RESUMING = 4;
+    static final int ENDING = 5;
+
+    static final String EVENT_STARTING = "starting";
+    static final String EVENT_STARTED = "started";
+    static final String EVENT_START_FAILED = "startFailed";
+    static final String EVENT_RESUMING = "resuming";
+    static final String EVENT_RESUMED = "resumed";
+    static final String EVENT_RESUME_FAILED = "resumeFailed";
+    static final String EVENT_SUSPENDED = "suspended";
+    static final String EVENT_ENDING = "ending";
+    static final String EVENT_ENDED = "ended";
+
+    private static final String[] STATE_NAMES = {"idle", "starting", "active", "suspended", "resuming", "ending"};
+
+    private static final int E_STARTING = 0;
+    private static final int E_STARTED = 1;
+    private static final int E_START_FAILED = 2;
+    private static final int E_RESUMING = 3;
+    private static final int E_RESUMED = 4;
+    private static final int E_RESUME_FAILED = 5;
+    private static final int E_SUSPENDED = 6;
+    private static final int E_ENDING = 7;
+    private static final int E_ENDED = 8;
+
+    private static final int X = -1;
+    // Estado siguiente por estado actual (filas) y evento (columnas); X = inesperado
+    private static final int[][] TRANSITIONS = {
+            // starting  started  startFailed  resuming  resumed  resumeFailed  suspended  ending  ended
+            {STARTING, ACTIVE, X, RESUMING, ACTIVE, X, X, X, IDLE},               // IDLE
+            {X, ACTIVE, IDLE, X, X, X, X, ENDING, IDLE},                          // STARTING
+            {X, ACTIVE, X, X, ACTIVE, X, SUSPENDED, ENDING, IDLE},                // ACTIVE
+            {X, X, X, RESUMING, ACTIVE, IDLE, SUSPENDED, ENDING, IDLE},           // SUSPENDED
+            {X, X, X, X, ACTIVE, IDLE, X, ENDING, IDLE},                          // RESUMING
+            {X, X, X, X, X, X, X, ENDING, IDLE},                                  // ENDING
+    };
+
+    private int state = IDLE;
+    private String sessionId;
+    private int unexpected;
+    private long transitions;
+
+    /**
+     * Aplica un evento de sesión. {@code sessionId} puede ser null (el SDK no lo
+     * entrega en todos los eventos). Devuelve el estado resultante.
+     */
+    synchronized int on(String event, String sessionId) {
+        int column = column(event);
+        if (column < 0) {
+            unexpected++;
+            return state;
+        }
+        int next = TRANSITIONS[state][column];
+        if (next == X) {
+            unexpected++;
+            return state;
+        }
+        state = next;
+        transitions++;
+        if (next == IDLE) {
+            this.sessionId = null;
+        } else if (sessionId != null) {
+            this.sessionId = sessionId;
+        }
+        return state;
+    }
+
+    /** Vuelve a {@link #IDLE} sin contar una transición (se dejó de seguir la sesión). */
+    synchronized void reset() {
+        state = IDLE;
+        sessionId = null;
+    }
+
+    synchronized int state() {
+        return state;
+    }
+
+    synchronized String stateName() {
+        return STATE_NAMES[state];
+    }
+
+    synchronized String sessionId() {
+        return sessionId;
+    }
+
+    /** Si hay una sesión con la que se puede cargar contenido. */
+    synchronized boolean isActive() {
+        return state == ACTIVE;
+    }
+
+    /** Eventos descartados por no corresponder al estado. */
+    synchronized int unexpected() {
+        return unexpected;
+    }
+
+    synchronized long transitions() {
+        return transitions;
+    }
+
+    private static int column(String event) {
+        switch (event) {
+            case EVENT_STARTING:
+                return E_STARTING;
+            case EVENT_STARTED:
+                return E_STARTED;
+            case EVENT_START_FAILED:
+                return E_START_FAILED;
+            case EVENT_RESUMING:
+                return E_RESUMING;
+            case EVENT_RESUMED:
+                return E_RESUMED;
+            case EVENT_RESUME_FAILED:
+                return E_RESUME_FAILED;
+            case EVENT_SUSPENDED:
+                return E_SUSPENDED;
+            case EVENT_ENDING:
+                return E_ENDING;
+            case EVENT_ENDED:
+                return E_ENDED;
+            default:
+                return -1;
+        }
+    }
+}
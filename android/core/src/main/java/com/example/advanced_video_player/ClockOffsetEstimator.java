@@ -0,0 +1,106 @@
+package com.example.advanced_video_player;
+
+import java.util.Locale;
+
+/**
+ * Estima la diferencia entre el reloj local y el de otro equipo a partir de
+ * intercambios de cuatro marcas de tiempo, como NTP (RFC 5905, 8.):
+ *
+ * <pre>
+ *   t0: sale la consulta (reloj local)     t1: llega al otro equipo (su reloj)
+ *   t3: llega la respuesta (reloj local)   t2: sale la respuesta (su reloj)
+ *
+ *   offset = ((t1 - t0) + (t2 - t3)) / 2      delay = (t3 - t0) - (t2 - t1)
+ * </pre>
+ *
+ * El offset de una muestra solo es exacto si la ida y la vuelta tardan lo mismo; el
+ * error está acotado por la mitad del delay. Por eso, de las últimas
+ * {@link #WINDOW} muestras se usa la de menor delay (el filtro de reloj de NTP), y el
+ * jitter es la dispersión cuadrática de las demás respecto a ella.
+ *
+ * Las marcas van en nanosegundos de relojes monotónicos; el offset puede ser enorme
+ * (cada equipo cuenta desde su arranque) sin que afecte al cálculo.
+ */
+final class ClockOffsetEstimator {
+    static final int WINDOW = 8;
+
+    /** Estimación actual. */
+    static final class Estimate {
+        /** Reloj remoto menos reloj local. */
+        final long offsetNanos;
+        /** Ida y vuelta de la muestra elegida. */
+        final long delayNanos;
+        final long jitterNanos;
+        final int samples;
+
+        Estimate(long offsetNanos, long delayNanos, long jitterNanos, int samples) {
+            this.offsetNanos = offsetNanos;
+            this.delayNanos = delayNanos;
+            this.jitterNanos = jitterNanos;
+            this.samples = samples;
+        }
+
+        /** Cota del error del offset: media ida y vuelta más el jitter. */
+        long errorBoundNanos() {
+            return delayNanos / 2 + jitterNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "offset %.3f ms, delay %.3f ms, jitter %.3f ms (%d muestras)",
+                    offsetNanos / 1e6, delayNanos / 1e6, jitterNanos / 1e6, samples);
+        }
+    }
+
+    private final long[] offsets = new long[WINDOW];
+    private final long[] delays = new long[WINDOW];
+    private int count;
+    private int next;
+    private Estimate estimate;
+
+    /**
+     * Añade un intercambio. Devuelve false (y lo descarta) si las marcas son
+     * incoherentes: respuesta antes que consulta o más tiempo en el otro equipo que
+     * en el viaje completo.
+     */
+    synchronized boolean add(long t0, long t1, long t2, long t3) {
+        long delay = (t3 - t0) - (t2 - t1);
+        if (t3 < t0 || t2 < t1 || delay < 0) {
+            return false;
+        }
+        // Cada mitad se resta por separado: los relojes pueden estar muy lejos
+        offsets[next] = (t1 - t0) / 2 + (t2 - t3) / 2;
+        delays[next] = delay;
+        next = (next + 1) % WINDOW;
+        count = Math.min(count + 1, WINDOW);
+        estimate = compute();
+        return true;
+    }
+
+    /** Estimación con las muestras actuales, o null si aún no hay ninguna. */
+    synchronized Estimate estimate() {
+        return estimate;
+    }
+
+    synchronized void reset() {
+        count = 0;
+        next = 0;
+        estimate = null;
+    }
+
+    private Estimate compute() {
+        int best = 0;
+        for (int i = 1; i < count; i++) {
+            if (delays[i] < delays[best]) {
+                best = i;
+            }
+        }
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            double difference = offsets[i] - offsets[best];
+            sum += difference * difference;
+        }
+        long jitter = count > 1 ? (long) Math.sqrt(sum / (count - 1)) : 0;
+        return new Estimate(offsets[best], delays[best], jitter, count);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.advanced_video_player;
+
+/**
+ * Tipo MIME de un video a partir de su URL, para Cast ({@code setContentType}) y
+ * DLNA ({@code protocolInfo}).
+ *
+ * Se mira primero la extensión de la ruta (sin query ni fragmento) y, si no la hay,
+ * cualquier aparición de una extensión conocida en la URL, como hacía el plugin
+ * (las URLs firmadas suelen llevar el formato en la query). Las comparaciones no
+ * distinguen mayúsculas y no copian la URL.
+ */
+final class ContentTypes {
+    static final String HLS = "application/vnd.apple.mpegurl";
+    static final String DASH = "application/dash+xml";
+    static final String MP4 = "video/mp4";
+    static final String WEBM = "video/webm";
+    static final String MATROSKA = "video/x-matroska";
+
+    private static final String[] EXTENSIONS = {".m3u8", ".mpd", ".mp4", ".m4v", ".webm", ".mkv"};
+    private static final String[] TYPES = {HLS, DASH, MP4, MP4, WEBM, MATROSKA};
+
+    private ContentTypes() {
+    }
+
+    /** Tipo MIME de la URL; MP4 si no se reconoce. */
+    static String forUrl(String url) {
+        if (url == null) {
+            return MP4;
+        }
+        int end = url.length();
+        int query = url.indexOf('?');
+        if (query >= 0) {
+            end = query;
+        }
+        int fragment = url.indexOf('#');
+        if (fragment >= 0 && fragment < end) {
+            end = fragment;
+        }
+        for (int i = 0; i < EXTENSIONS.length; i++) {
+            String extension = EXTENSIONS[i];
+            int start = end - extension.length();
+            if (start >= 0 && url.regionMatches(true, start, extension, 0, extension.length())) {
+                return TYPES[i];
+            }
+        }
+        int found = extensionInUrl(url);
+        if (found >= 0) {
+            return TYPES[found];
+        }
+        return MP4;
+    }
+
+    /** Si la URL es de streaming adaptativo (HLS o DASH). */
+    static boolean isAdaptive(String url) {
+        String type = forUrl(url);
+        return HLS.equals(type) || DASH.equals(type);
+    }
+
+    // Extensión conocida en cualquier punto de la URL, en orden de EXTENSIONS. Solo
+    // se compara en los puntos: una pasada en lugar de una por extensión.
+    private static int extensionInUrl(String url) {
+        int best = -1;
+        for (int dot = url.indexOf('.'); dot >= 0; dot = url.indexOf('.', dot + 1)) {
+            int limit = best < 0 ? EXTENSIONS.length : best;
+            for (int i = 0; i < limit; i++) {
+                String extension = EXTENSIONS[i];
+                if (url.regionMatches(true, dot, extension, 0, extension.length())) {
+                    best = i;
+                    break;
+                }
+            }
+            if (best == 0) {
+                break;
+            }
+        }
+        return best;
+    }
+}
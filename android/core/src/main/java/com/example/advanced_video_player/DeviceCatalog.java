@@ -0,0 +1,126 @@
+package com.example.advanced_video_player;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lista de dispositivos que recibe Dart a partir de las rutas de la plataforma.
+ *
+ * Los datos estáticos de cada ruta ({@link RouteReader#extract}) se obtienen una sola
+ * vez y se guardan por id hasta que la plataforma avisa de que la ruta cambió
+ * ({@link #forget}). Cada búsqueda solo filtra las rutas y copia las entradas
+ * guardadas; las de rutas que ya no están disponibles se descartan aunque la
+ * plataforma no haya avisado, así que la caché no crece con los receptores que
+ * pasan por la red. El tipo de ruta queda detrás de {@link RouteReader} para que esta lógica
+ * no dependa de MediaRouter.
+ *
+ * @param <R> tipo de ruta de la plataforma
+ */
+final class DeviceCatalog<R> {
+    /** Acceso a las rutas de la plataforma. */
+    interface RouteReader<R> {
+        String id(R route);
+
+        String name(R route);
+
+        /** Si se puede transmitir a la ruta y no está ya conectada. */
+        boolean isAvailable(R route);
+
+        /** Datos estáticos del dispositivo (modelo, capacidades, IP...). */
+        Map<String, Object> extract(R route);
+    }
+
+    private final RouteReader<R> reader;
+    private final String metricPrefix;
+    private final Map<String, Map<String, Object>> entries = new HashMap<>();
+    private boolean lastChanged;
+    private int lastCount = -1;
+
+    /**
+     * @param metricPrefix prefijo de los contadores {@code .extracted} y {@code .hit}
+     *                     en {@link PluginMetrics}
+     */
+    DeviceCatalog(RouteReader<R> reader, String metricPrefix) {
+        this.reader = reader;
+        this.metricPrefix = metricPrefix;
+    }
+
+    /**
+     * Dispositivos disponibles entre las rutas. Cada elemento es una copia que se
+     * puede enviar por el canal.
+     */
+    synchronized List<Map<String, Object>> describe(List<R> routes) {
+        List<Map<String, Object>> devices = new ArrayList<>();
+        int extracted = 0;
+        for (int i = 0; i < routes.size(); i++) {
+            R route = routes.get(i);
+            if (!reader.isAvailable(route)) {
+                continue;
+            }
+            String id = reader.id(route);
+            Map<String, Object> entry = entries.get(id);
+            if (entry == null) {
+                entry = reader.extract(route);
+                entries.put(id, entry);
+                extracted++;
+                PluginMetrics.get().increment(metricPrefix + ".extracted");
+            } else {
+                PluginMetrics.get().increment(metricPrefix + ".hit");
+            }
+            Map<String, Object> device = new HashMap<>(entry);
+            device.put("id", id);
+            // El nombre puede cambiar sin que cambie el dispositivo
+            device.put("name", reader.name(route));
+            device.put("isConnected", false);
+            devices.add(device);
+        }
+        int pruned = entries.size() > devices.size() ? prune(devices) : 0;
+        lastChanged = extracted > 0 || pruned > 0 || devices.size() != lastCount;
+        lastCount = devices.size();
+        return devices;
+    }
+
+    /**
+     * Si la última búsqueda encontró dispositivos nuevos o perdió alguno respecto
+     * a la anterior. Sirve para no repetir el detalle en el log con cada búsqueda.
+     */
+    synchronized boolean lastChanged() {
+        return lastChanged;
+    }
+
+    /** Olvida los datos de una ruta (cambió o desapareció). */
+    synchronized void forget(String id) {
+        entries.remove(id);
+    }
+
+    /** Olvida todas las rutas; la siguiente búsqueda las vuelve a extraer. */
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    // Quita las entradas de rutas que no están entre los dispositivos
+    private int prune(List<Map<String, Object>> devices) {
+        HashSet<Object> live = new HashSet<>();
+        for (int i = 0; i < devices.size(); i++) {
+            live.add(devices.get(i).get("id"));
+        }
+        int pruned = 0;
+        for (Iterator<String> it = entries.keySet().iterator(); it.hasNext(); ) {
+            if (!live.contains(it.next())) {
+                it.remove();
+                pruned++;
+            }
+        }
+        PluginMetrics.get().increment(metricPrefix + ".pruned");
+        return pruned;
+    }
+
+    /** Rutas con datos guardados. */
+    synchronized int size() {
+        return entries.size();
+    }
+}
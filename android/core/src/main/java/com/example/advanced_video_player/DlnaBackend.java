@@ -0,0 +1,287 @@
+package com.example.advanced_video_player;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Renderizadores DLNA/UPnP (televisores y receptores sin Cast) como segundo backend de
+ * {@link RendererBackend}.
+ *
+ * La búsqueda es un {@link SsdpSearch} de {@code MediaRenderer}; las descripciones se
+ * descargan en paralelo y se guardan en {@link UpnpDescriptionCache}, así que una
+ * búsqueda repetida solo cuesta la ventana de SSDP. UPnP no tiene sesión: "conectar"
+ * es elegir el renderizador del reproductor, y cada orden es una acción de
+ * {@link AvTransportClient}. Las órdenes van por un solo hilo para que lleguen al
+ * televisor en el mismo orden en que las envió Dart.
+ */
+final class DlnaBackend implements RendererBackend {
+    static final String NAME = "dlna";
+    static final String ID_PREFIX = "dlna:";
+    static final String TYPE = "dlna";
+    // Origen del dispositivo en la lista que recibe Dart
+    static final String SOURCE = "ssdp";
+
+    private static final int MX_SECONDS = 1;
+    private static final int DESCRIPTION_THREADS = 4;
+
+    private final SsdpSearch search;
+    private final long searchWindowMs;
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(daemon("dlna-search"));
+    private final ExecutorService descriptionPool =
+            Executors.newFixedThreadPool(DESCRIPTION_THREADS, daemon("dlna-description"));
+    private final ExecutorService commandExecutor = Executors.newSingleThreadExecutor(daemon("dlna-command"));
+    private final UpnpDescriptionCache descriptions;
+    private final AvTransportClient transport;
+
+    // Renderizadores de la última búsqueda, por id
+    private final Map<String, UpnpDevice> known = new HashMap<>();
+    // Renderizador elegido por cada reproductor
+    private final Map<Integer, UpnpDevice> selected = new HashMap<>();
+
+    DlnaBackend(SsdpSearch search, long searchWindowMs, int httpTimeoutMs) {
+        this.search = search;
+        this.searchWindowMs = searchWindowMs;
+        this.descriptions = new UpnpDescriptionCache(descriptionPool, httpTimeoutMs);
+        this.transport = new AvTransportClient(httpTimeoutMs);
+    }
+
+    static DlnaBackend forLocalNetwork() {
+        return new DlnaBackend(SsdpSearch.forLocalNetwork(), 1500, 4000);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean owns(String deviceId) {
+        return deviceId != null && deviceId.startsWith(ID_PREFIX);
+    }
+
+    /** Descripciones descargadas (las búsquedas repetidas usan la caché). */
+    int descriptionDownloads() {
+        return descriptions.downloads();
+    }
+
+    @Override
+    public void discover(int player, final Callback callback) {
+        searchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<SsdpSearch.Response> responses;
+                try {
+                    responses = search.search(SsdpSearch.MEDIA_RENDERER, MX_SECONDS, searchWindowMs);
+                } catch (IOException e) {
+                    PluginMetrics.get().increment("dlna.search.failed");
+                    callback.success(new ArrayList<Map<String, Object>>());
+                    return;
+                }
+                List<UpnpDevice> devices = descriptions.resolve(responses);
+                List<Map<String, Object>> result = new ArrayList<>(devices.size());
+                synchronized (DlnaBackend.this) {
+                    for (UpnpDevice device : devices) {
+                        known.put(ID_PREFIX + device.udn, device);
+                        result.add(describe(device));
+                    }
+                }
+                PluginMetrics.get().increment("dlna.search.completed");
+                callback.success(result);
+            }
+        });
+    }
+
+    @Override
+    public void connect(int player, String deviceId, String deviceName, int traceId, Callback callback) {
+        UpnpDevice device;
+        synchronized (this) {
+            device = known.get(deviceId);
+            if (device != null) {
+                selected.put(player, device);
+            }
+        }
+        if (device == null) {
+            callback.error("UNKNOWN_DEVICE", "El renderizador " + deviceName + " no apareció en la última búsqueda");
+            return;
+        }
+        callback.success(true);
+    }
+
+    @Override
+    public void share(int player, Map<String, Object> video, int traceId, final Callback callback) {
+        final UpnpDevice device = selected(player);
+        final String url = (String) video.get("videoUrl");
+        final String title = (String) video.get("title");
+        Object position = video.get("positionMs");
+        final long positionMs = position instanceof Number ? ((Number) position).longValue() : 0;
+        if (device == null || url == null) {
+            callback.error("NO_RENDERER", "No hay un renderizador DLNA elegido para este reproductor");
+            return;
+        }
+        commandExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    transport.setUri(device.avTransportControlUrl, url, title, ContentTypes.forUrl(url));
+                    transport.play(device.avTransportControlUrl);
+                    // SetAVTransportURI no admite posición inicial: se busca ya reproduciendo
+                    if (positionMs >= 1000) {
+                        try {
+                            transport.seek(device.avTransportControlUrl, positionMs / 1000.0);
+                        } catch (IOException e) {
+                            // Algunos televisores no buscan mientras cargan: el video empieza de 0
+                        }
+                    }
+                    callback.success(true);
+                } catch (IOException e) {
+                    callback.error("DLNA_ERROR", e.getMessage());
+                }
+            }
+        });
+    }
+
+    @Override
+    public void control(int player, final String action, final Double position, final Callback callback) {
+        final UpnpDevice device = selected(player);
+        if (device == null) {
+            callback.success(false);
+            return;
+        }
+        commandExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    String control = device.avTransportControlUrl;
+                    if ("play".equals(action)) {
+                        transport.play(control);
+                    } else if ("pause".equals(action)) {
+                        transport.pause(control);
+                    } else if ("stop".equals(action)) {
+                        transport.stop(control);
+                    } else if ("seek".equals(action) && position != null) {
+                        transport.seek(control, position);
+                    } else {
+                        callback.success(false);
+                        return;
+                    }
+                    callback.success(true);
+                } catch (IOException e) {
+                    callback.error("DLNA_ERROR", e.getMessage());
+                }
+            }
+        });
+    }
+
+    @Override
+    public void position(int player, final Callback callback) {
+        final UpnpDevice device = selected(player);
+        if (device == null) {
+            callback.success(null);
+            return;
+        }
+        commandExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    double seconds = transport.position(device.avTransportControlUrl);
+                    if (seconds < 0) {
+                        callback.success(null);
+                        return;
+                    }
+                    Map<String, Object> position = new HashMap<>();
+                    position.put("positionMs", Math.round(seconds * 1000));
+                    position.put("playing", transport.isPlaying(device.avTransportControlUrl));
+                    callback.success(position);
+                } catch (IOException e) {
+                    callback.error("DLNA_ERROR", e.getMessage());
+                }
+            }
+        });
+    }
+
+    @Override
+    public void disconnect(int player, final Callback callback) {
+        final UpnpDevice device;
+        synchronized (this) {
+            device = selected.remove(player);
+        }
+        if (device == null) {
+            callback.success(false);
+            return;
+        }
+        commandExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    transport.stop(device.avTransportControlUrl);
+                } catch (IOException e) {
+                    // El televisor puede haberse apagado: el reproductor queda desconectado igual
+                }
+                callback.success(true);
+            }
+        });
+    }
+
+    @Override
+    public synchronized void release(int player) {
+        selected.remove(player);
+    }
+
+    @Override
+    public void close() {
+        searchExecutor.shutdownNow();
+        descriptionPool.shutdownNow();
+        commandExecutor.shutdownNow();
+        synchronized (this) {
+            known.clear();
+            selected.clear();
+        }
+        descriptions.clear();
+    }
+
+    @Override
+    public boolean trimMemory(int tier) {
+        // Los renderizadores conocidos se conservan: Dart puede conectar con la lista que ya tiene
+        descriptions.clear();
+        synchronized (this) {
+            return selected.isEmpty();
+        }
+    }
+
+    private synchronized UpnpDevice selected(int player) {
+        return selected.get(player);
+    }
+
+    /** Mapa del dispositivo con las mismas claves que {@link DeviceCatalog}. */
+    static Map<String, Object> describe(UpnpDevice device) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("id", ID_PREFIX + device.udn);
+        entry.put("name", device.friendlyName != null ? device.friendlyName : device.udn);
+        entry.put("type", TYPE);
+        entry.put("source", SOURCE);
+        entry.put("isConnected", false);
+        entry.put("modelName", device.modelName);
+        entry.put("manufacturer", device.manufacturer);
+        entry.put("ipAddress", device.host());
+        entry.put("volumeControl", device.renderingControlUrl != null);
+        entry.put("deviceType", "tv");
+        return entry;
+    }
+
+    private static ThreadFactory daemon(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.advanced_video_player;
+
+/**
+ * Corrige la deriva de un seguidor de la fiesta de visionado respecto al líder.
+ *
+ * Saltar cada vez que el seguidor se desvía vacía el búfer y se ve un tirón, así que
+ * los desvíos pequeños se absorben cambiando un poco la velocidad: el error se reparte
+ * en {@link #CORRECTION_WINDOW_MS}, con un ajuste de entre {@link #MIN_ADJUST} y
+ * {@link #MAX_ADJUST} (un 1 % no se nota en el audio; un 5 % apenas). Solo se salta
+ * cuando el desvío pasa de {@link #SEEK_THRESHOLD_MS} (el usuario buscó, el video se
+ * quedó cargando...).
+ *
+ * Hay histéresis: la corrección empieza por encima de {@link #START_THRESHOLD_MS} y
+ * sigue hasta bajar de {@link #STOP_THRESHOLD_MS}, para no alternar de velocidad con
+ * cada muestra cerca del umbral.
+ */
+final class DriftCorrector {
+    static final long START_THRESHOLD_MS = 20;
+    static final long STOP_THRESHOLD_MS = 5;
+    static final long SEEK_THRESHOLD_MS = 1500;
+    static final long CORRECTION_WINDOW_MS = 2000;
+    static final double MIN_ADJUST = 0.01;
+    static final double MAX_ADJUST = 0.05;
+
+    /** Qué debe hacer el reproductor del seguidor. */
+    static final class Correction {
+        /** Velocidad a aplicar. */
+        final double rate;
+        /** Si hay que saltar a {@link #targetMs} en lugar de corregir con la velocidad. */
+        final boolean seek;
+        /** Posición en la que debería estar el seguidor. */
+        final long targetMs;
+        /** Líder menos seguidor: positivo si el seguidor va atrasado. */
+        final long errorMs;
+
+        Correction(double rate, boolean seek, long targetMs, long errorMs) {
+            this.rate = rate;
+            this.seek = seek;
+            this.targetMs = targetMs;
+            this.errorMs = errorMs;
+        }
+    }
+
+    private boolean correcting;
+
+    /**
+     * @param localMs    posición del seguidor
+     * @param expectedMs posición del líder en el mismo instante
+     * @param baseRate   velocidad del líder
+     */
+    synchronized Correction next(double localMs, double expectedMs, double baseRate) {
+        double error = expectedMs - localMs;
+        long target = Math.round(expectedMs);
+        if (Math.abs(error) >= SEEK_THRESHOLD_MS) {
+            correcting = false;
+            return new Correction(baseRate, true, target, Math.round(error));
+        }
+        if (Math.abs(error) >= START_THRESHOLD_MS) {
+            correcting = true;
+        } else if (Math.abs(error) < STOP_THRESHOLD_MS) {
+            correcting = false;
+        }
+        if (!correcting) {
+            return new Correction(baseRate, false, target, Math.round(error));
+        }
+        double adjust = error / CORRECTION_WINDOW_MS;
+        adjust = Math.copySign(Math.min(MAX_ADJUST, Math.max(MIN_ADJUST, Math.abs(adjust))), error);
+        return new Correction(baseRate * (1 + adjust), false, target, Math.round(error));
+    }
+
+    /** En pausa no hay velocidad que ajustar: se salta si el desvío llega a notarse. */
+    synchronized Correction paused(double localMs, double expectedMs, double baseRate) {
+        correcting = false;
+        double error = expectedMs - localMs;
+        return new Correction(baseRate, Math.abs(error) >= START_THRESHOLD_MS, Math.round(expectedMs),
+                Math.round(error));
+    }
+
+    /** Olvida la corrección en curso (pausa, cambio de líder). */
+    synchronized void reset() {
+        correcting = false;
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.advanced_video_player;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Playlist maestra de HLS (RFC 8216, 4.3.4): las variantes con su ancho de banda y
+ * resolución.
+ *
+ * Sirve para elegir la variante de arranque con {@link BandwidthEstimator} y para
+ * reescribir la playlist con esa variante primero. Tanto ExoPlayer como AVPlayer
+ * preparan la reproducción con la primera variante listada, así que el orden decide
+ * el primer segmento. La playlist reescrita se sirve desde otra URL
+ * ({@link LocalPlaylistServer}), por eso todas sus URIs pasan a ser absolutas.
+ */
+final class HlsMasterPlaylist {
+    private static final String STREAM_INF = "#EXT-X-STREAM-INF:";
+    // URI="..." y SERVER-URI="..." de EXT-X-MEDIA, EXT-X-I-FRAME-STREAM-INF, EXT-X-SESSION-KEY...
+    private static final Pattern URI_ATTRIBUTE = Pattern.compile("([:,](?:[A-Z0-9]+-)?URI=\")([^\"]*)(\")");
+
+    /** Una variante ({@code EXT-X-STREAM-INF} y su URI). */
+    static final class Variant {
+        /** Posición en la playlist original. */
+        final int index;
+        /** Pico de bits por segundo ({@code BANDWIDTH}). */
+        final long bandwidth;
+        /** Media de bits por segundo ({@code AVERAGE-BANDWIDTH}), o -1. */
+        final long averageBandwidth;
+        final int width;
+        final int height;
+        final String codecs;
+        /** URI absoluta de la playlist de la variante. */
+        final String uri;
+        final String tag;
+
+        Variant(int index, String tag, String uri) {
+            this.index = index;
+            this.tag = tag;
+            this.uri = uri;
+            Map<String, String> attributes = attributes(tag.substring(STREAM_INF.length()));
+            bandwidth = number(attributes.get("BANDWIDTH"), 0);
+            averageBandwidth = number(attributes.get("AVERAGE-BANDWIDTH"), -1);
+            String resolution = attributes.get("RESOLUTION");
+            int x = resolution != null ? resolution.indexOf('x') : -1;
+            width = x > 0 ? (int) number(resolution.substring(0, x), 0) : 0;
+            height = x > 0 ? (int) number(resolution.substring(x + 1), 0) : 0;
+            codecs = attributes.get("CODECS");
+        }
+
+        @Override
+        public String toString() {
+            return (height > 0 ? width + "x" + height + " " : "") + bandwidth / 1000 + " kbps";
+        }
+    }
+
+    final String baseUrl;
+    private final List<String> lines;
+    // Línea de cada variante: la del tag y la siguiente es la URI
+    private final List<Integer> variantLines;
+    final List<Variant> variants;
+
+    private HlsMasterPlaylist(String baseUrl, List<String> lines, List<Integer> variantLines, List<Variant> variants) {
+        this.baseUrl = baseUrl;
+        this.lines = lines;
+        this.variantLines = variantLines;
+        this.variants = Collections.unmodifiableList(variants);
+    }
+
+    /**
+     * Interpreta {@code text} descargado de {@code baseUrl}. Una playlist de medios (sin
+     * variantes) no es un error: queda con {@link #isMaster()} false.
+     */
+    static HlsMasterPlaylist parse(String baseUrl, String text) throws IOException {
+        // Puede empezar con BOM, que trim() no quita
+        if (text.startsWith("\uFEFF")) {
+            text = text.substring(1);
+        }
+        List<String> lines = new ArrayList<>();
+        for (String line : text.split("\r?\n")) {
+            lines.add(line.trim());
+        }
+        if (lines.isEmpty() || !lines.get(0).startsWith("#EXTM3U")) {
+            throw new IOException("No es una playlist HLS");
+        }
+        URL base = new URL(baseUrl);
+        List<Integer> variantLines = new ArrayList<>();
+        List<Variant> variants = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (!lines.get(i).startsWith(STREAM_INF)) {
+                continue;
+            }
+            int uriLine = i + 1;
+            while (uriLine < lines.size() && (lines.get(uriLine).isEmpty() || lines.get(uriLine).startsWith("#"))) {
+                uriLine++;
+            }
+            if (uriLine == lines.size()) {
+                break;
+            }
+            variantLines.add(i);
+            variants.add(new Variant(variants.size(), lines.get(i), resolve(base, lines.get(uriLine))));
+            i = uriLine;
+        }
+        return new HlsMasterPlaylist(baseUrl, lines, variantLines, variants);
+    }
+
+    boolean isMaster() {
+        return !variants.isEmpty();
+    }
+
+    /**
+     * Variante de mayor {@code BANDWIDTH} que cabe en {@code fraction} del ancho de
+     * banda estimado, o la más ligera si ninguna cabe. Null si no hay variantes.
+     */
+    Variant select(long estimateBps, double fraction) {
+        Variant best = null;
+        Variant lightest = null;
+        double budget = estimateBps * fraction;
+        for (Variant variant : variants) {
+            if (lightest == null || variant.bandwidth < lightest.bandwidth) {
+                lightest = variant;
+            }
+            if (variant.bandwidth <= budget && (best == null || variant.bandwidth > best.bandwidth)) {
+                best = variant;
+            }
+        }
+        return best != null ? best : lightest;
+    }
+
+    /**
+     * La playlist con {@code first} como primera variante (las demás en su orden) y
+     * todas las URIs absolutas.
+     */
+    String rewrite(Variant first) throws MalformedURLException {
+        URL base = new URL(baseUrl);
+        StringBuilder out = new StringBuilder();
+        int firstVariantLine = variantLines.isEmpty() ? -1 : variantLines.get(0);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (i == firstVariantLine) {
+                appendVariant(out, first);
+                for (Variant variant : variants) {
+                    if (variant != first) {
+                        appendVariant(out, variant);
+                    }
+                }
+            }
+            if (line.startsWith(STREAM_INF)) {
+                // Ya escrita arriba; se salta también su URI
+                i++;
+                while (i < lines.size() && (lines.get(i).isEmpty() || lines.get(i).startsWith("#"))) {
+                    i++;
+                }
+                continue;
+            }
+            if (line.isEmpty()) {
+                continue;
+            }
+            out.append(line.startsWith("#") ? absoluteAttributes(base, line) : resolve(base, line)).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void appendVariant(StringBuilder out, Variant variant) {
+        out.append(variant.tag).append('\n').append(variant.uri).append('\n');
+    }
+
+    private static String absoluteAttributes(URL base, String tag) throws MalformedURLException {
+        Matcher matcher = URI_ATTRIBUTE.matcher(tag);
+        if (!matcher.find()) {
+            return tag;
+        }
+        StringBuffer out = new StringBuffer();
+        do {
+            matcher.appendReplacement(out, Matcher.quoteReplacement(
+                    matcher.group(1) + resolve(base, matcher.group(2)) + matcher.group(3)));
+        } while (matcher.find());
+        matcher.appendTail(out);
+        return out.toString();
+    }
+
+    private static String resolve(URL base, String uri) throws MalformedURLException {
+        return new URL(base, uri).toString();
+    }
+
+    /** Lista de atributos {@code CLAVE=valor,CLAVE="valor, con comas"}. */
+    static Map<String, String> attributes(String list) {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        int i = 0;
+        while (i < list.length()) {
+            int equals = list.indexOf('=', i);
+            if (equals < 0) {
+                break;
+            }
+            String name = list.substring(i, equals).trim();
+            int end;
+            String value;
+            if (equals + 1 < list.length() && list.charAt(equals + 1) == '"') {
+                int close = list.indexOf('"', equals + 2);
+                close = close < 0 ? list.length() : close;
+                value = list.substring(equals + 2, close);
+                end = list.indexOf(',', close);
+            } else {
+                end = list.indexOf(',', equals);
+                value = list.substring(equals + 1, end < 0 ? list.length() : end).trim();
+            }
+            attributes.put(name, value);
+            if (end < 0) {
+                break;
+            }
+            i = end + 1;
+        }
+        return attributes;
+    }
+
+    private static long number(String value, long fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
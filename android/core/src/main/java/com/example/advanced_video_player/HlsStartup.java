@@ -0,0 +1,150 @@
+package com.example.advanced_video_player;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Elige la variante de arranque de un video HLS antes de dárselo al reproductor.
+ *
+ * Descarga la playlist maestra (la descarga también alimenta a
+ * {@link BandwidthEstimator}), elige la variante que cabe en
+ * {@link #BANDWIDTH_FRACTION} del ancho de banda estimado y, si se pide, publica en
+ * {@link LocalPlaylistServer} la playlist con esa variante primero. Sin estimación
+ * (ninguna descarga reciente) se supone {@link #DEFAULT_ESTIMATE_BPS}: mejor empezar
+ * modesto y subir que quedarse cargando el primer segmento.
+ *
+ * Si algo falla se responde con la URL original: esto solo acelera el arranque.
+ */
+final class HlsStartup {
+    static final double BANDWIDTH_FRACTION = 0.75;
+    static final long DEFAULT_ESTIMATE_BPS = 1500000;
+
+    // Una playlist maestra no pasa de unas decenas de KB
+    private static final int MAX_PLAYLIST_BYTES = 1024 * 1024;
+
+    private final BandwidthEstimator estimator;
+    private final int timeoutMs;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "avp-hls-startup");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private LocalPlaylistServer server;
+
+    HlsStartup(BandwidthEstimator estimator, int timeoutMs) {
+        this.estimator = estimator;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Responde (desde su hilo) con {@code url} (la local si se reescribió), la variante
+     * elegida y la estimación usada; la variante es null si no es una playlist maestra.
+     */
+    void prepare(final String url, final boolean rewrite, final RendererBackend.Callback callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Map<String, Object> selection = new HashMap<>();
+                selection.put("url", url);
+                try {
+                    HlsMasterPlaylist playlist = HlsMasterPlaylist.parse(url, download(url));
+                    long estimate = estimator.estimate();
+                    selection.put("estimated", estimate > 0);
+                    if (estimate <= 0) {
+                        estimate = DEFAULT_ESTIMATE_BPS;
+                    }
+                    selection.put("estimateBps", estimate);
+                    HlsMasterPlaylist.Variant variant = playlist.select(estimate, BANDWIDTH_FRACTION);
+                    if (variant != null) {
+                        selection.put("variant", describe(variant));
+                        selection.put("variants", playlist.variants.size());
+                        if (rewrite) {
+                            selection.put("url", server().publish(playlist.rewrite(variant)));
+                        }
+                    }
+                } catch (IOException e) {
+                    selection.put("error", e.getMessage());
+                }
+                callback.success(selection);
+            }
+        });
+    }
+
+    /** Cierra el servidor local; las URLs publicadas dejan de funcionar. */
+    synchronized void close() {
+        executor.shutdownNow();
+        if (server != null) {
+            server.close();
+            server = null;
+        }
+    }
+
+    private synchronized LocalPlaylistServer server() throws IOException {
+        if (server == null) {
+            server = new LocalPlaylistServer();
+        }
+        return server;
+    }
+
+    /**
+     * Descarga {@code url} como texto y aporta la transferencia al estimador, medida
+     * desde el primer byte para que no cuente la latencia de la petición.
+     */
+    String download(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(timeoutMs);
+        connection.setReadTimeout(timeoutMs);
+        try {
+            if (connection.getResponseCode() / 100 != 2) {
+                throw new IOException("HTTP " + connection.getResponseCode() + " en " + url);
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            long firstByte = 0;
+            int firstChunk = 0;
+            try (InputStream in = connection.getInputStream()) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    if (firstByte == 0) {
+                        // El primer bloque llegó antes de empezar a medir: no cuenta
+                        firstByte = System.nanoTime();
+                        firstChunk = read;
+                    }
+                    body.write(buffer, 0, read);
+                    if (body.size() > MAX_PLAYLIST_BYTES) {
+                        throw new IOException("Playlist demasiado grande: " + url);
+                    }
+                }
+            }
+            if (firstByte != 0) {
+                estimator.record(body.size() - firstChunk, System.nanoTime() - firstByte);
+            }
+            return body.toString("UTF-8");
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static Map<String, Object> describe(HlsMasterPlaylist.Variant variant) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("index", variant.index);
+        map.put("bandwidth", variant.bandwidth);
+        map.put("averageBandwidth", variant.averageBandwidth);
+        map.put("width", variant.width);
+        map.put("height", variant.height);
+        map.put("codecs", variant.codecs);
+        map.put("uri", variant.uri);
+        return map;
+    }
+}
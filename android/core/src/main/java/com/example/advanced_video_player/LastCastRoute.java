@@ -0,0 +1,178 @@
+package com.example.advanced_video_player;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+/**
+ * Último receptor Cast usado, para reconectar al abrir la app sin volver a buscar.
+ *
+ * Se guarda en un archivo binario pequeño (cabecera, tres cadenas y CRC32) que se
+ * reescribe completo en un temporal y se renombra, así un cierre abrupto deja el
+ * registro anterior o el nuevo, nunca uno a medias. Un archivo corrupto o de otra
+ * versión se ignora.
+ *
+ * La ruta se recuerda {@link #ROUTE_MAX_AGE_MS}; el id de sesión solo sirve para
+ * reanudar durante {@link #SESSION_MAX_AGE_MS}, después el receptor ya habrá cerrado
+ * la aplicación.
+ */
+final class LastCastRoute {
+    static final String FILE_NAME = "avp_last_cast_route.bin";
+
+    static final long ROUTE_MAX_AGE_MS = 30L * 24 * 60 * 60 * 1000;
+    static final long SESSION_MAX_AGE_MS = 6L * 60 * 60 * 1000;
+
+    private static final int MAGIC = 0x4156504c; // "AVPL"
+    private static final int VERSION = 1;
+    // Un registro válido nunca se acerca a esto; evita leer archivos ajenos enteros
+    private static final int MAX_FILE_SIZE = 4096;
+
+    final String routeId;
+    final String routeName;
+    /** Sesión del receptor, o null si terminó. */
+    final String sessionId;
+    final long savedAtMs;
+
+    LastCastRoute(String routeId, String routeName, String sessionId, long savedAtMs) {
+        if (routeId == null || routeId.isEmpty()) {
+            throw new IllegalArgumentException("routeId vacío");
+        }
+        this.routeId = routeId;
+        this.routeName = routeName != null ? routeName : "";
+        this.sessionId = sessionId != null && !sessionId.isEmpty() ? sessionId : null;
+        this.savedAtMs = savedAtMs;
+    }
+
+    /** La misma ruta sin sesión (la sesión terminó, pero el receptor sigue siendo el preferido). */
+    LastCastRoute withoutSession() {
+        return sessionId == null ? this : new LastCastRoute(routeId, routeName, null, savedAtMs);
+    }
+
+    /** Si vale la pena buscar la ruta al arrancar. */
+    boolean isFresh(long nowMs) {
+        return age(nowMs) < ROUTE_MAX_AGE_MS;
+    }
+
+    /** Si la sesión guardada puede seguir viva en el receptor. */
+    boolean canResume(long nowMs) {
+        return sessionId != null && age(nowMs) < SESSION_MAX_AGE_MS;
+    }
+
+    boolean matches(String deviceId) {
+        return routeId.equals(deviceId);
+    }
+
+    /** Mismo receptor y sesión; la hora no cuenta, para no reescribir el archivo en cada evento. */
+    boolean sameAs(LastCastRoute other) {
+        return other != null && routeId.equals(other.routeId) && routeName.equals(other.routeName)
+                && (sessionId == null ? other.sessionId == null : sessionId.equals(other.sessionId));
+    }
+
+    byte[] encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(savedAtMs);
+            out.writeUTF(routeId);
+            out.writeUTF(routeName);
+            out.writeUTF(sessionId != null ? sessionId : "");
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            out.writeInt((int) crc.getValue());
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // ByteArrayOutputStream no lanza; solo writeUTF con cadenas de más de 64 KB
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /** Decodifica un registro, o null si está truncado, corrupto o es de otra versión. */
+    static LastCastRoute decode(byte[] data) {
+        if (data == null || data.length < 4 + 4 + 8 + 2 * 3 + 4) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - 4);
+        int stored = (data[data.length - 4] & 0xff) << 24 | (data[data.length - 3] & 0xff) << 16
+                | (data[data.length - 2] & 0xff) << 8 | (data[data.length - 1] & 0xff);
+        if (stored != (int) crc.getValue()) {
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, data.length - 4));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            long savedAt = in.readLong();
+            String routeId = in.readUTF();
+            String routeName = in.readUTF();
+            String sessionId = in.readUTF();
+            if (routeId.isEmpty()) {
+                return null;
+            }
+            return new LastCastRoute(routeId, routeName, sessionId, savedAt);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Lee el registro del directorio, o null si no hay ninguno válido. */
+    static LastCastRoute read(File directory) {
+        File file = new File(directory, FILE_NAME);
+        long length = file.length();
+        if (length <= 0 || length > MAX_FILE_SIZE) {
+            return null;
+        }
+        byte[] data = new byte[(int) length];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int read = 0;
+            while (read < data.length) {
+                int count = in.read(data, read, data.length - read);
+                if (count < 0) {
+                    return null;
+                }
+                read += count;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return decode(data);
+    }
+
+    /** Escribe el registro en el directorio, reemplazando el anterior de una vez. */
+    void write(File directory) throws IOException {
+        File file = new File(directory, FILE_NAME);
+        File temp = new File(directory, FILE_NAME + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(encode());
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("No se pudo reemplazar " + file);
+        }
+    }
+
+    /** Borra el registro guardado. */
+    static void delete(File directory) {
+        new File(directory, FILE_NAME).delete();
+    }
+
+    private long age(long nowMs) {
+        // Un reloj que retrocede no debe hacer eterno el registro
+        return nowMs >= savedAtMs ? nowMs - savedAtMs : Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        return "LastCastRoute(" + routeName + ", " + routeId + (sessionId != null ? ", sesión " + sessionId : "") + ")";
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.advanced_video_player;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Servidor HTTP mínimo en {@code 127.0.0.1} que entrega playlists reescritas
+ * ({@link HlsMasterPlaylist#rewrite}) al reproductor.
+ *
+ * Solo sirve texto ya generado, así que un hilo que atiende las conexiones de una en
+ * una basta: el reproductor pide la playlist maestra una vez al preparar. Cada
+ * playlist tiene una ruta aleatoria, para que otras apps del teléfono (que también
+ * pueden conectar a loopback) no adivinen las URLs de los videos; se guardan las
+ * últimas {@link #MAX_PLAYLISTS}.
+ */
+final class LocalPlaylistServer implements Closeable {
+    static final int MAX_PLAYLISTS = 8;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int READ_TIMEOUT_MS = 2000;
+
+    private final ServerSocket server;
+    private final Thread thread;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, byte[]> playlists = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > MAX_PLAYLISTS;
+        }
+    };
+    private volatile boolean closed;
+
+    LocalPlaylistServer() throws IOException {
+        server = new ServerSocket();
+        server.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serve();
+            }
+        }, "avp-playlist-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    /** Publica {@code playlist} y devuelve su URL local. */
+    String publish(String playlist) {
+        byte[] token = new byte[16];
+        random.nextBytes(token);
+        StringBuilder path = new StringBuilder("/hls/");
+        for (byte b : token) {
+            path.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        path.append(".m3u8");
+        synchronized (playlists) {
+            playlists.put(path.toString(), playlist.getBytes(UTF_8));
+        }
+        return "http://127.0.0.1:" + port() + path;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            server.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void serve() {
+        while (!closed) {
+            try (Socket socket = server.accept()) {
+                socket.setSoTimeout(READ_TIMEOUT_MS);
+                respond(socket);
+            } catch (IOException e) {
+                // Socket cerrado (close) o cliente que se fue a medias
+            }
+        }
+    }
+
+    private void respond(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+        String requestLine = in.readLine();
+        if (requestLine == null) {
+            return;
+        }
+        // Las cabeceras no importan, pero se leen para no cortar al cliente con un RST
+        String header = in.readLine();
+        while (header != null && !header.isEmpty()) {
+            header = in.readLine();
+        }
+        String[] parts = requestLine.split(" ");
+        OutputStream out = socket.getOutputStream();
+        if (parts.length < 2 || !("GET".equals(parts[0]) || "HEAD".equals(parts[0]))) {
+            write(out, "405 Method Not Allowed", null, false);
+            return;
+        }
+        String path = parts[1];
+        int query = path.indexOf('?');
+        byte[] body;
+        synchronized (playlists) {
+            body = playlists.get(query >= 0 ? path.substring(0, query) : path);
+        }
+        if (body == null) {
+            write(out, "404 Not Found", null, false);
+            return;
+        }
+        write(out, "200 OK", body, "HEAD".equals(parts[0]));
+    }
+
+    private static void write(OutputStream out, String status, byte[] body, boolean headOnly) throws IOException {
+        int length = body != null ? body.length : 0;
+        String headers = "HTTP/1.1 " + status + "\r\n"
+                + "Content-Type: " + ContentTypes.HLS + "\r\n"
+                + "Content-Length: " + length + "\r\n"
+                + "Cache-Control: no-store\r\n"
+                + "Connection: close\r\n"
+                + "\r\n";
+        out.write(headers.getBytes(UTF_8));
+        if (body != null && !headOnly) {
+            out.write(body);
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.advanced_video_player;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codificación mínima de mensajes DNS para mDNS/DNS-SD (RFC 6762 y 6763).
+ *
+ * Solo lo que necesita {@link CastMdnsBrowser}: preguntas y los registros PTR, SRV,
+ * TXT, A y AAAA de las respuestas, incluidos los nombres comprimidos. Los nombres se
+ * normalizan a minúsculas y sin punto final.
+ */
+final class MdnsMessage {
+    static final int TYPE_A = 1;
+    static final int TYPE_PTR = 12;
+    static final int TYPE_TXT = 16;
+    static final int TYPE_AAAA = 28;
+    static final int TYPE_SRV = 33;
+
+    static final int CLASS_IN = 1;
+    // Bit alto de la clase: en preguntas pide respuesta unicast (QU), en
+    // registros indica que reemplazan a los anteriores (cache-flush)
+    static final int CLASS_FLAG = 0x8000;
+
+    static final int FLAG_RESPONSE = 0x8000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAX_POINTER_JUMPS = 32;
+
+    /** Registro de recurso de una respuesta. */
+    static final class Record {
+        final String name;
+        final int type;
+        final long ttlSeconds;
+        // PTR: nombre de la instancia; SRV: host
+        final String target;
+        // SRV
+        final int port;
+        // TXT
+        final Map<String, String> txt;
+        // A y AAAA
+        final InetAddress address;
+
+        Record(String name, int type, long ttlSeconds, String target, int port,
+               Map<String, String> txt, InetAddress address) {
+            this.name = name;
+            this.type = type;
+            this.ttlSeconds = ttlSeconds;
+            this.target = target;
+            this.port = port;
+            this.txt = txt;
+            this.address = address;
+        }
+
+        /** Clave del registro en la caché: nombre, tipo y datos. */
+        String key() {
+            String data;
+            switch (type) {
+                case TYPE_PTR:
+                    data = target;
+                    break;
+                case TYPE_SRV:
+                    data = target + ":" + port;
+                    break;
+                case TYPE_A:
+                case TYPE_AAAA:
+                    data = address.getHostAddress();
+                    break;
+                default:
+                    // TXT: un solo registro por nombre
+                    data = "";
+                    break;
+            }
+            return type + "|" + name + "|" + data;
+        }
+    }
+
+    private MdnsMessage() {
+    }
+
+    /**
+     * Consulta con una pregunta de tipo {@code type} por cada nombre. Con
+     * {@code unicastResponse} los respondedores contestan directamente al puerto de
+     * origen en lugar de al grupo multicast.
+     */
+    static ByteBuffer query(List<String> names, int type, boolean unicastResponse) {
+        ByteBuffer buffer = ByteBuffer.allocate(512);
+        buffer.putShort((short) 0); // id
+        buffer.putShort((short) 0); // flags: consulta estándar
+        buffer.putShort((short) names.size());
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        for (String name : names) {
+            writeName(buffer, name);
+            buffer.putShort((short) type);
+            buffer.putShort((short) (CLASS_IN | (unicastResponse ? CLASS_FLAG : 0)));
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /** Escribe un nombre sin comprimir. */
+    static void writeName(ByteBuffer buffer, String name) {
+        for (String label : name.split("\\.")) {
+            if (label.isEmpty()) {
+                continue;
+            }
+            byte[] bytes = label.getBytes(UTF_8);
+            buffer.put((byte) bytes.length);
+            buffer.put(bytes);
+        }
+        buffer.put((byte) 0);
+    }
+
+    /**
+     * Registros de respuesta, autoridad y adicionales de un paquete. Las consultas
+     * (sin el bit de respuesta) devuelven una lista vacía.
+     */
+    static List<Record> parse(byte[] packet, int length) throws IOException {
+        try {
+            if (length < 12) {
+                throw new IOException("Paquete mDNS demasiado corto: " + length);
+            }
+            int flags = u16(packet, 2);
+            if ((flags & FLAG_RESPONSE) == 0) {
+                return Collections.emptyList();
+            }
+            int questions = u16(packet, 4);
+            int records = u16(packet, 6) + u16(packet, 8) + u16(packet, 10);
+            int[] offset = {12};
+            for (int i = 0; i < questions; i++) {
+                readName(packet, length, offset);
+                offset[0] += 4;
+            }
+            List<Record> result = new ArrayList<>(records);
+            for (int i = 0; i < records; i++) {
+                String name = readName(packet, length, offset);
+                int pos = offset[0];
+                check(pos + 10 <= length);
+                int type = u16(packet, pos);
+                long ttl = ((long) u16(packet, pos + 4) << 16) | u16(packet, pos + 6);
+                int dataLength = u16(packet, pos + 8);
+                int data = pos + 10;
+                check(data + dataLength <= length);
+                Record record = readData(packet, length, name, type, ttl, data, dataLength);
+                if (record != null) {
+                    result.add(record);
+                }
+                offset[0] = data + dataLength;
+            }
+            return result;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Paquete mDNS mal formado", e);
+        }
+    }
+
+    private static Record readData(byte[] packet, int length, String name, int type, long ttl,
+                                   int data, int dataLength) throws IOException {
+        switch (type) {
+            case TYPE_PTR: {
+                String target = readName(packet, length, new int[]{data});
+                return new Record(name, type, ttl, target, 0, null, null);
+            }
+            case TYPE_SRV: {
+                check(dataLength >= 7);
+                int port = u16(packet, data + 4);
+                String target = readName(packet, length, new int[]{data + 6});
+                return new Record(name, type, ttl, target, port, null, null);
+            }
+            case TYPE_TXT:
+                return new Record(name, type, ttl, null, 0, readTxt(packet, data, dataLength), null);
+            case TYPE_A:
+            case TYPE_AAAA: {
+                int size = type == TYPE_A ? 4 : 16;
+                check(dataLength == size);
+                byte[] address = new byte[size];
+                System.arraycopy(packet, data, address, 0, size);
+                try {
+                    return new Record(name, type, ttl, null, 0, null, InetAddress.getByAddress(address));
+                } catch (UnknownHostException e) {
+                    throw new IOException("Dirección mal formada", e);
+                }
+            }
+            default:
+                return null;
+        }
+    }
+
+    private static Map<String, String> readTxt(byte[] packet, int data, int dataLength) throws IOException {
+        Map<String, String> txt = new LinkedHashMap<>();
+        int pos = data;
+        int end = data + dataLength;
+        while (pos < end) {
+            int size = packet[pos] & 0xff;
+            pos++;
+            check(pos + size <= end);
+            String entry = new String(packet, pos, size, UTF_8);
+            pos += size;
+            int equals = entry.indexOf('=');
+            if (equals > 0) {
+                txt.put(entry.substring(0, equals).toLowerCase(), entry.substring(equals + 1));
+            } else if (!entry.isEmpty()) {
+                txt.put(entry.toLowerCase(), "");
+            }
+        }
+        return txt;
+    }
+
+    // Lee un nombre en offset[0] (siguiendo punteros de compresión) y deja offset[0]
+    // justo después del nombre en su posición original
+    private static String readName(byte[] packet, int length, int[] offset) throws IOException {
+        StringBuilder name = new StringBuilder();
+        int pos = offset[0];
+        int resume = -1;
+        int jumps = 0;
+        while (true) {
+            check(pos < length);
+            int size = packet[pos] & 0xff;
+            if ((size & 0xc0) == 0xc0) {
+                check(pos + 1 < length && ++jumps <= MAX_POINTER_JUMPS);
+                if (resume < 0) {
+                    resume = pos + 2;
+                }
+                pos = ((size & 0x3f) << 8) | (packet[pos + 1] & 0xff);
+                continue;
+            }
+            if (size == 0) {
+                pos++;
+                break;
+            }
+            check(pos + 1 + size <= length);
+            if (name.length() > 0) {
+                name.append('.');
+            }
+            name.append(new String(packet, pos + 1, size, UTF_8));
+            pos += 1 + size;
+        }
+        offset[0] = resume >= 0 ? resume : pos;
+        return name.toString().toLowerCase();
+    }
+
+    private static int u16(byte[] packet, int pos) {
+        return ((packet[pos] & 0xff) << 8) | (packet[pos + 1] & 0xff);
+    }
+
+    private static void check(boolean condition) throws IOException {
+        if (!condition) {
+            throw new IOException("Paquete mDNS mal formado");
+        }
+    }
+}
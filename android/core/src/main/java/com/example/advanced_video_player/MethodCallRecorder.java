@@ -0,0 +1,156 @@
+package com.example.advanced_video_player;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grabación opcional de las llamadas que llegan a los canales del plugin, compartida
+ * por todo el proceso.
+ *
+ * Desactivada cuesta una lectura volátil por llamada. Activada, cada llamada se
+ * codifica en el hilo que la recibe (con {@link MethodCallRecording}) y se escribe al
+ * archivo desde un hilo propio, para no hacer E/S en el hilo principal. La grabación
+ * se corta sola al llegar a {@link #MAX_BYTES}. Los archivos se reproducen en la JVM
+ * con el arnés de reproducción de los tests.
+ */
+final class MethodCallRecorder {
+    static final long MAX_BYTES = 16L * 1024 * 1024;
+
+    private static final MethodCallRecorder INSTANCE = new MethodCallRecorder();
+
+    private volatile boolean recording;
+    private File file;
+    private OutputStream out;
+    private ExecutorService writer;
+    private MethodCallRecording.Encoder encoder;
+    private long startedAtNanos;
+    private long bytes;
+    private int calls;
+    private boolean truncated;
+    // Resumen de una grabación que se cortó sola, para el siguiente stop()
+    private Map<String, Object> truncatedSummary;
+
+    static MethodCallRecorder get() {
+        return INSTANCE;
+    }
+
+    private MethodCallRecorder() {
+    }
+
+    boolean isRecording() {
+        return recording;
+    }
+
+    /** Empieza a grabar en {@code target}; si ya se grababa, cierra antes esa grabación. */
+    synchronized void start(File target) throws IOException {
+        if (recording) {
+            stop();
+        }
+        File parent = target.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("No se pudo crear " + parent);
+        }
+        out = new BufferedOutputStream(new FileOutputStream(target), 64 * 1024);
+        byte[] header = MethodCallRecording.header(System.currentTimeMillis());
+        out.write(header);
+        file = target;
+        writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "MethodCallRecorder");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        encoder = new MethodCallRecording.Encoder();
+        truncatedSummary = null;
+        startedAtNanos = System.nanoTime();
+        bytes = header.length;
+        calls = 0;
+        truncated = false;
+        recording = true;
+    }
+
+    /** Graba una llamada si la grabación está activa. */
+    void record(String channel, String method, Object arguments) {
+        if (!recording) {
+            return;
+        }
+        long atMicros = (System.nanoTime() - startedAtNanos) / 1000L;
+        synchronized (this) {
+            if (!recording) {
+                return;
+            }
+            final byte[] entry = encoder.encode(atMicros, channel, method, arguments);
+            if (bytes + entry.length > MAX_BYTES) {
+                truncated = true;
+                PluginMetrics.get().increment("recorder.truncated");
+                truncatedSummary = stop();
+                return;
+            }
+            bytes += entry.length;
+            calls++;
+            final OutputStream stream = out;
+            writer.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        stream.write(entry);
+                    } catch (IOException e) {
+                        PluginMetrics.get().increment("recorder.writeFailed");
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Termina la grabación y devuelve su resumen ({@code path}, {@code calls},
+     * {@code bytes}, {@code truncated}), o null si no se estaba grabando.
+     */
+    synchronized Map<String, Object> stop() {
+        if (file == null) {
+            Map<String, Object> summary = truncatedSummary;
+            truncatedSummary = null;
+            return summary;
+        }
+        recording = false;
+        final OutputStream stream = out;
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    PluginMetrics.get().increment("recorder.writeFailed");
+                }
+            }
+        });
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("path", file.getAbsolutePath());
+        summary.put("calls", calls);
+        summary.put("bytes", bytes);
+        summary.put("truncated", truncated);
+        file = null;
+        out = null;
+        writer = null;
+        encoder = null;
+        return summary;
+    }
+}
@@ -0,0 +1,355 @@
+package com.example.advanced_video_player;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Formato binario de las grabaciones de {@link MethodCallRecorder}.
+ *
+ * Cabecera: {@code "AVPR"}, versión (1 byte) y hora de inicio en milisegundos
+ * (8 bytes). Después, una entrada por llamada: microsegundos desde la llamada
+ * anterior (varint), canal y método como índices de una tabla de cadenas que se
+ * va llenando al escribir (un índice nuevo lleva la cadena detrás) y los argumentos
+ * con el subconjunto de tipos de {@code StandardMessageCodec} que usa el plugin. Las
+ * claves de texto de los mapas también van por la tabla, así que una ráfaga de
+ * {@code getCurrentPosition} ocupa unos pocos bytes por llamada.
+ */
+final class MethodCallRecording {
+    static final int VERSION = 1;
+    private static final byte[] MAGIC = {'A', 'V', 'P', 'R'};
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int T_NULL = 0;
+    private static final int T_TRUE = 1;
+    private static final int T_FALSE = 2;
+    private static final int T_INT = 3;
+    private static final int T_LONG = 4;
+    private static final int T_DOUBLE = 5;
+    private static final int T_STRING = 6;
+    private static final int T_BYTES = 7;
+    private static final int T_LIST = 8;
+    private static final int T_MAP = 9;
+    private static final int T_INTS = 10;
+    private static final int T_LONGS = 11;
+    private static final int T_DOUBLES = 12;
+    // Cadena de la tabla (claves de mapa)
+    private static final int T_STRING_REF = 13;
+
+    /** Llamada grabada. */
+    static final class Call {
+        // Microsegundos desde el inicio de la grabación
+        final long atMicros;
+        final String channel;
+        final String method;
+        final Object arguments;
+
+        Call(long atMicros, String channel, String method, Object arguments) {
+            this.atMicros = atMicros;
+            this.channel = channel;
+            this.method = method;
+            this.arguments = arguments;
+        }
+    }
+
+    /** Grabación leída de un archivo. */
+    static final class Recording {
+        final long startedAtMillis;
+        final List<Call> calls;
+
+        Recording(long startedAtMillis, List<Call> calls) {
+            this.startedAtMillis = startedAtMillis;
+            this.calls = calls;
+        }
+    }
+
+    private MethodCallRecording() {
+    }
+
+    static byte[] header(long startedAtMillis) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(13);
+        out.write(MAGIC, 0, MAGIC.length);
+        out.write(VERSION);
+        writeFixed64(out, startedAtMillis);
+        return out.toByteArray();
+    }
+
+    /**
+     * Codifica las entradas en orden. No es seguro entre hilos: la tabla de cadenas
+     * y el tiempo de la entrada anterior dependen del orden de escritura.
+     */
+    static final class Encoder {
+        private final Map<String, Integer> strings = new HashMap<>();
+        private long lastMicros;
+
+        byte[] encode(long atMicros, String channel, String method, Object arguments) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(32);
+            writeVarint(out, Math.max(0, atMicros - lastMicros));
+            lastMicros = Math.max(lastMicros, atMicros);
+            writeString(out, channel);
+            writeString(out, method);
+            writeValue(out, arguments, this);
+            return out.toByteArray();
+        }
+
+        private void writeString(ByteArrayOutputStream out, String value) {
+            Integer index = strings.get(value);
+            if (index != null) {
+                writeVarint(out, index);
+                return;
+            }
+            writeVarint(out, strings.size());
+            strings.put(value, strings.size());
+            writeUtf8(out, value);
+        }
+    }
+
+    /** Lee una grabación completa. */
+    static Recording read(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) {
+                throw new IOException("No es una grabación de llamadas");
+            }
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Versión de grabación no soportada: " + version);
+        }
+        long startedAt = in.readLong();
+
+        List<String> strings = new ArrayList<>();
+        List<Call> calls = new ArrayList<>();
+        long at = 0;
+        while (true) {
+            long delta;
+            try {
+                delta = readVarint(in);
+            } catch (EOFException e) {
+                // Fin del archivo entre entradas
+                break;
+            }
+            try {
+                at += delta;
+                String channel = readString(in, strings);
+                String method = readString(in, strings);
+                calls.add(new Call(at, channel, method, readValue(in, strings)));
+            } catch (EOFException e) {
+                // La última entrada quedó a medias (la app murió grabando): se descarta
+                break;
+            }
+        }
+        return new Recording(startedAt, calls);
+    }
+
+    private static String readString(DataInputStream in, List<String> strings) throws IOException {
+        int index = (int) readVarint(in);
+        if (index < strings.size()) {
+            return strings.get(index);
+        }
+        if (index != strings.size()) {
+            throw new IOException("Índice de cadena fuera de orden: " + index);
+        }
+        String value = readUtf8(in);
+        strings.add(value);
+        return value;
+    }
+
+    // Los tipos que no vienen del canal se guardan como texto
+    private static void writeValue(ByteArrayOutputStream out, Object value, Encoder encoder) {
+        if (value == null) {
+            out.write(T_NULL);
+        } else if (value instanceof Boolean) {
+            out.write((Boolean) value ? T_TRUE : T_FALSE);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.write(T_INT);
+            writeVarint(out, zigzag(((Number) value).longValue()));
+        } else if (value instanceof Long) {
+            out.write(T_LONG);
+            writeVarint(out, zigzag((Long) value));
+        } else if (value instanceof Double || value instanceof Float) {
+            out.write(T_DOUBLE);
+            writeFixed64(out, Double.doubleToRawLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            out.write(T_BYTES);
+            writeVarint(out, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        } else if (value instanceof int[]) {
+            int[] ints = (int[]) value;
+            out.write(T_INTS);
+            writeVarint(out, ints.length);
+            for (int item : ints) {
+                writeVarint(out, zigzag(item));
+            }
+        } else if (value instanceof long[]) {
+            long[] longs = (long[]) value;
+            out.write(T_LONGS);
+            writeVarint(out, longs.length);
+            for (long item : longs) {
+                writeVarint(out, zigzag(item));
+            }
+        } else if (value instanceof double[]) {
+            double[] doubles = (double[]) value;
+            out.write(T_DOUBLES);
+            writeVarint(out, doubles.length);
+            for (double item : doubles) {
+                writeFixed64(out, Double.doubleToRawLongBits(item));
+            }
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.write(T_LIST);
+            writeVarint(out, list.size());
+            for (Object item : list) {
+                writeValue(out, item, encoder);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.write(T_MAP);
+            writeVarint(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (entry.getKey() instanceof String) {
+                    out.write(T_STRING_REF);
+                    encoder.writeString(out, (String) entry.getKey());
+                } else {
+                    writeValue(out, entry.getKey(), encoder);
+                }
+                writeValue(out, entry.getValue(), encoder);
+            }
+        } else {
+            out.write(T_STRING);
+            writeUtf8(out, value.toString());
+        }
+    }
+
+    private static Object readValue(DataInputStream in, List<String> strings) throws IOException {
+        int type = in.readUnsignedByte();
+        switch (type) {
+            case T_NULL:
+                return null;
+            case T_TRUE:
+                return Boolean.TRUE;
+            case T_FALSE:
+                return Boolean.FALSE;
+            case T_INT:
+                return (int) unzigzag(readVarint(in));
+            case T_LONG:
+                return unzigzag(readVarint(in));
+            case T_DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case T_STRING:
+                return readUtf8(in);
+            case T_STRING_REF:
+                return readString(in, strings);
+            case T_BYTES: {
+                byte[] bytes = new byte[readLength(in)];
+                in.readFully(bytes);
+                return bytes;
+            }
+            case T_INTS: {
+                int[] ints = new int[readLength(in)];
+                for (int i = 0; i < ints.length; i++) {
+                    ints[i] = (int) unzigzag(readVarint(in));
+                }
+                return ints;
+            }
+            case T_LONGS: {
+                long[] longs = new long[readLength(in)];
+                for (int i = 0; i < longs.length; i++) {
+                    longs[i] = unzigzag(readVarint(in));
+                }
+                return longs;
+            }
+            case T_DOUBLES: {
+                double[] doubles = new double[readLength(in)];
+                for (int i = 0; i < doubles.length; i++) {
+                    doubles[i] = Double.longBitsToDouble(in.readLong());
+                }
+                return doubles;
+            }
+            case T_LIST: {
+                int size = readLength(in);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in, strings));
+                }
+                return list;
+            }
+            case T_MAP: {
+                int size = readLength(in);
+                Map<Object, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    Object key = readValue(in, strings);
+                    map.put(key, readValue(in, strings));
+                }
+                return map;
+            }
+            default:
+                throw new IOException("Tipo de valor desconocido: " + type);
+        }
+    }
+
+    private static void writeUtf8(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static String readUtf8(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static int readLength(DataInputStream in) throws IOException {
+        long length = readVarint(in);
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IOException("Longitud inválida: " + length);
+        }
+        return (int) length;
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint mal formado");
+    }
+
+    private static void writeFixed64(ByteArrayOutputStream out, long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (value >>> shift));
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.advanced_video_player;
+
+/**
+ * Parámetros de Picture-in-Picture que no dependen del framework: la relación de
+ * aspecto y la acción de reproducir/pausar. {@code PictureInPicturePlugin} los
+ * convierte en {@code Rational} y {@code RemoteAction}.
+ *
+ * Android rechaza con {@code IllegalArgumentException} una relación más alargada que
+ * 2.39:1 o 1:2.39, y una dimensión 0 o negativa; aquí se acota y se reduce la
+ * fracción antes de crear el {@code Rational}.
+ */
+final class PipSpec {
+    // Límites de PictureInPictureParams.Builder#setAspectRatio (239/100)
+    static final int MAX_NUMERATOR = 239;
+    static final int MAX_DENOMINATOR = 100;
+
+    static final String CONTROL_PLAY_PAUSE = "play_pause";
+
+    private PipSpec() {
+    }
+
+    /**
+     * Relación de aspecto como {@code {numerador, denominador}}, acotada y reducida.
+     * Con dimensiones inválidas devuelve 16:9.
+     */
+    static int[] aspectRatio(double width, double height) {
+        if (!(width > 0) || !(height > 0) || Double.isInfinite(width) || Double.isInfinite(height)) {
+            return new int[]{16, 9};
+        }
+        long w = Math.max(1, Math.round(width));
+        long h = Math.max(1, Math.round(height));
+        // w/h > 239/100
+        if (w * MAX_DENOMINATOR > h * MAX_NUMERATOR) {
+            return new int[]{MAX_NUMERATOR, MAX_DENOMINATOR};
+        }
+        // w/h < 100/239
+        if (w * MAX_NUMERATOR < h * MAX_DENOMINATOR) {
+            return new int[]{MAX_DENOMINATOR, MAX_NUMERATOR};
+        }
+        long gcd = gcd(w, h);
+        return new int[]{(int) (w / gcd), (int) (h / gcd)};
+    }
+
+    /** Título de la acción de la ventana PiP según el estado. */
+    static String playPauseTitle(boolean playing) {
+        return playing ? "Pausar" : "Reproducir";
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
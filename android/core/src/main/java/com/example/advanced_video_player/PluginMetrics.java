@@ -0,0 +1,235 @@
+package com.example.advanced_video_player;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Registro de métricas del plugin compartido por todo el proceso.
+ *
+ * Todas las operaciones de registro son lock-free: los contadores usan celdas
+ * repartidas por hilo (con relleno para evitar false sharing) y los histogramas
+ * de latencia usan buckets log-lineales al estilo HDR sobre un AtomicLongArray.
+ * Las latencias se guardan en microsegundos.
+ */
+final class PluginMetrics {
+    private static final PluginMetrics INSTANCE = new PluginMetrics();
+
+    private final ConcurrentHashMap<String, StripedCounter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private volatile long startedAtMs = System.currentTimeMillis();
+
+    static PluginMetrics get() {
+        return INSTANCE;
+    }
+
+    private PluginMetrics() {
+    }
+
+    /** Incrementa en 1 el contador indicado. */
+    void increment(String name) {
+        counter(name).add(1L);
+    }
+
+    /** Registra una latencia medida con {@link System#nanoTime()}. */
+    void recordNanos(String name, long elapsedNanos) {
+        histogram(name).record(elapsedNanos / 1000L);
+    }
+
+    /** Registra la latencia transcurrida desde {@code startNanos} hasta ahora. */
+    void recordSince(String name, long startNanos) {
+        recordNanos(name, System.nanoTime() - startNanos);
+    }
+
+    StripedCounter counter(String name) {
+        StripedCounter counter = counters.get(name);
+        if (counter == null) {
+            StripedCounter created = new StripedCounter();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /** Foto de todas las métricas en un formato apto para el StandardMessageCodec. */
+    Map<String, Object> snapshot() {
+        Map<String, Object> counterValues = new HashMap<>();
+        for (Map.Entry<String, StripedCounter> entry : counters.entrySet()) {
+            counterValues.put(entry.getKey(), entry.getValue().sum());
+        }
+
+        Map<String, Object> histogramValues = new HashMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            histogramValues.put(entry.getKey(), entry.getValue().summary());
+        }
+
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("uptimeMs", System.currentTimeMillis() - startedAtMs);
+        snapshot.put("counters", counterValues);
+        snapshot.put("histograms", histogramValues);
+        return snapshot;
+    }
+
+    /** Pone a cero todas las métricas sin eliminar los nombres registrados. */
+    void reset() {
+        for (StripedCounter counter : counters.values()) {
+            counter.reset();
+        }
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+        startedAtMs = System.currentTimeMillis();
+    }
+
+    /**
+     * Contador repartido en celdas por hilo. Cada celda ocupa una línea de caché
+     * (8 longs) para que hilos distintos no compitan por la misma línea.
+     */
+    static final class StripedCounter {
+        private static final int STRIPES = 8;
+        private static final int PADDING = 8;
+
+        private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+        void add(long delta) {
+            int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1));
+            cells.addAndGet(stripe * PADDING, delta);
+        }
+
+        long sum() {
+            long total = 0L;
+            for (int stripe = 0; stripe < STRIPES; stripe++) {
+                total += cells.get(stripe * PADDING);
+            }
+            return total;
+        }
+
+        void reset() {
+            for (int stripe = 0; stripe < STRIPES; stripe++) {
+                cells.set(stripe * PADDING, 0L);
+            }
+        }
+    }
+
+    /**
+     * Histograma log-lineal: valores menores que {@code 2^SUB_BITS} tienen bucket
+     * propio y el resto se reparte en {@code 2^(SUB_BITS-1)} sub-buckets por potencia
+     * de dos, lo que da un error relativo máximo de ~3% con un array fijo.
+     */
+    static final class LatencyHistogram {
+        private static final int SUB_BITS = 5;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+        private static final int HALF_SUB_COUNT = SUB_COUNT / 2;
+        // Hasta 2^40 µs (~12 días); valores mayores se acumulan en el último bucket
+        private static final int MAX_MSB = 40;
+        private static final int BUCKETS = SUB_COUNT + (MAX_MSB - SUB_BITS + 1) * HALF_SUB_COUNT;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong max = new AtomicLong(0L);
+
+        void record(long valueMicros) {
+            long value = Math.max(0L, valueMicros);
+            buckets.incrementAndGet(bucketIndex(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+
+            long currentMin = min.get();
+            while (value < currentMin && !min.compareAndSet(currentMin, value)) {
+                currentMin = min.get();
+            }
+            long currentMax = max.get();
+            while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+                currentMax = max.get();
+            }
+        }
+
+        static int bucketIndex(long value) {
+            if (value < SUB_COUNT) {
+                return (int) value;
+            }
+            int msb = 63 - Long.numberOfLeadingZeros(value);
+            if (msb > MAX_MSB) {
+                return BUCKETS - 1;
+            }
+            int shift = msb - SUB_BITS + 1;
+            int sub = (int) (value >>> shift);
+            return SUB_COUNT + (shift - 1) * HALF_SUB_COUNT + (sub - HALF_SUB_COUNT);
+        }
+
+        // Valor representativo (punto medio) del bucket
+        static long bucketValue(int index) {
+            if (index < SUB_COUNT) {
+                return index;
+            }
+            int shift = (index - SUB_COUNT) / HALF_SUB_COUNT + 1;
+            long sub = (index - SUB_COUNT) % HALF_SUB_COUNT + HALF_SUB_COUNT;
+            long lower = sub << shift;
+            return lower + ((1L << shift) >>> 1);
+        }
+
+        long percentile(double percentile, long[] counts, long total) {
+            if (total == 0) {
+                return 0L;
+            }
+            long target = (long) Math.ceil(total * percentile / 100.0);
+            long seen = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return Math.min(bucketValue(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        Map<String, Object> summary() {
+            long[] counts = new long[BUCKETS];
+            long total = 0L;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+
+            Map<String, Object> summary = new HashMap<>();
+            summary.put("count", total);
+            summary.put("minUs", total == 0 ? 0L : min.get());
+            summary.put("maxUs", max.get());
+            summary.put("meanUs", total == 0 ? 0L : sum.get() / Math.max(1L, count.get()));
+            summary.put("p50Us", percentile(50, counts, total));
+            summary.put("p90Us", percentile(90, counts, total));
+            summary.put("p95Us", percentile(95, counts, total));
+            summary.put("p99Us", percentile(99, counts, total));
+            summary.put("p999Us", percentile(99.9, counts, total));
+            return summary;
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0L);
+            }
+            count.set(0L);
+            sum.set(0L);
+            min.set(Long.MAX_VALUE);
+            max.set(0L);
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.example.advanced_video_player;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registro de calidad de experiencia (QoE) por sesión de reproducción.
+ *
+ * Los eventos son registros binarios de tamaño fijo que se guardan en un buffer
+ * circular en disco: al llenarse se sobrescriben los más antiguos. Los eventos
+ * nativos (Cast) se escriben en un buffer directo preasignado y se vuelcan en lote;
+ * los de Dart ya llegan agrupados en bloques de registros. En estado estable grabar
+ * un evento no reserva memoria.
+ *
+ * {@link #record} no toca el disco: lo llaman los callbacks de Cast y MediaRouter en
+ * el hilo principal. Un buffer lleno se encola al hilo de volcado y se sigue en uno
+ * libre; si el volcado se atrasa tanto que no queda ninguno, el evento se descarta
+ * ({@code qoe.records.dropped}).
+ *
+ * Las escrituras y lecturas del archivo ocurren en el hilo de volcado; los errores
+ * se cuentan en {@link PluginMetrics} ({@code qoe.write.failed}).
+ *
+ * Formato de registro (little endian, {@link #RECORD_SIZE} bytes):
+ * {@code sessionId:i64, timestampMs:i64, type:i32, source:i32, value:i64}.
+ * Debe coincidir con lib/playback_qoe.dart.
+ */
+final class QoeRecorder {
+    static final String DATA_FILE = "avp_qoe.ring";
+
+    private static final int MAGIC = 0x4156514f; // "AVQO"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 32;
+
+    static final int CAPACITY = 16384;
+    static final int STAGING_RECORDS = 128;
+    // Buffers de eventos nativos además del que se está llenando
+    private static final int SPARE_BUFFERS = 3;
+    static final long FLUSH_INTERVAL_MS = 2000;
+
+    // Tipos de evento
+    static final int TYPE_SESSION_START = 1;
+    static final int TYPE_STARTUP = 2;
+    static final int TYPE_STALL_START = 3;
+    static final int TYPE_STALL_END = 4;
+    static final int TYPE_SEEK = 5;
+    static final int TYPE_CAST_REQUESTED = 6;
+    static final int TYPE_CAST_CONNECTED = 7;
+    static final int TYPE_HANDOFF_TO_CAST = 8;
+    static final int TYPE_CAST_LOAD_FAILED = 9;
+    static final int TYPE_CAST_ENDED = 10;
+    static final int TYPE_HANDOFF_TO_LOCAL = 11;
+    static final int TYPE_ERROR = 12;
+    static final int TYPE_SESSION_END = 13;
+
+    static final int SOURCE_NATIVE = 1;
+
+    private static QoeRecorder instance;
+
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final ScheduledExecutorService flushExecutor;
+    private final Object fileLock = new Object();
+
+    // Eventos nativos pendientes de volcar: el buffer en curso, los llenos en orden y
+    // los libres (protegido por this)
+    private ByteBuffer staging = newStagingBuffer();
+    private final ArrayDeque<ByteBuffer> filled = new ArrayDeque<>(SPARE_BUFFERS);
+    private final ArrayDeque<ByteBuffer> spares = new ArrayDeque<>(SPARE_BUFFERS);
+    private final ByteBuffer header = ByteBuffer.allocateDirect(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushStaging();
+        }
+    };
+    private boolean flushScheduled = false;
+
+    // Sesión a la que se atribuyen los eventos nativos (la última que arrancó o pidió Cast)
+    private long activeSessionId = 0L;
+
+    // Secuencias absolutas; la posición en el anillo es seq % CAPACITY (protegido por fileLock)
+    private long writeSeq;
+    private long readSeq;
+
+    /** Devuelve la instancia compartida del proceso, abriéndola la primera vez. */
+    static synchronized QoeRecorder obtain(File directory) throws IOException {
+        if (instance == null) {
+            instance = new QoeRecorder(directory);
+        }
+        return instance;
+    }
+
+    QoeRecorder(File directory) throws IOException {
+        File dataFile = new File(directory, DATA_FILE);
+        long size = HEADER_SIZE + (long) CAPACITY * RECORD_SIZE;
+        boolean fresh = !dataFile.exists() || dataFile.length() != size;
+
+        raf = new RandomAccessFile(dataFile, "rw");
+        channel = raf.getChannel();
+        if (fresh) {
+            raf.setLength(0);
+            raf.setLength(size);
+        }
+
+        readHeader();
+        if (fresh || header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                || header.getInt(8) != RECORD_SIZE || header.getInt(12) != CAPACITY
+                || header.getLong(24) > header.getLong(16)) {
+            writeSeq = 0L;
+            readSeq = 0L;
+            writeHeader();
+        } else {
+            writeSeq = header.getLong(16);
+            readSeq = header.getLong(24);
+        }
+        for (int i = 0; i < SPARE_BUFFERS; i++) {
+            spares.add(newStagingBuffer());
+        }
+
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "avp-qoe");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /** Registra un evento nativo en la sesión activa. */
+    synchronized void record(int type, long value) {
+        if (!staging.hasRemaining()) {
+            // Ráfaga que llenó el buffer: se vuelca en el hilo de volcado
+            ByteBuffer spare = spares.poll();
+            if (spare == null) {
+                PluginMetrics.get().increment("qoe.records.dropped");
+                return;
+            }
+            filled.add(staging);
+            staging = spare;
+            flushExecutor.execute(flushTask);
+        }
+        staging.putLong(activeSessionId);
+        staging.putLong(System.currentTimeMillis());
+        staging.putInt(type);
+        staging.putInt(SOURCE_NATIVE);
+        staging.putLong(value);
+        scheduleFlush();
+    }
+
+    /**
+     * Añade un bloque de registros ya codificados por Dart. La escritura ocurre en el
+     * hilo de volcado, después de los eventos nativos pendientes.
+     */
+    void append(final byte[] records) {
+        final int length = records.length - records.length % RECORD_SIZE;
+        if (length == 0) {
+            return;
+        }
+        synchronized (this) {
+            for (int offset = 0; offset < length; offset += RECORD_SIZE) {
+                int type = readInt(records, offset + 16);
+                if (type == TYPE_SESSION_START || type == TYPE_CAST_REQUESTED) {
+                    activeSessionId = readLong(records, offset);
+                }
+            }
+        }
+        flushExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                flushStaging();
+                synchronized (fileLock) {
+                    try {
+                        writeRecords(ByteBuffer.wrap(records, 0, length));
+                    } catch (IOException e) {
+                        PluginMetrics.get().increment("qoe.write.failed");
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Responde (desde el hilo de volcado) con los registros no drenados en orden
+     * cronológico. Si {@code consume} es true se marcan como leídos; si no, es una
+     * exportación que no altera el buffer.
+     */
+    void read(final boolean consume, final RendererBackend.Callback callback) {
+        flushExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Los bloques encolados antes ya se escribieron: el ejecutor es de un hilo
+                flushStaging();
+                byte[] records;
+                try {
+                    records = readRecords(consume);
+                } catch (IOException e) {
+                    callback.error("QOE_ERROR", e.getMessage());
+                    return;
+                }
+                callback.success(records);
+            }
+        });
+    }
+
+    private byte[] readRecords(boolean consume) throws IOException {
+        synchronized (fileLock) {
+            long from = Math.max(readSeq, writeSeq - CAPACITY);
+            int count = (int) (writeSeq - from);
+            byte[] out = new byte[count * RECORD_SIZE];
+            int copied = 0;
+            long seq = from;
+            while (copied < count) {
+                int slot = (int) (seq % CAPACITY);
+                int chunk = Math.min(count - copied, CAPACITY - slot);
+                ByteBuffer target = ByteBuffer.wrap(out, copied * RECORD_SIZE, chunk * RECORD_SIZE);
+                long position = HEADER_SIZE + (long) slot * RECORD_SIZE;
+                while (target.hasRemaining()) {
+                    int read = channel.read(target, position);
+                    if (read < 0) {
+                        throw new IOException("Fin de archivo inesperado en el buffer de QoE");
+                    }
+                    position += read;
+                }
+                copied += chunk;
+                seq += chunk;
+            }
+            if (consume) {
+                readSeq = writeSeq;
+                writeHeader();
+            }
+            return out;
+        }
+    }
+
+    /** Vuelca de inmediato los eventos pendientes (por ejemplo al desconectarse del engine). */
+    void flush() {
+        flushExecutor.execute(flushTask);
+    }
+
+    synchronized long activeSessionId() {
+        return activeSessionId;
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        flushExecutor.schedule(flushTask, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Solo en el hilo de volcado
+    private void flushStaging() {
+        synchronized (fileLock) {
+            while (true) {
+                // Los buffers llenos primero, luego el que está en curso; se cambia por
+                // uno libre para no bloquear a quien registra mientras se escribe
+                ByteBuffer buffer;
+                synchronized (this) {
+                    flushScheduled = false;
+                    buffer = filled.poll();
+                    if (buffer == null) {
+                        if (staging.position() == 0) {
+                            return;
+                        }
+                        // Sin llenos pendientes ni escrituras en curso, todos los libres están en spares
+                        buffer = staging;
+                        staging = spares.poll();
+                    }
+                }
+                buffer.flip();
+                try {
+                    writeRecords(buffer);
+                } catch (IOException e) {
+                    PluginMetrics.get().increment("qoe.write.failed");
+                }
+                buffer.clear();
+                synchronized (this) {
+                    spares.add(buffer);
+                }
+            }
+        }
+    }
+
+    private static ByteBuffer newStagingBuffer() {
+        return ByteBuffer.allocateDirect(STAGING_RECORDS * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Requiere fileLock
+    private void writeRecords(ByteBuffer source) throws IOException {
+        int count = source.remaining() / RECORD_SIZE;
+        if (count > CAPACITY) {
+            // Solo caben los últimos CAPACITY registros
+            source.position(source.position() + (count - CAPACITY) * RECORD_SIZE);
+            writeSeq += count - CAPACITY;
+            count = CAPACITY;
+        }
+        int limit = source.limit();
+        int written = 0;
+        while (written < count) {
+            int slot = (int) (writeSeq % CAPACITY);
+            int chunk = Math.min(count - written, CAPACITY - slot);
+            source.limit(source.position() + chunk * RECORD_SIZE);
+            long position = HEADER_SIZE + (long) slot * RECORD_SIZE;
+            while (source.hasRemaining()) {
+                position += channel.write(source, position);
+            }
+            written += chunk;
+            writeSeq += chunk;
+        }
+        source.limit(limit);
+
+        if (writeSeq - readSeq > CAPACITY) {
+            PluginMetrics.get().counter("qoe.records.overwritten").add(writeSeq - readSeq - CAPACITY);
+            readSeq = writeSeq - CAPACITY;
+        }
+        PluginMetrics.get().counter("qoe.records.written").add(count);
+        writeHeader();
+    }
+
+    private void readHeader() throws IOException {
+        header.clear();
+        long position = 0;
+        while (header.hasRemaining()) {
+            int read = channel.read(header, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        header.clear();
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(RECORD_SIZE);
+        header.putInt(CAPACITY);
+        header.putLong(writeSeq);
+        header.putLong(readSeq);
+        header.flip();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+    }
+
+    /** Registros sin drenar en el archivo (sin contar los pendientes de volcar). */
+    long pendingCount() {
+        synchronized (fileLock) {
+            return Math.min(CAPACITY, writeSeq - readSeq);
+        }
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff)
+                | (bytes[offset + 1] & 0xff) << 8
+                | (bytes[offset + 2] & 0xff) << 16
+                | (bytes[offset + 3] & 0xff) << 24;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        return (readInt(bytes, offset) & 0xffffffffL) | ((long) readInt(bytes, offset + 4) << 32);
+    }
+}
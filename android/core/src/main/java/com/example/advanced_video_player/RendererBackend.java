@@ -0,0 +1,62 @@
+package com.example.advanced_video_player;
+
+import java.util.Map;
+
+/**
+ * Backend de reproducción remota detrás de los métodos de "screen sharing"
+ * ({@code discoverDevices}, {@code connectToDevice}, {@code shareVideo},
+ * {@code controlPlayback}, {@code getRemotePosition} y {@code disconnect}).
+ *
+ * Cada backend atiende sus propios dispositivos (se reconocen por el prefijo del id)
+ * y responde por {@link Callback}, desde cualquier hilo: el plugin reenvía la
+ * respuesta al hilo principal. Los dispositivos se describen con el mismo mapa que
+ * {@link DeviceCatalog} para que Dart reciba una sola lista.
+ */
+interface RendererBackend {
+    /** Respuesta de una operación. */
+    interface Callback {
+        void success(Object value);
+
+        void error(String code, String message);
+    }
+
+    /** Nombre del backend ({@code cast}, {@code dlna}). */
+    String name();
+
+    /** Si el dispositivo con ese id pertenece a este backend. */
+    boolean owns(String deviceId);
+
+    /** Busca dispositivos; responde con una lista de mapas. */
+    void discover(int player, Callback callback);
+
+    void connect(int player, String deviceId, String deviceName, int traceId, Callback callback);
+
+    /**
+     * Envía un video; {@code video} son los argumentos de {@code shareVideo}, con
+     * {@code positionMs} y {@code playbackRate} para seguir donde iba el reproductor local.
+     */
+    void share(int player, Map<String, Object> video, int traceId, Callback callback);
+
+    void control(int player, String action, Double position, Callback callback);
+
+    /**
+     * Posición del contenido en el receptor, para volver a reproducir en local sin
+     * saltos: responde {@code {positionMs, playing}} o null si no hay nada cargado.
+     */
+    void position(int player, Callback callback);
+
+    void disconnect(int player, Callback callback);
+
+    /** Olvida el estado de un reproductor liberado. */
+    void release(int player);
+
+    /** Libera hilos y conexiones al separarse del engine. */
+    void close();
+
+    /**
+     * Suelta las cachés ante presión de memoria ({@code tier} es un escalón de
+     * {@link TrimPolicy}). Devuelve true si ningún reproductor lo está usando, para
+     * que el plugin lo cierre con {@link TrimPolicy#TIER_SESSIONS}.
+     */
+    boolean trimMemory(int tier);
+}
@@ -0,0 +1,466 @@
+package com.example.advanced_video_player;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Almacén persistente de posiciones de reanudación por contenido.
+ *
+ * El archivo de datos es una tabla de registros de tamaño fijo mapeada en memoria
+ * con un índice hash de direccionamiento abierto (sondeo lineal), de modo que una
+ * lectura es O(1) sin deserializar nada. Las escrituras se acumulan en memoria y se
+ * vuelcan como máximo una vez cada {@link #FLUSH_INTERVAL_MS}; cada volcado se escribe
+ * primero en un journal con checksum, así un cierre abrupto del proceso nunca deja la
+ * tabla a medio actualizar (el journal se vuelve a aplicar al abrir).
+ *
+ * Los borrados dejan lápidas para no cortar las cadenas de sondeo; como alargan
+ * las búsquedas sin éxito, al pasar de {@link #MAX_TOMBSTONES} la tabla se reconstruye
+ * tras aplicar un lote. La reconstrucción también pasa por el journal (con
+ * {@link #COMPACT_MAGIC}), que en ese caso describe la tabla completa.
+ */
+final class ResumePositionStore {
+    static final String DATA_FILE = "avp_resume_positions.bin";
+    static final String JOURNAL_FILE = "avp_resume_positions.journal";
+
+    private static final int MAGIC = 0x41565052; // "AVPR"
+    static final int JOURNAL_MAGIC = 0x41565041; // "AVPJ"
+    // Journal de una reconstrucción: al aplicarlo se vacía antes la tabla
+    static final int COMPACT_MAGIC = 0x41565043; // "AVPC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 32;
+
+    // Potencia de 2 para poder usar una máscara en lugar de módulo
+    static final int CAPACITY = 4096;
+    static final long FLUSH_INTERVAL_MS = 5000;
+
+    // Claves reservadas dentro de la tabla
+    private static final long EMPTY = 0L;
+    private static final long TOMBSTONE = 1L;
+
+    // Si la tabla está por encima de este número de entradas se reemplaza la más antigua
+    static final int MAX_ENTRIES = CAPACITY * 3 / 4;
+
+    // Con más lápidas que esto la tabla se reconstruye
+    static final int MAX_TOMBSTONES = CAPACITY / 8;
+
+    private static ResumePositionStore instance;
+
+    private final File journalFile;
+    private final RandomAccessFile dataRaf;
+    private final MappedByteBuffer table;
+    private final ScheduledExecutorService flushExecutor;
+
+    // Escrituras pendientes: clave hash -> {posición, duración, timestamp}; posición < 0 = borrar
+    private final Map<Long, long[]> pending = new HashMap<>();
+    private boolean flushScheduled = false;
+    private long lastFlushAt = 0L;
+    private int entryCount = 0;
+    private int tombstoneCount = 0;
+
+    /** Devuelve la instancia compartida del proceso, abriéndola la primera vez. */
+    static synchronized ResumePositionStore obtain(File directory) throws IOException {
+        if (instance == null) {
+            instance = new ResumePositionStore(directory);
+        }
+        return instance;
+    }
+
+    ResumePositionStore(File directory) throws IOException {
+        File dataFile = new File(directory, DATA_FILE);
+        journalFile = new File(directory, JOURNAL_FILE);
+
+        long size = HEADER_SIZE + (long) CAPACITY * RECORD_SIZE;
+        boolean fresh = !dataFile.exists() || dataFile.length() != size;
+
+        dataRaf = new RandomAccessFile(dataFile, "rw");
+        if (fresh) {
+            dataRaf.setLength(0);
+            dataRaf.setLength(size);
+        }
+        table = dataRaf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        table.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (fresh || table.getInt(0) != MAGIC || table.getInt(4) != VERSION || table.getInt(8) != CAPACITY) {
+            clearTable();
+            table.putInt(0, MAGIC);
+            table.putInt(4, VERSION);
+            table.putInt(8, CAPACITY);
+            table.putInt(12, 0);
+            table.force();
+        }
+
+        // Los contadores deben estar al día antes del journal: decide si hay que desalojar
+        countEntries();
+        replayJournal();
+
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "avp-resume-store");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /** Entradas guardadas en la tabla (sin contar las escrituras pendientes). */
+    synchronized int size() {
+        return entryCount;
+    }
+
+    synchronized int tombstones() {
+        return tombstoneCount;
+    }
+
+    /**
+     * Devuelve {posición, duración} en milisegundos o null si no hay posición guardada.
+     */
+    synchronized long[] get(String contentId) {
+        return getByKey(keyFor(contentId));
+    }
+
+    synchronized long[] getByKey(long key) {
+        long[] queued = pending.get(key);
+        if (queued != null) {
+            return queued[0] < 0 ? null : new long[]{queued[0], queued[1]};
+        }
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
+        }
+        int offset = offsetOf(slot);
+        return new long[]{table.getLong(offset + 8), table.getLong(offset + 16)};
+    }
+
+    /** Encola una posición; el volcado a disco se agrupa con el resto de escrituras. */
+    synchronized void put(String contentId, long positionMs, long durationMs) {
+        pending.put(keyFor(contentId), new long[]{Math.max(0L, positionMs), durationMs, System.currentTimeMillis()});
+        scheduleFlush();
+    }
+
+    /** Encola el borrado de la posición de un contenido. */
+    synchronized void remove(String contentId) {
+        pending.put(keyFor(contentId), new long[]{-1L, 0L, System.currentTimeMillis()});
+        scheduleFlush();
+    }
+
+    /** Vuelca de inmediato las escrituras pendientes (por ejemplo al desconectarse del engine). */
+    Future<?> flush() {
+        return flushExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                flushPending();
+            }
+        });
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        long delay = Math.max(0L, lastFlushAt + FLUSH_INTERVAL_MS - System.currentTimeMillis());
+        flushExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flushPending();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void flushPending() {
+        long[] keys;
+        long[][] values;
+        synchronized (this) {
+            flushScheduled = false;
+            lastFlushAt = System.currentTimeMillis();
+            if (pending.isEmpty()) {
+                return;
+            }
+            keys = new long[pending.size()];
+            values = new long[pending.size()][];
+            int i = 0;
+            for (Map.Entry<Long, long[]> entry : pending.entrySet()) {
+                keys[i] = entry.getKey();
+                values[i] = entry.getValue();
+                i++;
+            }
+        }
+
+        try {
+            // 1. Journal con checksum y fsync: a partir de aquí el lote sobrevive a un crash
+            writeJournal(JOURNAL_MAGIC, keys, values);
+            // 2. Aplicar sobre la tabla mapeada y forzarla a disco
+            synchronized (this) {
+                for (int i = 0; i < keys.length; i++) {
+                    applyRecord(keys[i], values[i][0], values[i][1], values[i][2]);
+                    // Solo se retira de pendientes si no llegó una escritura más nueva mientras tanto
+                    if (pending.get(keys[i]) == values[i]) {
+                        pending.remove(keys[i]);
+                    }
+                }
+            }
+            table.force();
+            // 3. El lote ya está en la tabla: el journal deja de ser necesario
+            truncateJournal();
+            compactIfNeeded();
+        } catch (IOException e) {
+            PluginMetrics.get().increment("resume.flush.failed");
+        }
+    }
+
+    /**
+     * Reconstruye la tabla sin lápidas si hay demasiadas. Solo el hilo de volcado (o el
+     * constructor) modifica la tabla, así que la copia de las entradas no necesita el
+     * monitor; el vaciado y la reinserción sí, para que {@link #get} no vea la tabla a
+     * medias.
+     */
+    private void compactIfNeeded() throws IOException {
+        if (tombstoneCount <= MAX_TOMBSTONES) {
+            return;
+        }
+        long[] keys = new long[entryCount];
+        long[][] values = new long[entryCount][];
+        int count = 0;
+        for (int slot = 0; slot < CAPACITY && count < keys.length; slot++) {
+            int offset = offsetOf(slot);
+            long stored = table.getLong(offset);
+            if (!isFree(stored)) {
+                keys[count] = stored;
+                values[count] = new long[]{table.getLong(offset + 8), table.getLong(offset + 16),
+                        table.getLong(offset + 24)};
+                count++;
+            }
+        }
+        // Un crash a mitad de la reconstrucción se repara al abrir con este journal
+        writeJournal(COMPACT_MAGIC, keys, values);
+        synchronized (this) {
+            rebuild(keys, values);
+        }
+        table.force();
+        truncateJournal();
+        PluginMetrics.get().increment("resume.compactions");
+    }
+
+    private void rebuild(long[] keys, long[][] values) {
+        clearTable();
+        entryCount = 0;
+        tombstoneCount = 0;
+        for (int i = 0; i < keys.length; i++) {
+            applyRecord(keys[i], values[i][0], values[i][1], values[i][2]);
+        }
+    }
+
+    private void writeJournal(int magic, long[] keys, long[][] values) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + keys.length * RECORD_SIZE + 8).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(magic);
+        buffer.putInt(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            buffer.putLong(keys[i]);
+            buffer.putLong(values[i][0]);
+            buffer.putLong(values[i][1]);
+            buffer.putLong(values[i][2]);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 8, keys.length * RECORD_SIZE);
+        buffer.putLong(crc.getValue());
+        buffer.flip();
+
+        RandomAccessFile raf = new RandomAccessFile(journalFile, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            channel.truncate(0);
+            long position = 0;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(true);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void truncateJournal() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(journalFile, "rw");
+        try {
+            raf.getChannel().truncate(0);
+            raf.getChannel().force(true);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void replayJournal() throws IOException {
+        if (!journalFile.exists() || journalFile.length() < 16) {
+            return;
+        }
+        RandomAccessFile raf = new RandomAccessFile(journalFile, "r");
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.allocate((int) raf.length()).order(ByteOrder.LITTLE_ENDIAN);
+            raf.getChannel().read(buffer, 0);
+            buffer.flip();
+        } finally {
+            raf.close();
+        }
+
+        int magic = buffer.getInt();
+        int count = buffer.getInt();
+        if ((magic != JOURNAL_MAGIC && magic != COMPACT_MAGIC) || count < 0
+                || buffer.remaining() != count * RECORD_SIZE + 8) {
+            // Incompleto: el lote nunca llegó a aplicarse y la tabla sigue intacta
+            PluginMetrics.get().increment("resume.journal.discarded");
+            truncateJournal();
+            return;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 8, count * RECORD_SIZE);
+        if (buffer.getLong(8 + count * RECORD_SIZE) != crc.getValue()) {
+            PluginMetrics.get().increment("resume.journal.discarded");
+            truncateJournal();
+            return;
+        }
+
+        long[] keys = new long[count];
+        long[][] values = new long[count][];
+        for (int i = 0; i < count; i++) {
+            keys[i] = buffer.getLong();
+            values[i] = new long[]{buffer.getLong(), buffer.getLong(), buffer.getLong()};
+        }
+        if (magic == COMPACT_MAGIC) {
+            rebuild(keys, values);
+        } else {
+            for (int i = 0; i < count; i++) {
+                applyRecord(keys[i], values[i][0], values[i][1], values[i][2]);
+            }
+        }
+        table.force();
+        truncateJournal();
+        PluginMetrics.get().counter("resume.journal.replayed").add(count);
+        compactIfNeeded();
+    }
+
+    private void applyRecord(long key, long positionMs, long durationMs, long updatedAt) {
+        int slot = findSlot(key);
+        if (positionMs < 0) {
+            if (slot >= 0) {
+                table.putLong(offsetOf(slot), TOMBSTONE);
+                entryCount--;
+                tombstoneCount++;
+            }
+            return;
+        }
+        if (slot < 0) {
+            slot = entryCount >= MAX_ENTRIES ? oldestSlotNear(key) : freeSlot(key);
+            long stored = table.getLong(offsetOf(slot));
+            if (stored == TOMBSTONE) {
+                tombstoneCount--;
+            }
+            if (isFree(stored)) {
+                entryCount++;
+            }
+        }
+        int offset = offsetOf(slot);
+        table.putLong(offset, key);
+        table.putLong(offset + 8, positionMs);
+        table.putLong(offset + 16, durationMs);
+        table.putLong(offset + 24, updatedAt);
+    }
+
+    private int findSlot(long key) {
+        int mask = CAPACITY - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        for (int probes = 0; probes < CAPACITY; probes++) {
+            long stored = table.getLong(offsetOf(slot));
+            if (stored == key) {
+                return slot;
+            }
+            if (stored == EMPTY) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int freeSlot(long key) {
+        int mask = CAPACITY - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (!isFree(table.getLong(offsetOf(slot)))) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Con la tabla llena se reemplaza la entrada más antigua dentro de la ventana de sondeo
+    private int oldestSlotNear(long key) {
+        int mask = CAPACITY - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        int oldest = slot;
+        long oldestAt = Long.MAX_VALUE;
+        for (int probes = 0; probes < 16; probes++) {
+            int offset = offsetOf(slot);
+            if (isFree(table.getLong(offset))) {
+                return slot;
+            }
+            long updatedAt = table.getLong(offset + 24);
+            if (updatedAt < oldestAt) {
+                oldestAt = updatedAt;
+                oldest = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return oldest;
+    }
+
+    private void countEntries() {
+        entryCount = 0;
+        tombstoneCount = 0;
+        for (int slot = 0; slot < CAPACITY; slot++) {
+            long stored = table.getLong(offsetOf(slot));
+            if (stored == TOMBSTONE) {
+                tombstoneCount++;
+            } else if (stored != EMPTY) {
+                entryCount++;
+            }
+        }
+    }
+
+    private void clearTable() {
+        for (int offset = HEADER_SIZE; offset < table.capacity(); offset += 8) {
+            table.putLong(offset, 0L);
+        }
+    }
+
+    private static boolean isFree(long stored) {
+        return stored == EMPTY || stored == TOMBSTONE;
+    }
+
+    private static int offsetOf(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    // FNV-1a de 64 bits; los valores reservados se desplazan para no colisionar con EMPTY/TOMBSTONE
+    static long keyFor(String contentId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < contentId.length(); i++) {
+            hash ^= contentId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == EMPTY || hash == TOMBSTONE ? hash + 2 : hash;
+    }
+}
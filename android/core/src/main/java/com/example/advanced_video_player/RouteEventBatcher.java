@@ -0,0 +1,153 @@
+package com.example.advanced_video_player;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Agrupa los eventos de rutas antes de enviarlos a Dart.
+ *
+ * En redes con muchos receptores (hoteles, campus) las rutas aparecen, cambian y
+ * desaparecen varias veces por segundo. Los eventos que llegan dentro de una ventana
+ * se fusionan por ruta y se entregan juntos al terminarla: una ruta que aparece y
+ * desaparece en la misma ventana no genera nada, varias actualizaciones quedan en
+ * una, y una ruta que desaparece y vuelve llega como {@code changed}. La selección
+ * se trata aparte y solo cuenta la última.
+ *
+ * La ventana la programa {@link Scheduler} (el Handler principal en Android, un
+ * reloj virtual en los tests).
+ */
+final class RouteEventBatcher {
+    static final String ADDED = "added";
+    static final String REMOVED = "removed";
+    static final String CHANGED = "changed";
+    static final String SELECTED = "selected";
+    static final String UNSELECTED = "unselected";
+
+    /** Programa el cierre de la ventana. */
+    interface Scheduler {
+        void schedule(Runnable task, long delayMs);
+    }
+
+    /** Recibe cada lote, fuera del lock y en el hilo del {@link Scheduler}. */
+    interface Sink {
+        void deliver(List<Map<String, Object>> events);
+    }
+
+    private static final String SELECTION_KEY = "selection:";
+
+    private final Scheduler scheduler;
+    private final long windowMs;
+    private final Sink sink;
+    // Eventos pendientes por ruta, en orden de llegada
+    private final LinkedHashMap<String, Map<String, Object>> pending = new LinkedHashMap<>();
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+    private boolean scheduled;
+    private long offered;
+    private long delivered;
+    private long batches;
+
+    RouteEventBatcher(Scheduler scheduler, long windowMs, Sink sink) {
+        this.scheduler = scheduler;
+        this.windowMs = windowMs;
+        this.sink = sink;
+    }
+
+    /** Añade un evento; el primero de la ventana programa la entrega. */
+    void offer(String event, String id, String name) {
+        synchronized (this) {
+            offered++;
+            if (SELECTED.equals(event) || UNSELECTED.equals(event)) {
+                String key = SELECTION_KEY + id;
+                pending.remove(key);
+                pending.put(key, entry(event, id, name));
+            } else {
+                merge(event, id, name);
+            }
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        PluginMetrics.get().increment("routes.batch.scheduled");
+        scheduler.schedule(flushTask, windowMs);
+    }
+
+    /** Entrega ya los eventos pendientes. */
+    void flush() {
+        List<Map<String, Object>> batch;
+        synchronized (this) {
+            scheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+            delivered += batch.size();
+            batches++;
+        }
+        PluginMetrics.get().increment("routes.batch.delivered");
+        sink.deliver(batch);
+    }
+
+    /** Eventos recibidos desde que se creó. */
+    synchronized long offered() {
+        return offered;
+    }
+
+    /** Eventos entregados tras fusionarlos. */
+    synchronized long delivered() {
+        return delivered;
+    }
+
+    /** Lotes entregados. */
+    synchronized long batches() {
+        return batches;
+    }
+
+    /** Rutas con eventos pendientes. */
+    synchronized int pending() {
+        return pending.size();
+    }
+
+    private void merge(String event, String id, String name) {
+        Map<String, Object> previous = pending.get(id);
+        if (previous == null) {
+            pending.put(id, entry(event, id, name));
+            return;
+        }
+        String first = (String) previous.get("event");
+        String merged;
+        if (ADDED.equals(first)) {
+            // Apareció en esta ventana: Dart aún no la conoce
+            merged = REMOVED.equals(event) ? null : ADDED;
+        } else if (REMOVED.equals(first)) {
+            merged = ADDED.equals(event) ? CHANGED : REMOVED;
+        } else {
+            merged = REMOVED.equals(event) ? REMOVED : CHANGED;
+        }
+        if (merged == null) {
+            pending.remove(id);
+            return;
+        }
+        previous.put("event", merged);
+        if (name != null) {
+            previous.put("name", name);
+        }
+    }
+
+    private static Map<String, Object> entry(String event, String id, String name) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("event", event);
+        entry.put("id", id);
+        entry.put("name", name);
+        return entry;
+    }
+}
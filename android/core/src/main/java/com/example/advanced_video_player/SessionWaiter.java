@@ -0,0 +1,100 @@
+package com.example.advanced_video_player;
+
+/**
+ * Espera por sondeo a que un recurso de la sesión Cast esté disponible (la sesión
+ * tras conectar, su RemoteMediaClient), como hacía el plugin con {@code Thread.sleep}.
+ * El sondeo y la pausa van detrás de interfaces para probarlo sin Cast y sin esperas.
+ *
+ * {@link #await} bloquea el hilo que llama; en el hilo principal se usa {@link #poll},
+ * que programa cada intento en un {@link RouteEventBatcher.Scheduler} (el Handler
+ * principal en Android) y entrega el resultado por {@link Listener}.
+ */
+final class SessionWaiter {
+    /** Consulta el recurso; null si aún no está. */
+    interface Probe<T> {
+        T poll();
+    }
+
+    /** Pausa entre intentos. */
+    interface Sleeper {
+        void sleep(long millis) throws InterruptedException;
+    }
+
+    /** Recibe el resultado de {@link #poll} en el hilo del Scheduler; null si no llegó. */
+    interface Listener<T> {
+        void onResult(T value);
+    }
+
+    private final Sleeper sleeper;
+    private final RouteEventBatcher.Scheduler scheduler;
+    private final long intervalMs;
+    // Intentos del último await o poll, para el registro
+    private int attempts;
+
+    SessionWaiter(Sleeper sleeper, long intervalMs) {
+        this(sleeper, null, intervalMs);
+    }
+
+    private SessionWaiter(Sleeper sleeper, RouteEventBatcher.Scheduler scheduler, long intervalMs) {
+        this.sleeper = sleeper;
+        this.scheduler = scheduler;
+        this.intervalMs = intervalMs;
+    }
+
+    /** Espera sin bloquear: solo admite {@link #poll}. */
+    static SessionWaiter scheduled(RouteEventBatcher.Scheduler scheduler, long intervalMs) {
+        return new SessionWaiter(null, scheduler, intervalMs);
+    }
+
+    /**
+     * Devuelve el recurso en cuanto {@code probe} lo entrega, o null si no llega tras
+     * {@code maxAttempts} pausas. El primer sondeo es inmediato.
+     */
+    <T> T await(Probe<T> probe, int maxAttempts) throws InterruptedException {
+        if (sleeper == null) {
+            throw new IllegalStateException("SessionWaiter sin Sleeper: usar poll");
+        }
+        attempts = 0;
+        T value = probe.poll();
+        while (value == null && attempts < maxAttempts) {
+            sleeper.sleep(intervalMs);
+            attempts++;
+            value = probe.poll();
+        }
+        return value;
+    }
+
+    /**
+     * Como {@link #await} pero sin bloquear: el primer sondeo es inmediato y cada
+     * reintento se programa en el Scheduler tras el intervalo. {@code listener} recibe
+     * el recurso o null tras {@code maxAttempts} reintentos.
+     */
+    <T> void poll(final Probe<T> probe, final int maxAttempts, final Listener<T> listener) {
+        if (scheduler == null) {
+            throw new IllegalStateException("SessionWaiter sin Scheduler: usar await");
+        }
+        attempts = 0;
+        new Runnable() {
+            @Override
+            public void run() {
+                T value = probe.poll();
+                if (value != null || attempts >= maxAttempts) {
+                    listener.onResult(value);
+                    return;
+                }
+                attempts++;
+                scheduler.schedule(this, intervalMs);
+            }
+        }.run();
+    }
+
+    /** Reintentos que hizo el último {@link #await} o {@link #poll}. */
+    int attempts() {
+        return attempts;
+    }
+
+    /** Intentos que caben en {@code timeoutMs}. */
+    int attemptsFor(long timeoutMs) {
+        return (int) Math.max(1, timeoutMs / intervalMs);
+    }
+}
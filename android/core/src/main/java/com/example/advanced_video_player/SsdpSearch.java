@@ -0,0 +1,170 @@
+package com.example.advanced_video_player;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Búsqueda SSDP ({@code M-SEARCH}) de dispositivos UPnP.
+ *
+ * La consulta sale desde un puerto efímero de un {@link DatagramChannel} no
+ * bloqueante y los dispositivos contestan en unicast a ese puerto, así que no hace
+ * falta unirse al grupo multicast. Las respuestas se recogen con un {@link Selector}
+ * hasta que vence la ventana de búsqueda y se deduplican por USN. El mensaje se envía
+ * dos veces porque UDP puede perder paquetes (UPnP Device Architecture 1.1, 1.3.2).
+ */
+final class SsdpSearch {
+    static final InetSocketAddress SSDP_GROUP = new InetSocketAddress("239.255.255.250", 1900);
+    static final String MEDIA_RENDERER = "urn:schemas-upnp-org:device:MediaRenderer:1";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long DEFAULT_MAX_AGE_SECONDS = 1800;
+
+    /** Respuesta de un dispositivo. */
+    static final class Response {
+        final String location;
+        final String usn;
+        final String searchTarget;
+        final String server;
+        final long maxAgeSeconds;
+
+        Response(String location, String usn, String searchTarget, String server, long maxAgeSeconds) {
+            this.location = location;
+            this.usn = usn;
+            this.searchTarget = searchTarget;
+            this.server = server;
+            this.maxAgeSeconds = maxAgeSeconds;
+        }
+    }
+
+    private final InetSocketAddress target;
+    private final InetSocketAddress bindAddress;
+
+    /**
+     * @param target      destino de la búsqueda ({@link #SSDP_GROUP} en la red)
+     * @param bindAddress dirección local; puerto 0 para uno efímero
+     */
+    SsdpSearch(InetSocketAddress target, InetSocketAddress bindAddress) {
+        this.target = target;
+        this.bindAddress = bindAddress;
+    }
+
+    static SsdpSearch forLocalNetwork() {
+        return new SsdpSearch(SSDP_GROUP, new InetSocketAddress(0));
+    }
+
+    /**
+     * Busca dispositivos de tipo {@code searchTarget} durante {@code windowMs}
+     * milisegundos. Bloquea al hilo que llama.
+     */
+    List<Response> search(String searchTarget, int mxSeconds, long windowMs) throws IOException {
+        Map<String, Response> responses = new LinkedHashMap<>();
+        DatagramChannel channel = DatagramChannel.open();
+        Selector selector = Selector.open();
+        try {
+            channel.configureBlocking(false);
+            channel.socket().bind(bindAddress);
+            channel.register(selector, SelectionKey.OP_READ);
+            byte[] request = request(searchTarget, mxSeconds).getBytes(UTF_8);
+            channel.send(ByteBuffer.wrap(request), target);
+            channel.send(ByteBuffer.wrap(request), target);
+
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            long deadline = System.nanoTime() + windowMs * 1000000L;
+            while (true) {
+                long remainingMs = (deadline - System.nanoTime()) / 1000000L;
+                if (remainingMs <= 0) {
+                    break;
+                }
+                selector.select(remainingMs);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    keys.next();
+                    keys.remove();
+                    while (true) {
+                        buffer.clear();
+                        if (channel.receive(buffer) == null) {
+                            break;
+                        }
+                        Response response = parse(new String(buffer.array(), 0, buffer.position(), UTF_8));
+                        if (response != null && matches(response, searchTarget)
+                                && !responses.containsKey(response.usn)) {
+                            responses.put(response.usn, response);
+                        }
+                    }
+                }
+            }
+        } finally {
+            selector.close();
+            channel.close();
+        }
+        return new ArrayList<>(responses.values());
+    }
+
+    static String request(String searchTarget, int mxSeconds) {
+        return "M-SEARCH * HTTP/1.1\r\n"
+                + "HOST: 239.255.255.250:1900\r\n"
+                + "MAN: \"ssdp:discover\"\r\n"
+                + "MX: " + mxSeconds + "\r\n"
+                + "ST: " + searchTarget + "\r\n"
+                + "\r\n";
+    }
+
+    /** Interpreta una respuesta {@code HTTP/1.1 200 OK}; null si no lo es o le falta LOCATION. */
+    static Response parse(String text) {
+        String[] lines = text.split("\r?\n");
+        if (lines.length == 0 || !lines[0].toUpperCase(Locale.US).startsWith("HTTP/1.1 200")) {
+            return null;
+        }
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                headers.put(lines[i].substring(0, colon).trim().toUpperCase(Locale.US),
+                        lines[i].substring(colon + 1).trim());
+            }
+        }
+        String location = headers.get("LOCATION");
+        if (location == null || location.isEmpty()) {
+            return null;
+        }
+        String usn = headers.containsKey("USN") ? headers.get("USN") : location;
+        return new Response(location, usn, headers.get("ST"), headers.get("SERVER"),
+                maxAge(headers.get("CACHE-CONTROL")));
+    }
+
+    private static boolean matches(Response response, String searchTarget) {
+        return "ssdp:all".equals(searchTarget) || response.searchTarget == null
+                || searchTarget.equalsIgnoreCase(response.searchTarget);
+    }
+
+    private static long maxAge(String cacheControl) {
+        if (cacheControl == null) {
+            return DEFAULT_MAX_AGE_SECONDS;
+        }
+        int index = cacheControl.toLowerCase(Locale.US).indexOf("max-age");
+        if (index < 0) {
+            return DEFAULT_MAX_AGE_SECONDS;
+        }
+        String value = cacheControl.substring(index + "max-age".length()).replace('=', ' ').trim();
+        int end = 0;
+        while (end < value.length() && Character.isDigit(value.charAt(end))) {
+            end++;
+        }
+        try {
+            return Long.parseLong(value.substring(0, end));
+        } catch (NumberFormatException e) {
+            return DEFAULT_MAX_AGE_SECONDS;
+        }
+    }
+}
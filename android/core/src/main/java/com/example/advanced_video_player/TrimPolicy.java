@@ -0,0 +1,93 @@
+package com.example.advanced_video_player;
+
+/**
+ * Qué recursos suelta el plugin según el nivel de {@code onTrimMemory}.
+ *
+ * Los niveles son los de {@code ComponentCallbacks2} (copiados para no depender de
+ * Android) y se agrupan en tres escalones acumulativos:
+ * <ul>
+ *   <li>{@link #TIER_CACHES}: cachés que se reconstruyen solas (catálogo de
+ *   dispositivos, descripciones UPnP, escrituras pendientes).</li>
+ *   <li>{@link #TIER_DISCOVERY}: además, se detiene la búsqueda de dispositivos;
+ *   la siguiente {@code discoverDevices} la vuelve a iniciar.</li>
+ *   <li>{@link #TIER_SESSIONS}: además, se sueltan las sesiones y pools que nadie
+ *   usa (listener de sesión Cast sin transmisión, backend DLNA sin renderizador,
+ *   receiver de PiP fuera de PiP).</li>
+ * </ul>
+ * Una transmisión en curso nunca se corta.
+ */
+final class TrimPolicy {
+    static final int TRIM_MEMORY_RUNNING_MODERATE = 5;
+    static final int TRIM_MEMORY_RUNNING_LOW = 10;
+    static final int TRIM_MEMORY_RUNNING_CRITICAL = 15;
+    static final int TRIM_MEMORY_UI_HIDDEN = 20;
+    static final int TRIM_MEMORY_BACKGROUND = 40;
+    static final int TRIM_MEMORY_MODERATE = 60;
+    static final int TRIM_MEMORY_COMPLETE = 80;
+    /** Nivel que se usa para {@code onLowMemory}. */
+    static final int LOW_MEMORY = TRIM_MEMORY_COMPLETE;
+
+    static final int TIER_NONE = 0;
+    static final int TIER_CACHES = 1;
+    static final int TIER_DISCOVERY = 2;
+    static final int TIER_SESSIONS = 3;
+
+    private TrimPolicy() {
+    }
+
+    /** Escalón que corresponde al nivel; los niveles desconocidos van al inferior más cercano. */
+    static int tierFor(int level) {
+        if (level >= TRIM_MEMORY_MODERATE) {
+            // El proceso está entre los próximos en morir
+            return TIER_SESSIONS;
+        }
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            // Sin interfaz visible nadie mira la lista de dispositivos
+            return TIER_DISCOVERY;
+        }
+        if (level >= TRIM_MEMORY_RUNNING_CRITICAL) {
+            return TIER_SESSIONS;
+        }
+        if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            return TIER_DISCOVERY;
+        }
+        if (level >= TRIM_MEMORY_RUNNING_MODERATE) {
+            return TIER_CACHES;
+        }
+        return TIER_NONE;
+    }
+
+    static String tierName(int tier) {
+        switch (tier) {
+            case TIER_CACHES:
+                return "caches";
+            case TIER_DISCOVERY:
+                return "discovery";
+            case TIER_SESSIONS:
+                return "sessions";
+            default:
+                return "none";
+        }
+    }
+
+    static String levelName(int level) {
+        switch (level) {
+            case TRIM_MEMORY_RUNNING_MODERATE:
+                return "runningModerate";
+            case TRIM_MEMORY_RUNNING_LOW:
+                return "runningLow";
+            case TRIM_MEMORY_RUNNING_CRITICAL:
+                return "runningCritical";
+            case TRIM_MEMORY_UI_HIDDEN:
+                return "uiHidden";
+            case TRIM_MEMORY_BACKGROUND:
+                return "background";
+            case TRIM_MEMORY_MODERATE:
+                return "moderate";
+            case TRIM_MEMORY_COMPLETE:
+                return "complete";
+            default:
+                return "level" + level;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.advanced_video_player;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * Descripciones de dispositivos UPnP, descargadas en paralelo y guardadas en caché.
+ *
+ * Cada LOCATION de SSDP se descarga una sola vez mientras dure su {@code max-age}:
+ * las búsquedas siguientes reutilizan la descripción sin tocar la red, y si dos
+ * búsquedas piden la misma descripción a la vez comparten la descarga. Las que faltan
+ * se piden todas a la vez en {@code pool}, con un tiempo total de espera acotado; un
+ * dispositivo que no contesta a tiempo se omite de esa búsqueda.
+ */
+final class UpnpDescriptionCache {
+    private static final class Entry {
+        final UpnpDevice device;
+        final long expiresAtNanos;
+
+        Entry(UpnpDevice device, long expiresAtNanos) {
+            this.device = device;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    private final ExecutorService pool;
+    private final int timeoutMs;
+    private final Map<String, Entry> cache = new HashMap<>();
+    private final Map<String, Future<UpnpDevice>> pending = new HashMap<>();
+    private int downloads;
+
+    UpnpDescriptionCache(ExecutorService pool, int timeoutMs) {
+        this.pool = pool;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /** Descripciones descargadas desde que se creó la caché. */
+    synchronized int downloads() {
+        return downloads;
+    }
+
+    /**
+     * Renderizadores de las respuestas SSDP (solo los que tienen AVTransport), en el
+     * orden de las respuestas y sin repetir UDN.
+     */
+    List<UpnpDevice> resolve(List<SsdpSearch.Response> responses) {
+        long now = System.nanoTime();
+        List<Object> slots = new ArrayList<>(responses.size());
+        synchronized (this) {
+            for (final SsdpSearch.Response response : responses) {
+                Entry entry = cache.get(response.location);
+                if (entry != null && entry.expiresAtNanos - now > 0) {
+                    slots.add(entry.device);
+                    continue;
+                }
+                Future<UpnpDevice> future = pending.get(response.location);
+                if (future == null) {
+                    downloads++;
+                    future = pool.submit(new Callable<UpnpDevice>() {
+                        @Override
+                        public UpnpDevice call() throws Exception {
+                            return download(response);
+                        }
+                    });
+                    pending.put(response.location, future);
+                }
+                slots.add(future);
+            }
+        }
+
+        long deadline = now + timeoutMs * 1000000L;
+        Map<String, UpnpDevice> devices = new LinkedHashMap<>();
+        for (Object slot : slots) {
+            UpnpDevice device = null;
+            if (slot instanceof UpnpDevice) {
+                device = (UpnpDevice) slot;
+            } else {
+                @SuppressWarnings("unchecked")
+                Future<UpnpDevice> future = (Future<UpnpDevice>) slot;
+                try {
+                    long remaining = Math.max(0, deadline - System.nanoTime());
+                    device = future.get(remaining, TimeUnit.NANOSECONDS);
+                } catch (Exception e) {
+                    // Sin respuesta a tiempo o descripción inválida: se omite en esta búsqueda
+                }
+            }
+            if (device != null && device.avTransportControlUrl != null && !devices.containsKey(device.udn)) {
+                devices.put(device.udn, device);
+            }
+        }
+        return new ArrayList<>(devices.values());
+    }
+
+    /** Olvida todas las descripciones. */
+    synchronized void clear() {
+        cache.clear();
+    }
+
+    private UpnpDevice download(SsdpSearch.Response response) throws IOException {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(response.location).openConnection();
+            connection.setConnectTimeout(timeoutMs);
+            connection.setReadTimeout(timeoutMs);
+            UpnpDevice device;
+            InputStream in = connection.getInputStream();
+            try {
+                device = parse(response.location, in);
+            } finally {
+                in.close();
+            }
+            synchronized (this) {
+                cache.put(response.location,
+                        new Entry(device, System.nanoTime() + response.maxAgeSeconds * 1000000000L));
+            }
+            return device;
+        } finally {
+            synchronized (this) {
+                pending.remove(response.location);
+            }
+        }
+    }
+
+    /** Interpreta la descripción XML; busca el MediaRenderer aunque esté anidado. */
+    static UpnpDevice parse(String location, InputStream xml) throws IOException {
+        Document document;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(false);
+            factory.setExpandEntityReferences(false);
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            document = builder.parse(xml);
+        } catch (Exception e) {
+            throw new IOException("Descripción UPnP inválida: " + e.getMessage(), e);
+        }
+
+        Element root = document.getDocumentElement();
+        String urlBase = childText(root, "URLBase");
+        URL base = new URL(urlBase != null && !urlBase.isEmpty() ? urlBase : location);
+
+        Element renderer = null;
+        NodeList devices = document.getElementsByTagName("device");
+        for (int i = 0; i < devices.getLength(); i++) {
+            Element device = (Element) devices.item(i);
+            String type = childText(device, "deviceType");
+            if (type != null && type.contains(":MediaRenderer:")) {
+                renderer = device;
+                break;
+            }
+        }
+        if (renderer == null) {
+            if (devices.getLength() == 0) {
+                throw new IOException("La descripción no tiene dispositivos");
+            }
+            renderer = (Element) devices.item(0);
+        }
+
+        String avTransport = null;
+        String renderingControl = null;
+        Element serviceList = child(renderer, "serviceList");
+        if (serviceList != null) {
+            NodeList services = serviceList.getChildNodes();
+            for (int i = 0; i < services.getLength(); i++) {
+                Node node = services.item(i);
+                if (!(node instanceof Element) || !"service".equals(node.getNodeName())) {
+                    continue;
+                }
+                Element service = (Element) node;
+                String type = childText(service, "serviceType");
+                String control = childText(service, "controlURL");
+                if (type == null || control == null) {
+                    continue;
+                }
+                if (type.contains(":AVTransport:")) {
+                    avTransport = new URL(base, control).toString();
+                } else if (type.contains(":RenderingControl:")) {
+                    renderingControl = new URL(base, control).toString();
+                }
+            }
+        }
+
+        String udn = childText(renderer, "UDN");
+        return new UpnpDevice(udn != null ? udn : location, childText(renderer, "friendlyName"),
+                childText(renderer, "manufacturer"), childText(renderer, "modelName"), location,
+                avTransport, renderingControl);
+    }
+
+    private static Element child(Element parent, String name) {
+        NodeList children = parent.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            Node node = children.item(i);
+            if (node instanceof Element && name.equals(node.getNodeName())) {
+                return (Element) node;
+            }
+        }
+        return null;
+    }
+
+    private static String childText(Element parent, String name) {
+        Element child = child(parent, name);
+        return child != null ? child.getTextContent().trim() : null;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.advanced_video_player;
+
+import java.net.URI;
+
+/** Datos de la descripción de un renderizador UPnP que usa {@link DlnaBackend}. */
+final class UpnpDevice {
+    final String udn;
+    final String friendlyName;
+    final String manufacturer;
+    final String modelName;
+    // URL de la descripción (LOCATION de SSDP)
+    final String location;
+    // URLs absolutas de control; null si el dispositivo no tiene el servicio
+    final String avTransportControlUrl;
+    final String renderingControlUrl;
+
+    UpnpDevice(String udn, String friendlyName, String manufacturer, String modelName, String location,
+               String avTransportControlUrl, String renderingControlUrl) {
+        this.udn = udn;
+        this.friendlyName = friendlyName;
+        this.manufacturer = manufacturer;
+        this.modelName = modelName;
+        this.location = location;
+        this.avTransportControlUrl = avTransportControlUrl;
+        this.renderingControlUrl = renderingControlUrl;
+    }
+
+    /** Host de la descripción, o null si la URL no es válida. */
+    String host() {
+        try {
+            return new URI(location).getHost();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,457 @@
+package com.example.advanced_video_player;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Miembro de una fiesta de visionado en la red local: un líder marca la reproducción
+ * y los seguidores la imitan.
+ *
+ * Todo viaja por un único {@link DatagramChannel} UDP, con un hilo propio que espera
+ * con un {@link Selector} como {@link SsdpSearch}:
+ * <ul>
+ *   <li>Sincronía de reloj: el seguidor manda {@code PING} con su hora y el líder
+ *   contesta {@code PONG} con las de llegada y salida; {@link ClockOffsetEstimator}
+ *   calcula la diferencia de relojes. Al unirse se hacen {@link ClockOffsetEstimator#WINDOW}
+ *   consultas seguidas y después una por {@link #PING_INTERVAL_MS}, que sirve también
+ *   para seguir en la lista del líder.</li>
+ *   <li>Control: el seguidor se anuncia con {@code JOIN} y el líder le envía
+ *   {@code STATE} (posición, velocidad y si reproduce, con la hora del líder) en cada
+ *   cambio y cada {@link #STATE_INTERVAL_MS}, así un paquete perdido no deja al
+ *   seguidor desincronizado. {@code LEAVE} avisa de la salida.</li>
+ * </ul>
+ *
+ * El seguidor no recibe órdenes de saltar: con la diferencia de relojes convierte el
+ * último estado a su propio reloj ({@link #expected()}) y {@link DriftCorrector}
+ * decide cómo alcanzarlo. Los paquetes llevan el código de la fiesta; los de otras
+ * fiestas o versiones se ignoran.
+ */
+final class WatchPartyPeer implements Closeable {
+    static final long PING_INTERVAL_MS = 1000;
+    static final long SYNC_BURST_INTERVAL_MS = 50;
+    static final long STATE_INTERVAL_MS = 1000;
+    static final long JOIN_RETRY_MS = 2000;
+    static final long FOLLOWER_TIMEOUT_MS = 5000;
+
+    static final int MAGIC = 0x41565057; // "AVPW"
+    static final int VERSION = 1;
+    static final byte PING = 1;
+    static final byte PONG = 2;
+    static final byte JOIN = 3;
+    static final byte STATE = 4;
+    static final byte LEAVE = 5;
+
+    private static final long TICK_MS = 20;
+    private static final int MAX_PACKET = 512;
+    private static final long CLOSE_WAIT_MS = 500;
+    private static final long NEVER = Long.MIN_VALUE;
+
+    /** Reloj monotónico en nanosegundos; en los tests, uno desplazado por equipo. */
+    interface Clock {
+        long nanos();
+    }
+
+    static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nanos() {
+            return System.nanoTime();
+        }
+    };
+
+    /** Reproducción del líder en un instante de su reloj. */
+    static final class PlaybackState {
+        final long sequence;
+        final long clockNanos;
+        final double positionMs;
+        final double rate;
+        final boolean playing;
+
+        PlaybackState(long sequence, long clockNanos, double positionMs, double rate, boolean playing) {
+            this.sequence = sequence;
+            this.clockNanos = clockNanos;
+            this.positionMs = positionMs;
+            this.rate = rate;
+            this.playing = playing;
+        }
+
+        /** Posición en otro instante del reloj del líder. */
+        double positionAt(long leaderNanos) {
+            return playing ? positionMs + (leaderNanos - clockNanos) / 1e6 * rate : positionMs;
+        }
+    }
+
+    /** Dónde debería estar el seguidor ahora según el líder. */
+    static final class Expectation {
+        final double positionMs;
+        final double rate;
+        final boolean playing;
+        final ClockOffsetEstimator.Estimate clock;
+
+        Expectation(double positionMs, double rate, boolean playing, ClockOffsetEstimator.Estimate clock) {
+            this.positionMs = positionMs;
+            this.rate = rate;
+            this.playing = playing;
+            this.clock = clock;
+        }
+    }
+
+    private final boolean leader;
+    private final int partyCode;
+    private final Clock clock;
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final InetSocketAddress leaderAddress;
+    private final ClockOffsetEstimator estimator = new ClockOffsetEstimator();
+    private final Thread thread;
+
+    // Protegido por this
+    private PlaybackState state;
+    private boolean stateDirty;
+    private final Map<SocketAddress, Long> followers = new LinkedHashMap<>();
+    private volatile boolean closing;
+
+    // Solo en el hilo de red
+    private long lastStateSent = NEVER;
+    private long lastPingSent = NEVER;
+    private long lastJoinSent = NEVER;
+    private long lastStateReceived = NEVER;
+    private final ByteBuffer out = ByteBuffer.allocate(MAX_PACKET);
+
+    private WatchPartyPeer(boolean leader, InetSocketAddress bindAddress, InetSocketAddress leaderAddress,
+                           int partyCode, Clock clock) throws IOException {
+        this.leader = leader;
+        this.leaderAddress = leaderAddress;
+        this.partyCode = partyCode;
+        this.clock = clock;
+        channel = DatagramChannel.open();
+        try {
+            channel.configureBlocking(false);
+            channel.socket().bind(bindAddress);
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, leader ? "avp-party-leader" : "avp-party-follower");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Crea la fiesta y escucha a los seguidores en {@code bindAddress}. */
+    static WatchPartyPeer lead(InetSocketAddress bindAddress, int partyCode, Clock clock) throws IOException {
+        return new WatchPartyPeer(true, bindAddress, null, partyCode, clock);
+    }
+
+    /** Se une a la fiesta del líder en {@code leaderAddress} desde un puerto efímero. */
+    static WatchPartyPeer follow(InetSocketAddress leaderAddress, int partyCode, Clock clock) throws IOException {
+        return new WatchPartyPeer(false, new InetSocketAddress(0), leaderAddress, partyCode, clock);
+    }
+
+    /**
+     * Dirección IPv4 privada de este equipo (la del Wi-Fi si hay varias) para invitar
+     * a los seguidores, o null sin red local.
+     */
+    static InetAddress lanAddress() {
+        InetAddress found = null;
+        try {
+            Enumeration<NetworkInterface> networks = NetworkInterface.getNetworkInterfaces();
+            if (networks == null) {
+                return null;
+            }
+            for (NetworkInterface network : Collections.list(networks)) {
+                if (!network.isUp() || network.isLoopback() || network.isVirtual()) {
+                    continue;
+                }
+                for (InetAddress address : Collections.list(network.getInetAddresses())) {
+                    if (!(address instanceof Inet4Address) || !address.isSiteLocalAddress()) {
+                        continue;
+                    }
+                    if (network.getName().startsWith("wlan")) {
+                        return address;
+                    }
+                    if (found == null) {
+                        found = address;
+                    }
+                }
+            }
+        } catch (SocketException e) {
+            // Sin acceso a las interfaces: no hay a quién invitar
+        }
+        return found;
+    }
+
+    boolean isLeader() {
+        return leader;
+    }
+
+    int partyCode() {
+        return partyCode;
+    }
+
+    int localPort() {
+        return channel.socket().getLocalPort();
+    }
+
+    /** Solo el líder: la reproducción cambió (o sigue igual y se refresca). */
+    void update(double positionMs, boolean playing, double rate) {
+        if (!leader) {
+            throw new IllegalStateException("Solo el líder marca la reproducción");
+        }
+        synchronized (this) {
+            long sequence = state != null ? state.sequence + 1 : 1;
+            state = new PlaybackState(sequence, clock.nanos(), positionMs, rate, playing);
+            stateDirty = true;
+        }
+        // El envío se hace en el hilo de red (Android no deja usar la red en el principal)
+        selector.wakeup();
+    }
+
+    /** Seguidores que dieron señales en los últimos {@link #FOLLOWER_TIMEOUT_MS}. */
+    synchronized int followers() {
+        return followers.size();
+    }
+
+    /** Último estado del líder, o null si aún no llegó ninguno. */
+    synchronized PlaybackState state() {
+        return state;
+    }
+
+    /** Diferencia con el reloj del líder, o null si aún no hubo respuesta. */
+    ClockOffsetEstimator.Estimate clockEstimate() {
+        return estimator.estimate();
+    }
+
+    /**
+     * Posición que debería tener ahora este equipo, o null si faltan el estado del líder
+     * o la sincronía de reloj. En el líder es su propia posición extrapolada.
+     */
+    Expectation expected() {
+        PlaybackState current = state();
+        if (leader) {
+            return current == null ? null
+                    : new Expectation(current.positionAt(clock.nanos()), current.rate, current.playing, null);
+        }
+        ClockOffsetEstimator.Estimate estimate = estimator.estimate();
+        if (current == null || estimate == null) {
+            return null;
+        }
+        long leaderNow = clock.nanos() + estimate.offsetNanos;
+        return new Expectation(current.positionAt(leaderNow), current.rate, current.playing, estimate);
+    }
+
+    /** Sale de la fiesta (el seguidor avisa con {@code LEAVE}) y cierra el socket. */
+    @Override
+    public void close() {
+        if (closing) {
+            return;
+        }
+        closing = true;
+        try {
+            selector.wakeup();
+        } catch (ClosedSelectorException ignored) {
+        }
+        try {
+            thread.join(CLOSE_WAIT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void loop() {
+        ByteBuffer in = ByteBuffer.allocate(MAX_PACKET);
+        try {
+            while (!closing) {
+                selector.select(TICK_MS);
+                selector.selectedKeys().clear();
+                while (true) {
+                    in.clear();
+                    SocketAddress from = channel.receive(in);
+                    long received = clock.nanos();
+                    if (from == null) {
+                        break;
+                    }
+                    in.flip();
+                    try {
+                        handle(in, from, received);
+                    } catch (BufferUnderflowException e) {
+                        // Paquete truncado: se ignora como uno ajeno
+                    }
+                }
+                if (leader) {
+                    leaderTick(clock.nanos());
+                } else {
+                    followerTick(clock.nanos());
+                }
+            }
+            if (!leader) {
+                send(begin(LEAVE), leaderAddress);
+            }
+        } catch (IOException ignored) {
+            // Red caída o socket cerrado: el par deja de sincronizar
+        } catch (ClosedSelectorException ignored) {
+        } finally {
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void handle(ByteBuffer in, SocketAddress from, long received) {
+        if (in.remaining() < 10 || in.getInt() != MAGIC || in.get() != VERSION) {
+            return;
+        }
+        byte type = in.get();
+        if (in.getInt() != partyCode) {
+            return;
+        }
+        if (leader) {
+            switch (type) {
+                case PING:
+                    long t0 = in.getLong();
+                    seen(from, received, false);
+                    ByteBuffer pong = begin(PONG);
+                    pong.putLong(t0).putLong(received);
+                    // t2 lo más tarde posible, justo antes de enviar
+                    pong.putLong(clock.nanos());
+                    send(pong, from);
+                    break;
+                case JOIN:
+                    seen(from, received, true);
+                    break;
+                case LEAVE:
+                    synchronized (this) {
+                        followers.remove(from);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            return;
+        }
+        if (!from.equals(leaderAddress)) {
+            return;
+        }
+        switch (type) {
+            case PONG:
+                estimator.add(in.getLong(), in.getLong(), in.getLong(), received);
+                break;
+            case STATE:
+                PlaybackState incoming = new PlaybackState(in.getLong(), in.getLong(), in.getDouble(),
+                        in.getDouble(), in.get() != 0);
+                lastStateReceived = received;
+                synchronized (this) {
+                    // Los reenvíos periódicos repiten la secuencia; uno viejo que llega tarde se descarta
+                    if (state == null || incoming.sequence >= state.sequence) {
+                        state = incoming;
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Solo el líder
+    private void seen(SocketAddress from, long now, boolean join) {
+        synchronized (this) {
+            boolean known = followers.containsKey(from);
+            if (!known && !join) {
+                return;
+            }
+            followers.put(from, now);
+            if (!known) {
+                // El recién llegado recibe el estado sin esperar al siguiente envío
+                stateDirty = true;
+            }
+        }
+    }
+
+    private void leaderTick(long now) {
+        PlaybackState current;
+        SocketAddress[] targets;
+        synchronized (this) {
+            Iterator<Long> lastSeen = followers.values().iterator();
+            while (lastSeen.hasNext()) {
+                if (due(lastSeen.next(), now, FOLLOWER_TIMEOUT_MS)) {
+                    lastSeen.remove();
+                }
+            }
+            current = state;
+            if (current == null || followers.isEmpty()
+                    || (!stateDirty && !due(lastStateSent, now, STATE_INTERVAL_MS))) {
+                return;
+            }
+            stateDirty = false;
+            targets = followers.keySet().toArray(new SocketAddress[0]);
+        }
+        lastStateSent = now;
+        for (SocketAddress target : targets) {
+            ByteBuffer packet = begin(STATE);
+            packet.putLong(current.sequence).putLong(current.clockNanos).putDouble(current.positionMs)
+                    .putDouble(current.rate).put((byte) (current.playing ? 1 : 0));
+            send(packet, target);
+        }
+    }
+
+    private void followerTick(long now) {
+        if (due(lastJoinSent, now, JOIN_RETRY_MS) && due(lastStateReceived, now, JOIN_RETRY_MS)) {
+            lastJoinSent = now;
+            send(begin(JOIN), leaderAddress);
+        }
+        ClockOffsetEstimator.Estimate estimate = estimator.estimate();
+        long interval = estimate == null || estimate.samples < ClockOffsetEstimator.WINDOW
+                ? SYNC_BURST_INTERVAL_MS : PING_INTERVAL_MS;
+        if (due(lastPingSent, now, interval)) {
+            lastPingSent = now;
+            ByteBuffer ping = begin(PING);
+            ping.putLong(clock.nanos());
+            send(ping, leaderAddress);
+        }
+    }
+
+    private ByteBuffer begin(byte type) {
+        out.clear();
+        return out.putInt(MAGIC).put((byte) VERSION).put(type).putInt(partyCode);
+    }
+
+    private void send(ByteBuffer packet, SocketAddress target) {
+        packet.flip();
+        try {
+            channel.send(packet, target);
+        } catch (IOException e) {
+            // Un envío fallido (Wi-Fi que se corta) se recupera con el siguiente
+        }
+    }
+
+    private static boolean due(long last, long now, long intervalMs) {
+        return last == NEVER || now - last >= intervalMs * 1000000L;
+    }
+}
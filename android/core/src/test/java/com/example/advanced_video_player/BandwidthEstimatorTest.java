@@ -0,0 +1,57 @@
+package com.example.advanced_video_player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BandwidthEstimatorTest {
+    private static final long MS = 1000000L;
+
+    @Test
+    public void smallTransfersAreDiscarded() {
+        BandwidthEstimator estimator = new BandwidthEstimator();
+        assertEquals(-1, estimator.estimate(0));
+        // Una playlist de 4 KB mide sobre todo la latencia
+        assertFalse(estimator.record(4 * 1024, 50 * MS, 0));
+        assertFalse(estimator.record(1024 * 1024, 0, 0));
+        assertEquals(-1, estimator.estimate(0));
+        assertEquals(2L, estimator.snapshot().get("discarded"));
+
+        // 1 MB en 1 s: 8 Mbps
+        assertTrue(estimator.record(1000000, 1000 * MS, 0));
+        assertEquals(8000000, estimator.estimate(0));
+    }
+
+    @Test
+    public void weightedMedianUsesSquareRootOfBytes() {
+        BandwidthEstimator estimator = new BandwidthEstimator();
+        // Tres descargas de 100 KB a 1 Mbps y una de 400 KB a 16 Mbps. Por bytes ganaría
+        // la grande (400 KB frente a 300 KB); con la raíz pesa 632 frente a 948
+        for (int i = 0; i < 3; i++) {
+            estimator.record(100000, 800 * MS, 0);
+        }
+        estimator.record(400000, 200 * MS, 0);
+        assertEquals(1000000, estimator.estimate(0));
+
+        estimator.record(400000, 200 * MS, 0);
+        assertEquals(16000000, estimator.estimate(0));
+    }
+
+    @Test
+    public void oldSamplesExpireAndTheWindowSlides() {
+        BandwidthEstimator estimator = new BandwidthEstimator();
+        estimator.record(100000, 100 * MS, 0);
+        assertEquals(8000000, estimator.estimate(BandwidthEstimator.MAX_AGE_MS));
+        assertEquals(-1, estimator.estimate(BandwidthEstimator.MAX_AGE_MS + 1));
+
+        // La red cambió: las muestras nuevas desplazan a las viejas
+        for (int i = 0; i < BandwidthEstimator.MAX_SAMPLES; i++) {
+            estimator.record(100000, 800 * MS, 1000);
+        }
+        assertEquals(1000000, estimator.estimate(1000));
+        estimator.reset();
+        assertEquals(-1, estimator.estimate(1000));
+    }
+}
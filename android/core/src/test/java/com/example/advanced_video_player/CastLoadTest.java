@@ -0,0 +1,212 @@
+package com.example.advanced_video_player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Pruebas de carga del núcleo de Cast sobre {@link SimulatedCastEnvironment}.
+ *
+ * Las rutas y sesiones simuladas se conectan a las mismas piezas que usan
+ * {@code CastHub} y el plugin: {@link DeviceCatalog} para {@code discoverDevices},
+ * {@link RouteEventBatcher} para los eventos hacia Dart, {@link CastSessionState} y
+ * {@link SessionWaiter} para conectar. Cada test imprime latencia de descubrimiento,
+ * CPU por evento de ruta y memoria reservada; las aserciones fijan lo que no debe
+ * crecer con la red.
+ */
+public class CastLoadTest {
+    // Como en el plugin
+    private static final long ROUTE_BATCH_WINDOW_MS = 250;
+    private static final long SESSION_POLL_INTERVAL_MS = 100;
+    private static final long SESSION_WAIT_MS = 3000;
+    private static final long MEDIA_CLIENT_WAIT_MS = 8000;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /** El plugin simulado: catálogo y lotes de eventos, como en CastHub y MediaRouterCallback. */
+    private static final class Harness implements SimulatedCastEnvironment.RouteListener, RouteEventBatcher.Sink {
+        final VirtualClock clock = new VirtualClock();
+        final SimulatedCastEnvironment env;
+        final DeviceCatalog<SimulatedCastEnvironment.Route> catalog =
+                new DeviceCatalog<>(SimulatedCastEnvironment.READER, "load.catalog");
+        final RouteEventBatcher batcher = new RouteEventBatcher(clock, ROUTE_BATCH_WINDOW_MS, this);
+        long routeEventCpuNanos;
+        long routeEventAllocatedBytes;
+        long eventsToDart;
+        long callsToDart;
+
+        Harness(long seed) {
+            env = new SimulatedCastEnvironment(clock, seed);
+            env.addRouteListener(this);
+        }
+
+        @Override
+        public void onRouteEvent(String event, SimulatedCastEnvironment.Route route) {
+            long cpu = cpuNanos();
+            long allocated = allocatedBytes();
+            if (!RouteEventBatcher.ADDED.equals(event)) {
+                catalog.forget(route.id);
+            }
+            batcher.offer(event, route.id, route.name);
+            routeEventCpuNanos += cpuNanos() - cpu;
+            routeEventAllocatedBytes += allocatedBytes() - allocated;
+        }
+
+        @Override
+        public void deliver(List<Map<String, Object>> events) {
+            callsToDart++;
+            eventsToDart += events.size();
+        }
+    }
+
+    @Test
+    public void discoveryStaysFlatWithManyChurningRoutes() {
+        Harness harness = new Harness(1);
+        harness.env.routes = 200;
+        harness.env.churnPerSecond = 20;
+        harness.env.start();
+
+        int seconds = 60;
+        long[] latencies = new long[seconds];
+        long discoveryAllocated = 0;
+        int found = 0;
+        for (int second = 0; second < seconds; second++) {
+            harness.clock.advance(1000);
+            // Dart vuelve a pedir la lista una vez por segundo
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            List<Map<String, Object>> devices = harness.catalog.describe(harness.env.getRoutes());
+            latencies[second] = System.nanoTime() - start;
+            discoveryAllocated += allocatedBytes() - allocated;
+            found = devices.size();
+            assertEquals(harness.env.availableRoutes(), found);
+            assertTrue("caché " + harness.catalog.size(), harness.catalog.size() <= found);
+        }
+        long events = harness.env.routeEvents();
+        Arrays.sort(latencies);
+        System.out.println(String.format(Locale.US,
+                "200 rutas, 20 cambios/s, %d s: descubrimiento p50 %d µs, p99 %d µs, %d B/búsqueda; "
+                        + "%d eventos de ruta, %.1f µs CPU y %d B por evento; %d llamadas a Dart con %d eventos",
+                seconds, latencies[seconds / 2] / 1000, latencies[seconds * 99 / 100] / 1000,
+                discoveryAllocated / seconds, events, harness.routeEventCpuNanos / 1000.0 / events,
+                harness.routeEventAllocatedBytes / events, harness.callsToDart, harness.eventsToDart));
+
+        // Una llamada a Dart por ventana como mucho, en lugar de una por evento
+        assertTrue(harness.callsToDart <= seconds * 1000 / ROUTE_BATCH_WINDOW_MS + 1);
+        assertTrue(harness.callsToDart < events / 2);
+        assertTrue(harness.eventsToDart + harness.batcher.pending() <= events);
+        assertEquals(events, harness.batcher.offered());
+    }
+
+    @Test
+    public void catalogDoesNotGrowWhenRoutesVanishSilently() {
+        Harness harness = new Harness(2);
+        harness.env.routes = 50;
+        harness.env.churnPerSecond = 100;
+        // La mitad de los receptores se van sin evento (Wi-Fi que se corta)
+        harness.env.silentLossRate = 0.5;
+        harness.env.start();
+
+        int maxCatalog = 0;
+        for (int second = 0; second < 120; second++) {
+            harness.clock.advance(1000);
+            harness.catalog.describe(harness.env.getRoutes());
+            maxCatalog = Math.max(maxCatalog, harness.catalog.size());
+        }
+        System.out.println(String.format(Locale.US,
+                "50 rutas, 100 cambios/s, 120 s: %d eventos, caché máxima %d entradas, %d llamadas a Dart",
+                harness.env.routeEvents(), maxCatalog, harness.callsToDart));
+
+        assertTrue("caché " + maxCatalog, maxCatalog <= harness.env.routes);
+        assertTrue(harness.batcher.pending() <= harness.env.routes * 2);
+        // Las tareas del reloj no se acumulan: churn y, como mucho, una ventana
+        assertTrue(harness.clock.pending() <= 2);
+    }
+
+    @Test
+    public void sessionsSurviveFailuresAndLatency() throws InterruptedException {
+        VirtualClock clock = new VirtualClock();
+        final SimulatedCastEnvironment env = new SimulatedCastEnvironment(clock, 3);
+        env.routes = 10;
+        env.sessionFailureRate = 0.25;
+        env.sessionLatencyMinMs = 100;
+        env.sessionLatencyMaxMs = 2500;
+        env.mediaClientLatencyMinMs = 200;
+        env.mediaClientLatencyMaxMs = 3000;
+        final CastSessionState state = new CastSessionState();
+        env.addSessionListener(new SimulatedCastEnvironment.SessionListener() {
+            @Override
+            public void onSessionEvent(String event, String sessionId) {
+                state.on(event, sessionId);
+            }
+        });
+        env.start();
+
+        SessionWaiter waiter = new SessionWaiter(clock, SESSION_POLL_INTERVAL_MS);
+        int attempts = 300;
+        int connected = 0;
+        int noSession = 0;
+        long[] connectMs = new long[attempts];
+        for (int i = 0; i < attempts; i++) {
+            long start = clock.now();
+            env.startSession("route-" + (i % env.routes));
+            // Como awaitRemoteMediaClient: primero la sesión, luego el cliente
+            String session = waiter.await(new SessionWaiter.Probe<String>() {
+                @Override
+                public String poll() {
+                    return env.currentSession();
+                }
+            }, waiter.attemptsFor(SESSION_WAIT_MS));
+            if (session == null) {
+                noSession++;
+                // Deja terminar el intento fallido antes del siguiente
+                clock.advance(env.sessionLatencyMaxMs);
+                continue;
+            }
+            Object client = waiter.await(new SessionWaiter.Probe<Object>() {
+                @Override
+                public Object poll() {
+                    return env.remoteMediaClient();
+                }
+            }, waiter.attemptsFor(MEDIA_CLIENT_WAIT_MS));
+            assertTrue(client != null);
+            assertTrue(state.isActive());
+            assertEquals(session, state.sessionId());
+            connectMs[connected++] = clock.now() - start;
+            env.endSession();
+        }
+
+        long[] sorted = Arrays.copyOf(connectMs, connected);
+        Arrays.sort(sorted);
+        System.out.println(String.format(Locale.US,
+                "%d conexiones, 25%% fallos: %d conectadas, %d sin sesión; hasta el cliente p50 %d ms, p99 %d ms",
+                attempts, connected, noSession, sorted[connected / 2], sorted[connected * 99 / 100]));
+
+        assertEquals(attempts, connected + noSession);
+        assertTrue(noSession > attempts / 8 && noSession < attempts / 2);
+        assertEquals(0, state.unexpected());
+        assertEquals(CastSessionState.IDLE, state.state());
+        // Latencia de sesión + cliente, redondeada al intervalo de sondeo
+        assertTrue(sorted[connected - 1] <= env.sessionLatencyMaxMs + env.mediaClientLatencyMaxMs
+                + 2 * SESSION_POLL_INTERVAL_MS);
+    }
+
+    private static long cpuNanos() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+}
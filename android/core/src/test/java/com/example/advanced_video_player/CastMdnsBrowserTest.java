@@ -0,0 +1,116 @@
+package com.example.advanced_video_player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class CastMdnsBrowserTest {
+    private FakeMdnsResponder responder;
+    private CastMdnsBrowser browser;
+    private final BlockingQueue<Map<String, Object>> found = new LinkedBlockingQueue<>();
+    private final BlockingQueue<String> lost = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() throws IOException {
+        responder = new FakeMdnsResponder();
+        browser = new CastMdnsBrowser(responder.address(),
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                new CastMdnsBrowser.Listener() {
+                    @Override
+                    public void onDeviceFound(Map<String, Object> device) {
+                        found.add(device);
+                    }
+
+                    @Override
+                    public void onDeviceLost(String id) {
+                        lost.add(id);
+                    }
+                });
+    }
+
+    @After
+    public void tearDown() {
+        browser.stop();
+        responder.close();
+    }
+
+    @Test
+    public void resolvesDeviceWithCapabilities() throws Exception {
+        responder.announce("Chromecast-Ultra-abc", "abc", "Salón", "Chromecast Ultra", 5);
+        browser.start();
+
+        Map<String, Object> device = found.poll(5, TimeUnit.SECONDS);
+        if (device == null) {
+            fail("No se resolvió el dispositivo");
+        }
+        assertEquals("mdns:abc", device.get("id"));
+        assertEquals("Salón", device.get("name"));
+        assertEquals("chromecast", device.get("type"));
+        assertEquals("192.168.1.42", device.get("ipAddress"));
+        assertEquals(8009, device.get("servicePort"));
+        assertEquals("tv", device.get("deviceType"));
+        assertEquals(Boolean.TRUE, device.get("supports4k"));
+        Map<?, ?> capabilities = (Map<?, ?>) device.get("capabilities");
+        assertEquals(Boolean.TRUE, capabilities.get("videoOut"));
+        assertEquals(Boolean.FALSE, capabilities.get("multizoneGroup"));
+        assertEquals(1, browser.devices().size());
+    }
+
+    @Test
+    public void repeatedAnswersDoNotRepublish() throws Exception {
+        responder.announce("Speaker-1", "s1", "Cocina", "Google Home", 4);
+        browser.start();
+        assertTrue(found.poll(5, TimeUnit.SECONDS) != null);
+
+        browser.requery();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (responder.queries() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Thread.sleep(200);
+        assertTrue(found.isEmpty());
+        assertEquals("speaker", browser.devices().get(0).get("deviceType"));
+    }
+
+    @Test
+    public void expiresRecordsWhenTtlRunsOut() throws Exception {
+        responder.announce("Chromecast-1", "c1", "Dormitorio", "Chromecast", 5);
+        responder.setTtl(1);
+        browser.start();
+        assertTrue(found.poll(5, TimeUnit.SECONDS) != null);
+
+        // El receptor se apaga sin despedirse: el registro caduca por TTL
+        responder.setSilent(true);
+        assertEquals("mdns:c1", lost.poll(5, TimeUnit.SECONDS));
+        assertTrue(browser.devices().isEmpty());
+    }
+
+    @Test
+    public void goodbyeRemovesDeviceImmediately() throws Exception {
+        responder.announce("Chromecast-2", "c2", "Estudio", "Chromecast", 5);
+        browser.start();
+        assertTrue(found.poll(5, TimeUnit.SECONDS) != null);
+
+        responder.setTtl(0);
+        browser.requery();
+        assertEquals("mdns:c2", lost.poll(2, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedPackets() throws IOException {
+        byte[] packet = {0, 0, (byte) 0x84, 0, 0, 0, 0, 1, 0, 0, 0, 0, 5, 'a'};
+        MdnsMessage.parse(packet, packet.length);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.advanced_video_player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CastSessionStateTest {
+    @Test
+    public void followsStartSuspendResumeEnd() {
+        CastSessionState state = new CastSessionState();
+
+        assertEquals(CastSessionState.STARTING, state.on(CastSessionState.EVENT_STARTING, null));
+        assertEquals(CastSessionState.ACTIVE, state.on(CastSessionState.EVENT_STARTED, "s1"));
+        assertTrue(state.isActive());
+        assertEquals("s1", state.sessionId());
+        assertEquals(CastSessionState.SUSPENDED, state.on(CastSessionState.EVENT_SUSPENDED, null));
+        assertEquals(CastSessionState.RESUMING, state.on(CastSessionState.EVENT_RESUMING, "s1"));
+        assertEquals(CastSessionState.ACTIVE, state.on(CastSessionState.EVENT_RESUMED, null));
+        assertEquals("s1", state.sessionId());
+        assertEquals(CastSessionState.ENDING, state.on(CastSessionState.EVENT_ENDING, null));
+        assertEquals(CastSessionState.IDLE, state.on(CastSessionState.EVENT_ENDED, null));
+        assertNull(state.sessionId());
+        assertEquals(0, state.unexpected());
+        assertEquals(7, state.transitions());
+    }
+
+    @Test
+    public void acceptsStartedWithoutStarting() {
+        CastSessionState state = new CastSessionState();
+
+        assertEquals(CastSessionState.ACTIVE, state.on(CastSessionState.EVENT_STARTED, "s2"));
+        assertEquals(0, state.unexpected());
+    }
+
+    @Test
+    public void failedStartAndResumeReturnToIdle() {
+        CastSessionState state = new CastSessionState();
+        state.on(CastSessionState.EVENT_STARTING, null);
+        assertEquals(CastSessionState.IDLE, state.on(CastSessionState.EVENT_START_FAILED, null));
+
+        state.on(CastSessionState.EVENT_RESUMING, "s3");
+        assertEquals(CastSessionState.IDLE, state.on(CastSessionState.EVENT_RESUME_FAILED, null));
+        assertFalse(state.isActive());
+    }
+
+    @Test
+    public void ignoresEventsThatDoNotFitTheState() {
+        CastSessionState state = new CastSessionState();
+
+        assertEquals(CastSessionState.IDLE, state.on(CastSessionState.EVENT_SUSPENDED, null));
+        assertEquals(CastSessionState.IDLE, state.on("unknown", null));
+        state.on(CastSessionState.EVENT_STARTED, "s4");
+        state.on(CastSessionState.EVENT_ENDING, null);
+        assertEquals(CastSessionState.ENDING, state.on(CastSessionState.EVENT_RESUMED, null));
+
+        assertEquals(3, state.unexpected());
+        assertEquals("ending", state.stateName());
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.advanced_video_player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class ClockOffsetEstimatorTest {
+    private static final long MS = 1000000L;
+
+    /** Intercambio con el reloj remoto {@code offset} por delante y trayectos dados. */
+    private static boolean exchange(ClockOffsetEstimator estimator, long t0, long offset, long upNanos,
+                                    long processingNanos, long downNanos) {
+        long t1 = t0 + upNanos + offset;
+        long t2 = t1 + processingNanos;
+        long t3 = t2 - offset + downNanos;
+        return estimator.add(t0, t1, t2, t3);
+    }
+
+    @Test
+    public void symmetricPathGivesTheExactOffset() {
+        ClockOffsetEstimator estimator = new ClockOffsetEstimator();
+        assertNull(estimator.estimate());
+        // Relojes de equipos distintos: cada uno cuenta desde su arranque
+        long offset = 123_456_789_000L;
+        assertTrue(exchange(estimator, 5_000 * MS, offset, 2 * MS, MS / 10, 2 * MS));
+        ClockOffsetEstimator.Estimate estimate = estimator.estimate();
+        assertEquals(offset, estimate.offsetNanos);
+        assertEquals(4 * MS, estimate.delayNanos);
+        assertEquals(0, estimate.jitterNanos);
+        assertEquals(1, estimate.samples);
+    }
+
+    @Test
+    public void keepsTheSampleWithTheShortestRoundTrip() {
+        ClockOffsetEstimator estimator = new ClockOffsetEstimator();
+        long offset = -7_000 * MS;
+        Random random = new Random(4);
+        long t0 = 0;
+        // Wi-Fi con colas: la vuelta a veces tarda mucho más que la ida
+        for (int i = 0; i < 40; i++) {
+            long up = MS + random.nextInt(3) * MS;
+            long down = MS + (random.nextInt(4) == 0 ? 30 * MS + random.nextInt(20) * MS : random.nextInt(3) * MS);
+            exchange(estimator, t0, offset, up, MS / 5, down);
+            t0 += 1000 * MS;
+        }
+        ClockOffsetEstimator.Estimate estimate = estimator.estimate();
+        assertEquals(ClockOffsetEstimator.WINDOW, estimate.samples);
+        assertTrue(estimate.toString(), Math.abs(estimate.offsetNanos - offset) <= estimate.delayNanos / 2);
+        assertTrue(estimate.toString(), Math.abs(estimate.offsetNanos - offset) < 2 * MS);
+        assertTrue(estimate.jitterNanos > 0);
+        assertTrue(estimate.errorBoundNanos() >= Math.abs(estimate.offsetNanos - offset));
+    }
+
+    @Test
+    public void rejectsInconsistentTimestamps() {
+        ClockOffsetEstimator estimator = new ClockOffsetEstimator();
+        // Respuesta antes que la consulta
+        assertFalse(estimator.add(10 * MS, 50 * MS, 51 * MS, 9 * MS));
+        // Más tiempo en el otro equipo que en el viaje completo
+        assertFalse(estimator.add(0, 50 * MS, 60 * MS, 5 * MS));
+        assertNull(estimator.estimate());
+
+        assertTrue(estimator.add(0, 50 * MS, 51 * MS, 3 * MS));
+        estimator.reset();
+        assertNull(estimator.estimate());
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.advanced_video_player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ContentTypesTest {
+    @Test
+    public void classifiesByPathExtension() {
+        assertEquals(ContentTypes.HLS, ContentTypes.forUrl("https://cdn.example.com/live/master.m3u8"));
+        assertEquals(ContentTypes.DASH, ContentTypes.forUrl("https://cdn.example.com/vod/manifest.MPD"));
+        assertEquals(ContentTypes.MP4, ContentTypes.forUrl("https://cdn.example.com/clip.mp4?token=abc"));
+        assertEquals(ContentTypes.WEBM, ContentTypes.forUrl("https://cdn.example.com/clip.webm#t=10"));
+        assertEquals(ContentTypes.MATROSKA, ContentTypes.forUrl("http://192.168.1.5/movie.mkv"));
+    }
+
+    @Test
+    public void pathExtensionWinsOverQuery() {
+        assertEquals(ContentTypes.MP4, ContentTypes.forUrl("https://cdn.example.com/clip.mp4?fallback=master.m3u8"));
+    }
+
+    @Test
+    public void fallsBackToExtensionAnywhereInUrl() {
+        // Como antes: URLs firmadas con el formato en la query
+        assertEquals(ContentTypes.HLS, ContentTypes.forUrl("https://cdn.example.com/play?file=index.m3u8&sig=1"));
+        assertEquals(ContentTypes.MP4, ContentTypes.forUrl("https://cdn.example.com/stream/12345"));
+        assertEquals(ContentTypes.MP4, ContentTypes.forUrl(null));
+    }
+
+    @Test
+    public void detectsAdaptiveStreams() {
+        assertTrue(ContentTypes.isAdaptive("https://cdn.example.com/master.m3u8"));
+        assertTrue(ContentTypes.isAdaptive("https://cdn.example.com/manifest.mpd"));
+        assertFalse(ContentTypes.isAdaptive("https://cdn.example.com/clip.mp4"));
+    }
+}
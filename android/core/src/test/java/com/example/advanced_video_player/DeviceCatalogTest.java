@@ -0,0 +1,96 @@
+package com.example.advanced_video_player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class DeviceCatalogTest {
+    /** Ruta de prueba. */
+    private static final class Route {
+        final String id;
+        String name;
+        boolean available = true;
+
+        Route(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    private final Map<String, Integer> extractions = new HashMap<>();
+
+    private final DeviceCatalog<Route> catalog = new DeviceCatalog<>(new DeviceCatalog.RouteReader<Route>() {
+        @Override
+        public String id(Route route) {
+            return route.id;
+        }
+
+        @Override
+        public String name(Route route) {
+            return route.name;
+        }
+
+        @Override
+        public boolean isAvailable(Route route) {
+            return route.available;
+        }
+
+        @Override
+        public Map<String, Object> extract(Route route) {
+            Integer count = extractions.get(route.id);
+            extractions.put(route.id, count == null ? 1 : count + 1);
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("id", route.id);
+            entry.put("modelName", "Chromecast");
+            return entry;
+        }
+    }, "test.catalog");
+
+    @Test
+    public void extractsEachRouteOnce() {
+        Route tv = new Route("tv", "Salón");
+        Route speaker = new Route("speaker", "Cocina");
+        List<Route> routes = Arrays.asList(tv, speaker);
+
+        catalog.describe(routes);
+        tv.name = "Salón (renombrado)";
+        List<Map<String, Object>> devices = catalog.describe(routes);
+
+        assertEquals(Integer.valueOf(1), extractions.get("tv"));
+        assertEquals(Integer.valueOf(1), extractions.get("speaker"));
+        assertEquals("Salón (renombrado)", devices.get(0).get("name"));
+        assertEquals(false, devices.get(0).get("isConnected"));
+        assertEquals(2, catalog.size());
+    }
+
+    @Test
+    public void skipsUnavailableRoutesAndReturnsCopies() {
+        Route tv = new Route("tv", "Salón");
+        Route busy = new Route("busy", "Dormitorio");
+        busy.available = false;
+
+        List<Map<String, Object>> first = catalog.describe(Arrays.asList(tv, busy));
+        first.get(0).put("modelName", "modificado");
+        List<Map<String, Object>> second = catalog.describe(Arrays.asList(tv, busy));
+
+        assertEquals(1, second.size());
+        assertEquals("Chromecast", second.get(0).get("modelName"));
+        assertNotSame(first.get(0), second.get(0));
+    }
+
+    @Test
+    public void forgetExtractsAgain() {
+        Route tv = new Route("tv", "Salón");
+        catalog.describe(Arrays.asList(tv));
+        catalog.forget("tv");
+        catalog.describe(Arrays.asList(tv));
+
+        assertEquals(Integer.valueOf(2), extractions.get("tv"));
+    }
+}
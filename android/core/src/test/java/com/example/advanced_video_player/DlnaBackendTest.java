@@ -0,0 +1,227 @@
+package com.example.advanced_video_player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class DlnaBackendTest {
+    private static final int PLAYER = 1;
+
+    private FakeUpnpRenderer renderer;
+    private DlnaBackend backend;
+
+    /** Respuesta de una operación del backend. */
+    private static final class Reply implements RendererBackend.Callback {
+        // La cola no admite null
+        private static final Object NULL = new Object();
+
+        final BlockingQueue<Object> values = new LinkedBlockingQueue<>();
+
+        @Override
+        public void success(Object value) {
+            values.add(value != null ? value : NULL);
+        }
+
+        @Override
+        public void error(String code, String message) {
+            values.add("error:" + code + ":" + message);
+        }
+
+        Object await() throws InterruptedException {
+            Object value = values.poll(5, TimeUnit.SECONDS);
+            assertNotNull("Sin respuesta del backend", value);
+            return value != NULL ? value : null;
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        renderer = new FakeUpnpRenderer();
+        backend = new DlnaBackend(new SsdpSearch(renderer.ssdpAddress(),
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0)), 300, 2000);
+    }
+
+    @After
+    public void tearDown() {
+        backend.close();
+        renderer.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> discover() throws InterruptedException {
+        Reply reply = new Reply();
+        backend.discover(PLAYER, reply);
+        return (List<Map<String, Object>>) reply.await();
+    }
+
+    private void connect() throws InterruptedException {
+        Reply reply = new Reply();
+        backend.connect(PLAYER, DlnaBackend.ID_PREFIX + FakeUpnpRenderer.UDN, "Televisor", 0, reply);
+        assertEquals(true, reply.await());
+    }
+
+    @Test
+    public void discoversRendererFromSsdpAndDescription() throws Exception {
+        List<Map<String, Object>> devices = discover();
+
+        assertEquals(1, devices.size());
+        Map<String, Object> device = devices.get(0);
+        assertEquals("dlna:" + FakeUpnpRenderer.UDN, device.get("id"));
+        assertEquals("Televisor del salón", device.get("name"));
+        assertEquals("dlna", device.get("type"));
+        assertEquals("ssdp", device.get("source"));
+        assertEquals("Renderer 1", device.get("modelName"));
+        assertEquals(true, device.get("volumeControl"));
+        assertTrue(backend.owns((String) device.get("id")));
+    }
+
+    @Test
+    public void repeatedSearchesReuseCachedDescription() throws Exception {
+        discover();
+        discover();
+        discover();
+
+        assertEquals(1, renderer.descriptionRequests());
+        assertEquals(1, backend.descriptionDownloads());
+    }
+
+    @Test
+    public void trimMemoryDropsDescriptionsAndReportsUse() throws Exception {
+        discover();
+        assertTrue(backend.trimMemory(TrimPolicy.TIER_CACHES));
+        discover();
+        assertEquals(2, renderer.descriptionRequests());
+
+        // Con un renderizador elegido no se puede cerrar, pero se sigue conectando
+        connect();
+        assertEquals(false, backend.trimMemory(TrimPolicy.TIER_SESSIONS));
+        Reply reply = new Reply();
+        backend.control(PLAYER, "pause", null, reply);
+        assertEquals(true, reply.await());
+    }
+
+    @Test
+    public void shareAndControlSendAvTransportActionsOverOneConnection() throws Exception {
+        discover();
+        connect();
+
+        Map<String, Object> video = new HashMap<>();
+        video.put("videoUrl", "https://example.com/video.m3u8?a=1&b=2");
+        video.put("title", "Episodio <1>");
+        Reply share = new Reply();
+        backend.share(PLAYER, video, 0, share);
+        assertEquals(true, share.await());
+
+        for (String action : Arrays.asList("pause", "play", "seek", "stop")) {
+            Reply reply = new Reply();
+            backend.control(PLAYER, action, 125.0, reply);
+            assertEquals(true, reply.await());
+        }
+
+        assertEquals(Arrays.asList("SetAVTransportURI", "Play", "Pause", "Play", "Seek", "Stop"), renderer.actions());
+        assertTrue(renderer.body(4).contains("<Target>0:02:05</Target>"));
+        assertEquals(1, renderer.controlConnections());
+    }
+
+    @Test
+    public void shareStartsAtTheLocalPositionAndReportsTheRemoteOne() throws Exception {
+        discover();
+        connect();
+        Reply none = new Reply();
+        backend.position(PLAYER + 1, none);
+        assertNull(none.await());
+
+        Map<String, Object> video = new HashMap<>();
+        video.put("videoUrl", "https://example.com/video.mp4");
+        video.put("title", "Episodio");
+        video.put("positionMs", 754_300L);
+        Reply share = new Reply();
+        backend.share(PLAYER, video, 0, share);
+        assertEquals(true, share.await());
+        assertEquals(Arrays.asList("SetAVTransportURI", "Play", "Seek"), renderer.actions());
+        assertTrue(renderer.body(2).contains("<Target>0:12:34</Target>"));
+
+        Reply position = new Reply();
+        backend.position(PLAYER, position);
+        Map<?, ?> remote = (Map<?, ?>) position.await();
+        assertEquals(754_000L, remote.get("positionMs"));
+        assertEquals(true, remote.get("playing"));
+    }
+
+    @Test
+    public void parsesRelTime() {
+        assertEquals(3723.5, AvTransportClient.seconds("1:02:03.500"), 1e-9);
+        assertEquals(-1, AvTransportClient.seconds("NOT_IMPLEMENTED"), 0);
+        assertEquals(-1, AvTransportClient.seconds(null), 0);
+    }
+
+    @Test
+    public void setUriEscapesUrlAndMetadata() throws Exception {
+        discover();
+        connect();
+
+        Map<String, Object> video = new HashMap<>();
+        video.put("videoUrl", "https://example.com/video.mp4?a=1&b=2");
+        video.put("title", "Episodio <1>");
+        Reply share = new Reply();
+        backend.share(PLAYER, video, 0, share);
+        share.await();
+
+        String body = renderer.body(0);
+        assertTrue(body.contains("<CurrentURI>https://example.com/video.mp4?a=1&amp;b=2</CurrentURI>"));
+        // DIDL-Lite va escapado dentro del XML de la acción
+        assertTrue(body.contains("&lt;dc:title&gt;Episodio &amp;lt;1&amp;gt;&lt;/dc:title&gt;"));
+        assertTrue(body.contains("http-get:*:video/mp4:*"));
+    }
+
+    @Test
+    public void upnpErrorIsReported() throws Exception {
+        discover();
+        connect();
+        renderer.failNextAction();
+
+        Reply reply = new Reply();
+        backend.control(PLAYER, "pause", null, reply);
+        Object value = reply.await();
+
+        assertTrue(String.valueOf(value), String.valueOf(value).startsWith("error:DLNA_ERROR"));
+        assertTrue(String.valueOf(value).contains("701"));
+    }
+
+    @Test
+    public void unknownDeviceCannotConnect() throws Exception {
+        Reply reply = new Reply();
+        backend.connect(PLAYER, "dlna:uuid:missing", "Nadie", 0, reply);
+
+        assertTrue(String.valueOf(reply.await()).startsWith("error:UNKNOWN_DEVICE"));
+    }
+
+    @Test
+    public void releasedPlayerHasNoRenderer() throws Exception {
+        discover();
+        connect();
+        backend.release(PLAYER);
+
+        Reply reply = new Reply();
+        backend.control(PLAYER, "play", null, reply);
+
+        assertEquals(false, reply.await());
+        assertTrue(renderer.actions().isEmpty());
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.advanced_video_player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DriftCorrectorTest {
+    @Test
+    public void smallErrorsAreIgnoredAndLargeOnesSeek() {
+        DriftCorrector corrector = new DriftCorrector();
+        DriftCorrector.Correction correction = corrector.next(10_000, 10_010, 1.0);
+        assertEquals(1.0, correction.rate, 0);
+        assertFalse(correction.seek);
+        assertEquals(10, correction.errorMs);
+
+        correction = corrector.next(10_000, 14_000, 1.5);
+        assertTrue(correction.seek);
+        assertEquals(14_000, correction.targetMs);
+        assertEquals(1.5, correction.rate, 0);
+
+        // En pausa se salta en cuanto el desvío se nota
+        assertFalse(corrector.paused(5_000, 5_010, 1.0).seek);
+        correction = corrector.paused(5_000, 5_040, 1.0);
+        assertTrue(correction.seek);
+        assertEquals(5_040, correction.targetMs);
+    }
+
+    @Test
+    public void rateAdjustmentIsBoundedAndHasHysteresis() {
+        DriftCorrector corrector = new DriftCorrector();
+        // Atrasado: acelera, como mucho un 5 %
+        assertEquals(1 + DriftCorrector.MAX_ADJUST, corrector.next(0, 1000, 1.0).rate, 1e-9);
+        // Adelantado: frena repartiendo el error en la ventana de corrección
+        assertEquals(1 - 25.0 / DriftCorrector.CORRECTION_WINDOW_MS, corrector.next(1000, 975, 1.0).rate, 1e-9);
+        // Por debajo del umbral de inicio sigue corrigiendo, como poco un 1 %, hasta
+        // bajar del de parada
+        assertEquals(1 - DriftCorrector.MIN_ADJUST, corrector.next(1000, 990, 1.0).rate, 1e-9);
+        assertEquals(1.0, corrector.next(1000, 997, 1.0).rate, 0);
+        assertEquals(1.0, corrector.next(1000, 990, 1.0).rate, 0);
+        // Se aplica sobre la velocidad del líder
+        assertEquals(2.0 * (1 + 25.0 / DriftCorrector.CORRECTION_WINDOW_MS), corrector.next(1000, 1025, 2.0).rate,
+                1e-9);
+    }
+
+    @Test
+    public void followerConvergesWithoutSeeking() {
+        // Seguidor que arranca 600 ms tarde y cuyo reproductor corre un 0,3 % más rápido
+        // (reloj de audio distinto); se corrige cada 250 ms durante un minuto
+        DriftCorrector corrector = new DriftCorrector();
+        double leader = 0;
+        double follower = -600;
+        double rate = 1.0;
+        int seeks = 0;
+        double worstAfterConvergence = 0;
+        for (int step = 0; step < 240; step++) {
+            leader += 250;
+            follower += 250 * rate * 1.003;
+            DriftCorrector.Correction correction = corrector.next(follower, leader, 1.0);
+            if (correction.seek) {
+                seeks++;
+                follower = correction.targetMs;
+            }
+            rate = correction.rate;
+            if (step >= 120) {
+                worstAfterConvergence = Math.max(worstAfterConvergence, Math.abs(leader - follower));
+            }
+        }
+        assertEquals(0, seeks);
+        assertTrue("desvío " + worstAfterConvergence, worstAfterConvergence < 50);
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.advanced_video_player;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Respondedor mDNS mínimo en loopback para los tests de {@link CastMdnsBrowser}.
+ *
+ * Contesta a cada consulta con PTR, SRV, TXT y A del receptor configurado, en
+ * unicast al puerto de origen y con nombres comprimidos como un respondedor real.
+ */
+final class FakeMdnsResponder implements AutoCloseable {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final DatagramSocket socket;
+    private final Thread thread;
+    private volatile String instance;
+    private volatile Map<String, String> txt;
+    private volatile long ttl = 120;
+    private volatile boolean silent;
+    private volatile int queries;
+
+    FakeMdnsResponder() throws SocketException {
+        socket = new DatagramSocket(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serve();
+            }
+        }, "FakeMdnsResponder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    InetSocketAddress address() {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), socket.getLocalPort());
+    }
+
+    /** Receptor que se anuncia: nombre de instancia y registro TXT. */
+    void announce(String instanceLabel, String id, String friendlyName, String model, int capabilities) {
+        Map<String, String> values = new HashMap<>();
+        values.put("id", id);
+        values.put("fn", friendlyName);
+        values.put("md", model);
+        values.put("ca", String.valueOf(capabilities));
+        txt = values;
+        instance = instanceLabel;
+    }
+
+    /** TTL de los registros de las siguientes respuestas (0 = despedida). */
+    void setTtl(long seconds) {
+        ttl = seconds;
+    }
+
+    /** Deja de contestar, como un receptor que se apaga sin despedirse. */
+    void setSilent(boolean value) {
+        silent = value;
+    }
+
+    int queries() {
+        return queries;
+    }
+
+    @Override
+    public void close() {
+        socket.close();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void serve() {
+        byte[] buffer = new byte[1500];
+        while (!socket.isClosed()) {
+            try {
+                DatagramPacket request = new DatagramPacket(buffer, buffer.length);
+                socket.receive(request);
+                queries++;
+                if (silent || instance == null) {
+                    continue;
+                }
+                byte[] response = response();
+                socket.send(new DatagramPacket(response, response.length, request.getSocketAddress()));
+            } catch (IOException e) {
+                // Socket cerrado al terminar el test
+            }
+        }
+    }
+
+    private byte[] response() {
+        String service = CastMdnsBrowser.SERVICE;
+        String fullName = instance + "." + service;
+        String host = instance + ".local";
+        ByteBuffer out = ByteBuffer.allocate(1500);
+        Map<String, Integer> names = new HashMap<>();
+        out.putShort((short) 0);
+        out.putShort((short) (MdnsMessage.FLAG_RESPONSE | 0x0400));
+        out.putShort((short) 0);
+        out.putShort((short) 1);
+        out.putShort((short) 0);
+        out.putShort((short) 3);
+
+        // PTR
+        writeName(out, service, names);
+        header(out, MdnsMessage.TYPE_PTR, ttl);
+        int length = out.position();
+        out.putShort((short) 0);
+        writeName(out, fullName, names);
+        patchLength(out, length);
+
+        // SRV
+        writeName(out, fullName, names);
+        header(out, MdnsMessage.TYPE_SRV, ttl);
+        length = out.position();
+        out.putShort((short) 0);
+        out.putShort((short) 0);
+        out.putShort((short) 0);
+        out.putShort((short) 8009);
+        writeName(out, host, names);
+        patchLength(out, length);
+
+        // TXT
+        writeName(out, fullName, names);
+        header(out, MdnsMessage.TYPE_TXT, ttl);
+        length = out.position();
+        out.putShort((short) 0);
+        for (Map.Entry<String, String> entry : txt.entrySet()) {
+            byte[] bytes = (entry.getKey() + "=" + entry.getValue()).getBytes(UTF_8);
+            out.put((byte) bytes.length);
+            out.put(bytes);
+        }
+        patchLength(out, length);
+
+        // A
+        writeName(out, host, names);
+        header(out, MdnsMessage.TYPE_A, ttl);
+        out.putShort((short) 4);
+        out.put(new byte[]{(byte) 192, (byte) 168, 1, 42});
+
+        byte[] packet = new byte[out.position()];
+        out.flip();
+        out.get(packet);
+        return packet;
+    }
+
+    private static void header(ByteBuffer out, int type, long ttl) {
+        out.putShort((short) type);
+        out.putShort((short) (MdnsMessage.CLASS_IN | MdnsMessage.CLASS_FLAG));
+        out.putInt((int) ttl);
+    }
+
+    private static void patchLength(ByteBuffer out, int at) {
+        out.putShort(at, (short) (out.position() - at - 2));
+    }
+
+    // Escribe el nombre usando punteros a sufijos ya escritos
+    private static void writeName(ByteBuffer out, String name, Map<String, Integer> names) {
+        String rest = name;
+        while (!rest.isEmpty()) {
+            Integer pointer = names.get(rest);
+            if (pointer != null) {
+                out.putShort((short) (0xc000 | pointer));
+                return;
+            }
+            names.put(rest, out.position());
+            int dot = rest.indexOf('.');
+            String label = dot < 0 ? rest : rest.substring(0, dot);
+            byte[] bytes = label.getBytes(UTF_8);
+            out.put((byte) bytes.length);
+            out.put(bytes);
+            rest = dot < 0 ? "" : rest.substring(dot + 1);
+        }
+        out.put((byte) 0);
+    }
+}
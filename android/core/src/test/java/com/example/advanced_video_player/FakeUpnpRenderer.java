@@ -0,0 +1,208 @@
+package com.example.advanced_video_player;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renderizador UPnP mínimo en loopback para los tests de {@link DlnaBackend}.
+ *
+ * Contesta las búsquedas SSDP en unicast, sirve la descripción del dispositivo y
+ * acepta las acciones SOAP de AVTransport. Guarda las acciones recibidas y el puerto
+ * de origen de cada petición de control, para comprobar que se reutiliza la conexión.
+ */
+final class FakeUpnpRenderer implements AutoCloseable {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final String UDN = "uuid:fake-renderer-1";
+
+    private final DatagramSocket ssdp;
+    private final Thread ssdpThread;
+    private final HttpServer http;
+    private final AtomicInteger descriptionRequests = new AtomicInteger();
+    private final List<String> actions = new ArrayList<>();
+    private final List<String> bodies = new ArrayList<>();
+    private final Set<Integer> controlPorts = new HashSet<>();
+    private volatile boolean failNextAction;
+    // Estado del transporte según las acciones recibidas
+    private String transportState = "STOPPED";
+    private String relTime = "0:00:00";
+
+    FakeUpnpRenderer() throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        http = HttpServer.create(new InetSocketAddress(loopback, 0), 0);
+        http.createContext("/description.xml", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                descriptionRequests.incrementAndGet();
+                readFully(exchange.getRequestBody());
+                respond(exchange, 200, description());
+            }
+        });
+        http.createContext("/upnp/control/AVTransport1", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String body = readFully(exchange.getRequestBody());
+                String soapAction = exchange.getRequestHeaders().getFirst("SOAPACTION");
+                String action = soapAction.substring(soapAction.indexOf('#') + 1).replace("\"", "");
+                synchronized (FakeUpnpRenderer.this) {
+                    actions.add(action);
+                    bodies.add(body);
+                    controlPorts.add(exchange.getRemoteAddress().getPort());
+                }
+                if (failNextAction) {
+                    failNextAction = false;
+                    respond(exchange, 500, "<s:Envelope><s:Body><s:Fault><detail><UPnPError>"
+                            + "<errorCode>701</errorCode><errorDescription>Transition not available"
+                            + "</errorDescription></UPnPError></detail></s:Fault></s:Body></s:Envelope>");
+                    return;
+                }
+                respond(exchange, 200, "<s:Envelope><s:Body><u:" + action + "Response>" + transport(action, body)
+                        + "</u:" + action + "Response></s:Body></s:Envelope>");
+            }
+        });
+        http.start();
+
+        ssdp = new DatagramSocket(new InetSocketAddress(loopback, 0));
+        ssdpThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serveSsdp();
+            }
+        }, "FakeUpnpRenderer");
+        ssdpThread.setDaemon(true);
+        ssdpThread.start();
+    }
+
+    /** Dirección a la que enviar las búsquedas SSDP. */
+    InetSocketAddress ssdpAddress() {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), ssdp.getLocalPort());
+    }
+
+    int descriptionRequests() {
+        return descriptionRequests.get();
+    }
+
+    synchronized List<String> actions() {
+        return new ArrayList<>(actions);
+    }
+
+    /** Cuerpo SOAP de la acción número {@code index}. */
+    synchronized String body(int index) {
+        return bodies.get(index);
+    }
+
+    /** Puertos de origen distintos de las peticiones de control. */
+    synchronized int controlConnections() {
+        return controlPorts.size();
+    }
+
+    /** La siguiente acción responde con un error UPnP 701. */
+    void failNextAction() {
+        failNextAction = true;
+    }
+
+    // Aplica la acción y devuelve los argumentos de salida de la respuesta
+    private synchronized String transport(String action, String body) {
+        if ("Play".equals(action)) {
+            transportState = "PLAYING";
+        } else if ("Pause".equals(action)) {
+            transportState = "PAUSED_PLAYBACK";
+        } else if ("Stop".equals(action)) {
+            transportState = "STOPPED";
+            relTime = "0:00:00";
+        } else if ("Seek".equals(action)) {
+            relTime = body.substring(body.indexOf("<Target>") + 8, body.indexOf("</Target>"));
+        } else if ("GetPositionInfo".equals(action)) {
+            return "<Track>1</Track><RelTime>" + relTime + "</RelTime>";
+        } else if ("GetTransportInfo".equals(action)) {
+            return "<CurrentTransportState>" + transportState + "</CurrentTransportState>";
+        }
+        return "";
+    }
+
+    private void serveSsdp() {
+        byte[] buffer = new byte[2048];
+        while (!ssdp.isClosed()) {
+            try {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                ssdp.receive(packet);
+                String request = new String(packet.getData(), 0, packet.getLength(), UTF_8);
+                if (!request.startsWith("M-SEARCH")) {
+                    continue;
+                }
+                byte[] response = ("HTTP/1.1 200 OK\r\n"
+                        + "CACHE-CONTROL: max-age=1800\r\n"
+                        + "EXT:\r\n"
+                        + "LOCATION: http://127.0.0.1:" + http.getAddress().getPort() + "/description.xml\r\n"
+                        + "SERVER: Linux/4.9 UPnP/1.0 FakeRenderer/1.0\r\n"
+                        + "ST: " + SsdpSearch.MEDIA_RENDERER + "\r\n"
+                        + "USN: " + UDN + "::" + SsdpSearch.MEDIA_RENDERER + "\r\n"
+                        + "\r\n").getBytes(UTF_8);
+                ssdp.send(new DatagramPacket(response, response.length, packet.getSocketAddress()));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private static String description() {
+        return "<?xml version=\"1.0\"?>"
+                + "<root xmlns=\"urn:schemas-upnp-org:device-1-0\">"
+                + "<specVersion><major>1</major><minor>0</minor></specVersion>"
+                + "<device>"
+                + "<deviceType>" + SsdpSearch.MEDIA_RENDERER + "</deviceType>"
+                + "<friendlyName>Televisor del salón</friendlyName>"
+                + "<manufacturer>Fake</manufacturer>"
+                + "<modelName>Renderer 1</modelName>"
+                + "<UDN>" + UDN + "</UDN>"
+                + "<serviceList>"
+                + "<service><serviceType>urn:schemas-upnp-org:service:RenderingControl:1</serviceType>"
+                + "<controlURL>/upnp/control/RenderingControl1</controlURL></service>"
+                + "<service><serviceType>" + AvTransportClient.SERVICE + "</serviceType>"
+                + "<controlURL>upnp/control/AVTransport1</controlURL></service>"
+                + "</serviceList>"
+                + "</device></root>";
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/xml; charset=\"utf-8\"");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] chunk = new byte[1024];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            bytes.write(chunk, 0, read);
+        }
+        in.close();
+        return new String(bytes.toByteArray(), UTF_8);
+    }
+
+    @Override
+    public void close() {
+        ssdp.close();
+        http.stop(0);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.advanced_video_player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+public class HlsMasterPlaylistTest {
+    private static final String BASE = "https://cdn.example.com/video/master.m3u8";
+
+    private static final String MASTER = "\uFEFF#EXTM3U\n"
+            + "#EXT-X-VERSION:6\n"
+            + "#EXT-X-MEDIA:TYPE=AUDIO,GROUP-ID=\"aac\",NAME=\"Español\",URI=\"audio/es.m3u8\"\n"
+            + "#EXT-X-STREAM-INF:BANDWIDTH=6000000,AVERAGE-BANDWIDTH=5000000,RESOLUTION=1920x1080,"
+            + "CODECS=\"avc1.640028,mp4a.40.2\",AUDIO=\"aac\"\n"
+            + "1080p/index.m3u8\n"
+            + "#EXT-X-STREAM-INF:BANDWIDTH=3000000,RESOLUTION=1280x720,CODECS=\"avc1.4d401f,mp4a.40.2\"\n"
+            + "720p/index.m3u8\n"
+            + "\n"
+            + "#EXT-X-STREAM-INF:BANDWIDTH=1200000,RESOLUTION=854x480\r\n"
+            + "https://other.example.com/480p.m3u8\r\n"
+            + "#EXT-X-STREAM-INF:BANDWIDTH=400000,RESOLUTION=426x240\n"
+            + "/abs/240p.m3u8\n"
+            + "#EXT-X-I-FRAME-STREAM-INF:BANDWIDTH=200000,URI=\"iframes.m3u8\"\n";
+
+    @Test
+    public void attributesKeepQuotedCommas() {
+        Map<String, String> attributes = HlsMasterPlaylist.attributes(
+                "BANDWIDTH=3000000,CODECS=\"avc1.4d401f,mp4a.40.2\",RESOLUTION=1280x720");
+        assertEquals("3000000", attributes.get("BANDWIDTH"));
+        assertEquals("avc1.4d401f,mp4a.40.2", attributes.get("CODECS"));
+        assertEquals("1280x720", attributes.get("RESOLUTION"));
+        assertEquals(3, attributes.size());
+    }
+
+    @Test
+    public void parsesVariantsWithAbsoluteUris() throws IOException {
+        HlsMasterPlaylist playlist = HlsMasterPlaylist.parse(BASE, MASTER);
+        assertTrue(playlist.isMaster());
+        assertEquals(4, playlist.variants.size());
+
+        HlsMasterPlaylist.Variant top = playlist.variants.get(0);
+        assertEquals(6000000, top.bandwidth);
+        assertEquals(5000000, top.averageBandwidth);
+        assertEquals(1920, top.width);
+        assertEquals(1080, top.height);
+        assertEquals("avc1.640028,mp4a.40.2", top.codecs);
+        assertEquals("https://cdn.example.com/video/1080p/index.m3u8", top.uri);
+
+        assertEquals(-1, playlist.variants.get(1).averageBandwidth);
+        assertEquals("https://other.example.com/480p.m3u8", playlist.variants.get(2).uri);
+        assertEquals("https://cdn.example.com/abs/240p.m3u8", playlist.variants.get(3).uri);
+        assertEquals(3, playlist.variants.get(3).index);
+    }
+
+    @Test
+    public void selectsHighestVariantWithinBudget() throws IOException {
+        HlsMasterPlaylist playlist = HlsMasterPlaylist.parse(BASE, MASTER);
+        // 75 % de 5 Mbps = 3,75 Mbps: cabe la de 720p
+        assertEquals(3000000, playlist.select(5000000, 0.75).bandwidth);
+        assertEquals(6000000, playlist.select(50000000, 0.75).bandwidth);
+        // Ninguna cabe: la más ligera
+        assertEquals(400000, playlist.select(100000, 0.75).bandwidth);
+    }
+
+    @Test
+    public void rewritePutsSelectedVariantFirst() throws IOException {
+        HlsMasterPlaylist playlist = HlsMasterPlaylist.parse(BASE, MASTER);
+        HlsMasterPlaylist.Variant selected = playlist.select(2000000, 0.75);
+        String rewritten = playlist.rewrite(selected);
+
+        HlsMasterPlaylist reparsed = HlsMasterPlaylist.parse("http://127.0.0.1:1234/hls/x.m3u8", rewritten);
+        assertEquals(4, reparsed.variants.size());
+        assertEquals("https://other.example.com/480p.m3u8", reparsed.variants.get(0).uri);
+        assertEquals("https://cdn.example.com/video/1080p/index.m3u8", reparsed.variants.get(1).uri);
+        assertEquals("https://cdn.example.com/video/720p/index.m3u8", reparsed.variants.get(2).uri);
+        assertEquals("https://cdn.example.com/abs/240p.m3u8", reparsed.variants.get(3).uri);
+        assertEquals("avc1.640028,mp4a.40.2", reparsed.variants.get(1).codecs);
+
+        assertTrue(rewritten.startsWith("#EXTM3U"));
+        assertTrue(rewritten.contains("URI=\"https://cdn.example.com/video/audio/es.m3u8\""));
+        assertTrue(rewritten.contains("URI=\"https://cdn.example.com/video/iframes.m3u8\""));
+        // Las etiquetas previas a las variantes siguen delante
+        assertTrue(rewritten.indexOf("#EXT-X-MEDIA") < rewritten.indexOf("#EXT-X-STREAM-INF"));
+    }
+
+    @Test
+    public void mediaPlaylistIsNotMaster() throws IOException {
+        HlsMasterPlaylist playlist = HlsMasterPlaylist.parse(BASE,
+                "#EXTM3U\n#EXT-X-TARGETDURATION:4\n#EXTINF:4.0,\nsegment0.ts\n#EXT-X-ENDLIST\n");
+        assertFalse(playlist.isMaster());
+        assertNull(playlist.select(5000000, 0.75));
+    }
+
+    @Test
+    public void rejectsTextThatIsNotHls() {
+        try {
+            HlsMasterPlaylist.parse(BASE, "<html>404</html>");
+            fail("debía rechazar el HTML");
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.advanced_video_player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Arranque de un video HLS contra un servidor local limitado a {@link #LINK_BPS},
+ * como el reproductor lo haría: playlist maestra, playlist de la primera variante y
+ * su primer segmento. Las descargas pasan por {@link HlsStartup#download}, que
+ * aporta cada transferencia al estimador.
+ */
+public class HlsStartupTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long LINK_BPS = 5000000;
+    private static final int LATENCY_MS = 20;
+    private static final double SEGMENT_SECONDS = 0.5;
+    // La de mayor calidad primero, como suelen venir
+    private static final long[] VARIANTS = {6000000, 3000000, 1200000, 400000};
+
+    private HttpServer origin;
+    private String base;
+    private BandwidthEstimator estimator;
+    private HlsStartup startup;
+
+    @Before
+    public void setUp() throws IOException {
+        origin = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        origin.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        origin.start();
+        base = "http://127.0.0.1:" + origin.getAddress().getPort();
+        estimator = new BandwidthEstimator();
+        startup = new HlsStartup(estimator, 5000);
+    }
+
+    @After
+    public void tearDown() {
+        startup.close();
+        origin.stop(0);
+    }
+
+    @Test
+    public void preselectsTheVariantTheLinkSustains() throws Exception {
+        warmUpEstimate();
+
+        Map<?, ?> selection = prepare(base + "/master.m3u8", true);
+        String url = (String) selection.get("url");
+        assertEquals(true, selection.get("estimated"));
+        assertEquals(3000000L, ((Map<?, ?>) selection.get("variant")).get("bandwidth"));
+        assertTrue(url.startsWith("http://127.0.0.1:"));
+
+        // La elegida pasa a ser la primera; las demás siguen en su orden original
+        HlsMasterPlaylist rewritten = HlsMasterPlaylist.parse(url, startup.download(url));
+        String[] expected = {"v3000000", "v6000000", "v1200000", "v400000"};
+        assertEquals(expected.length, rewritten.variants.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(base + "/" + expected[i] + "/index.m3u8", rewritten.variants.get(i).uri);
+        }
+        assertEquals(base + "/v3000000/index.m3u8", startPlayback(url));
+        assertEquals(base + "/v6000000/index.m3u8", startPlayback(base + "/master.m3u8"));
+    }
+
+    /**
+     * Compara en tiempo real el arranque con la variante preseleccionada y con la
+     * primera de la playlist. Depende de la carga de la máquina, así que solo corre con
+     * {@code gradle -p android/core test -Ptiming}.
+     */
+    @Test
+    public void preselectedVariantStartsFaster() throws Exception {
+        assumeTrue("medición de tiempos: -Ptiming", Boolean.getBoolean("timing"));
+        long estimate = warmUpEstimate();
+
+        long started = System.nanoTime();
+        String naiveVariant = startPlayback(base + "/master.m3u8");
+        long naiveMs = (System.nanoTime() - started) / 1000000L;
+
+        started = System.nanoTime();
+        String preselectedVariant = startPlayback((String) prepare(base + "/master.m3u8", true).get("url"));
+        long preselectedMs = (System.nanoTime() - started) / 1000000L;
+
+        System.out.println("Arranque HLS a " + LINK_BPS / 1000 + " kbps: " + naiveMs + " ms con "
+                + naiveVariant + ", " + preselectedMs + " ms con " + preselectedVariant
+                + " preseleccionada (estimación " + estimate / 1000 + " kbps)");
+        assertTrue(naiveMs + " ms frente a " + preselectedMs + " ms", preselectedMs < naiveMs);
+    }
+
+    @Test
+    public void withoutEstimateStartsModestAndKeepsOriginalUrl() throws Exception {
+        Map<?, ?> selection = prepare(base + "/master.m3u8", false);
+        assertEquals(false, selection.get("estimated"));
+        assertEquals(HlsStartup.DEFAULT_ESTIMATE_BPS, selection.get("estimateBps"));
+        assertEquals(400000L, ((Map<?, ?>) selection.get("variant")).get("bandwidth"));
+        assertEquals(base + "/master.m3u8", selection.get("url"));
+        assertEquals(4, selection.get("variants"));
+    }
+
+    @Test
+    public void failuresAnswerWithOriginalUrl() throws Exception {
+        Map<?, ?> selection = prepare(base + "/missing.m3u8", true);
+        assertEquals(base + "/missing.m3u8", selection.get("url"));
+        assertNotNull(selection.get("error"));
+        assertFalse(selection.containsKey("variant"));
+    }
+
+    @Test
+    public void localServerOnlyServesPublishedPlaylists() throws IOException {
+        LocalPlaylistServer server = new LocalPlaylistServer();
+        try {
+            String url = server.publish("#EXTM3U\n");
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertEquals(ContentTypes.HLS, connection.getContentType());
+            assertEquals("#EXTM3U\n", new String(readFully(connection.getInputStream()), UTF_8));
+
+            connection = (HttpURLConnection) new URL(url + "?t=1").openConnection();
+            connection.setRequestMethod("HEAD");
+            assertEquals(200, connection.getResponseCode());
+
+            connection = (HttpURLConnection) new URL(
+                    "http://127.0.0.1:" + server.port() + "/hls/otra.m3u8").openConnection();
+            assertEquals(404, connection.getResponseCode());
+
+            connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setRequestMethod("DELETE");
+            assertEquals(405, connection.getResponseCode());
+        } finally {
+            server.close();
+        }
+    }
+
+    private Map<?, ?> prepare(String url, boolean rewrite) throws InterruptedException {
+        final BlockingQueue<Object> reply = new LinkedBlockingQueue<>();
+        startup.prepare(url, rewrite, new RendererBackend.Callback() {
+            @Override
+            public void success(Object value) {
+                reply.add(value);
+            }
+
+            @Override
+            public void error(String code, String message) {
+                reply.add(code);
+            }
+        });
+        Object value = reply.poll(10, TimeUnit.SECONDS);
+        assertTrue("respuesta " + value, value instanceof Map);
+        return (Map<?, ?>) value;
+    }
+
+    /** Las descargas previas del plugin (póster, miniaturas) dan la estimación. */
+    private long warmUpEstimate() throws IOException {
+        startup.download(base + "/poster.jpg");
+        startup.download(base + "/poster.jpg");
+        long estimate = estimator.estimate();
+        assertTrue("estimación " + estimate, estimate > LINK_BPS / 2 && estimate < LINK_BPS * 2);
+        return estimate;
+    }
+
+    /** Lo que hace el reproductor al preparar; devuelve la variante con la que arrancó. */
+    private String startPlayback(String masterUrl) throws IOException {
+        HlsMasterPlaylist master = HlsMasterPlaylist.parse(masterUrl, startup.download(masterUrl));
+        String variant = master.variants.get(0).uri;
+        for (String line : startup.download(variant).split("\n")) {
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                startup.download(new URL(new URL(variant), line).toString());
+                return variant;
+            }
+        }
+        throw new IOException("Playlist sin segmentos: " + variant);
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        byte[] body = null;
+        if ("/master.m3u8".equals(path)) {
+            StringBuilder master = new StringBuilder("#EXTM3U\n#EXT-X-VERSION:3\n");
+            for (long bandwidth : VARIANTS) {
+                master.append("#EXT-X-STREAM-INF:BANDWIDTH=").append(bandwidth).append('\n')
+                        .append("v").append(bandwidth).append("/index.m3u8\n");
+            }
+            body = master.toString().getBytes(UTF_8);
+        } else if (path.endsWith("/index.m3u8")) {
+            body = ("#EXTM3U\n#EXT-X-TARGETDURATION:1\n#EXT-X-MEDIA-SEQUENCE:0\n"
+                    + "#EXTINF:" + SEGMENT_SECONDS + ",\nsegment0.ts\n"
+                    + "#EXTINF:" + SEGMENT_SECONDS + ",\nsegment1.ts\n#EXT-X-ENDLIST\n").getBytes(UTF_8);
+        } else if (path.endsWith("/segment0.ts") || path.endsWith("/segment1.ts")) {
+            long bandwidth = Long.parseLong(path.substring(2, path.indexOf('/', 1)));
+            body = new byte[(int) (bandwidth / 8 * SEGMENT_SECONDS)];
+        } else if ("/poster.jpg".equals(path)) {
+            body = new byte[256 * 1024];
+        }
+        try (OutputStream out = exchange.getResponseBody()) {
+            sleep(LATENCY_MS);
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            // Entrega al ritmo del enlace simulado
+            long started = System.nanoTime();
+            for (int sent = 0; sent < body.length; ) {
+                int chunk = Math.min(4096, body.length - sent);
+                out.write(body, sent, chunk);
+                out.flush();
+                sent += chunk;
+                long dueNanos = sent * 8L * 1000000000L / LINK_BPS;
+                sleep((dueNanos - (System.nanoTime() - started)) / 1000000L);
+            }
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    private static void sleep(long ms) {
+        if (ms <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
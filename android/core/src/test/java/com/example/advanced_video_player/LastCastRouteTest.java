@@ -0,0 +1,83 @@
+package com.example.advanced_video_player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public class LastCastRouteTest {
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripsThroughTheFile() throws IOException {
+        File directory = folder.getRoot();
+        assertNull(LastCastRoute.read(directory));
+
+        new LastCastRoute("route-1", "Televisor del salón", "session-9", NOW).write(directory);
+        LastCastRoute read = LastCastRoute.read(directory);
+        assertEquals("route-1", read.routeId);
+        assertEquals("Televisor del salón", read.routeName);
+        assertEquals("session-9", read.sessionId);
+        assertEquals(NOW, read.savedAtMs);
+        assertFalse(new File(directory, LastCastRoute.FILE_NAME + ".tmp").exists());
+
+        read.withoutSession().write(directory);
+        assertNull(LastCastRoute.read(directory).sessionId);
+
+        LastCastRoute.delete(directory);
+        assertNull(LastCastRoute.read(directory));
+    }
+
+    @Test
+    public void rejectsCorruptOrTruncatedRecords() throws IOException {
+        byte[] data = new LastCastRoute("route-1", "TV", "session-1", NOW).encode();
+        assertEquals("route-1", LastCastRoute.decode(data).routeId);
+
+        byte[] flipped = data.clone();
+        flipped[20] ^= 1;
+        assertNull(LastCastRoute.decode(flipped));
+
+        byte[] truncated = new byte[data.length - 5];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        assertNull(LastCastRoute.decode(truncated));
+        assertNull(LastCastRoute.decode(new byte[0]));
+
+        try (FileOutputStream out = new FileOutputStream(new File(folder.getRoot(), LastCastRoute.FILE_NAME))) {
+            out.write("no es un registro".getBytes("UTF-8"));
+        }
+        assertNull(LastCastRoute.read(folder.getRoot()));
+    }
+
+    @Test
+    public void sessionExpiresBeforeTheRoute() {
+        LastCastRoute route = new LastCastRoute("route-1", "TV", "session-1", NOW);
+        assertTrue(route.canResume(NOW + 1000));
+        assertFalse(route.canResume(NOW + LastCastRoute.SESSION_MAX_AGE_MS));
+        assertTrue(route.isFresh(NOW + LastCastRoute.SESSION_MAX_AGE_MS));
+        assertFalse(route.isFresh(NOW + LastCastRoute.ROUTE_MAX_AGE_MS));
+        assertFalse(route.withoutSession().canResume(NOW));
+        // Un reloj que retrocede invalida el registro
+        assertFalse(route.isFresh(NOW - 1));
+    }
+
+    @Test
+    public void comparesIgnoringTheTimestamp() {
+        LastCastRoute route = new LastCastRoute("route-1", "TV", "session-1", NOW);
+        assertTrue(route.sameAs(new LastCastRoute("route-1", "TV", "session-1", NOW + 5000)));
+        assertFalse(route.sameAs(route.withoutSession()));
+        assertFalse(route.sameAs(new LastCastRoute("route-2", "TV", "session-1", NOW)));
+        assertTrue(route.matches("route-1"));
+        assertFalse(route.matches(null));
+    }
+}
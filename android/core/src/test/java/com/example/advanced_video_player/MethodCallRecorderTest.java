@@ -0,0 +1,148 @@
+package com.example.advanced_video_player;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class MethodCallRecorderTest {
+    private File file;
+
+    @After
+    public void tearDown() {
+        MethodCallRecorder.get().stop();
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    private static MethodCallRecording.Recording read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            return MethodCallRecording.read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static Map<String, Object> player(int handle) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("playerId", handle);
+        return args;
+    }
+
+    @Test
+    public void roundTripsChannelValueTypes() throws IOException {
+        Map<String, Object> args = new LinkedHashMap<>();
+        args.put("playerId", 3);
+        args.put("positionMs", 1L << 40);
+        args.put("position", -12.5);
+        args.put("enabled", true);
+        args.put("title", "Episodio ñ");
+        args.put("tracks", Arrays.asList("es", null, false));
+        args.put("records", new byte[]{1, 2, 3});
+        args.put("ints", new int[]{-1, 0, 7});
+        args.put("longs", new long[]{Long.MIN_VALUE, Long.MAX_VALUE});
+        args.put("doubles", new double[]{0.5, -0.25});
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] header = MethodCallRecording.header(1234L);
+        out.write(header, 0, header.length);
+        byte[] entry = new MethodCallRecording.Encoder().encode(42, "screen_sharing", "shareVideo", args);
+        out.write(entry, 0, entry.length);
+
+        MethodCallRecording.Recording recording =
+                MethodCallRecording.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(1234L, recording.startedAtMillis);
+        assertEquals(1, recording.calls.size());
+        MethodCallRecording.Call call = recording.calls.get(0);
+        assertEquals(42, call.atMicros);
+        assertEquals("screen_sharing", call.channel);
+        assertEquals("shareVideo", call.method);
+        Map<?, ?> read = (Map<?, ?>) call.arguments;
+        assertEquals(3, read.get("playerId"));
+        assertEquals(1L << 40, read.get("positionMs"));
+        assertEquals(-12.5, read.get("position"));
+        assertEquals(true, read.get("enabled"));
+        assertEquals("Episodio ñ", read.get("title"));
+        assertEquals(Arrays.asList("es", null, false), read.get("tracks"));
+        assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) read.get("records"));
+        assertArrayEquals(new int[]{-1, 0, 7}, (int[]) read.get("ints"));
+        assertArrayEquals(new long[]{Long.MIN_VALUE, Long.MAX_VALUE}, (long[]) read.get("longs"));
+        assertArrayEquals(new double[]{0.5, -0.25}, (double[]) read.get("doubles"), 0);
+    }
+
+    @Test
+    public void recordsCallStormCompactlyAndInOrder() throws IOException {
+        file = File.createTempFile("calls", ".avpr");
+        MethodCallRecorder recorder = MethodCallRecorder.get();
+        recorder.start(file);
+        for (int i = 0; i < 1000; i++) {
+            recorder.record("advanced_video_player", "getCurrentPosition", player(1 + i % 2));
+        }
+        recorder.record("screen_sharing", "discoverDevices", player(1));
+        Map<String, Object> summary = recorder.stop();
+
+        assertEquals(1001, summary.get("calls"));
+        assertEquals(file.length(), summary.get("bytes"));
+        // Tras la primera entrada, cada llamada repetida ocupa menos de 10 bytes
+        assertTrue("bytes: " + file.length(), file.length() < 10 * 1001);
+
+        MethodCallRecording.Recording recording = read(file);
+        assertEquals(1001, recording.calls.size());
+        long previous = 0;
+        for (MethodCallRecording.Call call : recording.calls) {
+            assertTrue(call.atMicros >= previous);
+            previous = call.atMicros;
+        }
+        assertEquals(2, ((Map<?, ?>) recording.calls.get(1).arguments).get("playerId"));
+        assertEquals("discoverDevices", recording.calls.get(1000).method);
+    }
+
+    @Test
+    public void ignoresCallsWhenNotRecording() throws IOException {
+        file = File.createTempFile("calls", ".avpr");
+        MethodCallRecorder recorder = MethodCallRecorder.get();
+        recorder.record("advanced_video_player", "getCurrentPosition", null);
+        assertNull(recorder.stop());
+
+        recorder.start(file);
+        recorder.record("advanced_video_player", "play", null);
+        recorder.stop();
+        recorder.record("advanced_video_player", "pause", null);
+
+        assertEquals(1, read(file).calls.size());
+    }
+
+    @Test
+    public void dropsHalfWrittenLastEntry() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] header = MethodCallRecording.header(0);
+        out.write(header, 0, header.length);
+        MethodCallRecording.Encoder encoder = new MethodCallRecording.Encoder();
+        byte[] first = encoder.encode(10, "advanced_video_player", "play", player(1));
+        byte[] second = encoder.encode(20, "advanced_video_player", "seekTo", player(1));
+        out.write(first, 0, first.length);
+        out.write(second, 0, second.length - 2);
+
+        MethodCallRecording.Recording recording =
+                MethodCallRecording.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(1, recording.calls.size());
+        assertEquals("play", recording.calls.get(0).method);
+    }
+}
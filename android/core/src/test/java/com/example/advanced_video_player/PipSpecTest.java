@@ -0,0 +1,37 @@
+package com.example.advanced_video_player;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class PipSpecTest {
+    @Test
+    public void reducesCommonRatios() {
+        assertArrayEquals(new int[]{16, 9}, PipSpec.aspectRatio(1920, 1080));
+        assertArrayEquals(new int[]{4, 3}, PipSpec.aspectRatio(640, 480));
+        assertArrayEquals(new int[]{9, 16}, PipSpec.aspectRatio(1080, 1920));
+    }
+
+    @Test
+    public void clampsToAndroidLimits() {
+        assertArrayEquals(new int[]{239, 100}, PipSpec.aspectRatio(3000, 1000));
+        assertArrayEquals(new int[]{100, 239}, PipSpec.aspectRatio(100, 1000));
+        // Justo en el límite no se toca
+        assertArrayEquals(new int[]{239, 100}, PipSpec.aspectRatio(2390, 1000));
+    }
+
+    @Test
+    public void invalidSizesFallBackTo16By9() {
+        assertArrayEquals(new int[]{16, 9}, PipSpec.aspectRatio(0, 1080));
+        assertArrayEquals(new int[]{16, 9}, PipSpec.aspectRatio(1920, -1));
+        assertArrayEquals(new int[]{16, 9}, PipSpec.aspectRatio(Double.NaN, 1080));
+        assertArrayEquals(new int[]{16, 9}, PipSpec.aspectRatio(Double.POSITIVE_INFINITY, 1080));
+    }
+
+    @Test
+    public void playPauseTitleFollowsState() {
+        assertEquals("Pausar", PipSpec.playPauseTitle(true));
+        assertEquals("Reproducir", PipSpec.playPauseTitle(false));
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.advanced_video_player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffer circular de QoE sobre un archivo temporal. Los registros de prueba llevan su
+ * número de secuencia en {@code value} para comprobar el orden tras dar la vuelta.
+ */
+public class QoeRecorderTest {
+    private static final long SESSION = 42L;
+    private static final int CAPACITY = QoeRecorder.CAPACITY;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private QoeRecorder recorder;
+
+    @Before
+    public void setUp() throws IOException {
+        PluginMetrics.get().reset();
+        recorder = new QoeRecorder(folder.getRoot());
+    }
+
+    @Test
+    public void exportKeepsRecordsAndConsumeDrainsThem() throws Exception {
+        recorder.append(records(0, 10));
+
+        assertSequence(read(recorder, false), 0, 10);
+        assertSequence(read(recorder, false), 0, 10);
+        assertSequence(read(recorder, true), 0, 10);
+        assertEquals(0, read(recorder, true).length);
+
+        // Después de drenar solo se leen los nuevos
+        recorder.append(records(10, 5));
+        assertSequence(read(recorder, true), 10, 5);
+    }
+
+    @Test
+    public void wrapsAroundTheEndOfTheFile() throws Exception {
+        recorder.append(records(0, CAPACITY - 10));
+        assertEquals(CAPACITY - 10, read(recorder, true).length / QoeRecorder.RECORD_SIZE);
+
+        // El bloque empieza al final del anillo y sigue desde el principio
+        recorder.append(records(CAPACITY - 10, 30));
+        assertSequence(read(recorder, true), CAPACITY - 10, 30);
+        assertEquals(0L, PluginMetrics.get().counter("qoe.records.overwritten").sum());
+    }
+
+    @Test
+    public void overwritesTheOldestUndrainedRecords() throws Exception {
+        recorder.append(records(0, CAPACITY - 50));
+        recorder.append(records(CAPACITY - 50, 150));
+
+        assertSequence(read(recorder, false), 100, CAPACITY);
+        assertEquals(100L, PluginMetrics.get().counter("qoe.records.overwritten").sum());
+        assertSequence(read(recorder, true), 100, CAPACITY);
+        assertEquals(0, read(recorder, true).length);
+    }
+
+    @Test
+    public void keepsTheTailOfABlockLargerThanTheRing() throws Exception {
+        recorder.append(records(0, CAPACITY + 25));
+
+        assertSequence(read(recorder, true), 25, CAPACITY);
+    }
+
+    @Test
+    public void reopeningKeepsTheReadAndWritePositions() throws Exception {
+        recorder.append(records(0, 20));
+        assertSequence(read(recorder, true), 0, 20);
+        recorder.append(records(20, 7));
+        read(recorder, false);
+
+        QoeRecorder reopened = new QoeRecorder(folder.getRoot());
+        assertEquals(7L, reopened.pendingCount());
+        assertSequence(read(reopened, true), 20, 7);
+    }
+
+    @Test
+    public void nativeEventsJoinTheLastStartedSession() throws Exception {
+        ByteBuffer start = ByteBuffer.allocate(QoeRecorder.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        start.putLong(SESSION).putLong(1L).putInt(QoeRecorder.TYPE_SESSION_START).putInt(2).putLong(0L);
+        recorder.append(start.array());
+        assertEquals(SESSION, recorder.activeSessionId());
+        read(recorder, true);
+        recorder.record(QoeRecorder.TYPE_CAST_CONNECTED, 850L);
+
+        // La lectura vuelca los eventos nativos sin esperar al intervalo
+        ByteBuffer out = ByteBuffer.wrap(read(recorder, true)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(QoeRecorder.RECORD_SIZE, out.remaining());
+        assertEquals(SESSION, out.getLong());
+        assertTrue(out.getLong() > 0L);
+        assertEquals(QoeRecorder.TYPE_CAST_CONNECTED, out.getInt());
+        assertEquals(QoeRecorder.SOURCE_NATIVE, out.getInt());
+        assertEquals(850L, out.getLong());
+    }
+
+    @Test
+    public void aBurstNeverWaitsForTheDisk() throws Exception {
+        // Más eventos de los que caben en todos los buffers: los que no entran se cuentan
+        int total = QoeRecorder.STAGING_RECORDS * 10;
+        for (int i = 0; i < total; i++) {
+            recorder.record(QoeRecorder.TYPE_SEEK, i);
+        }
+
+        ByteBuffer out = ByteBuffer.wrap(read(recorder, true)).order(ByteOrder.LITTLE_ENDIAN);
+        int written = out.remaining() / QoeRecorder.RECORD_SIZE;
+        long dropped = PluginMetrics.get().counter("qoe.records.dropped").sum();
+        assertEquals(total, written + dropped);
+        assertTrue(written >= QoeRecorder.STAGING_RECORDS);
+        long previous = -1L;
+        for (int i = 0; i < written; i++) {
+            long value = out.getLong(i * QoeRecorder.RECORD_SIZE + 24);
+            assertTrue("registro " + i, value > previous);
+            previous = value;
+        }
+    }
+
+    private static byte[] records(long first, int count) {
+        ByteBuffer buffer = ByteBuffer.allocate(count * QoeRecorder.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < count; i++) {
+            buffer.putLong(SESSION);
+            buffer.putLong(1_700_000_000_000L + first + i);
+            buffer.putInt(QoeRecorder.TYPE_SEEK);
+            buffer.putInt(2);
+            buffer.putLong(first + i);
+        }
+        return buffer.array();
+    }
+
+    private static void assertSequence(byte[] records, long first, int count) {
+        assertEquals(count * QoeRecorder.RECORD_SIZE, records.length);
+        ByteBuffer buffer = ByteBuffer.wrap(records).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < count; i++) {
+            assertEquals("registro " + i, first + i, buffer.getLong(i * QoeRecorder.RECORD_SIZE + 24));
+        }
+    }
+
+    private static byte[] read(QoeRecorder recorder, boolean consume) throws InterruptedException {
+        final BlockingQueue<Object> reply = new LinkedBlockingQueue<>();
+        recorder.read(consume, new RendererBackend.Callback() {
+            @Override
+            public void success(Object value) {
+                reply.add(value);
+            }
+
+            @Override
+            public void error(String code, String message) {
+                reply.add(code + ": " + message);
+            }
+        });
+        Object value = reply.poll(10, TimeUnit.SECONDS);
+        assertTrue("respuesta " + value, value instanceof byte[]);
+        return (byte[]) value;
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.advanced_video_player;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Tabla mapeada, journal y desalojo del almacén de posiciones. Los journals se
+ * escriben a mano para simular un cierre del proceso entre el journal y la tabla; con
+ * claves pequeñas cada clave cae en el slot de su mismo número.
+ */
+public class ResumePositionStoreTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        PluginMetrics.get().reset();
+        directory = folder.getRoot();
+    }
+
+    @Test
+    public void pendingWritesAreVisibleAndSurviveReopening() throws Exception {
+        ResumePositionStore store = new ResumePositionStore(directory);
+        store.put("video-1", 42000L, 600000L);
+        store.put("video-2", -5L, 90000L);
+        assertArrayEquals(new long[]{42000L, 600000L}, store.get("video-1"));
+        assertEquals(0, store.size());
+
+        flush(store);
+        assertEquals(2, store.size());
+        assertArrayEquals(new long[]{0L, 90000L}, store.get("video-2"));
+
+        store.remove("video-2");
+        assertNull(store.get("video-2"));
+        flush(store);
+
+        ResumePositionStore reopened = new ResumePositionStore(directory);
+        assertEquals(1, reopened.size());
+        assertEquals(1, reopened.tombstones());
+        assertArrayEquals(new long[]{42000L, 600000L}, reopened.get("video-1"));
+        assertNull(reopened.get("video-2"));
+        assertEquals(0, new File(directory, ResumePositionStore.JOURNAL_FILE).length());
+    }
+
+    @Test
+    public void replaysTheJournalLeftByACrash() throws Exception {
+        writeJournal(ResumePositionStore.JOURNAL_MAGIC,
+                new long[]{5L, 1000L, 60000L, 1L},
+                new long[]{6L, 2000L, 60000L, 2L});
+
+        ResumePositionStore store = new ResumePositionStore(directory);
+        assertEquals(2, store.size());
+        assertArrayEquals(new long[]{1000L, 60000L}, store.getByKey(5L));
+        assertArrayEquals(new long[]{2000L, 60000L}, store.getByKey(6L));
+        assertEquals(0, new File(directory, ResumePositionStore.JOURNAL_FILE).length());
+
+        // Un borrado en el journal deja lápida
+        writeJournal(ResumePositionStore.JOURNAL_MAGIC, new long[]{5L, -1L, 0L, 3L});
+        store = new ResumePositionStore(directory);
+        assertNull(store.getByKey(5L));
+        assertArrayEquals(new long[]{2000L, 60000L}, store.getByKey(6L));
+        assertEquals(1, store.tombstones());
+    }
+
+    @Test
+    public void discardsATornJournal() throws Exception {
+        writeJournal(ResumePositionStore.JOURNAL_MAGIC, new long[]{5L, 1000L, 60000L, 1L});
+        File journal = new File(directory, ResumePositionStore.JOURNAL_FILE);
+        byte[] torn = new byte[(int) journal.length() - 3];
+        System.arraycopy(Files.readAllBytes(journal.toPath()), 0, torn, 0, torn.length);
+        try (FileOutputStream out = new FileOutputStream(journal)) {
+            out.write(torn);
+        }
+
+        ResumePositionStore store = new ResumePositionStore(directory);
+        assertEquals(0, store.size());
+        assertNull(store.getByKey(5L));
+        assertEquals(1L, PluginMetrics.get().counter("resume.journal.discarded").sum());
+    }
+
+    @Test
+    public void fullTableEvictsTheOldestEntryInTheProbeWindow() throws Exception {
+        // Claves 2..MAX_ENTRIES+1 en sus propios slots; la clave 17 es la más antigua
+        long[][] records = new long[ResumePositionStore.MAX_ENTRIES][];
+        for (int i = 0; i < records.length; i++) {
+            long key = i + 2;
+            records[i] = new long[]{key, key * 1000L, 60000L, key == 17L ? 1L : 1000L + key};
+        }
+        writeJournal(ResumePositionStore.JOURNAL_MAGIC, records);
+        ResumePositionStore store = new ResumePositionStore(directory);
+        assertEquals(ResumePositionStore.MAX_ENTRIES, store.size());
+
+        // Cae en el slot 10: desaloja la más antigua entre los slots 10 y 25
+        long newcomer = ResumePositionStore.CAPACITY + 10L;
+        writeJournal(ResumePositionStore.JOURNAL_MAGIC, new long[]{newcomer, 7000L, 60000L, 5000L});
+        store = new ResumePositionStore(directory);
+
+        assertEquals(ResumePositionStore.MAX_ENTRIES, store.size());
+        assertArrayEquals(new long[]{7000L, 60000L}, store.getByKey(newcomer));
+        assertNull(store.getByKey(17L));
+        assertArrayEquals(new long[]{10000L, 60000L}, store.getByKey(10L));
+        assertArrayEquals(new long[]{18000L, 60000L}, store.getByKey(18L));
+    }
+
+    @Test
+    public void rebuildsTheTableWhenTombstonesPileUp() throws Exception {
+        ResumePositionStore store = new ResumePositionStore(directory);
+        int removed = ResumePositionStore.MAX_TOMBSTONES + 1;
+        for (int i = 0; i < removed + 10; i++) {
+            store.put("video-" + i, i * 1000L, 60000L);
+        }
+        flush(store);
+        for (int i = 0; i < removed; i++) {
+            store.remove("video-" + i);
+        }
+        flush(store);
+
+        assertEquals(0, store.tombstones());
+        assertEquals(10, store.size());
+        assertEquals(1L, PluginMetrics.get().counter("resume.compactions").sum());
+        for (int i = 0; i < removed + 10; i++) {
+            long[] saved = store.get("video-" + i);
+            if (i < removed) {
+                assertNull(saved);
+            } else {
+                assertArrayEquals(new long[]{i * 1000L, 60000L}, saved);
+            }
+        }
+
+        ResumePositionStore reopened = new ResumePositionStore(directory);
+        assertEquals(0, reopened.tombstones());
+        assertEquals(10, reopened.size());
+    }
+
+    @Test
+    public void compactionJournalReplacesTheWholeTable() throws Exception {
+        writeJournal(ResumePositionStore.JOURNAL_MAGIC,
+                new long[]{5L, 1000L, 60000L, 1L},
+                new long[]{6L, 2000L, 60000L, 2L},
+                new long[]{7L, -1L, 0L, 3L});
+        new ResumePositionStore(directory);
+
+        // Crash a mitad de una reconstrucción: el journal describe la tabla completa
+        writeJournal(ResumePositionStore.COMPACT_MAGIC, new long[]{6L, 2000L, 60000L, 2L});
+        ResumePositionStore store = new ResumePositionStore(directory);
+
+        assertEquals(1, store.size());
+        assertEquals(0, store.tombstones());
+        assertNull(store.getByKey(5L));
+        assertArrayEquals(new long[]{2000L, 60000L}, store.getByKey(6L));
+    }
+
+    private static void flush(ResumePositionStore store) throws Exception {
+        store.flush().get(10, TimeUnit.SECONDS);
+    }
+
+    // {clave, posición, duración, timestamp} por registro, en el formato del journal
+    private void writeJournal(int magic, long[]... records) throws IOException {
+        int size = records.length * ResumePositionStore.RECORD_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate(8 + size + 8).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(magic);
+        buffer.putInt(records.length);
+        for (long[] record : records) {
+            for (long value : record) {
+                buffer.putLong(value);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 8, size);
+        buffer.putLong(crc.getValue());
+        try (FileOutputStream out = new FileOutputStream(new File(directory, ResumePositionStore.JOURNAL_FILE))) {
+            out.write(buffer.array());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.advanced_video_player;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class RouteEventBatcherTest {
+    private final VirtualClock clock = new VirtualClock();
+    private final List<List<Map<String, Object>>> batches = new ArrayList<>();
+    private final RouteEventBatcher batcher = new RouteEventBatcher(clock, 250, new RouteEventBatcher.Sink() {
+        @Override
+        public void deliver(List<Map<String, Object>> events) {
+            batches.add(events);
+        }
+    });
+
+    @Test
+    public void deliversOneBatchPerWindow() {
+        batcher.offer(RouteEventBatcher.ADDED, "a", "Salón");
+        batcher.offer(RouteEventBatcher.ADDED, "b", "Cocina");
+        clock.advance(249);
+        assertEquals(0, batches.size());
+
+        clock.advance(1);
+        assertEquals(1, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals("a", batches.get(0).get(0).get("id"));
+        assertEquals(0, clock.pending());
+    }
+
+    @Test
+    public void mergesEventsOfTheSameRoute() {
+        batcher.offer(RouteEventBatcher.ADDED, "new", "Nuevo");
+        batcher.offer(RouteEventBatcher.CHANGED, "new", "Nuevo (renombrado)");
+        batcher.offer(RouteEventBatcher.ADDED, "flap", "Intermitente");
+        batcher.offer(RouteEventBatcher.REMOVED, "flap", null);
+        batcher.offer(RouteEventBatcher.REMOVED, "back", null);
+        batcher.offer(RouteEventBatcher.ADDED, "back", "Vuelve");
+        batcher.offer(RouteEventBatcher.CHANGED, "gone", "Se va");
+        batcher.offer(RouteEventBatcher.REMOVED, "gone", null);
+        clock.advance(250);
+
+        List<Map<String, Object>> batch = batches.get(0);
+        assertEquals(3, batch.size());
+        assertEquals(RouteEventBatcher.ADDED, batch.get(0).get("event"));
+        assertEquals("Nuevo (renombrado)", batch.get(0).get("name"));
+        assertEquals(RouteEventBatcher.CHANGED, batch.get(1).get("event"));
+        assertEquals("back", batch.get(1).get("id"));
+        assertEquals(RouteEventBatcher.REMOVED, batch.get(2).get("event"));
+        assertEquals(8, batcher.offered());
+        assertEquals(3, batcher.delivered());
+    }
+
+    @Test
+    public void keepsOnlyTheLastSelection() {
+        batcher.offer(RouteEventBatcher.SELECTED, "tv", "Salón");
+        batcher.offer(RouteEventBatcher.UNSELECTED, "tv", "Salón");
+        batcher.offer(RouteEventBatcher.CHANGED, "tv", "Salón");
+        clock.advance(250);
+
+        List<Map<String, Object>> batch = batches.get(0);
+        assertEquals(2, batch.size());
+        assertEquals(RouteEventBatcher.UNSELECTED, batch.get(0).get("event"));
+        assertEquals(RouteEventBatcher.CHANGED, batch.get(1).get("event"));
+    }
+
+    @Test
+    public void emptyWindowDeliversNothing() {
+        batcher.offer(RouteEventBatcher.ADDED, "a", "Salón");
+        batcher.offer(RouteEventBatcher.REMOVED, "a", null);
+        clock.advance(250);
+        batcher.offer(RouteEventBatcher.ADDED, "b", "Cocina");
+        clock.advance(250);
+
+        assertEquals(1, batches.size());
+        assertEquals("b", batches.get(0).get(0).get("id"));
+        assertEquals(1, batcher.batches());
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.advanced_video_player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SessionWaiterTest {
+    private long slept;
+
+    private final SessionWaiter waiter = new SessionWaiter(new SessionWaiter.Sleeper() {
+        @Override
+        public void sleep(long millis) {
+            slept += millis;
+        }
+    }, 100);
+
+    @Test
+    public void returnsImmediatelyWhenAvailable() throws InterruptedException {
+        assertEquals("session", waiter.await(new SessionWaiter.Probe<String>() {
+            @Override
+            public String poll() {
+                return "session";
+            }
+        }, 30));
+        assertEquals(0, waiter.attempts());
+        assertEquals(0, slept);
+    }
+
+    @Test
+    public void pollsUntilAvailable() throws InterruptedException {
+        final int[] polls = {0};
+        String value = waiter.await(new SessionWaiter.Probe<String>() {
+            @Override
+            public String poll() {
+                return ++polls[0] == 4 ? "client" : null;
+            }
+        }, 30);
+
+        assertEquals("client", value);
+        assertEquals(3, waiter.attempts());
+        assertEquals(300, slept);
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() throws InterruptedException {
+        Object value = waiter.await(new SessionWaiter.Probe<Object>() {
+            @Override
+            public Object poll() {
+                return null;
+            }
+        }, waiter.attemptsFor(3000));
+
+        assertNull(value);
+        assertEquals(30, waiter.attempts());
+        assertEquals(3000, slept);
+    }
+
+    @Test
+    public void pollRetriesOnTheSchedulerWithoutBlocking() {
+        VirtualClock clock = new VirtualClock();
+        final SessionWaiter scheduled = SessionWaiter.scheduled(clock, 100);
+        final int[] polls = {0};
+        final Object[] result = {null};
+        scheduled.poll(new SessionWaiter.Probe<String>() {
+            @Override
+            public String poll() {
+                return ++polls[0] == 4 ? "client" : null;
+            }
+        }, 30, new SessionWaiter.Listener<String>() {
+            @Override
+            public void onResult(String value) {
+                result[0] = value;
+            }
+        });
+
+        // poll vuelve tras el primer sondeo; el resto llega al avanzar el reloj
+        assertEquals(1, polls[0]);
+        assertNull(result[0]);
+        clock.advance(300);
+        assertEquals("client", result[0]);
+        assertEquals(3, scheduled.attempts());
+        assertEquals(0, clock.pending());
+    }
+
+    @Test
+    public void pollReportsNullAfterMaxAttempts() {
+        VirtualClock clock = new VirtualClock();
+        SessionWaiter scheduled = SessionWaiter.scheduled(clock, 100);
+        final boolean[] done = {false};
+        scheduled.poll(new SessionWaiter.Probe<Object>() {
+            @Override
+            public Object poll() {
+                return null;
+            }
+        }, scheduled.attemptsFor(3000), new SessionWaiter.Listener<Object>() {
+            @Override
+            public void onResult(Object value) {
+                assertNull(value);
+                done[0] = true;
+            }
+        });
+
+        clock.advance(2900);
+        assertTrue(!done[0]);
+        clock.advance(100);
+        assertTrue(done[0]);
+        assertEquals(30, scheduled.attempts());
+    }
+}
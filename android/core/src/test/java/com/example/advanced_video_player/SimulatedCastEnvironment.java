@@ -0,0 +1,244 @@
+package com.example.advanced_video_player;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * MediaRouter, SessionManager y RemoteMediaClient simulados para probar el núcleo
+ * del plugin con muchos receptores, rutas inestables, sesiones que fallan y latencia.
+ *
+ * Todo corre sobre un {@link VirtualClock}: las rutas cambian según
+ * {@link #churnPerSecond}, y las sesiones tardan entre {@link #sessionLatencyMinMs}
+ * y {@link #sessionLatencyMaxMs} en empezar (o fallar con probabilidad
+ * {@link #sessionFailureRate}). Los eventos llegan a los listeners con los mismos
+ * nombres que usan MediaRouterCallback y el SessionManagerListener de
+ * {@link CastHub}, para conectarlos a las mismas piezas que en el dispositivo.
+ *
+ * La configuración se fija con los campos antes de {@link #start}.
+ */
+final class SimulatedCastEnvironment {
+    /** Ruta simulada, con lo que el plugin lee de un RouteInfo. */
+    static final class Route {
+        final String id;
+        String name;
+        boolean available = true;
+
+        Route(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    /** Como MediaRouter.Callback. */
+    interface RouteListener {
+        void onRouteEvent(String event, Route route);
+    }
+
+    /** Como SessionManagerListener, con los eventos de {@link CastSessionState}. */
+    interface SessionListener {
+        void onSessionEvent(String event, String sessionId);
+    }
+
+    /** Lector de rutas simuladas para {@link DeviceCatalog}. */
+    static final DeviceCatalog.RouteReader<Route> READER = new DeviceCatalog.RouteReader<Route>() {
+        @Override
+        public String id(Route route) {
+            return route.id;
+        }
+
+        @Override
+        public String name(Route route) {
+            return route.name;
+        }
+
+        @Override
+        public boolean isAvailable(Route route) {
+            return route.available;
+        }
+
+        @Override
+        public Map<String, Object> extract(Route route) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("id", route.id);
+            entry.put("type", CastModels.TYPE_CHROMECAST);
+            entry.put("modelName", "Chromecast");
+            entry.put("ipAddress", "10.0." + (route.id.hashCode() >>> 8 & 0xff) + "." + (route.id.hashCode() & 0xff));
+            entry.put("port", 8009);
+            return entry;
+        }
+    };
+
+    // Configuración
+    int routes = 20;
+    double churnPerSecond;
+    /** Fracción de rutas que desaparecen sin evento {@code removed}. */
+    double silentLossRate;
+    double sessionFailureRate;
+    long sessionLatencyMinMs = 200;
+    long sessionLatencyMaxMs = 800;
+    long mediaClientLatencyMinMs = 100;
+    long mediaClientLatencyMaxMs = 600;
+
+    private final VirtualClock clock;
+    private final Random random;
+    private final List<Route> live = new ArrayList<>();
+    private final List<RouteListener> routeListeners = new ArrayList<>();
+    private final List<SessionListener> sessionListeners = new ArrayList<>();
+    private int nextRoute;
+    private int nextSession;
+    private long routeEvents;
+
+    // Sesión en curso
+    private String sessionId;
+    private boolean sessionActive;
+    private long mediaClientReadyAt = Long.MAX_VALUE;
+
+    SimulatedCastEnvironment(VirtualClock clock, long seed) {
+        this.clock = clock;
+        this.random = new Random(seed);
+    }
+
+    void addRouteListener(RouteListener listener) {
+        routeListeners.add(listener);
+    }
+
+    void addSessionListener(SessionListener listener) {
+        sessionListeners.add(listener);
+    }
+
+    /** Publica las rutas iniciales y arranca la inestabilidad. */
+    void start() {
+        for (int i = 0; i < routes; i++) {
+            addRoute();
+        }
+        if (churnPerSecond > 0) {
+            scheduleChurn();
+        }
+    }
+
+    /** Copia de las rutas actuales, como {@code MediaRouter.getRoutes()}. */
+    List<Route> getRoutes() {
+        return new ArrayList<>(live);
+    }
+
+    /** Eventos de rutas emitidos. */
+    long routeEvents() {
+        return routeEvents;
+    }
+
+    /** Rutas disponibles ahora mismo. */
+    int availableRoutes() {
+        int count = 0;
+        for (Route route : live) {
+            if (route.available) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Empieza una sesión con la ruta, como al seleccionarla en MediaRouter. Emite
+     * {@code starting} enseguida y {@code started} o {@code startFailed} tras la
+     * latencia.
+     */
+    void startSession(String routeId) {
+        final String id = "session-" + (++nextSession) + "@" + routeId;
+        final boolean fails = random.nextDouble() < sessionFailureRate;
+        final long mediaClientDelay = between(mediaClientLatencyMinMs, mediaClientLatencyMaxMs);
+        dispatchSession(CastSessionState.EVENT_STARTING, null);
+        clock.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (fails) {
+                    dispatchSession(CastSessionState.EVENT_START_FAILED, null);
+                    return;
+                }
+                sessionId = id;
+                sessionActive = true;
+                mediaClientReadyAt = clock.now() + mediaClientDelay;
+                dispatchSession(CastSessionState.EVENT_STARTED, id);
+            }
+        }, between(sessionLatencyMinMs, sessionLatencyMaxMs));
+    }
+
+    /** Termina la sesión en curso. */
+    void endSession() {
+        if (!sessionActive) {
+            return;
+        }
+        dispatchSession(CastSessionState.EVENT_ENDING, null);
+        sessionActive = false;
+        sessionId = null;
+        mediaClientReadyAt = Long.MAX_VALUE;
+        dispatchSession(CastSessionState.EVENT_ENDED, null);
+    }
+
+    /** Sesión actual, como {@code SessionManager.getCurrentCastSession()}. */
+    String currentSession() {
+        return sessionActive ? sessionId : null;
+    }
+
+    /** RemoteMediaClient de la sesión; null hasta que el receptor carga la app. */
+    Object remoteMediaClient() {
+        return sessionActive && clock.now() >= mediaClientReadyAt ? sessionId : null;
+    }
+
+    private void scheduleChurn() {
+        clock.schedule(new Runnable() {
+            @Override
+            public void run() {
+                churn();
+                scheduleChurn();
+            }
+        }, Math.max(1, (long) (1000 / churnPerSecond)));
+    }
+
+    // Un cambio al azar: una ruta se va y llega otra, cambia de nombre o de disponibilidad
+    private void churn() {
+        int action = random.nextInt(3);
+        if (live.isEmpty() || action == 0) {
+            if (!live.isEmpty()) {
+                Route gone = live.remove(random.nextInt(live.size()));
+                if (random.nextDouble() >= silentLossRate) {
+                    dispatchRoute(RouteEventBatcher.REMOVED, gone);
+                }
+            }
+            addRoute();
+        } else {
+            Route route = live.get(random.nextInt(live.size()));
+            if (action == 1) {
+                route.name = "Televisor " + route.id + " (" + clock.now() + ")";
+            } else {
+                route.available = !route.available;
+            }
+            dispatchRoute(RouteEventBatcher.CHANGED, route);
+        }
+    }
+
+    private void addRoute() {
+        Route route = new Route("route-" + (nextRoute++), "Televisor " + nextRoute);
+        live.add(route);
+        dispatchRoute(RouteEventBatcher.ADDED, route);
+    }
+
+    private void dispatchRoute(String event, Route route) {
+        routeEvents++;
+        for (RouteListener listener : routeListeners) {
+            listener.onRouteEvent(event, route);
+        }
+    }
+
+    private void dispatchSession(String event, String id) {
+        for (SessionListener listener : sessionListeners) {
+            listener.onSessionEvent(event, id);
+        }
+    }
+
+    private long between(long min, long max) {
+        return max <= min ? min : min + (long) (random.nextDouble() * (max - min));
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.advanced_video_player;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TrimPolicyTest {
+    @Test
+    public void runningLevelsEscalate() {
+        assertEquals(TrimPolicy.TIER_NONE, TrimPolicy.tierFor(0));
+        assertEquals(TrimPolicy.TIER_CACHES, TrimPolicy.tierFor(TrimPolicy.TRIM_MEMORY_RUNNING_MODERATE));
+        assertEquals(TrimPolicy.TIER_DISCOVERY, TrimPolicy.tierFor(TrimPolicy.TRIM_MEMORY_RUNNING_LOW));
+        assertEquals(TrimPolicy.TIER_SESSIONS, TrimPolicy.tierFor(TrimPolicy.TRIM_MEMORY_RUNNING_CRITICAL));
+    }
+
+    @Test
+    public void backgroundLevelsEscalate() {
+        assertEquals(TrimPolicy.TIER_DISCOVERY, TrimPolicy.tierFor(TrimPolicy.TRIM_MEMORY_UI_HIDDEN));
+        assertEquals(TrimPolicy.TIER_DISCOVERY, TrimPolicy.tierFor(TrimPolicy.TRIM_MEMORY_BACKGROUND));
+        assertEquals(TrimPolicy.TIER_SESSIONS, TrimPolicy.tierFor(TrimPolicy.TRIM_MEMORY_MODERATE));
+        assertEquals(TrimPolicy.TIER_SESSIONS, TrimPolicy.tierFor(TrimPolicy.LOW_MEMORY));
+    }
+
+    @Test
+    public void unknownLevelsUseTheNearestLowerOne() {
+        assertEquals(TrimPolicy.TIER_CACHES, TrimPolicy.tierFor(7));
+        assertEquals(TrimPolicy.TIER_DISCOVERY, TrimPolicy.tierFor(50));
+        assertEquals(TrimPolicy.TIER_SESSIONS, TrimPolicy.tierFor(100));
+        assertEquals("level50", TrimPolicy.levelName(50));
+        assertEquals("background", TrimPolicy.levelName(TrimPolicy.TRIM_MEMORY_BACKGROUND));
+        assertEquals("discovery", TrimPolicy.tierName(TrimPolicy.TIER_DISCOVERY));
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.advanced_video_player;
+
+import java.util.PriorityQueue;
+
+/**
+ * Reloj simulado para los tests de carga: hace de Handler principal
+ * ({@link RouteEventBatcher.Scheduler}) y de pausa ({@link SessionWaiter.Sleeper}).
+ *
+ * Las tareas se ejecutan en el hilo del test, en orden de vencimiento, al avanzar
+ * el reloj. Dormir avanza el reloj, así que los eventos simulados llegan mientras
+ * se espera la sesión, como en el dispositivo.
+ */
+final class VirtualClock implements RouteEventBatcher.Scheduler, SessionWaiter.Sleeper {
+    private static final class Task implements Comparable<Task> {
+        final long dueMs;
+        final long order;
+        final Runnable runnable;
+
+        Task(long dueMs, long order, Runnable runnable) {
+            this.dueMs = dueMs;
+            this.order = order;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (dueMs != other.dueMs) {
+                return dueMs < other.dueMs ? -1 : 1;
+            }
+            return order < other.order ? -1 : (order == other.order ? 0 : 1);
+        }
+    }
+
+    private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+    private long nowMs;
+    private long scheduled;
+
+    long now() {
+        return nowMs;
+    }
+
+    @Override
+    public void schedule(Runnable task, long delayMs) {
+        tasks.add(new Task(nowMs + Math.max(0, delayMs), scheduled++, task));
+    }
+
+    @Override
+    public void sleep(long millis) {
+        advance(millis);
+    }
+
+    /** Avanza el reloj ejecutando las tareas que vencen por el camino. */
+    void advance(long millis) {
+        long target = nowMs + millis;
+        while (!tasks.isEmpty() && tasks.peek().dueMs <= target) {
+            Task task = tasks.poll();
+            nowMs = task.dueMs;
+            task.runnable.run();
+        }
+        nowMs = target;
+    }
+
+    /** Tareas pendientes. */
+    int pending() {
+        return tasks.size();
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.advanced_video_player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Fiestas de visionado reales sobre loopback: un líder y varios seguidores en el
+ * mismo proceso, cada uno con su reloj desplazado como si fueran teléfonos distintos.
+ */
+public class WatchPartyPeerTest {
+    private static final int CODE = 424242;
+    private static final long MS = 1000000L;
+    private static final long WAIT_MS = 5000;
+
+    private final List<WatchPartyPeer> peers = new ArrayList<>();
+
+    /** Reloj del sistema desplazado {@code offsetMs}. */
+    private static WatchPartyPeer.Clock shifted(final long offsetMs) {
+        return new WatchPartyPeer.Clock() {
+            @Override
+            public long nanos() {
+                return System.nanoTime() + offsetMs * MS;
+            }
+        };
+    }
+
+    private WatchPartyPeer lead(long offsetMs) throws IOException {
+        WatchPartyPeer peer = WatchPartyPeer.lead(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), CODE, shifted(offsetMs));
+        peers.add(peer);
+        return peer;
+    }
+
+    private WatchPartyPeer follow(WatchPartyPeer leader, int code, long offsetMs) throws IOException {
+        WatchPartyPeer peer = WatchPartyPeer.follow(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), leader.localPort()), code, shifted(offsetMs));
+        peers.add(peer);
+        return peer;
+    }
+
+    @After
+    public void closePeers() {
+        for (WatchPartyPeer peer : peers) {
+            peer.close();
+        }
+    }
+
+    private static void await(String what, Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (!condition.met()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Sin " + what + " tras " + WAIT_MS + " ms");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private interface Condition {
+        boolean met();
+    }
+
+    @Test
+    public void followersEstimateTheLeaderClockAndPosition() throws Exception {
+        final WatchPartyPeer leader = lead(0);
+        final long[] offsetsMs = {250, -1300, 7_000_000};
+        final List<WatchPartyPeer> followers = new ArrayList<>();
+        for (long offset : offsetsMs) {
+            followers.add(follow(leader, CODE, offset));
+        }
+        await("seguidores", new Condition() {
+            @Override
+            public boolean met() {
+                return leader.followers() == offsetsMs.length;
+            }
+        });
+        for (final WatchPartyPeer follower : followers) {
+            await("sincronía de reloj", new Condition() {
+                @Override
+                public boolean met() {
+                    ClockOffsetEstimator.Estimate estimate = follower.clockEstimate();
+                    return estimate != null && estimate.samples == ClockOffsetEstimator.WINDOW;
+                }
+            });
+        }
+        leader.update(60_000, true, 1.0);
+        for (final WatchPartyPeer follower : followers) {
+            await("estado del líder", new Condition() {
+                @Override
+                public boolean met() {
+                    return follower.state() != null;
+                }
+            });
+        }
+
+        // El reloj del seguidor va offset por delante: la estimación debe ser -offset
+        double worstSkewMs = 0;
+        for (int i = 0; i < followers.size(); i++) {
+            ClockOffsetEstimator.Estimate estimate = followers.get(i).clockEstimate();
+            double errorMs = Math.abs(estimate.offsetNanos + offsetsMs[i] * MS) / 1e6;
+            double skewMs = Math.abs(followers.get(i).expected().positionMs - leader.expected().positionMs);
+            worstSkewMs = Math.max(worstSkewMs, skewMs);
+            System.out.println(String.format(Locale.US, "seguidor %+d ms: %s, error %.3f ms, desfase %.3f ms",
+                    offsetsMs[i], estimate, errorMs, skewMs));
+            assertTrue(estimate.toString(), errorMs < 5);
+            assertTrue(followers.get(i).expected().playing);
+        }
+        assertTrue("desfase " + worstSkewMs, worstSkewMs < 50);
+    }
+
+    @Test
+    public void pauseAndSeekReachFollowers() throws Exception {
+        final WatchPartyPeer leader = lead(0);
+        final WatchPartyPeer follower = follow(leader, CODE, -40_000);
+        leader.update(1_000, true, 1.0);
+        await("estado y reloj", new Condition() {
+            @Override
+            public boolean met() {
+                return follower.expected() != null;
+            }
+        });
+
+        leader.update(95_500, false, 1.0);
+        await("pausa", new Condition() {
+            @Override
+            public boolean met() {
+                return !follower.expected().playing;
+            }
+        });
+        // En pausa la posición no avanza, sea cual sea el reloj
+        assertEquals(95_500, follower.expected().positionMs, 0);
+        assertEquals(95_500, leader.expected().positionMs, 0);
+
+        leader.update(10_000, true, 1.5);
+        await("velocidad", new Condition() {
+            @Override
+            public boolean met() {
+                return follower.expected().rate == 1.5;
+            }
+        });
+        assertTrue(Math.abs(follower.expected().positionMs - leader.expected().positionMs) < 50);
+    }
+
+    @Test
+    public void otherPartiesAreIgnoredAndLeaversAreDropped() throws Exception {
+        final WatchPartyPeer leader = lead(0);
+        leader.update(0, false, 1.0);
+        final WatchPartyPeer stranger = follow(leader, CODE + 1, 0);
+        final WatchPartyPeer member = follow(leader, CODE, 0);
+        await("miembro", new Condition() {
+            @Override
+            public boolean met() {
+                return leader.followers() == 1 && member.state() != null;
+            }
+        });
+        Thread.sleep(200);
+        assertEquals(1, leader.followers());
+        assertNull(stranger.state());
+        assertNull(stranger.clockEstimate());
+
+        member.close();
+        await("salida", new Condition() {
+            @Override
+            public boolean met() {
+                return leader.followers() == 0;
+            }
+        });
+        assertNotNull(member.state());
+        assertFalse(member.isLeader());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void onlyTheLeaderUpdates() throws Exception {
+        follow(lead(0), CODE, 0).update(0, true, 1.0);
+    }
+}
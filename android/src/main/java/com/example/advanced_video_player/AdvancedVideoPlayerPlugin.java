@@ -1,6 +1,13 @@
 package com.example.advanced_video_player;
 
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -16,7 +23,6 @@ import io.flutter.plugin.common.MethodChannel.Result;
 import com.google.android.gms.cast.framework.CastContext;
 import com.google.android.gms.cast.framework.CastSession;
 import com.google.android.gms.cast.framework.SessionManager;
-import com.google.android.gms.cast.framework.SessionManagerListener;
 import com.google.android.gms.cast.framework.CastState;
 import com.google.android.gms.cast.framework.CastStateListener;
 import com.google.android.gms.common.ConnectionResult;
@@ -25,34 +31,147 @@ import com.google.android.gms.cast.framework.media.RemoteMediaClient;
 import com.google.android.gms.cast.MediaInfo;
 import com.google.android.gms.cast.MediaMetadata;
 import com.google.android.gms.cast.MediaLoadRequestData;
+import com.google.android.gms.cast.MediaSeekOptions;
+import com.google.android.gms.cast.MediaStatus;
+import com.google.android.gms.cast.MediaTrack;
+import com.google.android.gms.common.api.PendingResult;
 import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.images.WebImage;
 
 import androidx.mediarouter.media.MediaRouter;
-import androidx.mediarouter.media.MediaRouteSelector;
 import androidx.mediarouter.media.MediaRouter.RouteInfo;
-import androidx.mediarouter.media.MediaControlIntent;
-import androidx.mediarouter.media.MediaRouter.Callback;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.regex.Pattern;
 
 public class AdvancedVideoPlayerPlugin implements FlutterPlugin, MethodCallHandler, ActivityAware {
     private static final String CHANNEL_NAME = "advanced_video_player";
     private static final String SCREEN_SHARING_CHANNEL = "screen_sharing";
+
+    // Claves de los registros en el ledger
+    private static final String KEY_SESSION_LISTENER = "castHub.session";
+    private static final String KEY_ROUTER_CALLBACK = "castHub.discovery";
+    private static final String KEY_CONNECT_LISTENER = "cast.connectStateListener";
+    private static final String KEY_MDNS_BROWSER = "cast.mdnsBrowser";
+    private static final String KEY_DLNA_BACKEND = "renderer.dlna";
+    private static final String KEY_TRIM_CALLBACKS = "memory.componentCallbacks";
+    private static final String KEY_REMOTE_STATUS = "cast.remoteMediaCallback";
+    private static final String KEY_WATCH_PARTY = "watchParty.peer";
+    private static final String KEY_HLS_STARTUP = "hls.startup";
+
+    // Espera de la primera búsqueda por mDNS antes de responder a Dart
+    private static final long MDNS_FIRST_ANSWER_DELAY_MS = 1000;
+    // Espera de la sesión Cast y de su RemoteMediaClient al compartir un video
+    private static final long SESSION_POLL_INTERVAL_MS = 100;
+    private static final long SESSION_WAIT_MS = 3000;
+    private static final long MEDIA_CLIENT_WAIT_MS = 8000;
+    // Ventana en la que se agrupan los eventos de rutas antes de enviarlos a Dart
+    private static final long ROUTE_BATCH_WINDOW_MS = 250;
+    // Tiempo que se mantiene Cast iniciado al arrancar para reconectar con el último receptor
+    private static final long RECONNECT_WARMUP_MS = 15000;
+    // Velocidades que admite el receptor Cast por defecto
+    private static final double MIN_CAST_PLAYBACK_RATE = 0.5;
+    private static final double MAX_CAST_PLAYBACK_RATE = 2.0;
+    // Espera de la playlist maestra al preseleccionar la variante de arranque
+    private static final int HLS_PLAYLIST_TIMEOUT_MS = 5000;
+    // Códigos de fiesta de visionado de seis cifras, para escribirlos a mano si no hay QR
+    private static final int WATCH_PARTY_CODE_RANGE = 1000000;
+    // Los seguidores se unen con la IP del líder: sin nombres, así no hay consulta DNS
+    private static final Pattern IPV4_LITERAL = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
     
     private MethodChannel channel;
     private MethodChannel screenSharingChannel;
     private Context context;
-    private CastContext castContext;
-    private CastSession castSession;
-    private SessionManager sessionManager;
-    private SessionManagerListener<CastSession> sessionManagerListener;
-    private MediaRouter mediaRouter;
-    private MediaRouteSelector routeSelector;
-    private MediaRouterCallback routerCallback;
+    // Cast y MediaRouter se comparten entre todos los engines del proceso
+    private final CastHub castHub = CastHub.get();
+    private final CastHub.Listener castListener = new CastHub.Listener() {
+        @Override
+        public void onSessionEvent(String event, CastSession session, int error) {
+            if (CastHub.SESSION_SUSPENDED.equals(event) || CastHub.SESSION_ENDED.equals(event)) {
+                notifyCastOwnerDisconnected();
+                // El RemoteMediaClient de esta sesión ya no informará nada
+                ledger.release(KEY_REMOTE_STATUS);
+            }
+            if (CastHub.SESSION_ENDED.equals(event)) {
+                players.setCastOwner(PlayerRegistry.NO_PLAYER);
+            }
+        }
+
+        @Override
+        public void onRouteEvent(String event, RouteInfo route) {
+            routeEvents.offer(event, route.getId(), route.getName());
+            LastCastRoute remembered = reconnectRoute;
+            if (remembered != null && remembered.matches(route.getId()) && !CastHub.ROUTE_REMOVED.equals(event)) {
+                reconnectRoute = null;
+                PluginMetrics.get().increment("cast.reconnect.routeFound");
+                Log.d("AdvancedVideoPlayer", "🎯 Receptor recordado disponible: " + route.getName());
+            }
+        }
+    };
+    // Último receptor que se busca durante el arranque (null si ya apareció o no hay)
+    private LastCastRoute reconnectRoute;
+    // Fin del arranque de Cast para reconectar: suelta lo que ningún reproductor pidió
+    private final Runnable endCastWarmUp = new Runnable() {
+        @Override
+        public void run() {
+            reconnectRoute = null;
+            if (players.refCount(PlayerRegistry.RESOURCE_DISCOVERY) == 0) {
+                ledger.release(KEY_ROUTER_CALLBACK);
+            }
+            if (players.refCount(PlayerRegistry.RESOURCE_CAST) == 0 && players.castOwner() == PlayerRegistry.NO_PLAYER
+                    && !castHub.sessionState().isActive()) {
+                ledger.release(KEY_SESSION_LISTENER);
+            }
+        }
+    };
     private PictureInPicturePlugin pictureInPicturePlugin;
+    private ResumePositionStore resumePositionStore;
+    private QoeRecorder qoeRecorder;
+    // Listeners, callbacks y receivers vivos de este engine
+    private final RegistrationLedger ledger = new RegistrationLedger();
+    // Reproductores de este engine y recursos compartidos entre ellos
+    private final PlayerRegistry players = new PlayerRegistry();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Temporizador de los componentes de core sobre el hilo principal
+    private final RouteEventBatcher.Scheduler mainScheduler = new RouteEventBatcher.Scheduler() {
+        @Override
+        public void schedule(Runnable task, long delayMs) {
+            mainHandler.postDelayed(task, delayMs);
+        }
+    };
+    // Eventos de rutas (MediaRouter y mDNS) hacia Dart, agrupados por ventana
+    private final RouteEventBatcher routeEvents = new RouteEventBatcher(mainScheduler, ROUTE_BATCH_WINDOW_MS,
+            new RouteEventBatcher.Sink() {
+                @Override
+                public void deliver(List<Map<String, Object>> events) {
+                    if (screenSharingChannel == null) {
+                        return;
+                    }
+                    Log.d("AdvancedVideoPlayer", "🔄 Rutas: " + events.size() + " cambios enviados ("
+                            + routeEvents.offered() + " eventos recibidos en total)");
+                    Map<String, Object> args = new HashMap<>();
+                    args.put("events", events);
+                    screenSharingChannel.invokeMethod("onRoutesChanged", args);
+                }
+            });
+    // Descubrimiento por mDNS cuando no hay Google Play Services
+    private CastMdnsBrowser mdnsBrowser;
+    // Backends de reproducción remota: Cast y, al primer uso, DLNA/UPnP
+    private final RendererBackend castRenderer = new CastRenderer();
+    private DlnaBackend dlnaBackend;
+    // Fiesta de visionado de este engine (líder o seguidor), o null
+    private WatchPartyPeer watchParty;
+    private final DriftCorrector watchPartyCorrector = new DriftCorrector();
+    // Preselección de variantes HLS y su servidor local, al primer uso
+    private HlsStartup hlsStartup;
 
     @Override
     public void onAttachedToEngine(@NonNull FlutterPluginBinding flutterPluginBinding) {
@@ -69,26 +188,91 @@ public class AdvancedVideoPlayerPlugin implements FlutterPlugin, MethodCallHandl
         screenSharingChannel.setMethodCallHandler(this);
         Log.d("AdvancedVideoPlayer", "🔍 Canal screen sharing creado: " + SCREEN_SHARING_CHANNEL);
         
+        // Recursos compartidos: se cierran cuando ningún reproductor los usa
+        players.setCloser(PlayerRegistry.RESOURCE_DISCOVERY, new RegistrationLedger.Teardown() {
+            @Override
+            public void release() {
+                Log.d("AdvancedVideoPlayer", "🛑 Ningún reproductor busca dispositivos, cancelando suscripción al descubrimiento");
+                ledger.release(KEY_ROUTER_CALLBACK);
+                ledger.release(KEY_MDNS_BROWSER);
+            }
+        });
+        players.setCloser(PlayerRegistry.RESOURCE_CAST, new RegistrationLedger.Teardown() {
+            @Override
+            public void release() {
+                Log.d("AdvancedVideoPlayer", "🛑 Ningún reproductor usa Cast, cancelando suscripción a la sesión");
+                ledger.release(KEY_SESSION_LISTENER);
+            }
+        });
+
+        // Presión de memoria: se sueltan recursos por escalones (ver TrimPolicy)
+        final Context trimContext = context;
+        final ComponentCallbacks2 trimCallbacks = new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                trimMemory(level);
+            }
+
+            @Override
+            public void onLowMemory() {
+                trimMemory(TrimPolicy.LOW_MEMORY);
+            }
+
+            @Override
+            public void onConfigurationChanged(@NonNull Configuration newConfig) {
+            }
+        };
+        trimContext.registerComponentCallbacks(trimCallbacks);
+        ledger.replace(RegistrationLedger.Scope.ENGINE, KEY_TRIM_CALLBACKS, "ComponentCallbacks2", trimCallbacks,
+                new RegistrationLedger.Teardown() {
+                    @Override
+                    public void release() {
+                        trimContext.unregisterComponentCallbacks(trimCallbacks);
+                    }
+                });
+
         // Inicializar PictureInPicturePlugin aquí mismo
-        pictureInPicturePlugin = new PictureInPicturePlugin();
+        pictureInPicturePlugin = new PictureInPicturePlugin(ledger);
         pictureInPicturePlugin.onAttachedToEngine(flutterPluginBinding);
         Log.d("AdvancedVideoPlayer", "✅ PictureInPicturePlugin inicializado");
+
+        warmUpCastReconnect();
     }
 
     @Override
-    public void onMethodCall(@NonNull MethodCall call, @NonNull Result result) {
+    public void onMethodCall(@NonNull MethodCall call, @NonNull Result rawResult) {
         Log.d("AdvancedVideoPlayer", "Method call: " + call.method);
-        // Verificar si es una llamada del canal de screen sharing
-        if (call.method.equals("initialize") || 
-            call.method.equals("isSupported") || 
-            call.method.equals("discoverDevices") || 
-            call.method.equals("connectToDevice") || 
-            call.method.equals("shareVideo") || 
-            call.method.equals("controlPlayback") || 
-            call.method.equals("disconnect")) {
-            handleScreenSharingCall(call, result);
-        } else {
-            handleMainCall(call, result);
+        // Todas las respuestas pasan por TimedResult para medir la latencia de cada método
+        // y mantener abierta la sección de traza con el traceId enviado desde Dart
+        int traceId = PluginTrace.traceIdOf(call);
+        Result result = new TimedResult("channel." + call.method, traceId, rawResult);
+        PluginTrace.begin("channel." + call.method);
+        try {
+            // Verificar si es una llamada del canal de screen sharing
+            boolean screenSharing = call.method.equals("initialize") || 
+                call.method.equals("isSupported") || 
+                call.method.equals("discoverDevices") || 
+                call.method.equals("connectToDevice") || 
+                call.method.equals("shareVideo") || 
+                call.method.equals("controlPlayback") || 
+                call.method.equals("disconnect") ||
+                call.method.equals("getRemotePosition") ||
+                call.method.equals("getLastDevice");
+            MethodCallRecorder.get().record(screenSharing ? SCREEN_SHARING_CHANNEL : CHANNEL_NAME,
+                    call.method, call.arguments);
+            if (screenSharing) {
+                PlayerRegistry.PlayerState player = players.get(PlayerRegistry.handleOf(call.arguments));
+                if (player == null) {
+                    Log.e("AdvancedVideoPlayer", "❌ Reproductor desconocido en " + call.method);
+                    result.error("UNKNOWN_PLAYER", "El reproductor no existe o ya fue liberado", null);
+                    return;
+                }
+                handleScreenSharingCall(call, player, traceId, result);
+            } else {
+                handleMainCall(call, result);
+            }
+        } finally {
+            PluginTrace.end();
         }
     }
 
@@ -98,7 +282,109 @@ public class AdvancedVideoPlayerPlugin implements FlutterPlugin, MethodCallHandl
                 result.success("Android " + android.os.Build.VERSION.RELEASE);
                 break;
             case "initializeCast":
-                initializeCast(result);
+                PlayerRegistry.PlayerState castPlayer = players.get(PlayerRegistry.handleOf(call.arguments));
+                if (castPlayer == null) {
+                    result.error("UNKNOWN_PLAYER", "El reproductor no existe o ya fue liberado", null);
+                    break;
+                }
+                initializeCast(castPlayer, result);
+                break;
+            case "createPlayer":
+                result.success(players.create());
+                break;
+            case "disposePlayer":
+                int disposed = PlayerRegistry.handleOf(call.arguments);
+                castRenderer.release(disposed);
+                // Sin backend DLNA no hay nada que soltar: no se crea solo para eso
+                if (dlnaBackend != null) {
+                    dlnaBackend.release(disposed);
+                }
+                players.release(disposed);
+                result.success(true);
+                break;
+            case "getPlayers":
+                result.success(players.snapshot());
+                break;
+            case "getDeviceClass":
+                result.success(getDeviceClass());
+                break;
+            case "getCastHub":
+                result.success(castHub.snapshot());
+                break;
+            case "getResumePosition":
+                getResumePosition((String) call.argument("contentId"), result);
+                break;
+            case "saveResumePosition":
+                Number positionMs = call.argument("positionMs");
+                Number durationMs = call.argument("durationMs");
+                saveResumePosition((String) call.argument("contentId"),
+                        positionMs != null ? positionMs.longValue() : 0L,
+                        durationMs != null ? durationMs.longValue() : 0L,
+                        result);
+                break;
+            case "clearResumePosition":
+                clearResumePosition((String) call.argument("contentId"), result);
+                break;
+            case "qoeAppend":
+                appendQoeRecords((byte[]) call.argument("records"), result);
+                break;
+            case "qoeDrain":
+                readQoeRecords(true, result);
+                break;
+            case "qoeExport":
+                readQoeRecords(false, result);
+                break;
+            case "getLiveRegistrations":
+                result.success(ledger.snapshot());
+                break;
+            case "getMetrics":
+                result.success(PluginMetrics.get().snapshot());
+                break;
+            case "resetMetrics":
+                PluginMetrics.get().reset();
+                result.success(true);
+                break;
+            case "startCallRecording":
+                startCallRecording((String) call.argument("path"), result);
+                break;
+            case "stopCallRecording":
+                result.success(MethodCallRecorder.get().stop());
+                break;
+            case "hostWatchParty":
+                hostWatchParty((Number) call.argument("port"), result);
+                break;
+            case "joinWatchParty":
+                joinWatchParty((String) call.argument("host"), (Number) call.argument("port"),
+                        (Number) call.argument("code"), result);
+                break;
+            case "updateWatchParty":
+                Number leaderPosition = call.argument("positionMs");
+                Number leaderRate = call.argument("rate");
+                updateWatchParty(leaderPosition != null ? leaderPosition.doubleValue() : 0,
+                        Boolean.TRUE.equals(call.argument("playing")),
+                        leaderRate != null ? leaderRate.doubleValue() : 1.0, result);
+                break;
+            case "syncWatchParty":
+                Number followerPosition = call.argument("positionMs");
+                syncWatchParty(followerPosition != null ? followerPosition.doubleValue() : 0, result);
+                break;
+            case "leaveWatchParty":
+                ledger.release(KEY_WATCH_PARTY);
+                result.success(true);
+                break;
+            case "prepareHlsStartup":
+                prepareHlsStartup((String) call.argument("url"), Boolean.TRUE.equals(call.argument("rewrite")),
+                        result);
+                break;
+            case "recordTransfers":
+                recordTransfers((List<?>) call.argument("bytes"), (List<?>) call.argument("elapsedUs"), result);
+                break;
+            case "getBandwidthEstimate":
+                result.success(BandwidthEstimator.get().snapshot());
+                break;
+            case "resetBandwidthEstimate":
+                BandwidthEstimator.get().reset();
+                result.success(true);
                 break;
             default:
                 result.notImplemented();
@@ -106,7 +392,185 @@ public class AdvancedVideoPlayerPlugin implements FlutterPlugin, MethodCallHandl
         }
     }
 
-    private void handleScreenSharingCall(@NonNull MethodCall call, @NonNull Result result) {
+    /**
+     * Crea una fiesta de visionado con este equipo como líder (ver {@link WatchPartyPeer}).
+     * Responde con la IP, el puerto y el código que necesitan los seguidores.
+     */
+    private void hostWatchParty(Number port, Result result) {
+        InetAddress address = WatchPartyPeer.lanAddress();
+        if (address == null) {
+            result.error("NO_LAN", "No hay red local para la fiesta de visionado", null);
+            return;
+        }
+        int code = new SecureRandom().nextInt(WATCH_PARTY_CODE_RANGE);
+        WatchPartyPeer peer;
+        try {
+            peer = WatchPartyPeer.lead(new InetSocketAddress(port != null ? port.intValue() : 0), code,
+                    WatchPartyPeer.SYSTEM_CLOCK);
+        } catch (IOException e) {
+            Log.e("AdvancedVideoPlayer", "❌ No se pudo crear la fiesta de visionado: " + e.getMessage());
+            result.error("WATCH_PARTY_ERROR", e.getMessage(), null);
+            return;
+        }
+        startWatchParty(peer);
+        Map<String, Object> invite = new HashMap<>();
+        invite.put("host", address.getHostAddress());
+        invite.put("port", peer.localPort());
+        invite.put("code", code);
+        Log.d("AdvancedVideoPlayer", "🎉 Fiesta de visionado en " + address.getHostAddress() + ":" + peer.localPort());
+        result.success(invite);
+    }
+
+    /** Se une como seguidor a la fiesta del líder en {@code host:port}. */
+    private void joinWatchParty(String host, Number port, Number code, Result result) {
+        if (host == null || !IPV4_LITERAL.matcher(host).matches() || port == null || code == null) {
+            result.error("INVALID_ARGUMENTS", "Se necesitan la IP, el puerto y el código del líder", null);
+            return;
+        }
+        WatchPartyPeer peer;
+        try {
+            // Con una IP literal getByName no consulta la red
+            InetSocketAddress leader = new InetSocketAddress(InetAddress.getByName(host), port.intValue());
+            peer = WatchPartyPeer.follow(leader, code.intValue(), WatchPartyPeer.SYSTEM_CLOCK);
+        } catch (IOException e) {
+            Log.e("AdvancedVideoPlayer", "❌ No se pudo unir a la fiesta de visionado: " + e.getMessage());
+            result.error("WATCH_PARTY_ERROR", e.getMessage(), null);
+            return;
+        }
+        startWatchParty(peer);
+        Log.d("AdvancedVideoPlayer", "🎉 Unido a la fiesta de visionado de " + host + ":" + port);
+        result.success(true);
+    }
+
+    private void startWatchParty(final WatchPartyPeer peer) {
+        watchPartyCorrector.reset();
+        watchParty = peer;
+        // La fiesta anterior (si había) se cierra al reemplazarla
+        ledger.replace(RegistrationLedger.Scope.ENGINE, KEY_WATCH_PARTY, "WatchPartyPeer", peer,
+                new RegistrationLedger.Teardown() {
+                    @Override
+                    public void release() {
+                        peer.close();
+                        if (watchParty == peer) {
+                            watchParty = null;
+                        }
+                    }
+                });
+    }
+
+    /** Solo el líder: publica su reproducción. Responde cuántos seguidores hay. */
+    private void updateWatchParty(double positionMs, boolean playing, double rate, Result result) {
+        WatchPartyPeer peer = watchParty;
+        if (peer == null || !peer.isLeader()) {
+            result.error("NOT_LEADER", "Este equipo no lidera ninguna fiesta de visionado", null);
+            return;
+        }
+        peer.update(positionMs, playing, rate);
+        result.success(peer.followers());
+    }
+
+    /**
+     * Solo los seguidores: compara su posición con la del líder y responde cómo
+     * corregirla (velocidad o salto, ver {@link DriftCorrector}), o null mientras
+     * falten el estado del líder o la sincronía de reloj.
+     */
+    private void syncWatchParty(double positionMs, Result result) {
+        WatchPartyPeer peer = watchParty;
+        WatchPartyPeer.Expectation expected = peer != null && !peer.isLeader() ? peer.expected() : null;
+        if (expected == null) {
+            result.success(null);
+            return;
+        }
+        DriftCorrector.Correction correction = expected.playing
+                ? watchPartyCorrector.next(positionMs, expected.positionMs, expected.rate)
+                : watchPartyCorrector.paused(positionMs, expected.positionMs, expected.rate);
+        if (correction.seek) {
+            PluginMetrics.get().increment("watchParty.seek");
+        } else if (correction.rate != expected.rate) {
+            PluginMetrics.get().increment("watchParty.rateAdjust");
+        }
+        Map<String, Object> sync = new HashMap<>();
+        sync.put("playing", expected.playing);
+        sync.put("rate", correction.rate);
+        sync.put("seek", correction.seek);
+        sync.put("targetMs", correction.targetMs);
+        sync.put("errorMs", correction.errorMs);
+        sync.put("clockOffsetMs", expected.clock.offsetNanos / 1e6);
+        sync.put("roundTripMs", expected.clock.delayNanos / 1e6);
+        sync.put("jitterMs", expected.clock.jitterNanos / 1e6);
+        result.success(sync);
+    }
+
+    /**
+     * Elige la variante de arranque de un video HLS según el ancho de banda estimado
+     * (ver {@link HlsStartup}). Con {@code rewrite} responde además con la URL local de
+     * la playlist reordenada; si algo falla responde con la URL original.
+     */
+    private void prepareHlsStartup(String url, boolean rewrite, Result result) {
+        if (url == null || !(url.startsWith("http://") || url.startsWith("https://"))) {
+            result.error("INVALID_ARGUMENTS", "Se necesita la URL http(s) de la playlist", null);
+            return;
+        }
+        PluginMetrics.get().increment("hls.prepare");
+        hlsStartup().prepare(url, rewrite, onMainThread(result));
+    }
+
+    /**
+     * Aporta al estimador las descargas hechas desde Dart (pósters, miniaturas,
+     * subtítulos), en microsegundos desde el primer byte. Responde la estimación.
+     */
+    private void recordTransfers(List<?> bytes, List<?> elapsedUs, Result result) {
+        if (bytes == null || elapsedUs == null || bytes.size() != elapsedUs.size()) {
+            result.error("INVALID_ARGUMENTS", "bytes y elapsedUs deben tener el mismo tamaño", null);
+            return;
+        }
+        BandwidthEstimator estimator = BandwidthEstimator.get();
+        for (int i = 0; i < bytes.size(); i++) {
+            Object size = bytes.get(i);
+            Object elapsed = elapsedUs.get(i);
+            if (size instanceof Number && elapsed instanceof Number) {
+                estimator.record(((Number) size).longValue(), ((Number) elapsed).longValue() * 1000L);
+            }
+        }
+        result.success(estimator.estimate());
+    }
+
+    private HlsStartup hlsStartup() {
+        if (hlsStartup == null) {
+            final HlsStartup startup = new HlsStartup(BandwidthEstimator.get(), HLS_PLAYLIST_TIMEOUT_MS);
+            hlsStartup = startup;
+            ledger.replace(RegistrationLedger.Scope.ENGINE, KEY_HLS_STARTUP, "HlsStartup", startup,
+                    new RegistrationLedger.Teardown() {
+                        @Override
+                        public void release() {
+                            startup.close();
+                            if (hlsStartup == startup) {
+                                hlsStartup = null;
+                            }
+                        }
+                    });
+        }
+        return hlsStartup;
+    }
+
+    /**
+     * Graba las llamadas de los canales en {@code path} (por defecto en la caché de la
+     * app) hasta {@code stopCallRecording}. Responde con la ruta del archivo.
+     */
+    private void startCallRecording(String path, Result result) {
+        File file = path != null ? new File(path) : new File(context.getCacheDir(), "method_calls.avpr");
+        try {
+            MethodCallRecorder.get().start(file);
+            Log.d("AdvancedVideoPlayer", "⏺️ Grabando llamadas en " + file.getAbsolutePath());
+            result.success(file.getAbsolutePath());
+        } catch (IOException e) {
+            Log.e("AdvancedVideoPlayer", "❌ No se pudo iniciar la grabación: " + e.getMessage());
+            result.error("RECORDING_ERROR", e.getMessage(), null);
+        }
+    }
+
+    private void handleScreenSharingCall(@NonNull MethodCall call, PlayerRegistry.PlayerState player,
+                                         int traceId, @NonNull Result result) {
         Log.d("AdvancedVideoPlayer", "🔍 Screen sharing call: " + call.method);
         switch (call.method) {
             case "initialize":
@@ -120,30 +584,40 @@ public class AdvancedVideoPlayerPlugin implements FlutterPlugin, MethodCallHandl
                 result.success(supported);
                 break;
             case "discoverDevices":
-                discoverCastDevices(result);
+                discoverAllDevices(player, result);
                 break;
             case "connectToDevice":
                 Map<String, Object> args = call.arguments();
                 String deviceId = (String) args.get("deviceId");
                 String deviceName = (String) args.get("deviceName");
-                connectToCastDevice(deviceId, deviceName, result);
+                RendererBackend backend = backendFor(deviceId);
+                player.renderer = backend.name();
+                backend.connect(player.handle, deviceId, deviceName, traceId, onMainThread(result));
                 break;
             case "shareVideo":
                 Map<String, Object> videoArgs = call.arguments();
-                String videoUrl = (String) videoArgs.get("videoUrl");
-                String title = (String) videoArgs.get("title");
-                String description = (String) videoArgs.get("description");
-                String thumbnailUrl = (String) videoArgs.get("thumbnailUrl");
-                shareVideoToCast(videoUrl, title, description, thumbnailUrl, result);
+                RendererBackend shareBackend = rendererOf(player);
+                Result shareResult = result;
+                if (shareBackend != castRenderer) {
+                    // UPnP no avisa del estado: el Play aceptado ya es reproducción remota
+                    shareResult = notifyingRemotePlaying(player.handle, numberArg(videoArgs, "positionMs", 0), result);
+                }
+                shareBackend.share(player.handle, videoArgs, traceId, onMainThread(shareResult));
+                break;
+            case "getRemotePosition":
+                rendererOf(player).position(player.handle, onMainThread(result));
                 break;
             case "controlPlayback":
                 Map<String, Object> controlArgs = call.arguments();
                 String action = (String) controlArgs.get("action");
                 Double position = (Double) controlArgs.get("position");
-                controlCastPlayback(action, position, result);
+                rendererOf(player).control(player.handle, action, position, onMainThread(result));
                 break;
             case "disconnect":
-                disconnectFromCast(result);
+                rendererOf(player).disconnect(player.handle, onMainThread(result));
+                break;
+            case "getLastDevice":
+                result.success(describeLastCastDevice());
                 break;
             default:
                 result.notImplemented();
@@ -151,6 +625,215 @@ public class AdvancedVideoPlayerPlugin implements FlutterPlugin, MethodCallHandl
         }
     }
 
+    private List<RendererBackend> renderers() {
+        List<RendererBackend> backends = new ArrayList<>();
+        backends.add(castRenderer);
+        backends.add(dlnaBackend());
+        return backends;
+    }
+
+    private DlnaBackend dlnaBackend() {
+        if (dlnaBackend == null) {
+            final DlnaBackend backend = DlnaBackend.forLocalNetwork();
+            dlnaBackend = backend;
+            ledger.replace(RegistrationLedger.Scope.ENGINE, KEY_DLNA_BACKEND, "DlnaBackend", backend,
+                    new RegistrationLedger.Teardown() {
+                        @Override
+                        public void release() {
+                            backend.close();
+                            if (dlnaBackend == backend) {
+                                dlnaBackend = null;
+                            }
+                        }
+                    });
+        }
+        return dlnaBackend;
+    }
+
+    // Dueño del dispositivo por el prefijo del id; Cast atiende el resto sin crear el backend DLNA
+    private RendererBackend backendFor(String deviceId) {
+        if (deviceId != null && deviceId.startsWith(DlnaBackend.ID_PREFIX)) {
+            return dlnaBackend();
+        }
+        return castRenderer;
+    }
+
+    private RendererBackend rendererOf(PlayerRegistry.PlayerState player) {
+        return DlnaBackend.NAME.equals(player.renderer) ? dlnaBackend() : castRenderer;
+    }
+
+    /**
+     * Busca en todos los backends a la vez y responde con una sola lista cuando
+     * terminan todos.
+     */
+    private void discoverAllDevices(PlayerRegistry.PlayerState player, final Result result) {
+        final List<RendererBackend> backends = renderers();
+        final List<Map<String, Object>> devices = new ArrayList<>();
+        final int[] pending = {backends.size()};
+        for (final RendererBackend backend : backends) {
+            backend.discover(player.handle, onMainThread(new Result() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public void success(Object value) {
+                    if (value instanceof List) {
+                        devices.addAll((List<Map<String, Object>>) value);
+                    }
+                    done();
+                }
+
+                @Override
+                public void error(@NonNull String code, String message, Object details) {
+                    Log.w("AdvancedVideoPlayer", "⚠️ Búsqueda " + backend.name() + " falló: " + message);
+                    done();
+                }
+
+                @Override
+                public void notImplemented() {
+                    done();
+                }
+
+                private void done() {
+                    if (--pending[0] == 0) {
+                        Log.d("AdvancedVideoPlayer", "📊 Dispositivos encontrados en total: " + devices.size());
+                        result.success(devices);
+                    }
+                }
+            }));
+        }
+    }
+
+    // Los backends pueden responder desde sus hilos; el canal solo acepta el principal
+    private RendererBackend.Callback onMainThread(final Result result) {
+        return new RendererBackend.Callback() {
+            @Override
+            public void success(final Object value) {
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        result.success(value);
+                    }
+                });
+            }
+
+            @Override
+            public void error(final String code, final String message) {
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        result.error(code, message, null);
+                    }
+                });
+            }
+        };
+    }
+
+    private static Result asResult(final RendererBackend.Callback callback) {
+        return new Result() {
+            @Override
+            public void success(Object value) {
+                callback.success(value);
+            }
+
+            @Override
+            public void error(@NonNull String code, String message, Object details) {
+                callback.error(code, message);
+            }
+
+            @Override
+            public void notImplemented() {
+                callback.error("NOT_IMPLEMENTED", null);
+            }
+        };
+    }
+
+    /** Google Cast como {@link RendererBackend}: delega en los métodos de Cast del plugin. */
+    private final class CastRenderer implements RendererBackend {
+        @Override
+        public String name() {
+            return "cast";
+        }
+
+        @Override
+        public boolean owns(String deviceId) {
+            return deviceId != null && !deviceId.startsWith(DlnaBackend.ID_PREFIX);
+        }
+
+        @Override
+        public void discover(int player, Callback callback) {
+            PlayerRegistry.PlayerState state = players.get(player);
+            if (state == null) {
+                callback.success(new ArrayList<>());
+                return;
+            }
+            discoverCastDevices(state, asResult(callback));
+        }
+
+        @Override
+        public void connect(int player, String deviceId, String deviceName, int traceId, Callback callback) {
+            connectToCastDevice(deviceId, deviceName, traceId, asResult(callback));
+        }
+
+        @Override
+        public void share(int player, Map<String, Object> video, int traceId, Callback callback) {
+            PlayerRegistry.PlayerState state = players.get(player);
+            if (state == null) {
+                callback.error("UNKNOWN_PLAYER", "El reproductor no existe o ya fue liberado");
+                return;
+            }
+            shareVideoToCast(state, (String) video.get("videoUrl"), (String) video.get("title"),
+                    (String) video.get("description"), (String) video.get("thumbnailUrl"),
+                    (List<?>) video.get("subtitleTracks"), numberArg(video, "positionMs", 0),
+                    numberArg(video, "playbackRate", 1), traceId, asResult(callback));
+        }
+
+        @Override
+        public void position(int player, Callback callback) {
+            PlayerRegistry.PlayerState state = players.get(player);
+            if (state == null) {
+                callback.success(null);
+                return;
+            }
+            describeRemotePosition(state, asResult(callback));
+        }
+
+        @Override
+        public void control(int player, String action, Double position, Callback callback) {
+            PlayerRegistry.PlayerState state = players.get(player);
+            if (state == null) {
+                callback.success(false);
+                return;
+            }
+            controlCastPlayback(state, action, position, asResult(callback));
+        }
+
+        @Override
+        public void disconnect(int player, Callback callback) {
+            PlayerRegistry.PlayerState state = players.get(player);
+            if (state == null) {
+                callback.success(false);
+                return;
+            }
+            disconnectFromCast(state, asResult(callback));
+        }
+
+        @Override
+        public void release(int player) {
+            // El registro de reproductores ya suelta sus recursos de Cast
+        }
+
+        @Override
+        public void close() {
+            // CastHub es del proceso; el ledger quita los listeners de este engine
+        }
+
+        @Override
+        public boolean trimMemory(int tier) {
+            CastDeviceCatalog.get().clear();
+            // La sesión y el descubrimiento los suelta el plugin desde el ledger
+            return false;
+        }
+    }
+
     private boolean initializeScreenSharing() {
         return isGoogleCastSupported();
     }
@@ -179,70 +862,42 @@ public class AdvancedVideoPlayerPlugin implements FlutterPlugin, MethodCallHandl
         }
     }
 
-    private void discoverCastDevices(Result result) {
+    private void discoverCastDevices(PlayerRegistry.PlayerState player, Result result) {
         try {
             Log.d("AdvancedVideoPlayer", "🔍 ===== INICIANDO DESCUBRIMIENTO REAL DE DISPOSITIVOS =====");
             
             // Verificar que Google Play Services esté disponible
             if (!isGoogleCastSupported()) {
-                Log.e("AdvancedVideoPlayer", "❌ Google Play Services no disponible");
-                result.success(new ArrayList<>());
+                Log.w("AdvancedVideoPlayer", "⚠️ Google Play Services no disponible, buscando por mDNS");
+                discoverWithMdns(player, result);
                 return;
             }
             
             Log.d("AdvancedVideoPlayer", "✅ Google Play Services está disponible");
             
-            // Obtener MediaRouter para descubrimiento real
-            Log.d("AdvancedVideoPlayer", "🔧 Obteniendo MediaRouter...");
-            mediaRouter = MediaRouter.getInstance(context);
-            Log.d("AdvancedVideoPlayer", "✅ MediaRouter obtenido exitosamente");
-            
-            // Crear selector de rutas para Google Cast
-            Log.d("AdvancedVideoPlayer", "🔧 Creando MediaRouteSelector para Google Cast...");
-            routeSelector = new MediaRouteSelector.Builder()
-                .addControlCategory(MediaControlIntent.CATEGORY_LIVE_VIDEO)
-                .addControlCategory(MediaControlIntent.CATEGORY_REMOTE_PLAYBACK)
-                .build();
-            Log.d("AdvancedVideoPlayer", "✅ MediaRouteSelector creado exitosamente");
-            
-            // Configurar callback para detectar cambios en las rutas
-            Log.d("AdvancedVideoPlayer", "🔧 Configurando MediaRouterCallback...");
-            routerCallback = new MediaRouterCallback();
-            mediaRouter.addCallback(routeSelector, routerCallback, MediaRouter.CALLBACK_FLAG_REQUEST_DISCOVERY);
-            Log.d("AdvancedVideoPlayer", "✅ MediaRouterCallback configurado exitosamente");
+            // Configurar descubrimiento (una sola vez por proceso, mientras haya al menos
+            // un reproductor de algún engine interesado)
+            players.acquire(player, PlayerRegistry.RESOURCE_DISCOVERY);
+            subscribeToDiscovery();
+            MediaRouter mediaRouter = castHub.mediaRouter();
             
             // Obtener rutas disponibles inmediatamente
             Log.d("AdvancedVideoPlayer", "🚀 Buscando dispositivos disponibles...");
             List<RouteInfo> availableRoutes = mediaRouter.getRoutes();
             Log.d("AdvancedVideoPlayer", "📊 Rutas encontradas en MediaRouter: " + availableRoutes.size());
             
-            List<Map<String, Object>> devices = new ArrayList<>();
-            
-            for (RouteInfo route : availableRoutes) {
-                Log.d("AdvancedVideoPlayer", "🔍 Analizando ruta: " + route.getName() + " | ID: " + route.getId());
-                Log.d("AdvancedVideoPlayer", "   - Descripción: " + route.getDescription());
-                Log.d("AdvancedVideoPlayer", "   - Estado: " + route.getConnectionState());
-                Log.d("AdvancedVideoPlayer", "   - Disponible: " + route.isEnabled());
-                
-                // Filtrar solo rutas de Google Cast que estén disponibles
-                if (route.isEnabled() && route.getConnectionState() != MediaRouter.RouteInfo.CONNECTION_STATE_CONNECTED) {
-                    Log.d("AdvancedVideoPlayer", "🎯 ¡DISPOSITIVO CHROMECAST ENCONTRADO!");
-                    Log.d("AdvancedVideoPlayer", "   - Nombre: " + route.getName());
-                    Log.d("AdvancedVideoPlayer", "   - ID: " + route.getId());
-                    
-                    Map<String, Object> device = new HashMap<>();
-                    device.put("id", route.getId());
-                    device.put("name", route.getName());
-                    device.put("type", "chromecast");
-                    device.put("isConnected", false);
-                    devices.add(device);
-                }
-            }
+            // Solo receptores que cumplen el selector; los datos de cada dispositivo
+            // se extraen una vez y se reutilizan en las siguientes búsquedas
+            List<Map<String, Object>> devices =
+                    CastDeviceCatalog.get().describe(availableRoutes, castHub.routeSelector());
             
             Log.d("AdvancedVideoPlayer", "🎉 ===== DESCUBRIMIENTO REAL COMPLETADO =====");
             Log.d("AdvancedVideoPlayer", "📊 Total de dispositivos Chromecast encontrados: " + devices.size());
             
-            if (devices.isEmpty()) {
+            // El detalle solo cuando la lista cambió; con Dart buscando cada pocos
+            // segundos y cientos de receptores, repetirlo inunda el log
+            boolean changed = CastDeviceCatalog.get().lastChanged();
+            if (changed && devices.isEmpty()) {
                 Log.w("AdvancedVideoPlayer", "⚠️ ===== NO SE ENCONTRARON DISPOSITIVOS CHROMECAST =====");
                 Log.w("AdvancedVideoPlayer", "🔍 Posibles causas:");
                 Log.w("AdvancedVideoPlayer", "   - Los dispositivos Chromecast no están en la misma red WiFi");
@@ -250,11 +905,12 @@ public class AdvancedVideoPlayerPlugin implements FlutterPlugin, MethodCallHandl
                 Log.w("AdvancedVideoPlayer", "   - Problema con la configuración de red");
                 Log.w("AdvancedVideoPlayer", "   - Permisos de red insuficientes");
                 Log.w("AdvancedVideoPlayer", "   - Google Cast Services no está actualizado");
-            } else {
+            } else if (changed) {
                 Log.i("AdvancedVideoPlayer", "✅ Dispositivos Chromecast encontrados exitosamente:");
                 for (int i = 0; i < devices.size(); i++) {
                     Map<String, Object> device = devices.get(i);
-                    Log.i("AdvancedVideoPlayer", "   " + (i+1) + ". " + device.get("name") + " (ID: " + device.get("id") + ")");
+                    Log.i("AdvancedVideoPlayer", "   " + (i+1) + ". " + device.get("name") + " (ID: " + device.get("id")
+                            + ", tipo: " + device.get("type") + ", modelo: " + device.get("modelName") + ")");
                 }
             }
             
@@ -267,16 +923,128 @@ public class AdvancedVideoPlayerPlugin implements FlutterPlugin, MethodCallHandl
         }
     }
 
-    private void connectToCastDevice(String deviceId, String deviceName, Result result) {
+    // El callback de MediaRouter es del proceso: si otro engine ya busca, este solo
+    // se suscribe a los eventos de rutas
+    private void subscribeToDiscovery() {
+        if (ledger.contains(KEY_ROUTER_CALLBACK)) {
+            return;
+        }
+        castHub.acquireDiscovery(context, castListener);
+        ledger.replace(RegistrationLedger.Scope.ENGINE, KEY_ROUTER_CALLBACK, "CastHub.discovery", castListener,
+                new RegistrationLedger.Teardown() {
+                    @Override
+                    public void release() {
+                        castHub.releaseDiscovery(castListener);
+                    }
+                });
+    }
+
+    /**
+     * Descubrimiento sin Google Play Services: los receptores se buscan por mDNS y los
+     * cambios llegan a Dart como eventos {@code onRouteChanged}. La primera búsqueda
+     * espera un momento a las respuestas; las siguientes devuelven la lista actual.
+     */
+    private void discoverWithMdns(PlayerRegistry.PlayerState player, final Result result) {
+        players.acquire(player, PlayerRegistry.RESOURCE_DISCOVERY);
+        if (ledger.contains(KEY_MDNS_BROWSER)) {
+            mdnsBrowser.requery();
+            result.success(mdnsBrowser.devices());
+            return;
+        }
+
+        final CastMdnsBrowser browser = CastMdnsBrowser.forLocalNetwork(new CastMdnsBrowser.Listener() {
+            @Override
+            public void onDeviceFound(Map<String, Object> device) {
+                postRouteEvent(CastHub.ROUTE_ADDED, (String) device.get("id"), (String) device.get("name"));
+            }
+
+            @Override
+            public void onDeviceLost(String id) {
+                postRouteEvent(CastHub.ROUTE_REMOVED, id, null);
+            }
+        });
+        try {
+            browser.start();
+        } catch (IOException e) {
+            Log.e("AdvancedVideoPlayer", "❌ No se pudo iniciar la búsqueda mDNS: " + e.getMessage());
+            result.success(new ArrayList<>());
+            return;
+        }
+        mdnsBrowser = browser;
+        ledger.replace(RegistrationLedger.Scope.ENGINE, KEY_MDNS_BROWSER, "CastMdnsBrowser", browser,
+                new RegistrationLedger.Teardown() {
+                    @Override
+                    public void release() {
+                        browser.stop();
+                        if (mdnsBrowser == browser) {
+                            mdnsBrowser = null;
+                        }
+                    }
+                });
+        PluginMetrics.get().increment("cast.mdns.started");
+        Log.d("AdvancedVideoPlayer", "📡 Búsqueda mDNS de _googlecast._tcp iniciada");
+        mainHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                List<Map<String, Object>> devices = browser.devices();
+                Log.d("AdvancedVideoPlayer", "📊 Dispositivos encontrados por mDNS: " + devices.size());
+                result.success(devices);
+            }
+        }, MDNS_FIRST_ANSWER_DELAY_MS);
+    }
+
+    // Los eventos del navegador mDNS llegan desde su hilo; el lote se entrega en el principal
+    private void postRouteEvent(String event, String id, String name) {
+        routeEvents.offer(event, id, name);
+    }
+
+    private void connectToCastDevice(String deviceId, String deviceName, int traceId, Result result) {
+        if (deviceId != null && deviceId.startsWith(CastMdnsBrowser.ID_PREFIX)) {
+            // Sin Google Play Services no hay SDK de Cast con el que abrir la sesión
+            Log.e("AdvancedVideoPlayer", "❌ " + deviceName + " se descubrió por mDNS; conectar requiere Google Play Services");
+            result.error("CAST_UNAVAILABLE", "Conectar a Chromecast requiere Google Play Services", null);
+            return;
+        }
+        // Sección "cast.connect" abierta y todavía sin teardown en el ledger que la cierre
+        boolean connectTraceOpen = false;
         try {
             Log.d("AdvancedVideoPlayer", "🔗 ===== INICIANDO CONEXIÓN A DISPOSITIVO =====");
             Log.d("AdvancedVideoPlayer", "📱 Dispositivo: " + deviceName + " (ID: " + deviceId + ")");
             
-            if (mediaRouter == null || routeSelector == null) {
+            MediaRouter mediaRouter = castHub.mediaRouter();
+            final CastContext connectContext = castHub.castContext();
+            if (connectContext != null) {
+                // Tras un onTrimMemory sin transmisión la suscripción pudo soltarse
+                subscribeToCastSessions();
+            }
+            if (mediaRouter == null) {
                 Log.e("AdvancedVideoPlayer", "❌ MediaRouter no está inicializado");
                 result.error("CONNECTION_ERROR", "MediaRouter no inicializado", null);
                 return;
             }
+            if (connectContext == null) {
+                Log.e("AdvancedVideoPlayer", "❌ Cast no está inicializado");
+                result.error("CONNECTION_ERROR", "Cast no inicializado", null);
+                return;
+            }
+
+            // Receptor con la sesión aún viva (por ejemplo, reanudada al arrancar): no
+            // hace falta seleccionar la ruta ni esperar al CastStateListener
+            final long connectStartNanos = System.nanoTime();
+            CastSession liveSession = castHub.currentSession();
+            if (liveSession != null && liveSession.isConnected() && isSessionRoute(mediaRouter, liveSession, deviceId)) {
+                PluginMetrics.get().increment("cast.connect.instant");
+                PluginMetrics.get().recordSince("cast.connect", connectStartNanos);
+                recordQoe(QoeRecorder.TYPE_CAST_CONNECTED, (System.nanoTime() - connectStartNanos) / 1000000L);
+                Log.d("AdvancedVideoPlayer", "⚡ Sesión Cast ya activa con " + deviceName + ", conexión inmediata");
+                result.success(true);
+                return;
+            }
+            // El SDK está reanudando la sesión con este receptor: seleccionar la ruta
+            // otra vez abriría una sesión nueva, basta con esperar a que termine
+            LastCastRoute remembered = CastRouteMemory.get().current();
+            boolean resuming = castHub.sessionState().state() == CastSessionState.RESUMING
+                    && remembered != null && remembered.matches(deviceId);
             
             // Obtener todas las rutas disponibles
             List<RouteInfo> availableRoutes = mediaRouter.getRoutes();
@@ -293,178 +1061,285 @@ public class AdvancedVideoPlayerPlugin implements FlutterPlugin, MethodCallHandl
                 }
             }
             
-            if (targetRoute == null) {
+            if (targetRoute == null && !resuming) {
                 Log.e("AdvancedVideoPlayer", "❌ No se encontró la ruta con ID: " + deviceId);
                 result.error("DEVICE_NOT_FOUND", "Dispositivo no encontrado", null);
                 return;
             }
             
-            Log.d("AdvancedVideoPlayer", "🚀 Conectando a: " + targetRoute.getName());
-            Log.d("AdvancedVideoPlayer", "📊 Estado actual de la ruta: " + targetRoute.getConnectionState());
-            Log.d("AdvancedVideoPlayer", "✅ Ruta disponible: " + targetRoute.isEnabled());
-            
-            // Seleccionar la ruta para conectar
-            mediaRouter.selectRoute(targetRoute);
-            Log.d("AdvancedVideoPlayer", "✅ Comando de conexión enviado exitosamente");
+            // La conexión termina fuera de esta llamada: sección asíncrona hasta CONNECTED,
+            // un fallo o el reemplazo por otro intento (la cierra el teardown del listener)
+            PluginTrace.beginAsync("cast.connect", traceId);
+            connectTraceOpen = true;
+            if (resuming) {
+                Log.d("AdvancedVideoPlayer", "🔁 Reanudando la sesión con " + deviceName + ", esperando conexión");
+            } else {
+                Log.d("AdvancedVideoPlayer", "🚀 Conectando a: " + targetRoute.getName());
+                Log.d("AdvancedVideoPlayer", "📊 Estado actual de la ruta: " + targetRoute.getConnectionState());
+                Log.d("AdvancedVideoPlayer", "✅ Ruta disponible: " + targetRoute.isEnabled());
+
+                // Seleccionar la ruta para conectar
+                mediaRouter.selectRoute(targetRoute);
+                Log.d("AdvancedVideoPlayer", "✅ Comando de conexión enviado exitosamente");
+            }
             
-            // Configurar listener para confirmar la conexión y obtener la sesión
-            castContext.addCastStateListener(new CastStateListener() {
+            // Configurar listener para confirmar la conexión y obtener la sesión.
+            // Reemplaza al de un intento de conexión anterior que no llegó a completarse.
+            final CastStateListener connectListener = new CastStateListener() {
+                private boolean connecting;
+
                 @Override
                 public void onCastStateChanged(int newState) {
+                    PluginTrace.begin("cast.onCastStateChanged");
                     Log.d("AdvancedVideoPlayer", "🔄 Estado de Cast cambió: " + newState);
-                    if (newState == 3) { // CastState.CONNECTED
+                    if (newState == CastState.CONNECTING) {
+                        connecting = true;
+                    } else if (connecting && newState != CastState.CONNECTED) {
+                        // Volvió a NOT_CONNECTED sin llegar a conectar
+                        PluginMetrics.get().increment("cast.connect.failed");
+                        Log.w("AdvancedVideoPlayer", "⚠️ La conexión con " + deviceName + " no se completó");
+                        ledger.release(KEY_CONNECT_LISTENER, this);
+                    }
+                    if (newState == CastState.CONNECTED) {
+                        PluginMetrics.get().recordSince("cast.connect", connectStartNanos);
+                        recordQoe(QoeRecorder.TYPE_CAST_CONNECTED, (System.nanoTime() - connectStartNanos) / 1000000L);
                         Log.d("AdvancedVideoPlayer", "🎉 ¡CONECTADO EXITOSAMENTE!");
                         Log.d("AdvancedVideoPlayer", "✅ Dispositivo: " + deviceName);
                         
                         // Obtener la sesión Cast activa
-                        SessionManager sessionManager = castContext.getSessionManager();
-                        castSession = sessionManager.getCurrentCastSession();
+                        CastSession castSession = castHub.currentSession();
                         if (castSession != null) {
                             Log.d("AdvancedVideoPlayer", "✅ Sesión Cast obtenida: " + castSession.getSessionId());
                         } else {
                             Log.w("AdvancedVideoPlayer", "⚠️ Sesión Cast no disponible inmediatamente");
                         }
                         
-                        castContext.removeCastStateListener(this);
+                        ledger.release(KEY_CONNECT_LISTENER, this);
                     }
+                    PluginTrace.end();
                 }
-            });
+            };
+            connectContext.addCastStateListener(connectListener);
+            ledger.replace(RegistrationLedger.Scope.ENGINE, KEY_CONNECT_LISTENER, "CastStateListener", connectListener,
+                    new RegistrationLedger.Teardown() {
+                        @Override
+                        public void release() {
+                            connectContext.removeCastStateListener(connectListener);
+                            PluginTrace.endAsync("cast.connect", traceId);
+                        }
+                    });
             
+            connectTraceOpen = false;
+
             result.success(true);
             Log.d("AdvancedVideoPlayer", "🎉 ===== CONEXIÓN INICIADA =====");
             
         } catch (Exception e) {
+            if (connectTraceOpen) {
+                PluginTrace.endAsync("cast.connect", traceId);
+            }
             Log.e("AdvancedVideoPlayer", "❌ Error conectando a dispositivo: " + e.getMessage());
             Log.e("AdvancedVideoPlayer", "❌ Stack trace: ", e);
             result.error("CONNECTION_ERROR", e.getMessage(), null);
         }
     }
 
-    private void shareVideoToCast(String videoUrl, String title, String description, String thumbnailUrl, Result result) {
-        try {
-            Log.d("AdvancedVideoPlayer", "📺 ===== INICIANDO COMPARTIR VIDEO =====");
-            Log.d("AdvancedVideoPlayer", "🎬 Video: " + title);
-            Log.d("AdvancedVideoPlayer", "🔗 URL: " + videoUrl);
-            Log.d("AdvancedVideoPlayer", "📝 Descripción: " + description);
-            Log.d("AdvancedVideoPlayer", "🖼️ Thumbnail: " + thumbnailUrl);
-            
-            if (castSession == null) {
-                Log.w("AdvancedVideoPlayer", "⚠️ Sesión Cast no disponible, buscando en SessionManager...");
-                SessionManager sessionManager = castContext.getSessionManager();
-                castSession = sessionManager.getCurrentCastSession();
-                
-                if (castSession == null) {
-                    Log.w("AdvancedVideoPlayer", "⚠️ No hay sesión en SessionManager, esperando...");
-                    
-                    // Esperar hasta 3 segundos para que la sesión esté disponible
-                    int attempts = 0;
-                    int maxAttempts = 30; // 3 segundos (30 * 100ms)
-                    
-                    while (castSession == null && attempts < maxAttempts) {
-                        try {
-                            Thread.sleep(100); // Esperar 100ms
-                            castSession = sessionManager.getCurrentCastSession();
-                            attempts++;
-                            Log.d("AdvancedVideoPlayer", "🔄 Intento " + attempts + "/" + maxAttempts + " - Sesión: " + (castSession != null ? "disponible" : "no disponible"));
-                        } catch (InterruptedException e) {
-                            Log.e("AdvancedVideoPlayer", "❌ Interrumpido mientras esperaba sesión Cast");
-                            result.error("INTERRUPTED", "Espera interrumpida", null);
-                            return;
+    // La sesión es del receptor pedido si su ruta es la seleccionada o si es la
+    // sesión que se recordó con ese receptor
+    private boolean isSessionRoute(MediaRouter mediaRouter, CastSession session, String deviceId) {
+        RouteInfo selected = mediaRouter.getSelectedRoute();
+        if (selected != null && !selected.isDefault() && selected.getId().equals(deviceId)) {
+            return true;
+        }
+        LastCastRoute remembered = CastRouteMemory.get().current();
+        return remembered != null && remembered.matches(deviceId) && remembered.sessionId != null
+                && remembered.sessionId.equals(session.getSessionId());
+    }
+
+    /**
+     * Si hay un receptor recordado, inicia Cast al arrancar en lugar de esperar a
+     * {@code initializeCast}: al crearse el CastContext el SDK reanuda la sesión que
+     * siga viva en el receptor, y el descubrimiento deja lista la ruta. Así
+     * {@code connectToDevice} con ese receptor no tiene que esperar. Pasado
+     * {@link #RECONNECT_WARMUP_MS} se suelta lo que ningún reproductor pidió.
+     */
+    private void warmUpCastReconnect() {
+        CastRouteMemory.get().load(context, new CastRouteMemory.Callback() {
+            @Override
+            public void onLoaded(LastCastRoute route) {
+                long now = System.currentTimeMillis();
+                if (route == null || channel == null || !route.isFresh(now) || !isGoogleCastSupported()) {
+                    return;
+                }
+                PluginTrace.begin("cast.reconnect.warmUp");
+                try {
+                    Log.d("AdvancedVideoPlayer", "🔁 Último receptor: " + route.routeName
+                            + (route.canResume(now) ? ", reanudando la sesión " + route.sessionId : ""));
+                    PluginMetrics.get().increment("cast.reconnect.warmUp");
+                    subscribeToCastSessions();
+                    subscribeToDiscovery();
+                    reconnectRoute = route;
+                    for (RouteInfo available : castHub.mediaRouter().getRoutes()) {
+                        if (route.matches(available.getId())) {
+                            castListener.onRouteEvent(CastHub.ROUTE_ADDED, available);
                         }
                     }
-                    
-                    if (castSession == null) {
-                        Log.e("AdvancedVideoPlayer", "❌ No hay sesión Cast después de " + maxAttempts + " intentos");
-                        result.error("NO_SESSION", "No hay sesión Cast activa", null);
-                        return;
-                    }
+                    mainHandler.postDelayed(endCastWarmUp, RECONNECT_WARMUP_MS);
+                } catch (Exception e) {
+                    Log.e("AdvancedVideoPlayer", "❌ Error reconectando con el último receptor: " + e.getMessage());
+                } finally {
+                    PluginTrace.end();
                 }
-                Log.d("AdvancedVideoPlayer", "✅ Sesión Cast encontrada: " + castSession.getSessionId());
             }
-            
-            RemoteMediaClient remoteMediaClient = castSession.getRemoteMediaClient();
-            if (remoteMediaClient == null) {
-                Log.w("AdvancedVideoPlayer", "⚠️ RemoteMediaClient no disponible inmediatamente, esperando...");
-                
-                // Esperar hasta 8 segundos para que RemoteMediaClient esté disponible
-                int attempts = 0;
-                int maxAttempts = 80; // 8 segundos (80 * 100ms)
-                
-                while (remoteMediaClient == null && attempts < maxAttempts) {
-                    try {
-                        Thread.sleep(100); // Esperar 100ms
-                        remoteMediaClient = castSession.getRemoteMediaClient();
-                        attempts++;
-                        Log.d("AdvancedVideoPlayer", "🔄 Intento " + attempts + "/" + maxAttempts + " - RemoteMediaClient: " + (remoteMediaClient != null ? "disponible" : "no disponible"));
-                    } catch (InterruptedException e) {
-                        Log.e("AdvancedVideoPlayer", "❌ Interrumpido mientras esperaba RemoteMediaClient");
-                        result.error("INTERRUPTED", "Espera interrumpida", null);
-                        return;
-                    }
+        });
+    }
+
+    /** Último receptor Cast para {@code getLastDevice}, o null si no hay. */
+    private Map<String, Object> describeLastCastDevice() {
+        LastCastRoute route = CastRouteMemory.get().current();
+        if (route == null || !route.isFresh(System.currentTimeMillis())) {
+            return null;
+        }
+        Map<String, Object> device = new HashMap<>();
+        device.put("id", route.routeId);
+        device.put("name", route.routeName);
+        device.put("type", CastModels.TYPE_CHROMECAST);
+        device.put("savedAt", route.savedAtMs);
+        boolean available = false;
+        boolean sessionAlive = false;
+        MediaRouter mediaRouter = castHub.mediaRouter();
+        if (mediaRouter != null) {
+            for (RouteInfo candidate : mediaRouter.getRoutes()) {
+                if (route.matches(candidate.getId())) {
+                    available = candidate.isEnabled();
+                    break;
                 }
-                
+            }
+            CastSession session = castHub.currentSession();
+            sessionAlive = session != null && session.isConnected() && isSessionRoute(mediaRouter, session, route.routeId);
+        }
+        device.put("available", available);
+        device.put("sessionAlive", sessionAlive);
+        return device;
+    }
+
+    private void shareVideoToCast(final PlayerRegistry.PlayerState player, final String videoUrl, final String title,
+                                  final String description, final String thumbnailUrl, final List<?> subtitleTracks,
+                                  final double startPositionMs, final double playbackRate, final int traceId,
+                                  final Result result) {
+        Log.d("AdvancedVideoPlayer", "📺 ===== INICIANDO COMPARTIR VIDEO =====");
+        Log.d("AdvancedVideoPlayer", "🎬 Video: " + title);
+        Log.d("AdvancedVideoPlayer", "🔗 URL: " + videoUrl);
+        Log.d("AdvancedVideoPlayer", "📝 Descripción: " + description);
+        Log.d("AdvancedVideoPlayer", "🖼️ Thumbnail: " + thumbnailUrl);
+        Log.d("AdvancedVideoPlayer", "⏩ Desde " + (long) startPositionMs + " ms a " + playbackRate + "x");
+
+        // Esperar sesión y RemoteMediaClient (puede tardar varios segundos tras conectar)
+        // sin bloquear el hilo principal; la respuesta llega cuando hay cliente o error.
+        // El traspaso a Cast se mide desde aquí hasta que el receptor confirma la carga
+        final long shareStartNanos = System.nanoTime();
+        PluginTrace.beginAsync("cast.share.waitSession", traceId);
+        awaitRemoteMediaClient(result, new SessionWaiter.Listener<RemoteMediaClient>() {
+            @Override
+            public void onResult(RemoteMediaClient remoteMediaClient) {
+                PluginTrace.endAsync("cast.share.waitSession", traceId);
                 if (remoteMediaClient == null) {
-                    Log.e("AdvancedVideoPlayer", "❌ RemoteMediaClient no disponible después de " + maxAttempts + " intentos");
-                    result.error("NO_MEDIA_CLIENT", "RemoteMediaClient no disponible después de esperar", null);
                     return;
                 }
-                
-                Log.d("AdvancedVideoPlayer", "✅ RemoteMediaClient disponible después de " + attempts + " intentos");
+                PluginMetrics.get().recordSince("cast.share.waitSession", shareStartNanos);
+                if (players.get(player.handle) != player) {
+                    // Se liberó mientras se esperaba la sesión
+                    result.error("UNKNOWN_PLAYER", "El reproductor no existe o ya fue liberado", null);
+                    return;
+                }
+                loadVideoOnCast(player, remoteMediaClient, videoUrl, title, description, thumbnailUrl, subtitleTracks,
+                        startPositionMs, playbackRate, traceId, shareStartNanos, result);
             }
-            
+        });
+    }
+
+    private void loadVideoOnCast(PlayerRegistry.PlayerState player, RemoteMediaClient remoteMediaClient,
+                                 final String videoUrl, final String title, String description, String thumbnailUrl,
+                                 List<?> subtitleTracks, double startPositionMs, double playbackRate,
+                                 final int traceId, final long shareStartNanos, Result result) {
+        try {
             // Crear metadata del video
             MediaMetadata metadata = new MediaMetadata(MediaMetadata.MEDIA_TYPE_MOVIE);
             metadata.putString(MediaMetadata.KEY_TITLE, title != null ? title : "Video");
             if (description != null && !description.isEmpty()) {
                 metadata.putString(MediaMetadata.KEY_SUBTITLE, description);
             }
-            // TODO: Agregar thumbnail cuando esté disponible la API
-            
-            // Crear MediaInfo con tipo de contenido dinámico
-            String contentType = "video/mp4"; // Por defecto
-            
-            // Determinar el tipo de contenido basado en la URL
-            if (videoUrl.toLowerCase().contains(".m3u8")) {
-                contentType = "application/vnd.apple.mpegurl"; // HLS
-                Log.d("AdvancedVideoPlayer", "📺 Detectado stream HLS (.m3u8)");
-            } else if (videoUrl.toLowerCase().contains(".mp4")) {
-                contentType = "video/mp4";
-                Log.d("AdvancedVideoPlayer", "📺 Detectado video MP4");
-            } else if (videoUrl.toLowerCase().contains(".webm")) {
-                contentType = "video/webm";
-                Log.d("AdvancedVideoPlayer", "📺 Detectado video WebM");
-            } else {
-                Log.d("AdvancedVideoPlayer", "📺 Tipo de contenido no detectado, usando MP4 por defecto");
+            // Miniatura: el receptor la descarga de la misma URL que el poster de Flutter
+            if (thumbnailUrl != null && !thumbnailUrl.isEmpty()) {
+                metadata.addImage(new WebImage(Uri.parse(thumbnailUrl)));
             }
             
-            Log.d("AdvancedVideoPlayer", "📺 Tipo de contenido final: " + contentType);
+            // Crear MediaInfo con tipo de contenido según la URL (MP4 si no se reconoce)
+            String contentType = ContentTypes.forUrl(videoUrl);
+            Log.d("AdvancedVideoPlayer", "📺 Tipo de contenido: " + contentType);
             
+            // Subtítulos: el receptor los descarga y los dibuja en la TV
+            List<MediaTrack> textTracks = new ArrayList<>();
+            List<Long> activeTrackIds = new ArrayList<>();
+            buildTextTracks(subtitleTracks, textTracks, activeTrackIds);
+
             // Crear MediaInfo
-            MediaInfo mediaInfo = new MediaInfo.Builder(videoUrl)
+            MediaInfo.Builder mediaInfoBuilder = new MediaInfo.Builder(videoUrl)
                     .setStreamType(MediaInfo.STREAM_TYPE_BUFFERED)
                     .setContentType(contentType)
-                    .setMetadata(metadata)
-                    .build();
+                    .setMetadata(metadata);
+            if (!textTracks.isEmpty()) {
+                mediaInfoBuilder.setMediaTracks(textTracks);
+            }
+            MediaInfo mediaInfo = mediaInfoBuilder.build();
             
             Log.d("AdvancedVideoPlayer", "📝 MediaInfo creado exitosamente");
             
             // Crear MediaLoadRequestData
-            MediaLoadRequestData request = new MediaLoadRequestData.Builder()
+            // Sigue en el receptor donde iba el reproductor local y a su velocidad
+            MediaLoadRequestData.Builder requestBuilder = new MediaLoadRequestData.Builder()
                     .setMediaInfo(mediaInfo)
                     .setAutoplay(true)
-                    .build();
+                    .setCurrentTime(Math.max(0, (long) startPositionMs));
+            if (playbackRate >= MIN_CAST_PLAYBACK_RATE && playbackRate <= MAX_CAST_PLAYBACK_RATE) {
+                requestBuilder.setPlaybackRate(playbackRate);
+            }
+            if (!activeTrackIds.isEmpty()) {
+                long[] ids = new long[activeTrackIds.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = activeTrackIds.get(i);
+                }
+                requestBuilder.setActiveTrackIds(ids);
+            }
+            MediaLoadRequestData request = requestBuilder.build();
             
-            Log.d("AdvancedVideoPlayer", "📤 Enviando video a dispositivo...");
+            // Este reproductor pasa a ser el dueño de la sesión Cast
+            player.castVideoUrl = videoUrl;
+            player.castTitle = title;
+            players.setCastOwner(player.handle);
+            player.remotePositionMs = Math.max(0, (long) startPositionMs);
+            player.remotePositionAt = SystemClock.elapsedRealtime();
+            player.remotePlaying = false;
+            watchRemotePlayback(player, remoteMediaClient);
+
+            Log.d("AdvancedVideoPlayer", "📤 Enviando video a dispositivo #" + player.handle + "...");
+            final long loadStartNanos = System.nanoTime();
+            PluginTrace.beginAsync("cast.load", traceId);
             
             // Cargar el video en el dispositivo
             remoteMediaClient.load(request).setResultCallback(new ResultCallback<RemoteMediaClient.MediaChannelResult>() {
                 @Override
                 public void onResult(RemoteMediaClient.MediaChannelResult result) {
+                    PluginTrace.endAsync("cast.load", traceId);
+                    PluginMetrics.get().recordSince("cast.load", loadStartNanos);
+                    PluginMetrics.get().increment(result.getStatus().isSuccess() ? "cast.load.success" : "cast.load.failure");
                     if (result.getStatus().isSuccess()) {
+                        recordQoe(QoeRecorder.TYPE_HANDOFF_TO_CAST, (System.nanoTime() - shareStartNanos) / 1000000L);
                         Log.d("AdvancedVideoPlayer", "🎉 ¡Video enviado exitosamente!");
                         Log.d("AdvancedVideoPlayer", "✅ Título: " + title);
                         Log.d("AdvancedVideoPlayer", "✅ URL: " + videoUrl);
                     } else {
+                        recordQoe(QoeRecorder.TYPE_CAST_LOAD_FAILED, result.getStatus().getStatusCode());
                         Log.e("AdvancedVideoPlayer", "❌ Error enviando video: " + result.getStatus().getStatusCode());
                     }
                 }
@@ -480,15 +1355,214 @@ public class AdvancedVideoPlayerPlugin implements FlutterPlugin, MethodCallHandl
         }
     }
 
-    private void controlCastPlayback(String action, Double position, Result result) {
+    /**
+     * Sigue el estado del receptor para el traspaso: guarda la última posición (para
+     * volver a local al desconectar) y avisa con {@code onRemotePlaying} la primera vez
+     * que reproduce el contenido cargado. Reemplaza al seguimiento de la carga anterior.
+     */
+    private void watchRemotePlayback(final PlayerRegistry.PlayerState player, final RemoteMediaClient client) {
+        final boolean[] announced = {false};
+        final RemoteMediaClient.Callback callback = new RemoteMediaClient.Callback() {
+            @Override
+            public void onStatusUpdated() {
+                MediaStatus status = client.getMediaStatus();
+                if (status == null) {
+                    return;
+                }
+                boolean playing = status.getPlayerState() == MediaStatus.PLAYER_STATE_PLAYING;
+                player.remotePositionMs = client.getApproximateStreamPosition();
+                player.remotePositionAt = SystemClock.elapsedRealtime();
+                player.remotePlaying = playing;
+                player.remoteRate = status.getPlaybackRate() > 0 ? status.getPlaybackRate() : 1;
+                if (playing && !announced[0]) {
+                    announced[0] = true;
+                    Log.d("AdvancedVideoPlayer", "▶️ El receptor reproduce en " + player.remotePositionMs
+                            + " ms, el reproductor #" + player.handle + " puede soltar su decodificador");
+                    notifyRemotePlaying(player.handle, player.remotePositionMs);
+                }
+            }
+        };
+        client.registerCallback(callback);
+        ledger.replace(RegistrationLedger.Scope.ENGINE, KEY_REMOTE_STATUS, "RemoteMediaClient.Callback", callback,
+                new RegistrationLedger.Teardown() {
+                    @Override
+                    public void release() {
+                        client.unregisterCallback(callback);
+                    }
+                });
+    }
+
+    /** Posición del receptor para {@code getRemotePosition}: la del RemoteMediaClient o la última informada. */
+    private void describeRemotePosition(PlayerRegistry.PlayerState player, Result result) {
+        long positionMs = player.remotePositionNow();
+        boolean playing = player.remotePlaying;
+        CastSession session = players.castOwner() == player.handle ? castHub.currentSession() : null;
+        RemoteMediaClient client = session != null && session.isConnected() ? session.getRemoteMediaClient() : null;
+        if (client != null && client.hasMediaSession()) {
+            positionMs = client.getApproximateStreamPosition();
+            playing = client.isPlaying();
+        }
+        if (positionMs < 0) {
+            result.success(null);
+            return;
+        }
+        Map<String, Object> position = new HashMap<>();
+        position.put("positionMs", positionMs);
+        position.put("playing", playing);
+        result.success(position);
+    }
+
+    /**
+     * Convierte las pistas de subtítulos de Dart en pistas de texto de Cast.
+     * El receptor por defecto solo admite WebVTT (y TTML), así que las pistas
+     * SRT se omiten; los ids empiezan en 1 en el orden recibido.
+     */
+    private static void buildTextTracks(List<?> subtitleTracks, List<MediaTrack> out, List<Long> activeIds) {
+        if (subtitleTracks == null) {
+            return;
+        }
+        long nextId = 1;
+        for (Object item : subtitleTracks) {
+            if (!(item instanceof Map)) {
+                continue;
+            }
+            Map<?, ?> track = (Map<?, ?>) item;
+            Object url = track.get("url");
+            if (!(url instanceof String) || !"text/vtt".equals(track.get("mimeType"))) {
+                Log.d("AdvancedVideoPlayer", "📝 Pista de subtítulos omitida (no es WebVTT): " + url);
+                continue;
+            }
+            long id = nextId++;
+            Object label = track.get("label");
+            Object language = track.get("language");
+            out.add(new MediaTrack.Builder(id, MediaTrack.TYPE_TEXT)
+                    .setSubtype(MediaTrack.SUBTYPE_SUBTITLES)
+                    .setName(label instanceof String ? (String) label : null)
+                    .setLanguage(language instanceof String ? (String) language : null)
+                    .setContentId((String) url)
+                    .setContentType("text/vtt")
+                    .build());
+            if (Boolean.TRUE.equals(track.get("active"))) {
+                activeIds.add(id);
+            }
+        }
+        Log.d("AdvancedVideoPlayer", "📝 Pistas de subtítulos para Cast: " + out.size());
+    }
+
+    /**
+     * Espera, sondeando en el hilo principal sin bloquearlo, a que haya una sesión Cast
+     * con RemoteMediaClient disponible. Si no llega a tiempo responde el error en
+     * {@code result} y entrega null a {@code listener}.
+     */
+    private void awaitRemoteMediaClient(final Result result, final SessionWaiter.Listener<RemoteMediaClient> listener) {
+        if (castHub.sessionManager() == null && castHub.currentSession() == null) {
+            Log.e("AdvancedVideoPlayer", "❌ Cast no está inicializado");
+            result.error("NO_SESSION", "No hay sesión Cast activa", null);
+            listener.onResult(null);
+            return;
+        }
+        final SessionWaiter waiter = SessionWaiter.scheduled(mainScheduler, SESSION_POLL_INTERVAL_MS);
+        // Hasta 3 segundos para que la sesión esté disponible
+        waiter.poll(new SessionWaiter.Probe<CastSession>() {
+            @Override
+            public CastSession poll() {
+                // La última sesión notificada o la del SessionManager
+                return castHub.currentSession();
+            }
+        }, waiter.attemptsFor(SESSION_WAIT_MS), new SessionWaiter.Listener<CastSession>() {
+            @Override
+            public void onResult(final CastSession castSession) {
+                if (castSession == null) {
+                    Log.e("AdvancedVideoPlayer", "❌ No hay sesión Cast después de " + waiter.attempts() + " intentos");
+                    result.error("NO_SESSION", "No hay sesión Cast activa", null);
+                    listener.onResult(null);
+                    return;
+                }
+                if (waiter.attempts() > 0) {
+                    Log.d("AdvancedVideoPlayer", "✅ Sesión Cast encontrada tras " + waiter.attempts() + " intentos: "
+                            + castSession.getSessionId());
+                }
+
+                // Hasta 8 segundos para que RemoteMediaClient esté disponible
+                waiter.poll(new SessionWaiter.Probe<RemoteMediaClient>() {
+                    @Override
+                    public RemoteMediaClient poll() {
+                        return castSession.getRemoteMediaClient();
+                    }
+                }, waiter.attemptsFor(MEDIA_CLIENT_WAIT_MS), new SessionWaiter.Listener<RemoteMediaClient>() {
+                    @Override
+                    public void onResult(RemoteMediaClient remoteMediaClient) {
+                        if (remoteMediaClient == null) {
+                            Log.e("AdvancedVideoPlayer", "❌ RemoteMediaClient no disponible después de "
+                                    + waiter.attempts() + " intentos");
+                            result.error("NO_MEDIA_CLIENT", "RemoteMediaClient no disponible después de esperar", null);
+                        } else if (waiter.attempts() > 0) {
+                            Log.d("AdvancedVideoPlayer", "✅ RemoteMediaClient disponible después de "
+                                    + waiter.attempts() + " intentos");
+                        }
+                        listener.onResult(remoteMediaClient);
+                    }
+                });
+            }
+        });
+    }
+
+    private void controlCastPlayback(PlayerRegistry.PlayerState player, final String action, Double position,
+                                     final Result result) {
+        if (!players.canControlCast(player.handle)) {
+            Log.w("AdvancedVideoPlayer", "⚠️ El reproductor #" + player.handle + " no controla la sesión Cast actual");
+            result.success(false);
+            return;
+        }
         Log.d("AdvancedVideoPlayer", "🎮 Controlando reproducción: " + action + (position != null ? " at " + position : ""));
-        result.success(true);
+        CastSession session = castHub.currentSession();
+        RemoteMediaClient client = session != null && session.isConnected() ? session.getRemoteMediaClient() : null;
+        if (client == null || !client.hasMediaSession()) {
+            Log.w("AdvancedVideoPlayer", "⚠️ No hay contenido cargado en el receptor");
+            result.success(false);
+            return;
+        }
+        // Mismas acciones que el backend DLNA; la posición llega en segundos
+        PendingResult<RemoteMediaClient.MediaChannelResult> pending;
+        if ("play".equals(action)) {
+            pending = client.play();
+        } else if ("pause".equals(action)) {
+            pending = client.pause();
+        } else if ("stop".equals(action)) {
+            pending = client.stop();
+        } else if ("seek".equals(action) && position != null) {
+            pending = client.seek(new MediaSeekOptions.Builder()
+                    .setPosition(Math.max(0, (long) (position * 1000)))
+                    .build());
+        } else {
+            Log.w("AdvancedVideoPlayer", "⚠️ Acción de Cast no soportada: " + action);
+            result.success(false);
+            return;
+        }
+        pending.setResultCallback(new ResultCallback<RemoteMediaClient.MediaChannelResult>() {
+            @Override
+            public void onResult(RemoteMediaClient.MediaChannelResult channelResult) {
+                boolean ok = channelResult.getStatus().isSuccess();
+                if (!ok) {
+                    Log.e("AdvancedVideoPlayer", "❌ El receptor rechazó " + action + ": "
+                            + channelResult.getStatus().getStatusCode());
+                }
+                result.success(ok);
+            }
+        });
     }
 
-    private void disconnectFromCast(Result result) {
+    private void disconnectFromCast(PlayerRegistry.PlayerState player, Result result) {
         Log.d("AdvancedVideoPlayer", "🔌 Desconectando de Cast");
+        if (!players.canControlCast(player.handle)) {
+            // Otro reproductor está transmitiendo: no cortar su sesión
+            Log.w("AdvancedVideoPlayer", "⚠️ El reproductor #" + player.handle + " no controla la sesión Cast actual");
+            result.success(false);
+            return;
+        }
         
         try {
+            SessionManager sessionManager = castHub.sessionManager();
             if (sessionManager != null) {
                 CastSession currentSession = sessionManager.getCurrentCastSession();
                 
@@ -521,71 +1595,122 @@ public class AdvancedVideoPlayerPlugin implements FlutterPlugin, MethodCallHandl
         }
     }
 
-    private void initializeCast(Result result) {
-        try {
-            Log.d("AdvancedVideoPlayer", "🔧 Iniciando inicialización de Cast...");
-            if (isGoogleCastSupported()) {
-                Log.d("AdvancedVideoPlayer", "✅ Google Cast está soportado, obteniendo CastContext...");
-                
-                castContext = CastContext.getSharedInstance(context);
-                Log.d("AdvancedVideoPlayer", "✅ CastContext obtenido exitosamente");
-                
-                sessionManager = castContext.getSessionManager();
-                Log.d("AdvancedVideoPlayer", "✅ SessionManager obtenido exitosamente");
-                
-                sessionManagerListener = new SessionManagerListener<CastSession>() {
-                    @Override
-                    public void onSessionStarted(CastSession session, String sessionId) {
-                        castSession = session;
-                        Log.d("AdvancedVideoPlayer", "✅ Cast session started: " + sessionId);
-                    }
+    /** Datos para clasificar el dispositivo en el modo feed (cuántos decodificadores permitir). */
+    private Map<String, Object> getDeviceClass() {
+        Map<String, Object> info = new HashMap<>();
+        info.put("cores", Runtime.getRuntime().availableProcessors());
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        if (activityManager != null) {
+            info.put("lowRam", activityManager.isLowRamDevice());
+            info.put("memoryClassMb", activityManager.getMemoryClass());
+        }
+        return info;
+    }
 
-                    @Override
-                    public void onSessionResumed(CastSession session, boolean wasSuspended) {
-                        castSession = session;
-                        Log.d("AdvancedVideoPlayer", "✅ Cast session resumed");
-                    }
+    private ResumePositionStore getResumePositionStore() {
+        if (resumePositionStore == null) {
+            try {
+                resumePositionStore = ResumePositionStore.obtain(context.getApplicationContext().getFilesDir());
+                Log.d("AdvancedVideoPlayer", "✅ ResumePositionStore abierto con " + resumePositionStore.size()
+                        + " entradas");
+            } catch (Exception e) {
+                Log.e("AdvancedVideoPlayer", "❌ Error abriendo ResumePositionStore: " + e.getMessage());
+            }
+        }
+        return resumePositionStore;
+    }
 
-                    @Override
-                    public void onSessionSuspended(CastSession session, int error) {
-                        castSession = null;
-                        Log.d("AdvancedVideoPlayer", "⚠️ Cast session suspended: " + error);
-                    }
+    private void getResumePosition(String contentId, Result result) {
+        ResumePositionStore store = getResumePositionStore();
+        if (contentId == null || store == null) {
+            result.success(null);
+            return;
+        }
+        long[] saved = store.get(contentId);
+        if (saved == null) {
+            result.success(null);
+            return;
+        }
+        Map<String, Object> position = new HashMap<>();
+        position.put("positionMs", saved[0]);
+        position.put("durationMs", saved[1]);
+        result.success(position);
+    }
 
-                    @Override
-                    public void onSessionEnded(CastSession session, int error) {
-                        castSession = null;
-                        Log.d("AdvancedVideoPlayer", "❌ Cast session ended: " + error);
-                    }
+    private void saveResumePosition(String contentId, long positionMs, long durationMs, Result result) {
+        ResumePositionStore store = getResumePositionStore();
+        if (contentId == null || store == null) {
+            result.success(false);
+            return;
+        }
+        store.put(contentId, positionMs, durationMs);
+        result.success(true);
+    }
 
-                    @Override
-                    public void onSessionStarting(CastSession session) {
-                        Log.d("AdvancedVideoPlayer", "🔄 Cast session starting...");
-                    }
+    private void clearResumePosition(String contentId, Result result) {
+        ResumePositionStore store = getResumePositionStore();
+        if (contentId == null || store == null) {
+            result.success(false);
+            return;
+        }
+        store.remove(contentId);
+        result.success(true);
+    }
 
-                    @Override
-                    public void onSessionStartFailed(CastSession session, int error) {
-                        Log.e("AdvancedVideoPlayer", "❌ Cast session start failed: " + error);
-                    }
+    private QoeRecorder getQoeRecorder() {
+        if (qoeRecorder == null) {
+            try {
+                qoeRecorder = QoeRecorder.obtain(context.getApplicationContext().getFilesDir());
+                Log.d("AdvancedVideoPlayer", "✅ QoeRecorder abierto con " + qoeRecorder.pendingCount()
+                        + " registros sin drenar");
+            } catch (Exception e) {
+                Log.e("AdvancedVideoPlayer", "❌ Error abriendo QoeRecorder: " + e.getMessage());
+            }
+        }
+        return qoeRecorder;
+    }
 
-                    @Override
-                    public void onSessionEnding(CastSession session) {
-                        Log.d("AdvancedVideoPlayer", "🔄 Cast session ending...");
-                    }
+    // Evento de QoE nativo atribuido a la sesión de reproducción activa
+    private void recordQoe(int type, long value) {
+        QoeRecorder recorder = getQoeRecorder();
+        if (recorder != null) {
+            recorder.record(type, value);
+        }
+    }
 
-                    @Override
-                    public void onSessionResuming(CastSession session, String sessionId) {
-                        Log.d("AdvancedVideoPlayer", "🔄 Cast session resuming: " + sessionId);
-                    }
+    private void appendQoeRecords(byte[] records, Result result) {
+        QoeRecorder recorder = getQoeRecorder();
+        if (records == null || recorder == null) {
+            result.success(false);
+            return;
+        }
+        recorder.append(records);
+        result.success(true);
+    }
 
-                    @Override
-                    public void onSessionResumeFailed(CastSession session, int error) {
-                        Log.e("AdvancedVideoPlayer", "❌ Cast session resume failed: " + error);
-                    }
-                };
-                
-                sessionManager.addSessionManagerListener(sessionManagerListener, CastSession.class);
-                Log.d("AdvancedVideoPlayer", "✅ SessionManagerListener agregado exitosamente");
+    private void readQoeRecords(boolean consume, Result result) {
+        QoeRecorder recorder = getQoeRecorder();
+        if (recorder == null) {
+            result.success(new byte[0]);
+            return;
+        }
+        // La lectura espera los bloques encolados y lee el archivo: fuera del hilo principal
+        recorder.read(consume, onMainThread(result));
+    }
+
+    private void initializeCast(PlayerRegistry.PlayerState player, Result result) {
+        try {
+            Log.d("AdvancedVideoPlayer", "🔧 Iniciando inicialización de Cast...");
+            if (isGoogleCastSupported()) {
+                // CastContext y el listener de sesión se comparten entre reproductores
+                players.acquire(player, PlayerRegistry.RESOURCE_CAST);
+                if (ledger.contains(KEY_SESSION_LISTENER)) {
+                    Log.d("AdvancedVideoPlayer", "♻️ Cast ya inicializado, se reutiliza para #" + player.handle);
+                    result.success(true);
+                    return;
+                }
+
+                subscribeToCastSessions();
                 Log.d("AdvancedVideoPlayer", "🎉 Inicialización de Cast completada exitosamente");
                 result.success(true);
             } else {
@@ -599,6 +1724,134 @@ public class AdvancedVideoPlayerPlugin implements FlutterPlugin, MethodCallHandl
         }
     }
 
+    // El CastContext y el SessionManagerListener son del proceso: si otro engine
+    // ya los creó, este solo se suscribe a sus eventos
+    private void subscribeToCastSessions() {
+        if (ledger.contains(KEY_SESSION_LISTENER)) {
+            return;
+        }
+        castHub.acquireSession(context, castListener);
+        ledger.replace(RegistrationLedger.Scope.ENGINE, KEY_SESSION_LISTENER, "CastHub.session", castListener,
+                new RegistrationLedger.Teardown() {
+                    @Override
+                    public void release() {
+                        castHub.releaseSession(castListener);
+                    }
+                });
+    }
+
+    /**
+     * Suelta recursos según el nivel de {@code onTrimMemory} (escalones de
+     * {@link TrimPolicy}) y avisa a Dart con {@code onTrimMemory} para que libere
+     * también los reproductores fuera de pantalla. Nunca corta una transmisión en curso.
+     */
+    private void trimMemory(int level) {
+        int tier = TrimPolicy.tierFor(level);
+        if (tier == TrimPolicy.TIER_NONE) {
+            return;
+        }
+        String tierName = TrimPolicy.tierName(tier);
+        PluginTrace.begin("memory.trim." + tierName);
+        PluginMetrics.get().increment("memory.trim." + tierName);
+        Log.w("AdvancedVideoPlayer", "🧹 onTrimMemory(" + TrimPolicy.levelName(level) + "): liberando " + tierName);
+
+        // Cachés: catálogo de dispositivos, descripciones UPnP y escrituras pendientes
+        castRenderer.trimMemory(tier);
+        boolean dlnaIdle = dlnaBackend != null && dlnaBackend.trimMemory(tier);
+        if (resumePositionStore != null) {
+            resumePositionStore.flush();
+        }
+        if (qoeRecorder != null) {
+            qoeRecorder.flush();
+        }
+
+        // Descubrimiento: la siguiente discoverDevices lo vuelve a iniciar
+        if (tier >= TrimPolicy.TIER_DISCOVERY) {
+            ledger.release(KEY_ROUTER_CALLBACK);
+            ledger.release(KEY_MDNS_BROWSER);
+        }
+
+        // Sesiones y pools sin uso
+        if (tier >= TrimPolicy.TIER_SESSIONS) {
+            if (players.castOwner() == PlayerRegistry.NO_PLAYER && !castHub.sessionState().isActive()) {
+                ledger.release(KEY_SESSION_LISTENER);
+            }
+            if (dlnaIdle) {
+                ledger.release(KEY_DLNA_BACKEND);
+            }
+            if (pictureInPicturePlugin != null) {
+                pictureInPicturePlugin.trimMemory();
+            }
+        }
+
+        if (channel != null) {
+            Map<String, Object> args = new HashMap<>();
+            args.put("level", level);
+            args.put("levelName", TrimPolicy.levelName(level));
+            args.put("tier", tierName);
+            channel.invokeMethod("onTrimMemory", args);
+        }
+        PluginTrace.end();
+    }
+
+    /**
+     * Avisa solo al reproductor que estaba transmitiendo de que la sesión Cast terminó,
+     * con la última posición del receptor para que siga en local desde ahí.
+     */
+    private void notifyCastOwnerDisconnected() {
+        int owner = players.castOwner();
+        if (owner == PlayerRegistry.NO_PLAYER || screenSharingChannel == null) {
+            return;
+        }
+        Map<String, Object> args = new HashMap<>();
+        args.put(PlayerRegistry.ARG_PLAYER_ID, owner);
+        PlayerRegistry.PlayerState state = players.get(owner);
+        if (state != null && state.remotePositionNow() >= 0) {
+            args.put("positionMs", state.remotePositionNow());
+        }
+        screenSharingChannel.invokeMethod("onDeviceDisconnected", args);
+    }
+
+    /** Avisa al reproductor de que el receptor ya reproduce: puede soltar su decodificador. */
+    private void notifyRemotePlaying(int handle, long positionMs) {
+        if (screenSharingChannel == null) {
+            return;
+        }
+        PluginMetrics.get().increment("cast.handoff.remotePlaying");
+        Map<String, Object> args = new HashMap<>();
+        args.put(PlayerRegistry.ARG_PLAYER_ID, handle);
+        args.put("positionMs", positionMs);
+        screenSharingChannel.invokeMethod("onRemotePlaying", args);
+    }
+
+    // Respuesta de shareVideo para backends sin eventos de estado
+    private Result notifyingRemotePlaying(final int handle, final double positionMs, final Result result) {
+        return new Result() {
+            @Override
+            public void success(Object value) {
+                result.success(value);
+                if (Boolean.TRUE.equals(value)) {
+                    notifyRemotePlaying(handle, (long) positionMs);
+                }
+            }
+
+            @Override
+            public void error(@NonNull String code, String message, Object details) {
+                result.error(code, message, details);
+            }
+
+            @Override
+            public void notImplemented() {
+                result.notImplemented();
+            }
+        };
+    }
+
+    private static double numberArg(Map<String, Object> args, String key, double fallback) {
+        Object value = args != null ? args.get(key) : null;
+        return value instanceof Number ? ((Number) value).doubleValue() : fallback;
+    }
+
     // Métodos de ActivityAware para pasar la Activity al PictureInPicturePlugin
     @Override
     public void onAttachedToActivity(@NonNull ActivityPluginBinding binding) {
@@ -630,66 +1883,88 @@ public class AdvancedVideoPlayerPlugin implements FlutterPlugin, MethodCallHandl
         if (pictureInPicturePlugin != null) {
             pictureInPicturePlugin.onDetachedFromActivity();
         }
+        ledger.releaseScope(RegistrationLedger.Scope.ACTIVITY);
     }
 
     @Override
     public void onDetachedFromEngine(@NonNull FlutterPluginBinding binding) {
-        if (sessionManager != null && sessionManagerListener != null) {
-            try {
-                sessionManager.removeSessionManagerListener(sessionManagerListener, CastSession.class);
-                Log.d("AdvancedVideoPlayer", "✅ SessionManagerListener removido");
-            } catch (Exception e) {
-                Log.e("AdvancedVideoPlayer", "❌ Error removiendo SessionManagerListener: " + e.getMessage());
-            }
-        }
-        
-        if (mediaRouter != null && routerCallback != null) {
-            try {
-                mediaRouter.removeCallback(routerCallback);
-                Log.d("AdvancedVideoPlayer", "✅ MediaRouterCallback removido");
-            } catch (Exception e) {
-                Log.e("AdvancedVideoPlayer", "❌ Error removiendo MediaRouterCallback: " + e.getMessage());
-            }
-        }
-        
         if (pictureInPicturePlugin != null) {
             pictureInPicturePlugin.onDetachedFromEngine(binding);
         }
+
+        // Liberar los reproductores y quitar todos los listeners, callbacks y receivers de este engine
+        mainHandler.removeCallbacks(endCastWarmUp);
+        reconnectRoute = null;
+        players.releaseAll();
+        ledger.releaseAll();
+
+        if (resumePositionStore != null) {
+            resumePositionStore.flush();
+        }
+        if (qoeRecorder != null) {
+            qoeRecorder.flush();
+        }
         
         channel.setMethodCallHandler(null);
         screenSharingChannel.setMethodCallHandler(null);
+        // Los avisos que lleguen tarde (lotes de rutas, lectura del último receptor) se descartan
+        channel = null;
+        screenSharingChannel = null;
         Log.d("AdvancedVideoPlayer", "🔍 Plugin detached from engine");
     }
 }
 
-// Callback para detectar cambios en las rutas de MediaRouter
+// Callback para detectar cambios en las rutas de MediaRouter. Las altas, bajas y
+// cambios no se registran uno a uno: con muchos receptores son decenas por segundo,
+// y el resumen sale al entregar cada lote a Dart
 class MediaRouterCallback extends MediaRouter.Callback {
+    private final CastHub hub;
+
+    MediaRouterCallback(CastHub hub) {
+        this.hub = hub;
+    }
+
     @Override
     public void onRouteAdded(MediaRouter router, MediaRouter.RouteInfo route) {
-        Log.d("AdvancedVideoPlayer", "🎉 ¡NUEVA RUTA AGREGADA! " + route.getName() + " (ID: " + route.getId() + ")");
-        Log.d("AdvancedVideoPlayer", "   - Descripción: " + route.getDescription());
-        Log.d("AdvancedVideoPlayer", "   - Estado: " + route.getConnectionState());
-        Log.d("AdvancedVideoPlayer", "   - Disponible: " + route.isEnabled());
+        PluginTrace.begin("cast.route.added");
+        PluginMetrics.get().increment("cast.route.added");
+        hub.dispatchRoute(CastHub.ROUTE_ADDED, route);
+        PluginTrace.end();
     }
 
     @Override
     public void onRouteRemoved(MediaRouter router, MediaRouter.RouteInfo route) {
-        Log.d("AdvancedVideoPlayer", "❌ Ruta removida: " + route.getName() + " (ID: " + route.getId() + ")");
+        PluginTrace.begin("cast.route.removed");
+        PluginMetrics.get().increment("cast.route.removed");
+        CastDeviceCatalog.get().forget(route.getId());
+        hub.dispatchRoute(CastHub.ROUTE_REMOVED, route);
+        PluginTrace.end();
     }
 
     @Override
     public void onRouteChanged(MediaRouter router, MediaRouter.RouteInfo route) {
-        Log.d("AdvancedVideoPlayer", "🔄 Ruta cambiada: " + route.getName() + " (ID: " + route.getId() + ")");
-        Log.d("AdvancedVideoPlayer", "   - Nuevo estado: " + route.getConnectionState());
+        PluginTrace.begin("cast.route.changed");
+        PluginMetrics.get().increment("cast.route.changed");
+        CastDeviceCatalog.get().forget(route.getId());
+        hub.dispatchRoute(CastHub.ROUTE_CHANGED, route);
+        PluginTrace.end();
     }
 
     @Override
     public void onRouteSelected(MediaRouter router, MediaRouter.RouteInfo route) {
+        PluginTrace.begin("cast.route.selected");
+        PluginMetrics.get().increment("cast.route.selected");
         Log.d("AdvancedVideoPlayer", "✅ Ruta seleccionada: " + route.getName() + " (ID: " + route.getId() + ")");
+        hub.dispatchRoute(CastHub.ROUTE_SELECTED, route);
+        PluginTrace.end();
     }
 
     @Override
     public void onRouteUnselected(MediaRouter router, MediaRouter.RouteInfo route) {
+        PluginTrace.begin("cast.route.unselected");
+        PluginMetrics.get().increment("cast.route.unselected");
         Log.d("AdvancedVideoPlayer", "🔌 Ruta deseleccionada: " + route.getName() + " (ID: " + route.getId() + ")");
+        hub.dispatchRoute(CastHub.ROUTE_UNSELECTED, route);
+        PluginTrace.end();
     }
 }
\ No newline at end of file
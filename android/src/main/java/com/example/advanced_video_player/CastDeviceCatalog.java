@@ -0,0 +1,158 @@
+package com.example.advanced_video_player;
+
+import android.util.Log;
+
+import androidx.mediarouter.media.MediaRouteSelector;
+import androidx.mediarouter.media.MediaRouter.RouteInfo;
+
+import com.google.android.gms.cast.CastDevice;
+
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Catálogo de los dispositivos Cast que devuelve {@code discoverDevices}.
+ *
+ * Solo acepta rutas que cumplen las categorías de control del selector de
+ * {@link CastHub}; la ruta por defecto (altavoz del teléfono) y las de Bluetooth
+ * se descartan aunque las cumplan. Los datos de {@link CastDevice#getFromBundle}
+ * (modelo, capacidades, IP, volumen) se extraen una sola vez por dispositivo y se
+ * guardan por id de ruta, que en Cast incluye el id del dispositivo; la entrada se
+ * invalida cuando MediaRouter notifica que la ruta cambió o desapareció. La caché y
+ * la copia de las entradas están en {@link DeviceCatalog}; aquí solo se leen las
+ * rutas de MediaRouter.
+ *
+ * El SDK de Cast no informa de los códecs del receptor: {@code supports4k} y
+ * {@code supportsHevc} se deducen del modelo (ver {@link CastModels}).
+ */
+final class CastDeviceCatalog {
+    private static final String TAG = "AdvancedVideoPlayer";
+
+    // Origen del dispositivo en la lista que recibe Dart
+    static final String SOURCE = "mediaRouter";
+
+    private static final CastDeviceCatalog INSTANCE = new CastDeviceCatalog();
+
+    private final DeviceCatalog<RouteInfo> catalog = new DeviceCatalog<>(new RouteReader(), "cast.catalog");
+    // Selector de la búsqueda en curso; se lee desde RouteReader.isAvailable
+    private MediaRouteSelector selector;
+
+    static CastDeviceCatalog get() {
+        return INSTANCE;
+    }
+
+    private CastDeviceCatalog() {
+    }
+
+    /** Si la ruta es un receptor al que se puede transmitir. */
+    static boolean accepts(RouteInfo route, MediaRouteSelector selector) {
+        if (route.isDefault() || route.isBluetooth() || !route.isEnabled()) {
+            return false;
+        }
+        return selector == null || route.matchesSelector(selector);
+    }
+
+    /**
+     * Dispositivos disponibles (sin conectar) entre las rutas de MediaRouter, con
+     * sus capacidades. Cada elemento es una copia que se puede enviar por el canal.
+     */
+    synchronized List<Map<String, Object>> describe(List<RouteInfo> routes, MediaRouteSelector selector) {
+        this.selector = selector;
+        return catalog.describe(routes);
+    }
+
+    /** Si la última búsqueda ganó o perdió dispositivos respecto a la anterior. */
+    boolean lastChanged() {
+        return catalog.lastChanged();
+    }
+
+    /** Olvida todos los datos guardados (presión de memoria). */
+    void clear() {
+        catalog.clear();
+    }
+
+    /** Olvida los datos de una ruta (cambió o desapareció). */
+    void forget(String routeId) {
+        catalog.forget(routeId);
+    }
+
+    /** Rutas con datos guardados. */
+    int size() {
+        return catalog.size();
+    }
+
+    private final class RouteReader implements DeviceCatalog.RouteReader<RouteInfo> {
+        @Override
+        public String id(RouteInfo route) {
+            return route.getId();
+        }
+
+        @Override
+        public String name(RouteInfo route) {
+            return route.getName();
+        }
+
+        @Override
+        public boolean isAvailable(RouteInfo route) {
+            return accepts(route, selector) && route.getConnectionState() != RouteInfo.CONNECTION_STATE_CONNECTED;
+        }
+
+        @Override
+        public Map<String, Object> extract(RouteInfo route) {
+            return CastDeviceCatalog.extract(route);
+        }
+    }
+
+    private static Map<String, Object> extract(RouteInfo route) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("id", route.getId());
+        entry.put("source", SOURCE);
+        entry.put("volumeControl", route.getVolumeHandling() == RouteInfo.PLAYBACK_VOLUME_VARIABLE);
+        entry.put("deviceType", deviceType(route.getDeviceType()));
+
+        CastDevice device = route.getExtras() != null ? CastDevice.getFromBundle(route.getExtras()) : null;
+        if (device == null) {
+            // Ruta de reproducción remota que no es de Cast
+            entry.put("type", CastModels.TYPE_REMOTE);
+            return entry;
+        }
+
+        boolean group = device.hasCapability(CastDevice.CAPABILITY_MULTIZONE_GROUP);
+        entry.put("type", group ? CastModels.TYPE_GROUP : CastModels.TYPE_CHROMECAST);
+        entry.put("deviceId", device.getDeviceId());
+        entry.put("modelName", device.getModelName());
+        entry.put("deviceVersion", device.getDeviceVersion());
+        InetAddress address = device.getInetAddress();
+        entry.put("ipAddress", address != null ? address.getHostAddress() : null);
+        entry.put("servicePort", device.getServicePort());
+        entry.put("isOnLocalNetwork", device.isOnLocalNetwork());
+
+        Map<String, Object> capabilities = new HashMap<>();
+        capabilities.put("videoOut", device.hasCapability(CastDevice.CAPABILITY_VIDEO_OUT));
+        capabilities.put("videoIn", device.hasCapability(CastDevice.CAPABILITY_VIDEO_IN));
+        capabilities.put("audioOut", device.hasCapability(CastDevice.CAPABILITY_AUDIO_OUT));
+        capabilities.put("audioIn", device.hasCapability(CastDevice.CAPABILITY_AUDIO_IN));
+        capabilities.put("multizoneGroup", group);
+        entry.put("capabilities", capabilities);
+
+        entry.put("supports4k", group ? null : CastModels.supports4k(device.getModelName()));
+        entry.put("supportsHevc", group ? null : CastModels.supportsHevc(device.getModelName()));
+
+        Log.d(TAG, "📇 Dispositivo catalogado: " + route.getName() + " | modelo: " + device.getModelName()
+                + " | video: " + capabilities.get("videoOut") + " | 4K: " + entry.get("supports4k"));
+        return entry;
+    }
+
+    private static String deviceType(int type) {
+        switch (type) {
+            case RouteInfo.DEVICE_TYPE_TV:
+                return "tv";
+            case RouteInfo.DEVICE_TYPE_SPEAKER:
+                return "speaker";
+            default:
+                return "unknown";
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.example.advanced_video_player;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.mediarouter.media.MediaControlIntent;
+import androidx.mediarouter.media.MediaRouteSelector;
+import androidx.mediarouter.media.MediaRouter;
+
+import com.google.android.gms.cast.framework.CastContext;
+import com.google.android.gms.cast.framework.CastSession;
+import com.google.android.gms.cast.framework.SessionManager;
+import com.google.android.gms.cast.framework.SessionManagerListener;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Capa de Cast/MediaRouter compartida por todo el proceso.
+ *
+ * Con varios FlutterEngine (add-to-app, FlutterEngineGroup, engine en segundo plano)
+ * cada uno adjunta su propio AdvancedVideoPlayerPlugin, pero el CastContext, el
+ * SessionManagerListener y el callback de descubrimiento de MediaRouter se registran
+ * una sola vez aquí. Cada engine se suscribe como {@link Listener}; el primero abre el
+ * recurso, el último lo cierra, y los eventos de sesión y de rutas se reenvían a todos
+ * los suscriptores.
+ *
+ * Las suscripciones se hacen desde el hilo principal (canales de método), pero el
+ * estado está protegido para que cualquier hilo pueda consultarlo.
+ */
+final class CastHub {
+    private static final String TAG = "AdvancedVideoPlayer";
+
+    // Eventos de sesión que se reenvían a los engines
+    static final String SESSION_STARTED = "started";
+    static final String SESSION_RESUMED = "resumed";
+    static final String SESSION_SUSPENDED = "suspended";
+    static final String SESSION_ENDED = "ended";
+    static final String SESSION_START_FAILED = "startFailed";
+    static final String SESSION_RESUME_FAILED = "resumeFailed";
+
+    // Eventos de rutas (los mismos que agrupa RouteEventBatcher)
+    static final String ROUTE_ADDED = RouteEventBatcher.ADDED;
+    static final String ROUTE_REMOVED = RouteEventBatcher.REMOVED;
+    static final String ROUTE_CHANGED = RouteEventBatcher.CHANGED;
+    static final String ROUTE_SELECTED = RouteEventBatcher.SELECTED;
+    static final String ROUTE_UNSELECTED = RouteEventBatcher.UNSELECTED;
+
+    /** Suscriptor de un engine. Los eventos llegan en el hilo principal. */
+    interface Listener {
+        void onSessionEvent(String event, CastSession session, int error);
+
+        void onRouteEvent(String event, MediaRouter.RouteInfo route);
+    }
+
+    private static final CastHub INSTANCE = new CastHub();
+
+    private final List<Listener> sessionClients = new CopyOnWriteArrayList<>();
+    private final List<Listener> discoveryClients = new CopyOnWriteArrayList<>();
+
+    private Context appContext;
+    private CastContext castContext;
+    private SessionManager sessionManager;
+    private SessionManagerListener<CastSession> sessionListener;
+    private volatile CastSession castSession;
+    // Estado de la sesión según los eventos del SessionManagerListener
+    private final CastSessionState sessionState = new CastSessionState();
+
+    private MediaRouter mediaRouter;
+    private MediaRouteSelector routeSelector;
+    private MediaRouterCallback routerCallback;
+
+    static CastHub get() {
+        return INSTANCE;
+    }
+
+    private CastHub() {
+    }
+
+    /**
+     * Suscribe un engine a los eventos de sesión. El primer suscriptor del proceso
+     * obtiene el CastContext y registra el SessionManagerListener.
+     */
+    synchronized void acquireSession(Context context, Listener client) {
+        if (sessionClients.contains(client)) {
+            return;
+        }
+        if (sessionListener == null) {
+            Log.d(TAG, "🔧 Inicializando Cast para el proceso...");
+            appContext = context.getApplicationContext();
+            castContext = CastContext.getSharedInstance(appContext);
+            sessionManager = castContext.getSessionManager();
+            sessionListener = createSessionListener();
+            sessionManager.addSessionManagerListener(sessionListener, CastSession.class);
+            castSession = sessionManager.getCurrentCastSession();
+            if (castSession != null) {
+                // Sesión que ya existía (por ejemplo, de otra Activity)
+                sessionState.on(CastSessionState.EVENT_RESUMED, castSession.getSessionId());
+            }
+            PluginMetrics.get().increment("castHub.session.opened");
+            Log.d(TAG, "✅ SessionManagerListener del proceso agregado");
+        } else {
+            PluginMetrics.get().increment("castHub.session.reused");
+            Log.d(TAG, "♻️ Cast ya inicializado en el proceso, se reutiliza");
+        }
+        sessionClients.add(client);
+    }
+
+    /** Cancela la suscripción; el último engine quita el SessionManagerListener. */
+    synchronized void releaseSession(Listener client) {
+        if (!sessionClients.remove(client) || !sessionClients.isEmpty() || sessionListener == null) {
+            return;
+        }
+        sessionManager.removeSessionManagerListener(sessionListener, CastSession.class);
+        sessionListener = null;
+        castSession = null;
+        sessionState.reset();
+        PluginMetrics.get().increment("castHub.session.closed");
+        Log.d(TAG, "🧹 Ningún engine usa Cast, SessionManagerListener del proceso removido");
+    }
+
+    /**
+     * Suscribe un engine al descubrimiento de dispositivos. El primer suscriptor
+     * del proceso registra el callback de MediaRouter con búsqueda activa.
+     */
+    synchronized void acquireDiscovery(Context context, Listener client) {
+        if (discoveryClients.contains(client)) {
+            return;
+        }
+        if (routerCallback == null) {
+            Log.d(TAG, "🔧 Iniciando descubrimiento de MediaRouter para el proceso...");
+            if (appContext == null) {
+                appContext = context.getApplicationContext();
+            }
+            mediaRouter = MediaRouter.getInstance(appContext);
+            routeSelector = new MediaRouteSelector.Builder()
+                    .addControlCategory(MediaControlIntent.CATEGORY_LIVE_VIDEO)
+                    .addControlCategory(MediaControlIntent.CATEGORY_REMOTE_PLAYBACK)
+                    .build();
+            routerCallback = new MediaRouterCallback(this);
+            mediaRouter.addCallback(routeSelector, routerCallback, MediaRouter.CALLBACK_FLAG_REQUEST_DISCOVERY);
+            PluginMetrics.get().increment("castHub.discovery.opened");
+            Log.d(TAG, "✅ MediaRouterCallback del proceso configurado");
+        } else {
+            PluginMetrics.get().increment("castHub.discovery.reused");
+        }
+        discoveryClients.add(client);
+    }
+
+    /** Cancela la suscripción; el último engine detiene el descubrimiento. */
+    synchronized void releaseDiscovery(Listener client) {
+        if (!discoveryClients.remove(client) || !discoveryClients.isEmpty() || routerCallback == null) {
+            return;
+        }
+        mediaRouter.removeCallback(routerCallback);
+        routerCallback = null;
+        PluginMetrics.get().increment("castHub.discovery.closed");
+        Log.d(TAG, "🛑 Ningún engine busca dispositivos, descubrimiento detenido");
+    }
+
+    synchronized CastContext castContext() {
+        return castContext;
+    }
+
+    synchronized SessionManager sessionManager() {
+        return sessionManager;
+    }
+
+    /** MediaRouter del proceso, o null si nunca se inició el descubrimiento. */
+    synchronized MediaRouter mediaRouter() {
+        return mediaRouter;
+    }
+
+    /** Selector con el que se descubren las rutas, o null si nunca se inició el descubrimiento. */
+    synchronized MediaRouteSelector routeSelector() {
+        return routeSelector;
+    }
+
+    /** Sesión actual: la última notificada o, si aún no llegó el evento, la del SessionManager. */
+    CastSession currentSession() {
+        CastSession session = castSession;
+        if (session != null) {
+            return session;
+        }
+        SessionManager manager = sessionManager();
+        return manager != null ? manager.getCurrentCastSession() : null;
+    }
+
+    /** Estado de la sesión Cast del proceso. */
+    CastSessionState sessionState() {
+        return sessionState;
+    }
+
+    /** Estado del hub, para el método de depuración {@code getCastHub}. */
+    synchronized Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("sessionClients", sessionClients.size());
+        snapshot.put("discoveryClients", discoveryClients.size());
+        snapshot.put("sessionTracking", sessionListener != null);
+        snapshot.put("discovering", routerCallback != null);
+        snapshot.put("hasSession", castSession != null);
+        snapshot.put("sessionState", sessionState.stateName());
+        snapshot.put("sessionUnexpectedEvents", sessionState.unexpected());
+        snapshot.put("catalogEntries", CastDeviceCatalog.get().size());
+        return snapshot;
+    }
+
+    void dispatchRoute(String event, MediaRouter.RouteInfo route) {
+        for (Listener client : discoveryClients) {
+            try {
+                client.onRouteEvent(event, route);
+            } catch (Exception e) {
+                Log.e(TAG, "❌ Error reenviando evento de ruta: " + e.getMessage());
+            }
+        }
+    }
+
+    private void dispatchSession(String event, CastSession session, int error) {
+        for (Listener client : sessionClients) {
+            try {
+                client.onSessionEvent(event, session, error);
+            } catch (Exception e) {
+                Log.e(TAG, "❌ Error reenviando evento de sesión: " + e.getMessage());
+            }
+        }
+    }
+
+    // Los eventos de QoE de la sesión se registran una vez por proceso, no por engine
+    private void recordQoe(int type, long value) {
+        try {
+            QoeRecorder.obtain(appContext.getFilesDir()).record(type, value);
+        } catch (Exception e) {
+            Log.e(TAG, "❌ No se pudo registrar evento de QoE: " + e.getMessage());
+        }
+    }
+
+    // La ruta seleccionada al empezar o reanudar la sesión es la del receptor: se
+    // guarda para reconectar al abrir la app (ver CastRouteMemory)
+    private void rememberRoute(CastSession session) {
+        try {
+            MediaRouter.RouteInfo route = MediaRouter.getInstance(appContext).getSelectedRoute();
+            if (route == null || route.isDefault()) {
+                return;
+            }
+            CastRouteMemory.get().remember(appContext, route.getId(), route.getName(), session.getSessionId());
+        } catch (Exception e) {
+            Log.e(TAG, "❌ No se pudo recordar el receptor: " + e.getMessage());
+        }
+    }
+
+    private SessionManagerListener<CastSession> createSessionListener() {
+        return new SessionManagerListener<CastSession>() {
+            @Override
+            public void onSessionStarted(CastSession session, String sessionId) {
+                PluginTrace.begin("cast.session.started");
+                PluginMetrics.get().increment("cast.session.started");
+                castSession = session;
+                sessionState.on(CastSessionState.EVENT_STARTED, sessionId);
+                Log.d(TAG, "✅ Cast session started: " + sessionId);
+                rememberRoute(session);
+                dispatchSession(SESSION_STARTED, session, 0);
+                PluginTrace.end();
+            }
+
+            @Override
+            public void onSessionResumed(CastSession session, boolean wasSuspended) {
+                PluginTrace.begin("cast.session.resumed");
+                PluginMetrics.get().increment("cast.session.resumed");
+                castSession = session;
+                sessionState.on(CastSessionState.EVENT_RESUMED, session.getSessionId());
+                Log.d(TAG, "✅ Cast session resumed");
+                rememberRoute(session);
+                dispatchSession(SESSION_RESUMED, session, 0);
+                PluginTrace.end();
+            }
+
+            @Override
+            public void onSessionSuspended(CastSession session, int error) {
+                PluginTrace.begin("cast.session.suspended");
+                PluginMetrics.get().increment("cast.session.suspended");
+                castSession = null;
+                sessionState.on(CastSessionState.EVENT_SUSPENDED, null);
+                Log.d(TAG, "⚠️ Cast session suspended: " + error);
+                dispatchSession(SESSION_SUSPENDED, session, error);
+                PluginTrace.end();
+            }
+
+            @Override
+            public void onSessionEnded(CastSession session, int error) {
+                PluginTrace.begin("cast.session.ended");
+                PluginMetrics.get().increment("cast.session.ended");
+                recordQoe(QoeRecorder.TYPE_CAST_ENDED, error);
+                castSession = null;
+                sessionState.on(CastSessionState.EVENT_ENDED, null);
+                Log.d(TAG, "❌ Cast session ended: " + error);
+                CastRouteMemory.get().forgetSession(appContext);
+                dispatchSession(SESSION_ENDED, session, error);
+                PluginTrace.end();
+            }
+
+            @Override
+            public void onSessionStarting(CastSession session) {
+                sessionState.on(CastSessionState.EVENT_STARTING, null);
+                Log.d(TAG, "🔄 Cast session starting...");
+            }
+
+            @Override
+            public void onSessionStartFailed(CastSession session, int error) {
+                PluginTrace.begin("cast.session.startFailed");
+                PluginMetrics.get().increment("cast.session.startFailed");
+                sessionState.on(CastSessionState.EVENT_START_FAILED, null);
+                Log.e(TAG, "❌ Cast session start failed: " + error);
+                dispatchSession(SESSION_START_FAILED, session, error);
+                PluginTrace.end();
+            }
+
+            @Override
+            public void onSessionEnding(CastSession session) {
+                sessionState.on(CastSessionState.EVENT_ENDING, null);
+                Log.d(TAG, "🔄 Cast session ending...");
+            }
+
+            @Override
+            public void onSessionResuming(CastSession session, String sessionId) {
+                sessionState.on(CastSessionState.EVENT_RESUMING, sessionId);
+                Log.d(TAG, "🔄 Cast session resuming: " + sessionId);
+            }
+
+            @Override
+            public void onSessionResumeFailed(CastSession session, int error) {
+                PluginTrace.begin("cast.session.resumeFailed");
+                PluginMetrics.get().increment("cast.session.resumeFailed");
+                sessionState.on(CastSessionState.EVENT_RESUME_FAILED, null);
+                Log.e(TAG, "❌ Cast session resume failed: " + error);
+                dispatchSession(SESSION_RESUME_FAILED, session, error);
+                PluginTrace.end();
+            }
+        };
+    }
+}
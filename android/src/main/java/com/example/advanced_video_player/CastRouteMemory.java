@@ -0,0 +1,166 @@
+package com.example.advanced_video_player;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Último receptor Cast del proceso ({@link LastCastRoute}), leído y escrito fuera
+ * del hilo principal.
+ *
+ * {@link CastHub} lo actualiza con cada sesión que empieza o se reanuda y quita la
+ * sesión cuando termina; el plugin lo consulta al arrancar para reanudar y al
+ * conectar para saltarse la espera si la sesión sigue viva.
+ */
+final class CastRouteMemory {
+    private static final String TAG = "AdvancedVideoPlayer";
+    private static final long REFRESH_INTERVAL_MS = 60L * 60 * 1000;
+
+    /** Recibe el registro guardado (o null) en el hilo principal. */
+    interface Callback {
+        void onLoaded(LastCastRoute route);
+    }
+
+    private static final CastRouteMemory INSTANCE = new CastRouteMemory();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "avp-cast-route");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private File directory;
+    private LastCastRoute current;
+    private boolean loaded;
+    // Quienes pidieron el registro antes de terminar la primera lectura
+    private List<Callback> waiting;
+
+    static CastRouteMemory get() {
+        return INSTANCE;
+    }
+
+    private CastRouteMemory() {
+    }
+
+    /** Entrega el registro guardado; solo la primera llamada del proceso lee el archivo. */
+    void load(Context context, final Callback callback) {
+        final LastCastRoute known;
+        synchronized (this) {
+            if (!loaded) {
+                if (waiting == null) {
+                    waiting = new ArrayList<>();
+                    directory = context.getApplicationContext().getFilesDir();
+                    ioExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            finishLoad(LastCastRoute.read(directory));
+                        }
+                    });
+                }
+                waiting.add(callback);
+                return;
+            }
+            known = current;
+        }
+        callback.onLoaded(known);
+    }
+
+    /** Registro actual en memoria (null si no hay o aún no se leyó). */
+    synchronized LastCastRoute current() {
+        return current;
+    }
+
+    /** Guarda la ruta y la sesión que acaban de conectarse. */
+    void remember(Context context, String routeId, String routeName, String sessionId) {
+        LastCastRoute route = new LastCastRoute(routeId, routeName, sessionId, System.currentTimeMillis());
+        synchronized (this) {
+            ensureDirectory(context);
+            // Una sesión que se reanuda varias veces no reescribe el archivo, salvo
+            // de vez en cuando para renovar su caducidad
+            if (route.sameAs(current) && route.savedAtMs - current.savedAtMs < REFRESH_INTERVAL_MS) {
+                return;
+            }
+            current = route;
+            loaded = true;
+        }
+        Log.d(TAG, "💾 Receptor recordado: " + route);
+        persist(route);
+    }
+
+    /** La sesión terminó: se conserva el receptor, pero ya no hay nada que reanudar. */
+    void forgetSession(Context context) {
+        LastCastRoute route;
+        synchronized (this) {
+            if (current == null || current.sessionId == null) {
+                return;
+            }
+            ensureDirectory(context);
+            current = current.withoutSession();
+            route = current;
+        }
+        persist(route);
+    }
+
+    // Requiere this
+    private void ensureDirectory(Context context) {
+        if (directory == null) {
+            directory = context.getApplicationContext().getFilesDir();
+        }
+    }
+
+    private void finishLoad(LastCastRoute read) {
+        final List<Callback> callbacks;
+        final LastCastRoute route;
+        synchronized (this) {
+            // Un remember() durante la lectura es más reciente que el archivo
+            if (current == null) {
+                current = read;
+            }
+            loaded = true;
+            route = current;
+            callbacks = waiting;
+            waiting = null;
+        }
+        if (callbacks == null) {
+            return;
+        }
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Callback callback : callbacks) {
+                    callback.onLoaded(route);
+                }
+            }
+        });
+    }
+
+    private void persist(final LastCastRoute route) {
+        final File target;
+        synchronized (this) {
+            target = directory;
+        }
+        ioExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    route.write(target);
+                } catch (IOException e) {
+                    Log.e(TAG, "❌ No se pudo guardar el último receptor: " + e.getMessage());
+                }
+            }
+        });
+    }
+}
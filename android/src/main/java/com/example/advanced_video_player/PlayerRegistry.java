@@ -0,0 +1,223 @@
+package com.example.advanced_video_player;
+
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registro de instancias de reproductor de un engine.
+ *
+ * Cada {@code AdvancedVideoPlayer} de Dart pide un handle entero y lo envía como
+ * {@code playerId} en sus llamadas; el estado de cada reproductor vive en un
+ * {@link SparseArray} indexado por ese handle. Las llamadas sin {@code playerId}
+ * (versiones anteriores del lado Dart) usan el handle {@link #DEFAULT_HANDLE}.
+ *
+ * Los recursos compartidos (CastContext, descubrimiento de MediaRouter) se cuentan
+ * por referencias: se abren con el primer reproductor que los pide y se cierran
+ * cuando el último que los usaba se libera.
+ */
+final class PlayerRegistry {
+    private static final String TAG = "AdvancedVideoPlayer";
+
+    static final String ARG_PLAYER_ID = "playerId";
+    static final int DEFAULT_HANDLE = 0;
+    static final int NO_PLAYER = -1;
+
+    // Recursos compartidos, como bits de PlayerState.resources
+    static final int RESOURCE_CAST = 1;
+    static final int RESOURCE_DISCOVERY = 1 << 1;
+    private static final int RESOURCE_COUNT = 2;
+
+    /** Estado propio de un reproductor. */
+    static final class PlayerState {
+        final int handle;
+        final long createdAt = SystemClock.elapsedRealtime();
+        // Recursos compartidos que tiene adquiridos (bits RESOURCE_*)
+        int resources;
+        // Último contenido enviado a Cast desde este reproductor
+        String castVideoUrl;
+        String castTitle;
+        // Backend de la última conexión ("cast" o "dlna"); null = Cast
+        String renderer;
+        // Última posición informada por el receptor, para volver a local sin saltos
+        long remotePositionMs = -1;
+        long remotePositionAt;
+        boolean remotePlaying;
+        double remoteRate = 1;
+
+        PlayerState(int handle) {
+            this.handle = handle;
+        }
+
+        /** Posición remota estimada ahora, o -1 si el receptor nunca la informó. */
+        long remotePositionNow() {
+            if (remotePositionMs < 0 || !remotePlaying) {
+                return remotePositionMs;
+            }
+            return remotePositionMs + (long) ((SystemClock.elapsedRealtime() - remotePositionAt) * remoteRate);
+        }
+    }
+
+    private final SparseArray<PlayerState> players = new SparseArray<>();
+    private final int[] refCounts = new int[RESOURCE_COUNT];
+    private final RegistrationLedger.Teardown[] closers = new RegistrationLedger.Teardown[RESOURCE_COUNT];
+    private int nextHandle = DEFAULT_HANDLE + 1;
+    // Reproductor que cargó el contenido que se está transmitiendo
+    private int castOwner = NO_PLAYER;
+
+    /** Crea un reproductor y devuelve su handle. */
+    synchronized int create() {
+        int handle = nextHandle++;
+        players.put(handle, new PlayerState(handle));
+        PluginMetrics.get().increment("players.created");
+        Log.d(TAG, "🎬 Reproductor registrado: #" + handle + " (" + players.size() + " activos)");
+        return handle;
+    }
+
+    /**
+     * Devuelve el estado del reproductor, o null si el handle no existe. El handle
+     * por defecto se crea al usarlo por primera vez.
+     */
+    synchronized PlayerState get(int handle) {
+        PlayerState state = players.get(handle);
+        if (state == null && handle == DEFAULT_HANDLE) {
+            state = new PlayerState(DEFAULT_HANDLE);
+            players.put(DEFAULT_HANDLE, state);
+        }
+        return state;
+    }
+
+    /** Handle indicado en los argumentos de la llamada, o el handle por defecto. */
+    static int handleOf(Object arguments) {
+        if (arguments instanceof Map) {
+            Object value = ((Map<?, ?>) arguments).get(ARG_PLAYER_ID);
+            if (value instanceof Number) {
+                return ((Number) value).intValue();
+            }
+        }
+        return DEFAULT_HANDLE;
+    }
+
+    /** Define cómo se cierra un recurso compartido cuando nadie lo usa. */
+    synchronized void setCloser(int resource, RegistrationLedger.Teardown closer) {
+        closers[indexOf(resource)] = closer;
+    }
+
+    /**
+     * Anota que el reproductor usa el recurso. Devuelve true si es el primero en
+     * usarlo, es decir, si hay que abrirlo.
+     */
+    synchronized boolean acquire(PlayerState player, int resource) {
+        if ((player.resources & resource) != 0) {
+            return false;
+        }
+        player.resources |= resource;
+        return ++refCounts[indexOf(resource)] == 1;
+    }
+
+    synchronized int refCount(int resource) {
+        return refCounts[indexOf(resource)];
+    }
+
+    synchronized void setCastOwner(int handle) {
+        castOwner = handle;
+    }
+
+    synchronized int castOwner() {
+        return castOwner;
+    }
+
+    /**
+     * Indica si el reproductor puede controlar la sesión Cast actual: la sesión no
+     * tiene dueño, es suya, o la llamada viene del handle por defecto.
+     */
+    synchronized boolean canControlCast(int handle) {
+        return castOwner == NO_PLAYER || castOwner == handle || handle == DEFAULT_HANDLE;
+    }
+
+    /** Libera un reproductor y cierra los recursos compartidos que solo él usaba. */
+    void release(int handle) {
+        List<RegistrationLedger.Teardown> toClose = new ArrayList<>();
+        synchronized (this) {
+            PlayerState state = players.get(handle);
+            if (state == null) {
+                return;
+            }
+            players.remove(handle);
+            if (castOwner == handle) {
+                castOwner = NO_PLAYER;
+            }
+            collectClosers(state, toClose);
+            PluginMetrics.get().increment("players.released");
+            Log.d(TAG, "🧹 Reproductor liberado: #" + handle + " (" + players.size() + " activos)");
+        }
+        close(toClose);
+    }
+
+    /** Libera todos los reproductores (al separarse del engine). */
+    void releaseAll() {
+        List<RegistrationLedger.Teardown> toClose = new ArrayList<>();
+        synchronized (this) {
+            for (int i = 0; i < players.size(); i++) {
+                collectClosers(players.valueAt(i), toClose);
+            }
+            players.clear();
+            castOwner = NO_PLAYER;
+        }
+        close(toClose);
+    }
+
+    synchronized int size() {
+        return players.size();
+    }
+
+    /** Reproductores vivos y referencias de cada recurso, para depuración. */
+    synchronized Map<String, Object> snapshot() {
+        long now = SystemClock.elapsedRealtime();
+        List<Map<String, Object>> live = new ArrayList<>();
+        for (int i = 0; i < players.size(); i++) {
+            PlayerState state = players.valueAt(i);
+            Map<String, Object> item = new HashMap<>();
+            item.put("playerId", state.handle);
+            item.put("ageMs", now - state.createdAt);
+            item.put("cast", (state.resources & RESOURCE_CAST) != 0);
+            item.put("discovery", (state.resources & RESOURCE_DISCOVERY) != 0);
+            live.add(item);
+        }
+        Map<String, Object> snapshot = new HashMap<>();
+        snapshot.put("players", live);
+        snapshot.put("castOwner", castOwner);
+        snapshot.put("castRefs", refCounts[indexOf(RESOURCE_CAST)]);
+        snapshot.put("discoveryRefs", refCounts[indexOf(RESOURCE_DISCOVERY)]);
+        return snapshot;
+    }
+
+    // Requiere this
+    private void collectClosers(PlayerState state, List<RegistrationLedger.Teardown> toClose) {
+        for (int i = 0; i < RESOURCE_COUNT; i++) {
+            if ((state.resources & (1 << i)) != 0 && --refCounts[i] == 0 && closers[i] != null) {
+                toClose.add(closers[i]);
+            }
+        }
+        state.resources = 0;
+    }
+
+    private static void close(List<RegistrationLedger.Teardown> toClose) {
+        for (RegistrationLedger.Teardown closer : toClose) {
+            try {
+                closer.release();
+            } catch (Exception e) {
+                Log.e(TAG, "❌ Error cerrando recurso compartido: " + e.getMessage());
+            }
+        }
+    }
+
+    private static int indexOf(int resource) {
+        return Integer.numberOfTrailingZeros(resource);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.advanced_video_player;
+
+import android.os.Build;
+import android.os.Trace;
+
+import io.flutter.plugin.common.MethodCall;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ayudas para emitir secciones de {@link Trace} con el mismo identificador que usa Dart.
+ *
+ * Dart envía un {@code traceId} en los argumentos de cada llamada de canal y abre un
+ * TimelineTask con el mismo id; aquí ese id se usa como cookie de las secciones
+ * asíncronas y se añade al nombre, de modo que en Perfetto/systrace se puedan alinear
+ * la parte Dart y la parte nativa de una misma operación.
+ */
+final class PluginTrace {
+    static final String ARG_TRACE_ID = "traceId";
+
+    // Límite de longitud de nombres de sección impuesto por android.os.Trace
+    private static final int MAX_NAME_LENGTH = 127;
+    private static final String PREFIX = "AVP:";
+
+    // Ids locales (operaciones iniciadas desde nativo) en un rango que no choca con los de Dart
+    private static final AtomicInteger LOCAL_IDS = new AtomicInteger(1 << 30);
+
+    private PluginTrace() {
+    }
+
+    /** Id de traza enviado por Dart, o uno local si la llamada no lo incluye. */
+    static int traceIdOf(MethodCall call) {
+        Object arguments = call.arguments;
+        if (arguments instanceof Map) {
+            Object value = ((Map<?, ?>) arguments).get(ARG_TRACE_ID);
+            if (value instanceof Number) {
+                return ((Number) value).intValue();
+            }
+        }
+        return nextLocalId();
+    }
+
+    static int nextLocalId() {
+        return LOCAL_IDS.incrementAndGet() & 0x7fffffff;
+    }
+
+    /** Nombre de una sección asíncrona; incluye el id para buscarlo igual que en Dart. */
+    static String asyncName(String name, int traceId) {
+        return PREFIX + name + " #" + traceId;
+    }
+
+    /** Abre una sección síncrona en el hilo actual; cerrar siempre con {@link #end()}. */
+    static void begin(String name) {
+        Trace.beginSection(truncate(PREFIX + name));
+    }
+
+    static void end() {
+        Trace.endSection();
+    }
+
+    /** Abre una sección asíncrona que puede cerrarse desde otro hilo o callback. */
+    static void beginAsync(String name, int traceId) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(truncate(asyncName(name, traceId)), traceId);
+        }
+    }
+
+    static void endAsync(String name, int traceId) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(truncate(asyncName(name, traceId)), traceId);
+        }
+    }
+
+    private static String truncate(String name) {
+        return name.length() <= MAX_NAME_LENGTH ? name : name.substring(0, MAX_NAME_LENGTH);
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.advanced_video_player;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registro central de listeners, callbacks y receivers del plugin.
+ *
+ * Cada registro tiene una clave única: registrar otra vez la misma clave no duplica
+ * el listener en el sistema (se conserva el existente o se reemplaza, según el método).
+ * Los registros pertenecen a un ámbito: los de {@link Scope#ACTIVITY} se liberan al
+ * separarse de la Activity y los de {@link Scope#ENGINE} al separarse del engine, así
+ * ningún listener sobrevive a su dueño ni retiene Activities.
+ */
+final class RegistrationLedger {
+    private static final String TAG = "AdvancedVideoPlayer";
+
+    enum Scope {
+        ENGINE,
+        ACTIVITY
+    }
+
+    /** Acción que deshace un registro (removeListener, unregisterReceiver...). */
+    interface Teardown {
+        void release();
+    }
+
+    private static final class Entry {
+        final String key;
+        final Scope scope;
+        final String type;
+        final Object target;
+        final Teardown teardown;
+        final long registeredAt = SystemClock.elapsedRealtime();
+
+        Entry(String key, Scope scope, String type, Object target, Teardown teardown) {
+            this.key = key;
+            this.scope = scope;
+            this.type = type;
+            this.target = target;
+            this.teardown = teardown;
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    /** Indica si hay un registro vivo con esa clave. */
+    synchronized boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Anota un registro ya hecho. Si la clave existía, el registro anterior se libera
+     * primero (por ejemplo el listener de una conexión anterior que nunca terminó).
+     */
+    void replace(Scope scope, String key, String type, Object target, Teardown teardown) {
+        Entry previous;
+        synchronized (this) {
+            previous = entries.put(key, new Entry(key, scope, type, target, teardown));
+        }
+        PluginMetrics.get().increment("ledger.registered");
+        if (previous != null) {
+            PluginMetrics.get().increment("ledger.replaced");
+            release(previous);
+        }
+    }
+
+    /**
+     * Libera el registro de {@code key} solo si sigue apuntando a {@code target};
+     * útil para listeners que se quitan a sí mismos cuando ya pudieron ser reemplazados.
+     */
+    void release(String key, Object target) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null || entry.target != target) {
+                return;
+            }
+            entries.remove(key);
+        }
+        release(entry);
+    }
+
+    /** Libera el registro de {@code key}, si existe. */
+    void release(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.remove(key);
+        }
+        if (entry != null) {
+            release(entry);
+        }
+    }
+
+    /** Libera todos los registros del ámbito indicado, en orden inverso al de registro. */
+    void releaseScope(Scope scope) {
+        List<Entry> released = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.scope == scope) {
+                    released.add(entry);
+                    iterator.remove();
+                }
+            }
+        }
+        for (int i = released.size() - 1; i >= 0; i--) {
+            release(released.get(i));
+        }
+    }
+
+    /** Libera todo (al separarse del engine). */
+    void releaseAll() {
+        releaseScope(Scope.ACTIVITY);
+        releaseScope(Scope.ENGINE);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /** Registros vivos, para el método de depuración {@code getLiveRegistrations}. */
+    synchronized List<Map<String, Object>> snapshot() {
+        long now = SystemClock.elapsedRealtime();
+        List<Map<String, Object>> live = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("key", entry.key);
+            item.put("scope", entry.scope.name().toLowerCase());
+            item.put("type", entry.type);
+            item.put("ageMs", now - entry.registeredAt);
+            live.add(item);
+        }
+        return live;
+    }
+
+    private static void release(Entry entry) {
+        try {
+            entry.teardown.release();
+            PluginMetrics.get().increment("ledger.released");
+            Log.d(TAG, "🧹 Registro liberado: " + entry.key + " (" + entry.type + ")");
+        } catch (Exception e) {
+            Log.e(TAG, "❌ Error liberando " + entry.key + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.advanced_video_player;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+/**
+ * Envuelve el {@link Result} de una llamada de canal y registra en {@link PluginMetrics}
+ * la latencia desde que llegó la llamada hasta que se respondió, además del resultado
+ * (success / error / notImplemented). Sirve también para respuestas asíncronas.
+ *
+ * Mientras la llamada está pendiente se mantiene abierta una sección asíncrona de
+ * {@link PluginTrace} con el {@code traceId} de la llamada, que se cierra al responder.
+ */
+final class TimedResult implements Result {
+    private final Result delegate;
+    private final String name;
+    private final long startNanos;
+    private final int traceId;
+
+    TimedResult(String name, int traceId, Result delegate) {
+        this.name = name;
+        this.traceId = traceId;
+        this.delegate = delegate;
+        this.startNanos = System.nanoTime();
+        PluginMetrics.get().increment(name + ".calls");
+        PluginTrace.beginAsync(name, traceId);
+    }
+
+    int traceId() {
+        return traceId;
+    }
+
+    @Override
+    public void success(Object result) {
+        finish("success");
+        delegate.success(result);
+    }
+
+    @Override
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+        finish("error");
+        delegate.error(errorCode, errorMessage, errorDetails);
+    }
+
+    @Override
+    public void notImplemented() {
+        finish("notImplemented");
+        delegate.notImplemented();
+    }
+
+    private void finish(String outcome) {
+        PluginMetrics metrics = PluginMetrics.get();
+        metrics.recordSince(name, startNanos);
+        metrics.increment(name + "." + outcome);
+        PluginTrace.endAsync(name, traceId);
+    }
+}
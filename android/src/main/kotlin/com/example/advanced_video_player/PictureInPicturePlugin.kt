@@ -25,29 +25,53 @@ import io.flutter.plugin.common.MethodChannel
 import io.flutter.plugin.common.MethodChannel.MethodCallHandler
 import io.flutter.plugin.common.MethodChannel.Result
 
-class PictureInPicturePlugin: FlutterPlugin, MethodCallHandler, ActivityAware, EventChannel.StreamHandler {
+/**
+ * Plugin de Picture-in-Picture. Cuando lo crea AdvancedVideoPlayerPlugin comparte su
+ * [RegistrationLedger]; registrado por separado usa uno propio.
+ */
+class PictureInPicturePlugin internal constructor(
+    private val ledger: RegistrationLedger
+) : FlutterPlugin, MethodCallHandler, ActivityAware, EventChannel.StreamHandler {
+    constructor() : this(RegistrationLedger())
+
     private lateinit var channel: MethodChannel
     private lateinit var eventChannel: EventChannel
     private var activity: Activity? = null
     private var eventSink: EventChannel.EventSink? = null
     private var isPlaying: Boolean = true
     private var pipControlsReceiver: BroadcastReceiver? = null
+    // El receiver estaba registrado al soltar la Activity por un cambio de configuración
+    private var restoreControlsReceiver = false
     
     companion object {
         private const val ACTION_MEDIA_CONTROL = "media_control"
         private const val EXTRA_CONTROL_TYPE = "control_type"
         private const val REQUEST_PLAY_PAUSE = 1
+        private const val KEY_CONTROLS_RECEIVER = "pip.controlsReceiver"
+        private const val CHANNEL_NAME = "picture_in_picture_service"
     }
 
     override fun onAttachedToEngine(@NonNull flutterPluginBinding: FlutterPlugin.FlutterPluginBinding) {
-        channel = MethodChannel(flutterPluginBinding.binaryMessenger, "picture_in_picture_service")
+        channel = MethodChannel(flutterPluginBinding.binaryMessenger, CHANNEL_NAME)
         channel.setMethodCallHandler(this)
         
         eventChannel = EventChannel(flutterPluginBinding.binaryMessenger, "picture_in_picture_service_events")
         eventChannel.setStreamHandler(this)
     }
 
-    override fun onMethodCall(@NonNull call: MethodCall, @NonNull result: Result) {
+    override fun onMethodCall(@NonNull call: MethodCall, @NonNull rawResult: Result) {
+        MethodCallRecorder.get().record(CHANNEL_NAME, call.method, call.arguments)
+        // Medir la latencia de cada método del canal de PiP y trazarlo con el traceId de Dart
+        val result: Result = TimedResult("pip.${call.method}", PluginTrace.traceIdOf(call), rawResult)
+        PluginTrace.begin("pip.${call.method}")
+        try {
+            dispatchMethodCall(call, result)
+        } finally {
+            PluginTrace.end()
+        }
+    }
+
+    private fun dispatchMethodCall(call: MethodCall, result: Result) {
         when (call.method) {
             "isPictureInPictureSupported" -> {
                 result.success(isPictureInPictureSupported())
@@ -150,8 +174,9 @@ class PictureInPicturePlugin: FlutterPlugin, MethodCallHandler, ActivityAware, E
                 // Registrar el BroadcastReceiver para los controles
                 registerPipControlsReceiver()
                 
-                // Calcular el aspect ratio correcto basado en las dimensiones del video
-                val aspectRatio = Rational(width.toInt(), height.toInt())
+                // Aspect ratio del video, acotado a los límites que acepta Android
+                val ratio = PipSpec.aspectRatio(width, height)
+                val aspectRatio = Rational(ratio[0], ratio[1])
                 Log.d("PictureInPicturePlugin", "Aspect ratio: $aspectRatio (${width}x${height})")
                 
                 // Crear parámetros de PiP con controles
@@ -161,7 +186,15 @@ class PictureInPicturePlugin: FlutterPlugin, MethodCallHandler, ActivityAware, E
                 currentActivity.setPictureInPictureParams(pipParams)
                 
                 // Intentar entrar en modo PiP
-                val result = currentActivity.enterPictureInPictureMode(pipParams)
+                val enterStartNanos = System.nanoTime()
+                PluginTrace.begin("pip.enter")
+                val result = try {
+                    currentActivity.enterPictureInPictureMode(pipParams)
+                } finally {
+                    PluginTrace.end()
+                }
+                PluginMetrics.get().recordSince("pip.enter", enterStartNanos)
+                PluginMetrics.get().increment(if (result) "pip.enter.success" else "pip.enter.failure")
                 
                 if (result) {
                     Log.d("PictureInPicturePlugin", "✅ Entrando en modo Picture-in-Picture exitosamente")
@@ -199,7 +232,7 @@ class PictureInPicturePlugin: FlutterPlugin, MethodCallHandler, ActivityAware, E
         val currentActivity = activity ?: throw IllegalStateException("Activity is null")
         
         val intent = Intent(ACTION_MEDIA_CONTROL).apply {
-            putExtra(EXTRA_CONTROL_TYPE, "play_pause")
+            putExtra(EXTRA_CONTROL_TYPE, PipSpec.CONTROL_PLAY_PAUSE)
             setPackage(currentActivity.packageName)
         }
         
@@ -217,7 +250,7 @@ class PictureInPicturePlugin: FlutterPlugin, MethodCallHandler, ActivityAware, E
             Icon.createWithResource(currentActivity, android.R.drawable.ic_media_play)
         }
         
-        val title = if (isPlaying) "Pausar" else "Reproducir"
+        val title = PipSpec.playPauseTitle(isPlaying)
         
         return RemoteAction(icon, title, title, pendingIntent)
     }
@@ -259,21 +292,27 @@ class PictureInPicturePlugin: FlutterPlugin, MethodCallHandler, ActivityAware, E
             return
         }
         
-        pipControlsReceiver = object : BroadcastReceiver() {
+        val receiver = object : BroadcastReceiver() {
             override fun onReceive(context: Context?, intent: Intent?) {
                 if (intent?.action != ACTION_MEDIA_CONTROL) return
                 
                 val controlType = intent.getStringExtra(EXTRA_CONTROL_TYPE)
                 Log.d("PictureInPicturePlugin", "📱 Control PiP recibido: $controlType")
+                PluginMetrics.get().increment("pip.control.$controlType")
                 
                 when (controlType) {
-                    "play_pause" -> {
-                        // Notificar a Flutter sobre el cambio
+                    PipSpec.CONTROL_PLAY_PAUSE -> {
+                        // Notificar a Flutter sobre el cambio; el traceId permite
+                        // enlazar esta sección con el evento de Timeline en Dart
+                        val traceId = PluginTrace.nextLocalId()
                         val data = mapOf(
                             "type" to "pip_control",
-                            "action" to "play_pause"
+                            "action" to "play_pause",
+                            PluginTrace.ARG_TRACE_ID to traceId
                         )
+                        PluginTrace.begin("pip.onPipControl #$traceId")
                         channel.invokeMethod("onPipControl", data)
+                        PluginTrace.end()
                     }
                 }
             }
@@ -281,28 +320,36 @@ class PictureInPicturePlugin: FlutterPlugin, MethodCallHandler, ActivityAware, E
         
         val filter = IntentFilter(ACTION_MEDIA_CONTROL)
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-            currentActivity.registerReceiver(pipControlsReceiver, filter, Context.RECEIVER_NOT_EXPORTED)
+            currentActivity.registerReceiver(receiver, filter, Context.RECEIVER_NOT_EXPORTED)
         } else {
-            currentActivity.registerReceiver(pipControlsReceiver, filter)
+            currentActivity.registerReceiver(receiver, filter)
+        }
+        pipControlsReceiver = receiver
+        // Se desregistra de la misma Activity en la que se registró
+        ledger.replace(RegistrationLedger.Scope.ACTIVITY, KEY_CONTROLS_RECEIVER, "BroadcastReceiver", receiver) {
+            currentActivity.unregisterReceiver(receiver)
+            if (pipControlsReceiver === receiver) {
+                pipControlsReceiver = null
+            }
         }
         
         Log.d("PictureInPicturePlugin", "✅ BroadcastReceiver registrado para controles PiP")
     }
     
     private fun unregisterPipControlsReceiver() {
-        val currentActivity = activity ?: return
-        
-        pipControlsReceiver?.let {
-            try {
-                currentActivity.unregisterReceiver(it)
-                pipControlsReceiver = null
-                Log.d("PictureInPicturePlugin", "✅ BroadcastReceiver desregistrado")
-            } catch (e: Exception) {
-                Log.e("PictureInPicturePlugin", "❌ Error desregistrando receiver: ${e.message}")
-            }
-        }
+        if (pipControlsReceiver == null) return
+        ledger.release(KEY_CONTROLS_RECEIVER)
+        pipControlsReceiver = null
+        Log.d("PictureInPicturePlugin", "✅ BroadcastReceiver desregistrado")
     }
     
+    /** Presión de memoria: el receiver de controles solo hace falta dentro de PiP. */
+    fun trimMemory() {
+        if (!isInPictureInPictureMode()) {
+            unregisterPipControlsReceiver()
+        }
+    }
+
     private fun exitPictureInPictureMode(): Boolean {
         // Desregistrar el receiver al salir del PiP
         unregisterPipControlsReceiver()
@@ -354,6 +401,7 @@ class PictureInPicturePlugin: FlutterPlugin, MethodCallHandler, ActivityAware, E
     }
 
     override fun onDetachedFromEngine(@NonNull binding: FlutterPlugin.FlutterPluginBinding) {
+        unregisterPipControlsReceiver()
         channel.setMethodCallHandler(null)
         eventChannel.setStreamHandler(null)
     }
@@ -375,12 +423,23 @@ class PictureInPicturePlugin: FlutterPlugin, MethodCallHandler, ActivityAware, E
     override fun onDetachedFromActivityForConfigChanges() {
         Log.d("PictureInPicturePlugin", "⚙️ Detached from activity for config changes (PiP puede estar activándose)")
         // NO establecer activity a null durante cambios de configuración
-        // ya que PiP es un cambio de configuración y necesitamos mantener la referencia
+        // ya que PiP es un cambio de configuración y necesitamos mantener la referencia.
+        // El receiver sí se suelta ahora: la Activity se destruye y Android lo daría
+        // por filtrado antes de que llegue la nueva
+        restoreControlsReceiver = pipControlsReceiver != null
+        unregisterPipControlsReceiver()
     }
 
     override fun onReattachedToActivityForConfigChanges(binding: ActivityPluginBinding) {
         Log.d("PictureInPicturePlugin", "✅ Reattached to activity after config changes")
         activity = binding.activity
+
+        // Volver a registrar en la nueva Activity el receiver soltado al desconectarse
+        if (restoreControlsReceiver) {
+            Log.d("PictureInPicturePlugin", "🔄 Activity recreada, registrando de nuevo el receiver de controles PiP")
+            restoreControlsReceiver = false
+            registerPipControlsReceiver()
+        }
         
         // Verificar si entramos o salimos de PiP después del cambio de configuración
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
@@ -392,6 +451,7 @@ class PictureInPicturePlugin: FlutterPlugin, MethodCallHandler, ActivityAware, E
 
     override fun onDetachedFromActivity() {
         Log.d("PictureInPicturePlugin", "❌ Plugin detached from activity")
+        restoreControlsReceiver = false
         unregisterPipControlsReceiver()
         activity = null
     }
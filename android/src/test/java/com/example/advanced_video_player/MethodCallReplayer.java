@@ -0,0 +1,213 @@
+package com.example.advanced_video_player;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reproduce una grabación de {@link MethodCallRecorder} contra los handlers de cada
+ * canal, en la JVM.
+ *
+ * Con {@code speed} 1 respeta los tiempos grabados, con 10 los acelera diez veces y
+ * con 0 envía las llamadas sin esperas. De cada método informa la latencia hasta la
+ * respuesta (también si llega después, desde otro hilo) y los bytes reservados por
+ * el hilo que atiende la llamada, medidos con el ThreadMXBean de HotSpot.
+ *
+ * Para reproducir contra piezas que corren sobre un reloj simulado (por ejemplo
+ * {@link SimulatedCastEnvironment}), {@link BeforeCall} recibe cada llamada antes de
+ * enviarla, fuera de la medición, y puede avanzar el reloj hasta su tiempo grabado.
+ */
+final class MethodCallReplayer {
+    /** Se invoca antes de enviar cada llamada que tiene handler. */
+    interface BeforeCall {
+        void before(MethodCallRecording.Call call);
+    }
+
+    /** Estadísticas de un método. */
+    static final class MethodStats {
+        final String method;
+        int calls;
+        int unanswered;
+        int errors;
+        long allocatedBytes;
+        private long[] latencies = new long[16];
+        private int answered;
+
+        MethodStats(String method) {
+            this.method = method;
+        }
+
+        synchronized void answer(long latencyNanos, boolean error) {
+            if (answered == latencies.length) {
+                latencies = Arrays.copyOf(latencies, answered * 2);
+            }
+            latencies[answered++] = latencyNanos;
+            if (error) {
+                errors++;
+            }
+        }
+
+        /** Percentil {@code p} (0-100) de la latencia en microsegundos. */
+        synchronized long percentileMicros(double p) {
+            if (answered == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(latencies, answered);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(p / 100.0 * answered) - 1;
+            return sorted[Math.max(0, Math.min(answered - 1, index))] / 1000L;
+        }
+
+        long allocatedBytesPerCall() {
+            return calls == 0 ? 0 : allocatedBytes / calls;
+        }
+    }
+
+    /** Resultado de una reproducción. */
+    static final class Report {
+        final Map<String, MethodStats> methods = new TreeMap<>();
+        long elapsedNanos;
+        int skipped;
+
+        MethodStats stats(String channel, String method) {
+            return methods.get(channel + "/" + method);
+        }
+
+        String format() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format(Locale.US, "%-48s %7s %9s %9s %9s %10s%n",
+                    "método", "llamadas", "p50 µs", "p99 µs", "máx µs", "bytes/ll"));
+            for (MethodStats stats : methods.values()) {
+                text.append(String.format(Locale.US, "%-48s %7d %9d %9d %9d %10d%n", stats.method, stats.calls,
+                        stats.percentileMicros(50), stats.percentileMicros(99), stats.percentileMicros(100),
+                        stats.allocatedBytesPerCall()));
+            }
+            text.append(String.format(Locale.US, "total %.1f ms, %d sin handler%n", elapsedNanos / 1e6, skipped));
+            return text.toString();
+        }
+    }
+
+    private final Map<String, MethodChannel.MethodCallHandler> handlers;
+    private final double speed;
+    private final long replyTimeoutMs;
+    private final BeforeCall beforeCall;
+
+    MethodCallReplayer(Map<String, MethodChannel.MethodCallHandler> handlers, double speed, long replyTimeoutMs) {
+        this(handlers, speed, replyTimeoutMs, null);
+    }
+
+    MethodCallReplayer(Map<String, MethodChannel.MethodCallHandler> handlers, double speed, long replyTimeoutMs,
+            BeforeCall beforeCall) {
+        this.handlers = handlers;
+        this.speed = speed;
+        this.replyTimeoutMs = replyTimeoutMs;
+        this.beforeCall = beforeCall;
+    }
+
+    Report replay(List<MethodCallRecording.Call> calls) throws InterruptedException {
+        Report report = new Report();
+        List<MethodStats> pendingStats = new ArrayList<>();
+        List<CountDownLatch> pending = new ArrayList<>();
+        long start = System.nanoTime();
+        for (MethodCallRecording.Call recorded : calls) {
+            MethodChannel.MethodCallHandler handler = handlers.get(recorded.channel);
+            if (handler == null) {
+                report.skipped++;
+                continue;
+            }
+            if (speed > 0) {
+                long due = start + (long) (recorded.atMicros * 1000L / speed);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+
+            String key = recorded.channel + "/" + recorded.method;
+            MethodStats stats = report.methods.get(key);
+            if (stats == null) {
+                stats = new MethodStats(key);
+                report.methods.put(key, stats);
+            }
+            stats.calls++;
+            if (beforeCall != null) {
+                beforeCall.before(recorded);
+            }
+            CountDownLatch replied = new CountDownLatch(1);
+            long allocatedBefore = allocatedBytes();
+            long sent = System.nanoTime();
+            handler.onMethodCall(new MethodCall(recorded.method, recorded.arguments),
+                    new TimingResult(stats, sent, replied));
+            long allocatedAfter = allocatedBytes();
+            if (allocatedBefore >= 0 && allocatedAfter >= 0) {
+                stats.allocatedBytes += allocatedAfter - allocatedBefore;
+            }
+            pending.add(replied);
+            pendingStats.add(stats);
+        }
+
+        // Respuestas asíncronas que aún no llegaron
+        long deadline = System.nanoTime() + replyTimeoutMs * 1000000L;
+        for (int i = 0; i < pending.size(); i++) {
+            long remaining = Math.max(0, deadline - System.nanoTime());
+            if (!pending.get(i).await(remaining, TimeUnit.NANOSECONDS)) {
+                pendingStats.get(i).unanswered++;
+            }
+        }
+        report.elapsedNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    // Bytes reservados por el hilo actual, o -1 si la JVM no lo mide
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static final class TimingResult implements MethodChannel.Result {
+        private final MethodStats stats;
+        private final long sent;
+        private final CountDownLatch replied;
+
+        TimingResult(MethodStats stats, long sent, CountDownLatch replied) {
+            this.stats = stats;
+            this.sent = sent;
+            this.replied = replied;
+        }
+
+        @Override
+        public void success(Object result) {
+            reply(false);
+        }
+
+        @Override
+        public void error(String code, String message, Object details) {
+            reply(true);
+        }
+
+        @Override
+        public void notImplemented() {
+            reply(true);
+        }
+
+        private void reply(boolean error) {
+            if (replied.getCount() == 0) {
+                return;
+            }
+            stats.answer(System.nanoTime() - sent, error);
+            replied.countDown();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.advanced_video_player;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class MethodCallReplayerTest {
+    // Como en el plugin
+    private static final long ROUTE_BATCH_WINDOW_MS = 250;
+
+    private static Map<String, Object> player(int handle) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("playerId", handle);
+        return args;
+    }
+
+    @Test
+    public void replaysAtRecordedOrAcceleratedSpeed() throws InterruptedException {
+        List<MethodCallRecording.Call> calls = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            calls.add(new MethodCallRecording.Call(i * 20000L, "advanced_video_player", "getCurrentPosition", null));
+        }
+        MethodChannel.MethodCallHandler handler = new MethodChannel.MethodCallHandler() {
+            @Override
+            public void onMethodCall(MethodCall call, MethodChannel.Result result) {
+                result.success(0);
+            }
+        };
+        Map<String, MethodChannel.MethodCallHandler> handlers =
+                Collections.singletonMap("advanced_video_player", handler);
+
+        MethodCallReplayer.Report recorded = new MethodCallReplayer(handlers, 1, 1000).replay(calls);
+        MethodCallReplayer.Report unpaced = new MethodCallReplayer(handlers, 0, 1000).replay(calls);
+
+        assertTrue(recorded.elapsedNanos >= 180000000L);
+        assertTrue(unpaced.elapsedNanos < recorded.elapsedNanos / 4);
+        assertEquals(10, unpaced.stats("advanced_video_player", "getCurrentPosition").calls);
+    }
+
+    @Test
+    public void reportsAsyncLatencyAllocationAndMissingReplies() throws InterruptedException {
+        List<MethodCallRecording.Call> calls = Arrays.asList(
+                new MethodCallRecording.Call(0, "screen_sharing", "discoverDevices", player(1)),
+                new MethodCallRecording.Call(0, "advanced_video_player", "getMetrics", null),
+                new MethodCallRecording.Call(0, "advanced_video_player", "neverReplies", null),
+                new MethodCallRecording.Call(0, "picture_in_picture_service", "enterPictureInPicture", null));
+        Map<String, MethodChannel.MethodCallHandler> handlers = new HashMap<>();
+        handlers.put("screen_sharing", new MethodChannel.MethodCallHandler() {
+            @Override
+            public void onMethodCall(MethodCall call, final MethodChannel.Result result) {
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            Thread.sleep(30);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        result.success(new ArrayList<>());
+                    }
+                }).start();
+            }
+        });
+        handlers.put("advanced_video_player", new MethodChannel.MethodCallHandler() {
+            @Override
+            public void onMethodCall(MethodCall call, MethodChannel.Result result) {
+                if ("getMetrics".equals(call.method)) {
+                    result.success(new byte[64 * 1024]);
+                }
+            }
+        });
+
+        MethodCallReplayer.Report report = new MethodCallReplayer(handlers, 0, 200).replay(calls);
+
+        assertTrue(report.stats("screen_sharing", "discoverDevices").percentileMicros(50) >= 30000);
+        assertTrue(report.stats("advanced_video_player", "getMetrics").allocatedBytesPerCall() >= 64 * 1024);
+        assertEquals(1, report.stats("advanced_video_player", "neverReplies").unanswered);
+        assertEquals(1, report.skipped);
+        assertTrue(report.format().contains("screen_sharing/discoverDevices"));
+    }
+
+    /**
+     * Ráfaga de {@code getRemotePosition} (20 por segundo) y {@code discoverDevices} de
+     * dos reproductores durante un minuto, grabada en el formato de
+     * {@link MethodCallRecorder} y reproducida contra el núcleo de Cast del plugin
+     * ({@link DeviceCatalog}, {@link RouteEventBatcher}, {@link CastSessionState}) sobre
+     * {@link SimulatedCastEnvironment} con 200 rutas inestables y una sesión abierta.
+     * El reloj simulado avanza hasta el tiempo grabado de cada llamada.
+     */
+    @Test
+    public void replaysADiscoveryAndPositionStormIntoTheCastCore() throws Exception {
+        final CastCore core = new CastCore();
+        core.env.routes = 200;
+        core.env.churnPerSecond = 20;
+        core.env.start();
+        core.env.startSession("route-0");
+        core.clock.advance(core.env.sessionLatencyMaxMs + core.env.mediaClientLatencyMaxMs);
+        assertTrue(core.state.isActive());
+
+        int seconds = 60;
+        MethodCallRecording.Recording recording = record(seconds);
+        final long startMs = core.clock.now();
+        long callsToDartBefore = core.callsToDart;
+        MethodCallReplayer replayer = new MethodCallReplayer(
+                Collections.<String, MethodChannel.MethodCallHandler>singletonMap("screen_sharing", core), 0, 1000,
+                new MethodCallReplayer.BeforeCall() {
+                    @Override
+                    public void before(MethodCallRecording.Call call) {
+                        core.clock.advance(startMs + call.atMicros / 1000L - core.clock.now());
+                    }
+                });
+        MethodCallReplayer.Report report = replayer.replay(recording.calls);
+        System.out.print(report.format());
+        System.out.println(String.format(Locale.US,
+                "%d eventos de ruta, %d llamadas a Dart con %d eventos, caché %d entradas",
+                core.env.routeEvents(), core.callsToDart, core.eventsToDart, core.catalog.size()));
+
+        MethodCallReplayer.MethodStats positions = report.stats("screen_sharing", "getRemotePosition");
+        MethodCallReplayer.MethodStats discoveries = report.stats("screen_sharing", "discoverDevices");
+        assertEquals(seconds * 20, positions.calls);
+        assertEquals(seconds * 2 * 2, discoveries.calls);
+        assertEquals(0, positions.unanswered + positions.errors + discoveries.unanswered + discoveries.errors);
+        assertEquals(0, core.wrongDevices);
+        assertEquals(0, core.positionsBackwards);
+        // Un sondeo de posición no depende del número de receptores
+        assertTrue("bytes/llamada " + positions.allocatedBytesPerCall(), positions.allocatedBytesPerCall() < 4096);
+        assertTrue(core.catalog.size() <= core.env.availableRoutes());
+        // La ráfaga de búsquedas no multiplica los eventos hacia Dart
+        assertTrue(core.callsToDart - callsToDartBefore <= seconds * 1000 / ROUTE_BATCH_WINDOW_MS + 1);
+        assertEquals(0, core.state.unexpected());
+    }
+
+    // Lo que grabaría MethodCallRecorder en el dispositivo, leído como desde el archivo
+    private static MethodCallRecording.Recording record(int seconds) throws IOException {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write(MethodCallRecording.header(System.currentTimeMillis()));
+        MethodCallRecording.Encoder encoder = new MethodCallRecording.Encoder();
+        for (long atMs = 0; atMs < seconds * 1000L; atMs += 50) {
+            if (atMs % 500 == 0) {
+                file.write(encoder.encode(atMs * 1000L, "screen_sharing", "discoverDevices", player(1)));
+                file.write(encoder.encode(atMs * 1000L + 10, "screen_sharing", "discoverDevices", player(2)));
+            }
+            file.write(encoder.encode(atMs * 1000L + 20, "screen_sharing", "getRemotePosition", player(1)));
+        }
+        return MethodCallRecording.read(new ByteArrayInputStream(file.toByteArray()));
+    }
+
+    /**
+     * Handler de {@code screen_sharing} con las piezas del plugin: rutas al catálogo y a
+     * los lotes de eventos como MediaRouterCallback, sesión como CastHub y posición como
+     * {@code describeRemotePosition}.
+     */
+    private static final class CastCore implements MethodChannel.MethodCallHandler,
+            SimulatedCastEnvironment.RouteListener, SimulatedCastEnvironment.SessionListener, RouteEventBatcher.Sink {
+        final VirtualClock clock = new VirtualClock();
+        final SimulatedCastEnvironment env = new SimulatedCastEnvironment(clock, 4);
+        final DeviceCatalog<SimulatedCastEnvironment.Route> catalog =
+                new DeviceCatalog<>(SimulatedCastEnvironment.READER, "replay.catalog");
+        final RouteEventBatcher batcher = new RouteEventBatcher(clock, ROUTE_BATCH_WINDOW_MS, this);
+        final CastSessionState state = new CastSessionState();
+        long sessionStartedAt;
+        long lastPositionMs = -1;
+        int positionsBackwards;
+        int wrongDevices;
+        long callsToDart;
+        long eventsToDart;
+
+        CastCore() {
+            env.addRouteListener(this);
+            env.addSessionListener(this);
+        }
+
+        @Override
+        public void onMethodCall(MethodCall call, MethodChannel.Result result) {
+            if ("discoverDevices".equals(call.method)) {
+                List<Map<String, Object>> devices = catalog.describe(env.getRoutes());
+                if (devices.size() != env.availableRoutes()) {
+                    wrongDevices++;
+                }
+                result.success(devices);
+            } else if ("getRemotePosition".equals(call.method)) {
+                if (!state.isActive() || env.remoteMediaClient() == null) {
+                    result.success(null);
+                    return;
+                }
+                long positionMs = clock.now() - sessionStartedAt;
+                if (positionMs < lastPositionMs) {
+                    positionsBackwards++;
+                }
+                lastPositionMs = positionMs;
+                Map<String, Object> position = new HashMap<>();
+                position.put("positionMs", positionMs);
+                position.put("playing", true);
+                result.success(position);
+            } else {
+                result.notImplemented();
+            }
+        }
+
+        @Override
+        public void onRouteEvent(String event, SimulatedCastEnvironment.Route route) {
+            if (!RouteEventBatcher.ADDED.equals(event)) {
+                catalog.forget(route.id);
+            }
+            batcher.offer(event, route.id, route.name);
+        }
+
+        @Override
+        public void onSessionEvent(String event, String sessionId) {
+            state.on(event, sessionId);
+            if (CastSessionState.EVENT_STARTED.equals(event)) {
+                sessionStartedAt = clock.now();
+            }
+        }
+
+        @Override
+        public void deliver(List<Map<String, Object>> events) {
+            callsToDart++;
+            eventsToDart += events.size();
+        }
+    }
+}
@@ -1,8 +1,10 @@
 library advanced_video_player;
 
 import 'dart:async';
-import 'dart:io';
+import 'dart:ui' as ui;
 import 'package:flutter/material.dart';
+import 'package:flutter/rendering.dart';
+import 'package:flutter/scheduler.dart';
 import 'package:flutter/services.dart';
 import 'package:video_player/video_player.dart';
 import 'fullscreen_video_page.dart';
@@ -10,8 +12,31 @@ import 'picture_in_picture_service.dart';
 import 'screen_sharing_service.dart';
 import 'airplay_button.dart';
 import 'native_video_player.dart';
+import 'resume_position_service.dart';
+import 'playback_qoe.dart';
+import 'playback_listenables.dart';
+import 'player_tick_scheduler.dart';
+import 'poster_cache.dart';
+import 'scrub_thumbnails.dart';
+import 'subtitles.dart';
+import 'video_feed.dart';
+import 'memory_pressure.dart';
+import 'hls_startup.dart';
+import 'src/platform.dart';
 
 export 'native_video_player.dart';
+export 'resume_position_service.dart';
+export 'plugin_metrics.dart';
+export 'playback_qoe.dart';
+export 'playback_listenables.dart';
+export 'player_tick_scheduler.dart';
+export 'poster_cache.dart';
+export 'scrub_thumbnails.dart';
+export 'subtitles.dart';
+export 'video_feed.dart';
+export 'memory_pressure.dart';
+export 'watch_party.dart';
+export 'hls_startup.dart';
 
 /// Un reproductor de video avanzado con controles modernos y atractivos
 class AdvancedVideoPlayer extends StatefulWidget {
@@ -72,6 +97,33 @@ class AdvancedVideoPlayer extends StatefulWidget {
 
   final Widget? playButton;
 
+  /// Si es true, continúa el video desde la última posición guardada (default: false)
+  final bool resumeFromLastPosition;
+
+  /// Identificador del contenido para guardar la posición (por defecto: videoSource)
+  final String? contentId;
+
+  /// Modo feed (opcional): el controlador decide cuándo este reproductor
+  /// tiene decodificador según su visibilidad en la lista. Requiere [feedIndex]
+  final VideoFeedController? feedController;
+
+  /// Posición de este reproductor en la lista del [feedController]
+  final int? feedIndex;
+
+  /// Subtítulos externos (WebVTT o SRT). Se muestra la pista marcada con
+  /// `isDefault` y se envían al receptor al compartir por Cast
+  final List<SubtitleTrack> subtitleTracks;
+
+  /// Pista WebVTT de miniaturas (sprites con `#xywh`) para la vista previa
+  /// al arrastrar la barra de progreso en pantalla completa
+  final String? thumbnailTrackUrl;
+
+  /// Android: arranca los videos HLS (`.m3u8`) con la variante que permite el
+  /// ancho de banda estimado, sirviendo la playlist reordenada desde
+  /// `127.0.0.1` (ver [HlsStartup]). Requiere permitir HTTP en claro hacia
+  /// `127.0.0.1` (default: false)
+  final bool preselectHlsVariant;
+
   const AdvancedVideoPlayer({
     super.key,
     required this.videoSource,
@@ -93,6 +145,13 @@ class AdvancedVideoPlayer extends StatefulWidget {
     this.autoEnterFullscreen = false,
     this.previewImageUrl,
     this.playButton,
+    this.resumeFromLastPosition = false,
+    this.contentId,
+    this.feedController,
+    this.feedIndex,
+    this.subtitleTracks = const [],
+    this.thumbnailTrackUrl,
+    this.preselectHlsVariant = false,
   });
 
   @override
@@ -100,11 +159,14 @@ class AdvancedVideoPlayer extends StatefulWidget {
 }
 
 class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
-    with TickerProviderStateMixin {
+    with TickerProviderStateMixin
+    implements VideoFeedSlot {
   VideoPlayerController? _controller;
   NativeVideoPlayerController? _nativeController;
-  bool _isPlaying = false;
-  bool _showControls = true;
+  // Estado que cambia en cada tick: se escucha por partes, sin setState
+  final PlaybackListenables _playback = PlaybackListenables();
+  final ValueNotifier<bool> _playingState = ValueNotifier(false);
+  final ValueNotifier<bool> _controlsVisible = ValueNotifier(true);
   bool _isLoading = true;
   bool _hasError = false;
   String _errorMessage = '';
@@ -124,17 +186,56 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
   bool _hasVideoStarted =
       false; // Para controlar si onVideoStart ya fue llamado
   bool _hasVideoEnded = false; // Para controlar si onVideoEnd ya fue llamado
+  Duration _lastSavedResumePosition =
+      Duration.zero; // Última posición enviada al almacén de reanudación
+  PlaybackQoeRecorder? _qoe; // Métricas QoE de la sesión de reproducción actual
+  SubtitleController? _subtitles; // Compartido con la pantalla completa
+  Future<ThumbnailTrack?>? _thumbnails; // Se descarga en pantalla completa
+
+  // Clave con la que se guarda la posición de reanudación
+  String get _resumeKey => widget.contentId ?? widget.videoSource;
 
   // Getter para saber si estamos usando el reproductor nativo
-  bool get _useNativePlayer => widget.useNativePlayerOnIOS && Platform.isIOS;
+  bool get _useNativePlayer => widget.useNativePlayerOnIOS && isIOS;
+
+  // Cambiar estos valores solo repinta los widgets que los escuchan; el
+  // reproductor nativo además llama a setState porque cambia la estructura
+  bool get _isPlaying => _playingState.value;
+  set _isPlaying(bool value) => _playingState.value = value;
+  bool get _showControls => _controlsVisible.value;
+  set _showControls(bool value) => _controlsVisible.value = value;
 
   late AnimationController _controlsAnimationController;
   late Animation<double> _controlsAnimation;
+  late Listenable _controlsListenable;
 
   Timer? _hideControlsTimer;
   StreamSubscription<ScreenSharingState>? _screenSharingStateSubscription;
   StreamSubscription<String>? _screenSharingErrorSubscription;
   ScreenSharingService? _screenSharingService;
+  // Handle propio de este reproductor en el plugin nativo
+  Future<ScreenSharingService>? _playerService;
+
+  // Modo feed: el decodificador se crea y libera según la visibilidad
+  bool get _feedMode =>
+      widget.feedController != null &&
+      widget.feedIndex != null &&
+      !_useNativePlayer;
+  ScrollPosition? _feedScrollPosition;
+  bool _feedReportScheduled = false;
+  Future<void> _feedOperation = Future.value();
+  Duration _feedResumePosition = Duration.zero;
+  final GlobalKey _frameBoundaryKey = GlobalKey();
+  ui.Image? _lastFrame; // Último frame mostrado antes de liberar el decodificador
+
+  // Traspaso a Cast: cuando el receptor reproduce se suelta el decodificador
+  // local, y al desconectar se vuelve a preparar en la posición remota
+  StreamSubscription<Duration>? _remotePlayingSubscription;
+  bool _remoteStarted = false; // El receptor reproduce el video enviado
+  bool _playingRemotely = false; // Sin decodificador local por el traspaso
+  bool _handingBack = false; // Preparando el video local para desconectar
+  static const Duration _handBackBufferAhead = Duration(seconds: 5);
+  static const Duration _handBackBufferTimeout = Duration(seconds: 3);
 
   @override
   void initState() {
@@ -142,8 +243,19 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
     // Inicializar servicio PiP con callback
     PictureInPictureService.initialize();
     PictureInPictureService.setOnPipControlListener(_handlePipControlEvent);
+    // Avisos de memoria de Android: vacían cachés y liberan el feed precargado
+    MemoryPressure.ensureInitialized();
 
-    _initializeVideoPlayer();
+    if (_feedMode) {
+      // El controlador del feed decide cuándo inicializar el video
+      widget.feedController!.attach(widget.feedIndex!, this);
+    } else {
+      _initializeVideoPlayer();
+    }
+    if (widget.subtitleTracks.isNotEmpty) {
+      _subtitles = SubtitleController(tracks: widget.subtitleTracks);
+      _playback.position.addListener(_syncSubtitles);
+    }
     _setupAnimations();
     _checkPictureInPictureSupport();
     _initializeScreenSharing();
@@ -151,11 +263,161 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
     _setupPictureInPictureListener();
   }
 
+  void _syncSubtitles() {
+    _subtitles?.updatePosition(_playback.position.value);
+  }
+
+  // Pista de miniaturas (null si no hay); un error de descarga deja la
+  // pantalla completa sin vista previa
+  Future<ThumbnailTrack?>? get _thumbnailTrack {
+    final url = widget.thumbnailTrackUrl;
+    if (url == null || url.isEmpty) return null;
+    return _thumbnails ??= ThumbnailTrack.load(url).then<ThumbnailTrack?>(
+      (track) => track,
+      onError: (Object e) {
+        debugPrint('❌ Error cargando miniaturas de $url: $e');
+        return null;
+      },
+    );
+  }
+
   @override
   void didChangeDependencies() {
     super.didChangeDependencies();
     _initializeAirPlay();
     _initializeGoogleCast();
+    if (_feedMode) {
+      _attachFeedScroll();
+    }
+  }
+
+  @override
+  void didUpdateWidget(covariant AdvancedVideoPlayer oldWidget) {
+    super.didUpdateWidget(oldWidget);
+    if (oldWidget.feedController != widget.feedController ||
+        oldWidget.feedIndex != widget.feedIndex) {
+      if (oldWidget.feedController != null && oldWidget.feedIndex != null) {
+        oldWidget.feedController!.detach(oldWidget.feedIndex!, this);
+      }
+      if (_feedMode) {
+        widget.feedController!.attach(widget.feedIndex!, this);
+        _scheduleFeedVisibilityReport();
+      }
+    }
+  }
+
+  /// Escucha el scroll de la lista que contiene al reproductor
+  void _attachFeedScroll() {
+    final position = Scrollable.maybeOf(context)?.position;
+    if (position == _feedScrollPosition) return;
+    _feedScrollPosition?.removeListener(_scheduleFeedVisibilityReport);
+    _feedScrollPosition = position;
+    _feedScrollPosition?.addListener(_scheduleFeedVisibilityReport);
+    _scheduleFeedVisibilityReport();
+  }
+
+  // Calcula la visibilidad una vez por frame, después del layout
+  void _scheduleFeedVisibilityReport() {
+    if (_feedReportScheduled) return;
+    _feedReportScheduled = true;
+    SchedulerBinding.instance.addPostFrameCallback((_) {
+      _feedReportScheduled = false;
+      _reportFeedVisibility();
+    });
+  }
+
+  void _reportFeedVisibility() {
+    if (!mounted || !_feedMode) return;
+    final box = context.findRenderObject();
+    final viewport = Scrollable.maybeOf(context)?.context.findRenderObject();
+    if (box is! RenderBox ||
+        viewport is! RenderBox ||
+        !box.hasSize ||
+        !viewport.hasSize ||
+        !box.attached) {
+      return;
+    }
+    final rect = box.localToGlobal(Offset.zero) & box.size;
+    final viewportRect = viewport.localToGlobal(Offset.zero) & viewport.size;
+    final visible = rect.intersect(viewportRect);
+    final area = rect.width * rect.height;
+    final fraction = visible.width <= 0 || visible.height <= 0 || area <= 0
+        ? 0.0
+        : (visible.width * visible.height / area).clamp(0.0, 1.0);
+    widget.feedController!.reportVisibility(widget.feedIndex!, fraction);
+  }
+
+  @override
+  Future<void> activateForFeed() {
+    return _feedOperation = _feedOperation.then((_) async {
+      if (!mounted || _controller != null || _playingRemotely) return;
+      await _initializeVideoPlayer();
+      final controller = _controller;
+      if (!mounted || controller == null || !controller.value.isInitialized) {
+        return;
+      }
+      if (_feedResumePosition > Duration.zero) {
+        await controller.seekTo(_feedResumePosition);
+      }
+      // El video ya muestra su primer frame: la imagen guardada sobra
+      _lastFrame?.dispose();
+      _lastFrame = null;
+    });
+  }
+
+  @override
+  Future<void> releaseForFeed() {
+    return _feedOperation = _feedOperation
+        .then((_) => _releaseDecoder('feed #${widget.feedIndex}'));
+  }
+
+  /// Suelta el decodificador dejando en pantalla el último frame
+  Future<void> _releaseDecoder(String reason) async {
+    final controller = _controller;
+    if (!mounted || controller == null) return;
+    await _captureLastFrame();
+    if (!mounted || _controller != controller) return;
+
+    final value = controller.value;
+    if (value.isInitialized) {
+      _feedResumePosition = value.position;
+      if (widget.resumeFromLastPosition) {
+        _saveResumePosition(value.position, value.duration);
+      }
+    }
+    controller.removeListener(_videoListener);
+    _playback.detach();
+    _hideControlsTimer?.cancel();
+    _pairingTimer?.cancel();
+    _qoe?.end(position: value.isInitialized ? value.position : null);
+    _qoe = null;
+    final wasPlaying = _isPlaying;
+    setState(() {
+      _controller = null;
+      _isLoading = true;
+      _isPlaying = false;
+    });
+    if (wasPlaying) _updatePipPlaybackState(false);
+    await controller.dispose();
+    debugPrint('[AdvancedVideoPlayer] ♻️ Decodificador liberado ($reason)');
+  }
+
+  /// Guarda el frame visible para mostrarlo mientras no hay decodificador
+  Future<void> _captureLastFrame() async {
+    final boundary = _frameBoundaryKey.currentContext?.findRenderObject();
+    if (boundary is! RenderRepaintBoundary ||
+        !boundary.attached ||
+        boundary.debugNeedsPaint) {
+      return;
+    }
+    try {
+      final image = await boundary.toImage(pixelRatio: 1.0);
+      _lastFrame?.dispose();
+      _lastFrame = image;
+    } catch (e) {
+      // Algunas plataformas no permiten capturar texturas de video
+      debugPrint('[AdvancedVideoPlayer] No se pudo capturar el frame: $e');
+    }
   }
 
   void _checkPictureInPictureSupport() async {
@@ -163,7 +425,7 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
         await PictureInPictureService.isPictureInPictureSupported();
 
     // Obtener información de debug en Android
-    if (Platform.isAndroid) {
+    if (isAndroid) {
       try {
         await PictureInPictureService.getPictureInPictureInfo();
       } catch (e) {
@@ -272,7 +534,7 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
           final currentPosition = _controller!.value.position;
           final newPosition =
               currentPosition - Duration(seconds: widget.skipDuration);
-          _controller!.seekTo(
+          PlaybackQoeRecorder.seekTo(_controller!,
               newPosition < Duration.zero ? Duration.zero : newPosition);
           break;
         case 'forward10':
@@ -280,7 +542,8 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
           final duration = _controller!.value.duration;
           final newPosition =
               currentPosition + Duration(seconds: widget.skipDuration);
-          _controller!.seekTo(newPosition > duration ? duration : newPosition);
+          PlaybackQoeRecorder.seekTo(
+              _controller!, newPosition > duration ? duration : newPosition);
           break;
       }
     }
@@ -292,7 +555,8 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
     }
 
     try {
-      _screenSharingService = ScreenSharingService();
+      _screenSharingService = await _obtainPlayerService();
+      if (!mounted) return;
 
       final supported = await ScreenSharingService.isScreenSharingSupported();
 
@@ -317,24 +581,31 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
 
   void _initializeGoogleCast() async {
     // Google Cast solo está disponible en Android
-    if (!Platform.isAndroid) {
+    if (!isAndroid) {
       return;
     }
 
     try {
-      await AdvancedVideoPlayerCast.initializeCast();
+      final service = await _obtainPlayerService();
+      if (!mounted) return;
+      await AdvancedVideoPlayerCast.initializeCast(playerId: service.playerId);
     } catch (e) {
       debugPrint('[AdvancedVideoPlayer] Error al inicializar Google Cast: $e');
     }
   }
 
+  /// Crea (una sola vez) el handle nativo de este reproductor
+  Future<ScreenSharingService> _obtainPlayerService() {
+    return _playerService ??= ScreenSharingService.create();
+  }
+
   void _initializeAirPlay() async {
     if (!widget.enableAirPlay) {
       return;
     }
 
     // AirPlay solo está disponible en iOS
-    if (!Platform.isIOS) {
+    if (!isIOS) {
       return;
     }
 
@@ -361,11 +632,32 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
     _screenSharingStateSubscription =
         _screenSharingService!.stateStream.listen((state) {
       if (!mounted) return;
+      // Al terminar Cast se mide cuánto tarda en volver la reproducción local
+      if (_screenSharingState == ScreenSharingState.connected &&
+          state == ScreenSharingState.disconnected) {
+        _qoe?.markRemoteEnded();
+        // La sesión terminó sin pasar por "Ver en este dispositivo" (el
+        // televisor se apagó, otra app tomó el receptor...): se recupera el
+        // video local pausado donde iba el receptor
+        if (_playingRemotely && !_handingBack) {
+          _resumeLocallyAfterRemote();
+        }
+        _remoteStarted = false;
+      }
       setState(() {
         _screenSharingState = state;
       });
     });
 
+    _remotePlayingSubscription =
+        _screenSharingService!.remotePlayingStream.listen((position) {
+      if (!mounted) return;
+      debugPrint(
+          '[AdvancedVideoPlayer] 📺 El receptor ya reproduce (${position.inSeconds}s)');
+      _remoteStarted = true;
+      _handOffToRemote();
+    });
+
     _screenSharingErrorSubscription =
         _screenSharingService!.errorStream.listen((error) {
       if (!mounted) return;
@@ -387,6 +679,8 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
       parent: _controlsAnimationController,
       curve: Curves.easeInOut,
     );
+    _controlsListenable =
+        Listenable.merge([_controlsAnimation, _controlsVisible]);
   }
 
   Future<void> _initializeVideoPlayer() async {
@@ -419,11 +713,21 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
         await _controller!.dispose();
       }
 
+      // Leer la posición guardada en paralelo con la inicialización del video
+      final savedPositionFuture = widget.resumeFromLastPosition
+          ? ResumePositionService.getPosition(_resumeKey)
+          : null;
+
+      // Nueva sesión de QoE: el arranque se mide hasta que el video está listo
+      _qoe?.end();
+      _qoe = PlaybackQoeRecorder.start(contentId: _resumeKey);
+      final startupStopwatch = Stopwatch()..start();
+
       if (widget.isAsset) {
         _controller = VideoPlayerController.asset(widget.videoSource);
       } else {
         _controller = VideoPlayerController.networkUrl(
-          Uri.parse(widget.videoSource),
+          Uri.parse(await _startupUrl()),
         );
       }
 
@@ -433,6 +737,22 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
       if (!_controller!.value.isInitialized) {
         throw Exception('El video no se pudo inicializar correctamente');
       }
+      _qoe!.markStartup(startupStopwatch.elapsed);
+      _qoe!.attach(_controller!);
+
+      // Reanudar desde la última posición guardada (si no está al final)
+      if (savedPositionFuture != null) {
+        final saved = await savedPositionFuture;
+        final duration = _controller!.value.duration;
+        if (saved != null &&
+            saved.position > Duration.zero &&
+            saved.position < duration - const Duration(seconds: 5)) {
+          await _controller!.seekTo(saved.position);
+          _lastSavedResumePosition = saved.position;
+          debugPrint(
+              '[AdvancedVideoPlayer] ⏩ Reanudando en ${saved.position.inSeconds}s');
+        }
+      }
 
       // Configurar el reproductor nativo para PiP
       await _setupNativePlayer();
@@ -441,6 +761,7 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
       await _controller!.pause();
 
       _controller!.addListener(_videoListener);
+      _playback.attach(_controller!);
 
       setState(() {
         _isLoading = false;
@@ -449,8 +770,9 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
 
       _showControlsTemporarily();
 
-      // Auto entrar en pantalla completa si está habilitado
-      if (widget.autoEnterFullscreen && !_isFullscreen) {
+      // Auto entrar en pantalla completa si está habilitado (no al recuperar
+      // el video de Cast)
+      if (widget.autoEnterFullscreen && !_isFullscreen && !_playingRemotely) {
         Future.delayed(const Duration(milliseconds: 500), () {
           if (mounted) {
             _toggleFullscreen();
@@ -458,6 +780,7 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
         });
       }
     } catch (e) {
+      _qoe?.markError();
       setState(() {
         _isLoading = false;
         _hasError = true;
@@ -467,6 +790,21 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
     }
   }
 
+  /// URL con la que preparar el reproductor local: la playlist HLS
+  /// reordenada con [HlsStartup] si está habilitado, o [widget.videoSource].
+  /// Cast, AirPlay y la reanudación siguen usando la original.
+  Future<String> _startupUrl() async {
+    final source = widget.videoSource;
+    final path = Uri.tryParse(source)?.path.toLowerCase() ?? '';
+    if (!widget.preselectHlsVariant || !path.endsWith('.m3u8')) return source;
+    final selection = await HlsStartup.prepare(source, rewrite: true);
+    if (selection.variant != null) {
+      debugPrint('[AdvancedVideoPlayer] 📶 Arranque HLS con '
+          '${selection.variant} de ${selection.variants} variantes');
+    }
+    return selection.url;
+  }
+
   /// Configura el reproductor nativo para Picture-in-Picture
   Future<void> _setupNativePlayer() async {
     try {
@@ -484,6 +822,9 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
     if (!mounted || _controller == null) return;
 
     if (_controller!.value.hasError) {
+      if (!_hasError) {
+        _qoe?.markError();
+      }
       setState(() {
         _hasError = true;
         _errorMessage =
@@ -493,6 +834,11 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
       return;
     }
 
+    _qoe?.updatePlayback(
+      isPlaying: _controller!.value.isPlaying,
+      isBuffering: _controller!.value.isBuffering,
+    );
+
     // Verificar si el video terminó (con margen de tolerancia de 500ms)
     final duration = _controller!.value.duration;
     final position = _controller!.value.position;
@@ -500,11 +846,13 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
         (position.inMilliseconds >= duration.inMilliseconds - 500);
 
     if (isNearEnd && _isPlaying && !_hasVideoEnded) {
-      setState(() {
-        _isPlaying = false;
-        _hasVideoEnded = true;
-      });
+      _isPlaying = false;
+      _hasVideoEnded = true;
       _updatePipPlaybackState(false);
+      if (widget.resumeFromLastPosition) {
+        ResumePositionService.clearPosition(_resumeKey);
+        _lastSavedResumePosition = Duration.zero;
+      }
       debugPrint(
           '[AdvancedVideoPlayer] 🏁 Video ended - Position: ${position.inSeconds}s, Duration: ${duration.inSeconds}s');
       widget.onVideoEnd?.call();
@@ -513,6 +861,14 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
 
     final newPlayingState = _controller!.value.isPlaying;
 
+    // Guardar la posición cada pocos segundos de avance (o al pausar)
+    if (widget.resumeFromLastPosition &&
+        ((_isPlaying && !newPlayingState) ||
+            (position - _lastSavedResumePosition).abs() >=
+                const Duration(seconds: 5))) {
+      _saveResumePosition(position, duration);
+    }
+
     // Detectar si el video está reproduciéndose y pasó de los primeros segundos
     if (newPlayingState && !_hasVideoStarted && position.inSeconds >= 1) {
       _hasVideoStarted = true;
@@ -522,9 +878,8 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
     }
 
     if (_isPlaying != newPlayingState) {
-      setState(() {
-        _isPlaying = newPlayingState;
-      });
+      // Solo cambia el botón de reproducción: no hace falta reconstruir todo
+      _isPlaying = newPlayingState;
       _updatePipPlaybackState(newPlayingState);
 
       // Callbacks basados en el cambio de estado
@@ -547,9 +902,19 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
     }
   }
 
+  void _saveResumePosition(Duration position, Duration duration) {
+    if (_hasVideoEnded || position <= Duration.zero) return;
+    _lastSavedResumePosition = position;
+    ResumePositionService.savePosition(
+      _resumeKey,
+      position: position,
+      duration: duration,
+    );
+  }
+
   void _updatePipPlaybackState(bool isPlaying) {
     // Solo actualizar en Android cuando está en modo PiP
-    if (Platform.isAndroid && _isInPictureInPictureMode) {
+    if (isAndroid && _isInPictureInPictureMode) {
       PictureInPictureService.updatePlaybackState(isPlaying: isPlaying);
     }
   }
@@ -619,8 +984,8 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
 
     final newPosition =
         _controller!.value.position - Duration(seconds: widget.skipDuration);
-    _controller!
-        .seekTo(newPosition < Duration.zero ? Duration.zero : newPosition);
+    PlaybackQoeRecorder.seekTo(_controller!,
+        newPosition < Duration.zero ? Duration.zero : newPosition);
     _showControlsTemporarily();
   }
 
@@ -630,7 +995,8 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
     final newPosition =
         _controller!.value.position + Duration(seconds: widget.skipDuration);
     final maxPosition = _controller!.value.duration;
-    _controller!.seekTo(newPosition > maxPosition ? maxPosition : newPosition);
+    PlaybackQoeRecorder.seekTo(
+        _controller!, newPosition > maxPosition ? maxPosition : newPosition);
     _showControlsTemporarily();
   }
 
@@ -655,6 +1021,7 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
             secondaryColor: widget.secondaryColor,
             enablePictureInPicture: widget.enablePictureInPicture,
             initialPosition: _lastNativeVideoPosition,
+            thumbnails: _thumbnailTrack,
             onVideoEnd: widget.onVideoEnd,
             onVideoStart: widget.onVideoStart,
             onVideoPause: widget.onVideoPause,
@@ -694,9 +1061,13 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
             skipDuration: widget.skipDuration,
             enablePictureInPicture: widget.enablePictureInPicture,
             enableScreenSharing: widget.enableScreenSharing,
+            screenSharingService: _screenSharingService,
             enableAirPlay: widget.enableAirPlay,
             videoTitle: widget.videoTitle,
             videoDescription: widget.videoDescription,
+            previewImageUrl: widget.previewImageUrl,
+            subtitles: _subtitles,
+            thumbnails: _thumbnailTrack,
             onVideoEnd: widget.onVideoEnd,
             onVideoStart: widget.onVideoStart,
             onVideoPause: widget.onVideoPause,
@@ -714,6 +1085,8 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
         });
         // El callback de pausa se llamará automáticamente por el listener
       }
+      // Se compartió desde pantalla completa: el decodificador ya sobra
+      if (_remoteStarted) _handOffToRemote();
     }
     _showControlsTemporarily();
   }
@@ -738,9 +1111,13 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
           skipDuration: widget.skipDuration,
           enablePictureInPicture: widget.enablePictureInPicture,
           enableScreenSharing: widget.enableScreenSharing,
+          screenSharingService: _screenSharingService,
           enableAirPlay: widget.enableAirPlay,
           videoTitle: widget.videoTitle,
           videoDescription: widget.videoDescription,
+          previewImageUrl: widget.previewImageUrl,
+          subtitles: _subtitles,
+          thumbnails: _thumbnailTrack,
           onVideoEnd: widget.onVideoEnd,
           onVideoStart: widget.onVideoStart,
           onVideoPause: widget.onVideoPause,
@@ -758,6 +1135,7 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
       });
       // El callback de pausa se llamará automáticamente por el listener
     }
+    if (_remoteStarted) _handOffToRemote();
   }
 
   void _enterPictureInPicture() async {
@@ -774,7 +1152,7 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
         await Future.delayed(const Duration(milliseconds: 500));
 
         // Minimizar la app al background (ir al home) - Solo en iOS
-        if (mounted && Platform.isIOS) {
+        if (mounted && isIOS) {
           SystemNavigator.pop();
         }
       } catch (e) {
@@ -841,24 +1219,18 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
 
   void _showControlsTemporarily() {
     if (_isPlaying) {
-      setState(() {
-        _showControls = true;
-      });
+      _showControls = true;
       _controlsAnimationController.forward();
 
       _hideControlsTimer?.cancel();
       _hideControlsTimer = Timer(const Duration(seconds: 3), () {
         if (mounted && _isPlaying) {
-          setState(() {
-            _showControls = false;
-          });
+          _showControls = false;
           _controlsAnimationController.reverse();
         }
       });
     } else {
-      setState(() {
-        _showControls = true;
-      });
+      _showControls = true;
       _controlsAnimationController.forward();
     }
   }
@@ -867,9 +1239,7 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
     _hideControlsTimer?.cancel();
     _hideControlsTimer = Timer(const Duration(seconds: 3), () {
       if (mounted && _isPlaying) {
-        setState(() {
-          _showControls = false;
-        });
+        _showControls = false;
         _controlsAnimationController.reverse();
       }
     });
@@ -877,9 +1247,7 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
 
   void _onTapVideo() {
     if (_showControls) {
-      setState(() {
-        _showControls = false;
-      });
+      _showControls = false;
       _controlsAnimationController.reverse();
     } else {
       _showControlsTemporarily();
@@ -941,18 +1309,19 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
               top: MediaQuery.of(context).padding.top + 16,
               right: 16,
               child: AnimatedBuilder(
-                animation: _controlsAnimation,
+                animation: _controlsListenable,
                 builder: (context, child) {
                   return Opacity(
                     opacity: _showControls ? 1.0 : 0.0,
-                    child: _buildControlButton(
-                      icon: Icons.fullscreen_exit,
-                      onPressed: _toggleFullscreen,
-                      tooltip: 'Salir de pantalla completa',
-                      isPictureInPicture: _isInPictureInPictureMode,
-                    ),
+                    child: child,
                   );
                 },
+                child: _buildControlButton(
+                  icon: Icons.fullscreen_exit,
+                  onPressed: _toggleFullscreen,
+                  tooltip: 'Salir de pantalla completa',
+                  isPictureInPicture: _isInPictureInPictureMode,
+                ),
               ),
             ),
           ],
@@ -963,38 +1332,29 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
     return videoWidget;
   }
 
+  /// Poster decodificado al tamaño del reproductor (desde la caché
+  /// compartida) o, si no hay o falla, el gradiente de los colores del tema
+  Widget _buildPreviewBackground() {
+    final gradient = DecoratedBox(
+      decoration: BoxDecoration(
+        gradient: LinearGradient(
+          colors: [widget.primaryColor, widget.secondaryColor],
+          begin: Alignment.topLeft,
+          end: Alignment.bottomRight,
+        ),
+      ),
+    );
+    final url = widget.previewImageUrl;
+    if (url == null || url.isEmpty) return gradient;
+    return PosterView(url: url, placeholder: gradient);
+  }
+
   Widget _buildVideoStack() {
     return Stack(
       fit: StackFit.expand,
       children: [
         // Fondo: Preview/thumbnail o gradiente
-        if (widget.previewImageUrl != null &&
-            widget.previewImageUrl!.isNotEmpty)
-          Image.network(
-            widget.previewImageUrl!,
-            fit: BoxFit.cover,
-            errorBuilder: (context, error, stackTrace) {
-              return Container(
-                decoration: BoxDecoration(
-                  gradient: LinearGradient(
-                    colors: [widget.primaryColor, widget.secondaryColor],
-                    begin: Alignment.topLeft,
-                    end: Alignment.bottomRight,
-                  ),
-                ),
-              );
-            },
-          )
-        else
-          Container(
-            decoration: BoxDecoration(
-              gradient: LinearGradient(
-                colors: [widget.primaryColor, widget.secondaryColor],
-                begin: Alignment.topLeft,
-                end: Alignment.bottomRight,
-              ),
-            ),
-          ),
+        _buildPreviewBackground(),
 
         // Video - Reproductor nativo (iOS) o estándar (Android)
         if (_useNativePlayer && _isPlaying)
@@ -1084,10 +1444,23 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
           Center(
             child: AspectRatio(
               aspectRatio: _controller!.value.aspectRatio,
-              child: VideoPlayer(_controller!),
+              child: RepaintBoundary(
+                key: _frameBoundaryKey,
+                child: VideoPlayer(_controller!),
+              ),
             ),
+          )
+        // Modo feed sin decodificador: último frame capturado
+        else if (_lastFrame != null &&
+            (widget.previewImageUrl == null || widget.previewImageUrl!.isEmpty))
+          Center(
+            child: RawImage(image: _lastFrame, fit: BoxFit.contain),
           ),
 
+        // Subtítulos (solo se reconstruyen al cambiar el subtítulo activo)
+        if (_subtitles != null && !_useNativePlayer)
+          SubtitleOverlay(controller: _subtitles!),
+
         // Overlay para reproductor nativo con botón de play
         if (_useNativePlayer && !_isPlaying)
           GestureDetector(
@@ -1172,19 +1545,24 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
 
         // Controles overlay
         if (!_isLoading &&
+            !_playingRemotely &&
             (!_useNativePlayer &&
                 _controller != null &&
                 _controller!.value.isInitialized))
           AnimatedBuilder(
-            animation: _controlsAnimation,
+            animation: _controlsListenable,
             builder: (context, child) {
               return Opacity(
                 opacity: _showControls ? 1.0 : 0.0,
-                child: _buildControlsOverlay(),
+                child: child,
               );
             },
+            child: _buildControlsOverlay(),
           ),
 
+        // El video sigue en el televisor
+        if (_playingRemotely) _buildRemotePlaybackOverlay(),
+
         // Overlay de Picture-in-Picture cuando está activo
         if (_isInPictureInPictureMode) ...[
           // Debug: Mostrar estado actual
@@ -1276,13 +1654,14 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
                 ? _nativeController != null
                 : (_controller != null && _controller!.value.isInitialized)))
           AnimatedBuilder(
-            animation: _controlsAnimation,
+            animation: _controlsListenable,
             builder: (context, child) {
               return Opacity(
                 opacity: _showControls ? 1.0 : 0.0,
-                child: _buildFullscreenControlsOverlay(),
+                child: child,
               );
             },
+            child: _buildFullscreenControlsOverlay(),
           ),
 
         // Overlay de Picture-in-Picture cuando está activo en pantalla completa
@@ -1313,34 +1692,7 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
       fit: StackFit.expand,
       children: [
         // Imagen de preview si está disponible, sino gradiente
-        if (widget.previewImageUrl != null &&
-            widget.previewImageUrl!.isNotEmpty)
-          Image.network(
-            widget.previewImageUrl!,
-            fit: BoxFit.cover,
-            errorBuilder: (context, error, stackTrace) {
-              // Si falla la carga de la imagen, mostrar gradiente
-              return Container(
-                decoration: BoxDecoration(
-                  gradient: LinearGradient(
-                    colors: [widget.primaryColor, widget.secondaryColor],
-                    begin: Alignment.topLeft,
-                    end: Alignment.bottomRight,
-                  ),
-                ),
-              );
-            },
-          )
-        else
-          Container(
-            decoration: BoxDecoration(
-              gradient: LinearGradient(
-                colors: [widget.primaryColor, widget.secondaryColor],
-                begin: Alignment.topLeft,
-                end: Alignment.bottomRight,
-              ),
-            ),
-          ),
+        _buildPreviewBackground(),
 
         // Overlay oscuro para que el indicador sea visible
         Container(
@@ -1528,9 +1880,9 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
                   }
                 },
               ),
-            if (Platform.isIOS && widget.enableAirPlay && _isAirPlaySupported)
+            if (isIOS && widget.enableAirPlay && _isAirPlaySupported)
               const SizedBox(width: 6),
-            if (Platform.isAndroid &&
+            if (isAndroid &&
                 widget.enableScreenSharing &&
                 _isScreenSharingSupported)
               _buildControlButton(
@@ -1587,14 +1939,18 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
           size: 40,
           isPictureInPicture: _isInPictureInPictureMode,
         ),
-        _buildControlButton(
-          icon:
-              _isPlaying ? Icons.pause_circle_filled : Icons.play_circle_filled,
-          onPressed: _togglePlayPause,
-          tooltip: _isPlaying ? 'Pausar' : 'Reproducir',
-          size: 60,
-          isPrimary: true,
-          isPictureInPicture: _isInPictureInPictureMode,
+        ValueListenableBuilder<bool>(
+          valueListenable: _playingState,
+          builder: (context, isPlaying, _) => _buildControlButton(
+            icon: isPlaying
+                ? Icons.pause_circle_filled
+                : Icons.play_circle_filled,
+            onPressed: _togglePlayPause,
+            tooltip: isPlaying ? 'Pausar' : 'Reproducir',
+            size: 60,
+            isPrimary: true,
+            isPictureInPicture: _isInPictureInPictureMode,
+          ),
         ),
         _buildControlButton(
           icon: Icons.forward_10,
@@ -1630,26 +1986,34 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
         children: [
           // _buildProgressBar(),
           const SizedBox(height: 12),
-          // Tiempo y duración
-          Row(
-            mainAxisAlignment: MainAxisAlignment.spaceBetween,
-            children: [
-              Text(
-                _formatDuration(_controller?.value.position ?? Duration.zero),
-                style: const TextStyle(
-                  color: Colors.white,
-                  fontSize: 14,
-                  fontWeight: FontWeight.w500,
+          // Tiempo y duración: un tick de posición solo repinta esta fila
+          RepaintBoundary(
+            child: Row(
+              mainAxisAlignment: MainAxisAlignment.spaceBetween,
+              children: [
+                ValueListenableBuilder<Duration>(
+                  valueListenable: _playback.position,
+                  builder: (context, position, _) => Text(
+                    _formatDuration(position),
+                    style: const TextStyle(
+                      color: Colors.white,
+                      fontSize: 14,
+                      fontWeight: FontWeight.w500,
+                    ),
+                  ),
                 ),
-              ),
-              Text(
-                _formatDuration(_controller?.value.duration ?? Duration.zero),
-                style: const TextStyle(
-                  color: Colors.white70,
-                  fontSize: 14,
+                ValueListenableBuilder<Duration>(
+                  valueListenable: _playback.duration,
+                  builder: (context, duration, _) => Text(
+                    _formatDuration(duration),
+                    style: const TextStyle(
+                      color: Colors.white70,
+                      fontSize: 14,
+                    ),
+                  ),
                 ),
-              ),
-            ],
+              ],
+            ),
           ),
         ],
       ),
@@ -2023,11 +2387,20 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
     }
 
     try {
+      await _qoe?.markCastRequested();
       final success = await _screenSharingService!.shareVideo(
         videoUrl: widget.videoSource,
         title: widget.videoTitle ?? 'Video Compartido',
         description:
             widget.videoDescription ?? 'Compartido desde Advanced Video Player',
+        thumbnailUrl: widget.previewImageUrl,
+        subtitleTracks: widget.subtitleTracks,
+        activeSubtitleTrack: _subtitles?.selectedTrack.value,
+        // El receptor arranca donde va el video local
+        startPosition: _controller != null && _controller!.value.isInitialized
+            ? _controller!.value.position
+            : _feedResumePosition,
+        playbackRate: _controller?.value.playbackSpeed ?? 1.0,
       );
 
       if (!mounted) return;
@@ -2059,7 +2432,11 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
 
   Future<void> _disconnectScreenSharing() async {
     if (_screenSharingService != null) {
-      await _screenSharingService!.disconnect();
+      if (_playingRemotely && !_handingBack) {
+        await _handBackFromRemote();
+      } else {
+        await _screenSharingService!.disconnect();
+      }
       if (!mounted) return;
       ScaffoldMessenger.of(context).showSnackBar(
         const SnackBar(
@@ -2070,6 +2447,139 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
     }
   }
 
+  /// El receptor ya reproduce: se pausa el video local y, si esta vista está
+  /// en primer plano, se suelta su decodificador
+  void _handOffToRemote() {
+    final controller = _controller;
+    if (_useNativePlayer || _playingRemotely || controller == null) return;
+    if (controller.value.isPlaying) {
+      controller.pause();
+      setState(() {
+        _isPlaying = false;
+      });
+      _updatePipPlaybackState(false);
+    }
+    // Con la pantalla completa abierta el controlador sigue en uso; se suelta
+    // al volver
+    if (ModalRoute.of(context)?.isCurrent == false) return;
+    setState(() {
+      _playingRemotely = true;
+    });
+    _feedOperation = _feedOperation.then((_) => _releaseDecoder('Cast'));
+  }
+
+  /// "Ver en este dispositivo": el video local se prepara en la posición del
+  /// receptor antes de cerrar la sesión, así no se ve un nuevo búfer
+  Future<void> _handBackFromRemote() async {
+    final service = _screenSharingService!;
+    setState(() {
+      _handingBack = true;
+    });
+    final before = await service.remotePosition();
+    final primed = await _primeLocalPlayback(before?.position ??
+        service.lastRemotePosition ??
+        _feedResumePosition);
+    // El receptor siguió avanzando mientras se llenaba el búfer; el salto
+    // cae dentro de lo ya descargado
+    final after = primed ? await service.remotePosition() : null;
+    if (after != null && mounted && _controller != null) {
+      await _controller!.seekTo(after.position);
+    }
+    await service.disconnect();
+    if (!mounted) return;
+    _finishRemotePlayback(play: primed && (after ?? before)?.playing == true);
+  }
+
+  /// La sesión terminó sin avisar: el video local queda pausado donde iba el
+  /// receptor
+  Future<void> _resumeLocallyAfterRemote() async {
+    _handingBack = true;
+    await _primeLocalPlayback(
+        _screenSharingService?.lastRemotePosition ?? _feedResumePosition);
+    if (!mounted) return;
+    _finishRemotePlayback(play: false);
+  }
+
+  /// Vuelve a crear el decodificador en [position] y espera a tener búfer
+  Future<bool> _primeLocalPlayback(Duration position) async {
+    if (_controller == null) await _initializeVideoPlayer();
+    final controller = _controller;
+    if (!mounted || controller == null || !controller.value.isInitialized) {
+      return false;
+    }
+    await controller.seekTo(position);
+    await _awaitBuffered(controller, position);
+    debugPrint(
+        '[AdvancedVideoPlayer] 🔁 Video local preparado en ${position.inSeconds}s');
+    return mounted && _controller == controller;
+  }
+
+  /// Espera a que el reproductor tenga descargado un tramo desde [position]
+  /// (como mucho [_handBackBufferTimeout])
+  Future<void> _awaitBuffered(
+      VideoPlayerController controller, Duration position) async {
+    if (widget.isAsset) return;
+    final target = position + _handBackBufferAhead;
+    final stopwatch = Stopwatch()..start();
+    while (mounted &&
+        _controller == controller &&
+        stopwatch.elapsed < _handBackBufferTimeout) {
+      final value = controller.value;
+      final buffered = target >= value.duration ||
+          value.buffered.any(
+              (range) => range.start <= position && range.end >= target);
+      if (buffered && !value.isBuffering) return;
+      await Future.delayed(const Duration(milliseconds: 100));
+    }
+  }
+
+  void _finishRemotePlayback({required bool play}) {
+    _lastFrame?.dispose();
+    _lastFrame = null;
+    setState(() {
+      _playingRemotely = false;
+      _handingBack = false;
+      _remoteStarted = false;
+    });
+    // Como al tocar play: en la vista preview se sigue en pantalla completa
+    if (play && _controller != null && _controller!.value.isInitialized) {
+      _enterFullscreenAndPlay();
+    }
+  }
+
+  Widget _buildRemotePlaybackOverlay() {
+    return Container(
+      color: Colors.black.withOpacity(0.6),
+      child: Center(
+        child: Column(
+          mainAxisSize: MainAxisSize.min,
+          children: [
+            const Icon(Icons.cast_connected, color: Colors.white, size: 40),
+            const SizedBox(height: 12),
+            const Text(
+              'Reproduciendo en el televisor',
+              style: TextStyle(
+                color: Colors.white,
+                fontSize: 14,
+                fontWeight: FontWeight.w500,
+              ),
+            ),
+            const SizedBox(height: 8),
+            TextButton(
+              onPressed: _handingBack ? null : _disconnectScreenSharing,
+              style: TextButton.styleFrom(
+                foregroundColor: widget.primaryColor,
+              ),
+              child: Text(_handingBack
+                  ? 'Preparando el video...'
+                  : 'Ver en este dispositivo'),
+            ),
+          ],
+        ),
+      ),
+    );
+  }
+
   void _showInfoDialog() {
     showDialog(
       context: context,
@@ -2093,14 +2603,36 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
 
   @override
   void dispose() {
+    if (widget.resumeFromLastPosition &&
+        _controller != null &&
+        _controller!.value.isInitialized) {
+      _saveResumePosition(
+          _controller!.value.position, _controller!.value.duration);
+    }
+    _qoe?.end(
+        position: _controller != null && _controller!.value.isInitialized
+            ? _controller!.value.position
+            : null);
     _hideControlsTimer?.cancel();
     _pairingTimer?.cancel();
     _controlsAnimationController.dispose();
+    _playback.position.removeListener(_syncSubtitles);
+    _playback.dispose();
+    _subtitles?.dispose();
+    _playingState.dispose();
+    _controlsVisible.dispose();
     _controller?.dispose();
     _nativeController?.dispose();
     _screenSharingStateSubscription?.cancel();
     _screenSharingErrorSubscription?.cancel();
-    _screenSharingService?.dispose();
+    _remotePlayingSubscription?.cancel();
+    _feedScrollPosition?.removeListener(_scheduleFeedVisibilityReport);
+    if (widget.feedController != null && widget.feedIndex != null) {
+      widget.feedController!.detach(widget.feedIndex!, this);
+    }
+    _lastFrame?.dispose();
+    // Libera el handle nativo aunque la creación siga en curso
+    _playerService?.then((service) => service.dispose());
     // Restaurar orientación y UI cuando se dispone el widget
     if (_isFullscreen) {
       SystemChrome.setEnabledSystemUIMode(SystemUiMode.edgeToEdge);
@@ -2110,6 +2642,29 @@ class _AdvancedVideoPlayerState extends State<AdvancedVideoPlayer>
   }
 }
 
+/// Página de pantalla completa del reproductor nativo de iOS
+///
+/// Solo para tests y benchmarks de widgets; en la app se abre desde
+/// [AdvancedVideoPlayer] con `useNativePlayerOnIOS`.
+@visibleForTesting
+Widget nativeFullscreenPageForTesting({
+  required String url,
+  Color primaryColor = const Color(0xFF6366F1),
+  Color secondaryColor = const Color(0xFF8B5CF6),
+  bool enablePictureInPicture = true,
+  double initialPosition = 0.0,
+  Future<ThumbnailTrack?>? thumbnails,
+}) {
+  return _NativeFullscreenPage(
+    url: url,
+    primaryColor: primaryColor,
+    secondaryColor: secondaryColor,
+    enablePictureInPicture: enablePictureInPicture,
+    initialPosition: initialPosition,
+    thumbnails: thumbnails,
+  );
+}
+
 /// Página de pantalla completa para el reproductor nativo
 class _NativeFullscreenPage extends StatefulWidget {
   final String url;
@@ -2117,6 +2672,7 @@ class _NativeFullscreenPage extends StatefulWidget {
   final Color secondaryColor;
   final bool enablePictureInPicture;
   final double initialPosition; // Posición inicial del video en segundos
+  final Future<ThumbnailTrack?>? thumbnails; // Vista previa al arrastrar
   final VoidCallback? onVideoEnd;
   final VoidCallback? onVideoStart;
   final VoidCallback? onVideoPause;
@@ -2128,6 +2684,7 @@ class _NativeFullscreenPage extends StatefulWidget {
     required this.secondaryColor,
     required this.enablePictureInPicture,
     this.initialPosition = 0.0, // Por defecto inicia en 0
+    this.thumbnails,
     this.onVideoEnd,
     this.onVideoStart,
     this.onVideoPause,
@@ -2140,13 +2697,17 @@ class _NativeFullscreenPage extends StatefulWidget {
 
 class _NativeFullscreenPageState extends State<_NativeFullscreenPage> {
   NativeVideoPlayerController? _controller;
-  bool _showControls = true;
+  bool _controlsShown = true;
   bool _isPlaying = true;
   Timer? _hideControlsTimer;
-  Timer? _progressTimer;
-  double _currentPosition = 0.0;
-  double _duration = 0.0;
+  PlayerTick? _progressTick;
+  // Posición y duración en segundos: solo la barra de progreso las escucha
+  final ValueNotifier<double> _positionState = ValueNotifier(0.0);
+  final ValueNotifier<double> _durationState = ValueNotifier(0.0);
   bool _isDragging = false;
+  // Arrastre o seek con los botones en curso: se muestra la miniatura
+  final ValueNotifier<bool> _scrubbing = ValueNotifier(false);
+  ThumbnailTrack? _thumbnailTrack;
   bool _isBuffering = true; // Inicia como true para mostrar loading inicial
 
   // Para debounce de los botones de avanzar/retroceder
@@ -2155,10 +2716,26 @@ class _NativeFullscreenPageState extends State<_NativeFullscreenPage> {
   bool _hasVideoStarted =
       false; // Para controlar si onVideoStart ya fue llamado
   bool _hasVideoEnded = false; // Para controlar si onVideoEnd ya fue llamado
+  late final PlaybackQoeRecorder _qoe;
+  final Stopwatch _startupStopwatch = Stopwatch();
+
+  double get _currentPosition => _positionState.value;
+  set _currentPosition(double value) => _positionState.value = value;
+  double get _duration => _durationState.value;
+  set _duration(double value) => _durationState.value = value;
+
+  // Con los controles ocultos nadie mira la barra: el sondeo se ralentiza
+  bool get _showControls => _controlsShown;
+  set _showControls(bool value) {
+    _controlsShown = value;
+    _progressTick?.visible = value;
+  }
 
   @override
   void initState() {
     super.initState();
+    _qoe = PlaybackQoeRecorder.start(contentId: widget.url);
+    _startupStopwatch.start();
     // Configurar pantalla completa
     SystemChrome.setEnabledSystemUIMode(SystemUiMode.immersiveSticky);
     SystemChrome.setPreferredOrientations([
@@ -2167,49 +2744,76 @@ class _NativeFullscreenPageState extends State<_NativeFullscreenPage> {
     ]);
     _startHideControlsTimer();
     _startProgressTimer();
+    widget.thumbnails?.then((track) {
+      if (mounted && track != null) {
+        setState(() {
+          _thumbnailTrack = track;
+        });
+      }
+    });
+  }
+
+  void _updateScrubbing() {
+    _scrubbing.value = _isDragging || _isSeeking;
   }
 
   void _startProgressTimer() {
-    _progressTimer?.cancel();
-    _progressTimer =
-        Timer.periodic(const Duration(milliseconds: 500), (timer) async {
-      if (_controller != null && !_isDragging && !_isSeeking) {
-        final position = await _controller!.getCurrentPosition();
-        final duration = await _controller!.getDuration();
-        final buffering = await _controller!.isBuffering();
-
-        // Verificar si el video terminó (con margen de tolerancia de 500ms)
-        final isNearEnd = duration > 0 && (position >= duration - 0.5);
-
-        if (isNearEnd && _isPlaying && !_hasVideoEnded) {
-          if (mounted) {
-            setState(() {
-              _isPlaying = false;
-              _hasVideoEnded = true;
-            });
-            debugPrint(
-                '[NativeFullscreenPage] 🏁 Video ended - Position: ${position.toStringAsFixed(1)}s, Duration: ${duration.toStringAsFixed(1)}s');
-            widget.onVideoEnd?.call();
-          }
-        }
+    _progressTick?.cancel();
+    _progressTick = PlayerTickScheduler.instance.register(
+      'native.progress',
+      interval: const Duration(milliseconds: 500),
+      hiddenFactor: 4,
+      onTick: (_) => _pollProgress(),
+    )..visible = _showControls;
+  }
 
-        // Detectar si el video está reproduciéndose y pasó de los primeros segundos
-        if (_isPlaying && !_hasVideoStarted && position >= 1.0) {
-          _hasVideoStarted = true;
+  Future<void> _pollProgress() async {
+    if (_controller != null && !_isDragging && !_isSeeking) {
+      final position = await _controller!.getCurrentPosition();
+      final duration = await _controller!.getDuration();
+      final buffering = await _controller!.isBuffering();
+
+      // Buffering del reproductor nativo para las métricas QoE
+      if (_startupStopwatch.isRunning && !buffering && duration > 0) {
+        _startupStopwatch.stop();
+        _qoe.markStartup(_startupStopwatch.elapsed);
+      }
+      _qoe.updatePlayback(isPlaying: _isPlaying, isBuffering: buffering);
+
+      // Verificar si el video terminó (con margen de tolerancia de 500ms)
+      final isNearEnd = duration > 0 && (position >= duration - 0.5);
+
+      if (isNearEnd && _isPlaying && !_hasVideoEnded) {
+        if (mounted) {
+          setState(() {
+            _isPlaying = false;
+            _hasVideoEnded = true;
+          });
           debugPrint(
-              '[NativeFullscreenPage] ✨ Video started for first time (auto-detected at ${position.toStringAsFixed(1)}s)');
-          widget.onVideoStart?.call();
+              '[NativeFullscreenPage] 🏁 Video ended - Position: ${position.toStringAsFixed(1)}s, Duration: ${duration.toStringAsFixed(1)}s');
+          widget.onVideoEnd?.call();
         }
+      }
 
-        if (mounted) {
+      // Detectar si el video está reproduciéndose y pasó de los primeros segundos
+      if (_isPlaying && !_hasVideoStarted && position >= 1.0) {
+        _hasVideoStarted = true;
+        debugPrint(
+            '[NativeFullscreenPage] ✨ Video started for first time (auto-detected at ${position.toStringAsFixed(1)}s)');
+        widget.onVideoStart?.call();
+      }
+
+      if (mounted) {
+        _currentPosition = position;
+        _duration = duration;
+        // El indicador de carga sí cambia la estructura de la página
+        if (_isBuffering != buffering) {
           setState(() {
-            _currentPosition = position;
-            _duration = duration;
             _isBuffering = buffering;
           });
         }
       }
-    });
+    }
   }
 
   /// Maneja el seek con debounce para permitir múltiples toques rápidos
@@ -2218,11 +2822,9 @@ class _NativeFullscreenPageState extends State<_NativeFullscreenPage> {
     _seekDebounceTimer?.cancel();
 
     // Actualizar la posición visual inmediatamente (acumulando los offsets)
-    setState(() {
-      _currentPosition =
-          (_currentPosition + offsetSeconds).clamp(0.0, _duration);
-      _isSeeking = true;
-    });
+    _currentPosition = (_currentPosition + offsetSeconds).clamp(0.0, _duration);
+    _isSeeking = true;
+    _updateScrubbing();
 
     // Programar el seek real después de 150ms de inactividad
     _seekDebounceTimer = Timer(const Duration(milliseconds: 150), () async {
@@ -2231,13 +2833,12 @@ class _NativeFullscreenPageState extends State<_NativeFullscreenPage> {
         final targetPosition = _currentPosition;
 
         // Ejecutar el seek a la posición visual acumulada
-        await _controller!.seek(targetPosition);
+        await _qoe.timeSeek(_controller!.seek(targetPosition));
 
         // Actualizar el estado
         if (mounted) {
-          setState(() {
-            _isSeeking = false;
-          });
+          _isSeeking = false;
+          _updateScrubbing();
         }
 
         _startHideControlsTimer();
@@ -2446,14 +3047,14 @@ class _NativeFullscreenPageState extends State<_NativeFullscreenPage> {
                             Row(
                               children: [
                                 // Botón AirPlay nativo
-                                if (Platform.isIOS)
+                                if (isIOS)
                                   const AirPlayButton(
                                     width: 40,
                                     height: 40,
                                   ),
-                                if (Platform.isIOS) const SizedBox(width: 8),
+                                if (isIOS) const SizedBox(width: 8),
                                 // Botón PiP
-                                if (!Platform.isIOS &&
+                                if (!isIOS &&
                                     widget.enablePictureInPicture)
                                   _buildActionButton(
                                     icon: Icons.picture_in_picture_alt,
@@ -2467,7 +3068,7 @@ class _NativeFullscreenPageState extends State<_NativeFullscreenPage> {
                                           await Future.delayed(const Duration(
                                               milliseconds: 500));
 
-                                          if (mounted && Platform.isIOS) {
+                                          if (mounted && isIOS) {
                                             SystemNavigator.pop();
                                           }
                                         } catch (e) {
@@ -2564,79 +3165,7 @@ class _NativeFullscreenPageState extends State<_NativeFullscreenPage> {
                       Padding(
                         padding: const EdgeInsets.symmetric(
                             horizontal: 16.0, vertical: 8.0),
-                        child: Column(
-                          mainAxisSize: MainAxisSize.min,
-                          children: [
-                            // Barra de progreso arrastrable
-                            SliderTheme(
-                              data: SliderThemeData(
-                                trackHeight: 4.0,
-                                thumbShape: const RoundSliderThumbShape(
-                                    enabledThumbRadius: 8.0),
-                                overlayShape: const RoundSliderOverlayShape(
-                                    overlayRadius: 16.0),
-                                activeTrackColor: widget.primaryColor,
-                                inactiveTrackColor:
-                                    Colors.white.withOpacity(0.3),
-                                thumbColor: Colors.white,
-                                overlayColor:
-                                    widget.primaryColor.withOpacity(0.3),
-                              ),
-                              child: Slider(
-                                value: _duration > 0
-                                    ? (_currentPosition / _duration)
-                                        .clamp(0.0, 1.0)
-                                    : 0.0,
-                                onChanged: (value) {
-                                  setState(() {
-                                    _isDragging = true;
-                                    _currentPosition = value * _duration;
-                                  });
-                                },
-                                onChangeEnd: (value) async {
-                                  setState(() {
-                                    _isDragging = false;
-                                    _isBuffering =
-                                        true; // Mostrar loading al hacer seek
-                                  });
-                                  if (_controller != null) {
-                                    await _controller!.seek(value * _duration);
-                                    // Dar tiempo para que el player actualice su estado
-                                    await Future.delayed(
-                                        const Duration(milliseconds: 300));
-                                    // El timer actualizará _isBuffering automáticamente
-                                  }
-                                  _startHideControlsTimer();
-                                },
-                              ),
-                            ),
-                            // Indicadores de tiempo
-                            Padding(
-                              padding:
-                                  const EdgeInsets.symmetric(horizontal: 8.0),
-                              child: Row(
-                                mainAxisAlignment:
-                                    MainAxisAlignment.spaceBetween,
-                                children: [
-                                  Text(
-                                    _formatDuration(_currentPosition),
-                                    style: const TextStyle(
-                                      color: Colors.white,
-                                      fontSize: 12,
-                                    ),
-                                  ),
-                                  Text(
-                                    _formatDuration(_duration),
-                                    style: const TextStyle(
-                                      color: Colors.white,
-                                      fontSize: 12,
-                                    ),
-                                  ),
-                                ],
-                              ),
-                            ),
-                          ],
-                        ),
+                        child: _buildProgressSection(),
                       ),
                     ],
                   ),
@@ -2684,6 +3213,116 @@ class _NativeFullscreenPageState extends State<_NativeFullscreenPage> {
     );
   }
 
+  // Barra de progreso y tiempos. Un tick de posición solo reconstruye y
+  // repinta esta sección, no la página completa.
+  Widget _buildProgressSection() {
+    return RepaintBoundary(
+      child: ListenableBuilder(
+        listenable:
+            Listenable.merge([_positionState, _durationState, _scrubbing]),
+        builder: (context, _) => Column(
+          mainAxisSize: MainAxisSize.min,
+          children: [
+            // Barra de progreso arrastrable
+            _withScrubPreview(SliderTheme(
+              data: SliderThemeData(
+                trackHeight: 4.0,
+                thumbShape:
+                    const RoundSliderThumbShape(enabledThumbRadius: 8.0),
+                overlayShape:
+                    const RoundSliderOverlayShape(overlayRadius: 16.0),
+                activeTrackColor: widget.primaryColor,
+                inactiveTrackColor: Colors.white.withOpacity(0.3),
+                thumbColor: Colors.white,
+                overlayColor: widget.primaryColor.withOpacity(0.3),
+              ),
+              child: Slider(
+                value: _duration > 0
+                    ? (_currentPosition / _duration).clamp(0.0, 1.0)
+                    : 0.0,
+                onChanged: (value) {
+                  _isDragging = true;
+                  _currentPosition = value * _duration;
+                  _updateScrubbing();
+                },
+                onChangeEnd: (value) async {
+                  setState(() {
+                    _isDragging = false;
+                    _isBuffering = true; // Mostrar loading al hacer seek
+                  });
+                  _updateScrubbing();
+                  if (_controller != null) {
+                    await _qoe.timeSeek(_controller!.seek(value * _duration));
+                    // Dar tiempo para que el player actualice su estado
+                    await Future.delayed(const Duration(milliseconds: 300));
+                    // El timer actualizará _isBuffering automáticamente
+                  }
+                  _startHideControlsTimer();
+                },
+              ),
+            )),
+            // Indicadores de tiempo
+            Padding(
+              padding: const EdgeInsets.symmetric(horizontal: 8.0),
+              child: Row(
+                mainAxisAlignment: MainAxisAlignment.spaceBetween,
+                children: [
+                  Text(
+                    _formatDuration(_currentPosition),
+                    style: const TextStyle(
+                      color: Colors.white,
+                      fontSize: 12,
+                    ),
+                  ),
+                  Text(
+                    _formatDuration(_duration),
+                    style: const TextStyle(
+                      color: Colors.white,
+                      fontSize: 12,
+                    ),
+                  ),
+                ],
+              ),
+            ),
+          ],
+        ),
+      ),
+    );
+  }
+
+  // Miniatura sobre la posición del slider mientras se arrastra o se
+  // acumulan saltos de los botones. El slider conserva su posición en el
+  // árbol para no perder el gesto al aparecer la miniatura.
+  Widget _withScrubPreview(Widget slider) {
+    const previewWidth = 160.0;
+    return LayoutBuilder(
+      builder: (context, constraints) {
+        final track = _thumbnailTrack;
+        final width = constraints.maxWidth;
+        final maxLeft = width > previewWidth ? width - previewWidth : 0.0;
+        return Stack(
+          clipBehavior: Clip.none,
+          children: [
+            slider,
+            if (track != null && _scrubbing.value && _duration > 0)
+              Positioned(
+                left: (width * (_currentPosition / _duration).clamp(0.0, 1.0) -
+                        previewWidth / 2)
+                    .clamp(0.0, maxLeft),
+                bottom: 48,
+                child: ScrubPreview(
+                  track: track,
+                  position: Duration(
+                      milliseconds: (_currentPosition * 1000).round()),
+                  width: previewWidth,
+                ),
+              ),
+          ],
+        );
+      },
+    );
+  }
+
   String _formatDuration(double seconds) {
     if (seconds.isNaN || seconds.isInfinite) return '0:00';
     final duration = Duration(seconds: seconds.toInt());
@@ -2694,10 +3333,15 @@ class _NativeFullscreenPageState extends State<_NativeFullscreenPage> {
 
   @override
   void dispose() {
+    _qoe.end(
+        position: Duration(milliseconds: (_currentPosition * 1000).round()));
     _hideControlsTimer?.cancel();
-    _progressTimer?.cancel();
+    _progressTick?.cancel();
     _seekDebounceTimer?.cancel();
     _controller?.dispose();
+    _positionState.dispose();
+    _durationState.dispose();
+    _scrubbing.dispose();
     // Restaurar orientación
     SystemChrome.setEnabledSystemUIMode(SystemUiMode.edgeToEdge);
     SystemChrome.setPreferredOrientations([DeviceOrientation.portraitUp]);
@@ -2710,8 +3354,13 @@ class AdvancedVideoPlayerCast {
   static const _channel = MethodChannel('advanced_video_player');
 
   /// Inicializa el contexto de Cast
-  static Future<void> initializeCast() async =>
-      _channel.invokeMethod('initializeCast');
+  ///
+  /// Con [playerId] el contexto queda asociado a ese reproductor y se libera
+  /// cuando el último reproductor que lo usa se destruye.
+  static Future<void> initializeCast({int? playerId}) async =>
+      _channel.invokeMethod('initializeCast', {
+        if (playerId != null) ScreenSharingService.playerIdKey: playerId,
+      });
 
   /// Envía el video al dispositivo Cast conectado
   static Future<void> castVideo(String url) async =>
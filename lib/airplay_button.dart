@@ -1,7 +1,7 @@
-import 'dart:async';
-import 'dart:io';
 import 'package:flutter/material.dart';
 import 'package:flutter/services.dart';
+import 'player_tick_scheduler.dart';
+import 'src/platform.dart';
 
 /// Widget que muestra el botón nativo de AirPlay en iOS
 class AirPlayButton extends StatelessWidget {
@@ -24,7 +24,7 @@ class AirPlayButton extends StatelessWidget {
   @override
   Widget build(BuildContext context) {
     // Solo mostrar en iOS
-    if (!Platform.isIOS) {
+    if (!isIOS) {
       return const SizedBox.shrink();
     }
 
@@ -69,7 +69,7 @@ class AirPlayStatusButton extends StatefulWidget {
 class _AirPlayStatusButtonState extends State<AirPlayStatusButton> {
   static const MethodChannel _channel = MethodChannel('advanced_video_player');
   bool _isAirPlayActive = false;
-  Timer? _statusTimer;
+  PlayerTick? _statusTick;
 
   @override
   void initState() {
@@ -79,15 +79,20 @@ class _AirPlayStatusButtonState extends State<AirPlayStatusButton> {
 
   @override
   void dispose() {
-    _statusTimer?.cancel();
+    _statusTick?.cancel();
     super.dispose();
   }
 
   void _startStatusMonitoring() {
-    // Verificar el estado de AirPlay cada 2 segundos
-    _statusTimer = Timer.periodic(const Duration(seconds: 2), (timer) {
-      _checkAirPlayStatus();
-    });
+    // Fuera de iOS el botón no se muestra: no hay nada que consultar
+    if (!isIOS) return;
+
+    // Verificar el estado de AirPlay cada 2 segundos (en primer plano)
+    _statusTick = PlayerTickScheduler.instance.register(
+      'airplay.status',
+      interval: const Duration(seconds: 2),
+      onTick: (_) => _checkAirPlayStatus(),
+    );
 
     // Verificación inicial
     _checkAirPlayStatus();
@@ -112,7 +117,7 @@ class _AirPlayStatusButtonState extends State<AirPlayStatusButton> {
   @override
   Widget build(BuildContext context) {
     // Solo mostrar en iOS
-    if (!Platform.isIOS) {
+    if (!isIOS) {
       return const SizedBox.shrink();
     }
 
@@ -0,0 +1,83 @@
+import 'dart:async';
+import 'dart:developer' as developer;
+import 'package:flutter/services.dart';
+
+/// [MethodChannel] que traza cada llamada y la correlaciona con el lado nativo
+///
+/// Cada llamada recibe un `traceId` que se envía en los argumentos y se usa en
+/// un [developer.TimelineTask] llamado `AVP:<scope>.<método> #<traceId>`. En
+/// Android el plugin abre secciones de `android.os.Trace` con el mismo nombre
+/// e id (por ejemplo `AVP:channel.shareVideo #12` y `AVP:cast.load #12`), de
+/// modo que una sola traza de Perfetto muestra el desglose completo de una
+/// operación, desde Dart hasta la respuesta del receptor Cast.
+///
+/// El id se añade a los argumentos de tipo mapa (o se envía `{'traceId': id}`
+/// si no hay argumentos); el plugin nativo ignora las claves que no conoce.
+/// Otros tipos de argumento se envían sin cambios.
+class TracedMethodChannel extends MethodChannel {
+  /// Clave con la que viaja el id de traza en los argumentos del canal
+  static const String traceIdKey = 'traceId';
+
+  // Los ids generados en nativo empiezan en 2^30, los de Dart quedan por debajo
+  static const int _maxDartId = (1 << 30) - 1;
+  static int _lastId = 0;
+
+  /// Prefijo de las secciones; debe coincidir con el que usa el plugin nativo
+  /// para este canal (`channel` en los canales principales, `pip` en PiP)
+  final String scope;
+
+  const TracedMethodChannel(super.name, {this.scope = 'channel'});
+
+  /// Genera un nuevo id de traza
+  static int nextTraceId() {
+    _lastId = _lastId >= _maxDartId ? 1 : _lastId + 1;
+    return _lastId;
+  }
+
+  @override
+  Future<T?> invokeMethod<T>(String method, [dynamic arguments]) async {
+    final traceId = nextTraceId();
+    final task = developer.TimelineTask(filterKey: 'AVP');
+    task.start('AVP:$scope.$method #$traceId', arguments: {
+      traceIdKey: traceId,
+      'channel': name,
+    });
+    try {
+      final tracedArguments = arguments == null || arguments is Map
+          ? {if (arguments is Map) ...arguments, traceIdKey: traceId}
+          : arguments;
+      return await super.invokeMethod<T>(method, tracedArguments);
+    } finally {
+      task.finish();
+    }
+  }
+
+  // MethodChannel implementa estas dos sin pasar por invokeMethod: se
+  // redirigen para que también queden trazadas
+  @override
+  Future<List<T>?> invokeListMethod<T>(String method,
+      [dynamic arguments]) async {
+    final result = await invokeMethod<List<dynamic>>(method, arguments);
+    return result?.cast<T>();
+  }
+
+  @override
+  Future<Map<K, V>?> invokeMapMethod<K, V>(String method,
+      [dynamic arguments]) async {
+    final result =
+        await invokeMethod<Map<dynamic, dynamic>>(method, arguments);
+    return result?.cast<K, V>();
+  }
+
+  /// Ejecuta [action] como evento síncrono de Timeline para una llamada que
+  /// llega desde nativo con su propio `traceId`
+  static R timeIncoming<R>(
+      String name, dynamic arguments, R Function() action) {
+    final traceId = arguments is Map ? arguments[traceIdKey] : null;
+    return developer.Timeline.timeSync(
+      traceId != null ? 'AVP:$name #$traceId' : 'AVP:$name',
+      action,
+      arguments: {if (traceId != null) traceIdKey: traceId},
+    );
+  }
+}
@@ -1,11 +1,17 @@
 import 'dart:async';
-import 'dart:io';
 import 'package:advanced_video_player/airplay_button.dart';
 import 'package:flutter/material.dart';
 import 'package:flutter/services.dart';
 import 'package:video_player/video_player.dart';
 import 'picture_in_picture_service.dart';
+import 'playback_listenables.dart';
+import 'playback_qoe.dart';
+import 'player_tick_scheduler.dart';
+import 'poster_cache.dart';
 import 'screen_sharing_service.dart';
+import 'scrub_thumbnails.dart';
+import 'subtitles.dart';
+import 'src/platform.dart';
 
 class FullscreenVideoPage extends StatefulWidget {
   final VideoPlayerController controller;
@@ -14,9 +20,24 @@ class FullscreenVideoPage extends StatefulWidget {
   final int skipDuration;
   final bool enablePictureInPicture;
   final bool enableScreenSharing;
+
+  /// Servicio del reproductor que abre la página; si es null la página crea
+  /// (y libera) su propio handle
+  final ScreenSharingService? screenSharingService;
   final bool enableAirPlay;
   final String? videoTitle;
   final String? videoDescription;
+
+  /// Poster que se muestra mientras el video se inicializa y que se envía
+  /// como miniatura al compartir por Cast
+  final String? previewImageUrl;
+
+  /// Subtítulos del reproductor que abre la página (null = sin subtítulos)
+  final SubtitleController? subtitles;
+
+  /// Pista de miniaturas para la vista previa al arrastrar la barra de
+  /// progreso (null o error de carga = sin vista previa)
+  final Future<ThumbnailTrack?>? thumbnails;
   final VoidCallback? onVideoEnd;
   final VoidCallback? onVideoStart;
   final VoidCallback? onVideoPause;
@@ -30,9 +51,13 @@ class FullscreenVideoPage extends StatefulWidget {
     required this.skipDuration,
     this.enablePictureInPicture = true,
     this.enableScreenSharing = true,
+    this.screenSharingService,
     this.enableAirPlay = true,
     this.videoTitle,
     this.videoDescription,
+    this.previewImageUrl,
+    this.subtitles,
+    this.thumbnails,
     this.onVideoEnd,
     this.onVideoStart,
     this.onVideoPause,
@@ -45,8 +70,10 @@ class FullscreenVideoPage extends StatefulWidget {
 
 class _FullscreenVideoPageState extends State<FullscreenVideoPage>
     with TickerProviderStateMixin {
-  bool _showControls = true;
-  bool _isPlaying = false;
+  // Estado que cambia en cada tick: se escucha por partes, sin setState
+  final PlaybackListenables _playback = PlaybackListenables();
+  final ValueNotifier<bool> _playingState = ValueNotifier(false);
+  final ValueNotifier<bool> _controlsVisible = ValueNotifier(true);
   bool _isInPictureInPictureMode = false;
   bool _isScreenSharingSupported = false;
   bool _isAirPlaySupported = false;
@@ -58,21 +85,27 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
   int _transmitCountdown = 0;
   late AnimationController _controlsAnimationController;
   late Animation<double> _controlsAnimation;
+  late Listenable _controlsListenable;
   Timer? _hideControlsTimer;
-  Timer? _pipStateTimer;
+  PlayerTick? _pipStateTick;
   Timer? _hideAirPlayTimer;
-  Timer? _transmitDelayTimer;
+  PlayerTick? _transmitDelayTick;
+  // Espera restante antes de permitir transmitir
+  Duration _transmitWait = Duration.zero;
+  ThumbnailTrack? _thumbnailTrack; // Vista previa al arrastrar la barra
   StreamSubscription<dynamic>? _pipModeSubscription;
   StreamSubscription<ScreenSharingState>? _screenSharingStateSubscription;
   StreamSubscription<String>? _screenSharingErrorSubscription;
+  StreamSubscription<Duration>? _remotePlayingSubscription;
   ScreenSharingService? _screenSharingService;
   bool _hasVideoStarted =
       false; // Para controlar si onVideoStart ya fue llamado
   bool _hasVideoEnded = false; // Para controlar si onVideoEnd ya fue llamado
 
-  // Variables para el arrastre de la barra de progreso
-  bool _isDraggingProgressBar = false;
-  double _dragProgress = 0.0;
+  bool get _isPlaying => _playingState.value;
+  set _isPlaying(bool value) => _playingState.value = value;
+  bool get _showControls => _controlsVisible.value;
+  set _showControls(bool value) => _controlsVisible.value = value;
 
   @override
   void initState() {
@@ -88,6 +121,13 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
     _initializeScreenSharing();
     _initializeAirPlay();
     _startAirPlayTimer();
+    widget.thumbnails?.then((track) {
+      if (mounted && track != null) {
+        setState(() {
+          _thumbnailTrack = track;
+        });
+      }
+    });
   }
 
   void _setupPictureInPictureListener() {
@@ -119,9 +159,11 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
     _checkPictureInPictureState();
 
     // Configurar timer para verificar el estado periódicamente
-    _pipStateTimer = Timer.periodic(const Duration(seconds: 2), (timer) {
-      _checkPictureInPictureState();
-    });
+    _pipStateTick = PlayerTickScheduler.instance.register(
+      'pip.state',
+      interval: const Duration(seconds: 2),
+      onTick: (_) => _checkPictureInPictureState(),
+    );
 
     // La navegación automática ahora se maneja desde iOS nativo
   }
@@ -129,7 +171,8 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
   void _checkPictureInPictureState() async {
     try {
       final isInPip = await PictureInPictureService.isInPictureInPictureMode();
-      if (mounted) {
+      // El sondeo corre cada 2 s: solo se reconstruye si cambió el modo
+      if (mounted && isInPip != _isInPictureInPictureMode) {
         setState(() {
           _isInPictureInPictureMode = isInPip;
         });
@@ -146,7 +189,12 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
     }
 
     try {
-      _screenSharingService = ScreenSharingService();
+      _screenSharingService =
+          widget.screenSharingService ?? await ScreenSharingService.create();
+      if (!mounted) {
+        _disposeOwnScreenSharingService();
+        return;
+      }
 
       final supported = await ScreenSharingService.isScreenSharingSupported();
 
@@ -166,9 +214,16 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
     }
   }
 
+  /// Libera el servicio solo si lo creó esta página
+  void _disposeOwnScreenSharingService() {
+    if (widget.screenSharingService == null) {
+      _screenSharingService?.dispose();
+    }
+  }
+
   void _initializeAirPlay() async {
     if (!widget.enableAirPlay) return;
-    if (!Platform.isIOS) return;
+    if (!isIOS) return;
 
     try {
       const channel = MethodChannel('advanced_video_player');
@@ -206,7 +261,7 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
           _isVideoSharingActive = false;
           _canTransmit = false;
           _transmitCountdown = 0;
-          _transmitDelayTimer?.cancel();
+          _transmitDelayTick?.cancel();
         }
       });
     });
@@ -221,6 +276,13 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
         ),
       );
     });
+
+    // El video local sigue hasta que el receptor reproduce, sin hueco
+    _remotePlayingSubscription =
+        _screenSharingService!.remotePlayingStream.listen((_) {
+      if (!mounted || !widget.controller.value.isPlaying) return;
+      widget.controller.pause();
+    });
   }
 
   void _setupFullscreen() async {
@@ -242,12 +304,23 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
       parent: _controlsAnimationController,
       curve: Curves.easeInOut,
     );
+    _controlsListenable =
+        Listenable.merge([_controlsAnimation, _controlsVisible]);
     _controlsAnimationController.forward();
   }
 
   void _setupVideoListener() {
     _isPlaying = widget.controller.value.isPlaying;
     widget.controller.addListener(_videoListener);
+    _playback.attach(widget.controller);
+    if (widget.subtitles != null) {
+      _playback.position.addListener(_syncSubtitles);
+      _syncSubtitles();
+    }
+  }
+
+  void _syncSubtitles() {
+    widget.subtitles?.updatePosition(_playback.position.value);
   }
 
   void _videoListener() {
@@ -260,10 +333,8 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
         (position.inMilliseconds >= duration.inMilliseconds - 500);
 
     if (isNearEnd && _isPlaying && !_hasVideoEnded) {
-      setState(() {
-        _isPlaying = false;
-        _hasVideoEnded = true;
-      });
+      _isPlaying = false;
+      _hasVideoEnded = true;
       debugPrint(
           '[FullscreenVideoPage] 🏁 Video ended - Position: ${position.inSeconds}s, Duration: ${duration.inSeconds}s');
       widget.onVideoEnd?.call();
@@ -281,9 +352,8 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
     }
 
     if (_isPlaying != newPlayingState) {
-      setState(() {
-        _isPlaying = newPlayingState;
-      });
+      // Solo cambia el botón de reproducción: no hace falta reconstruir todo
+      _isPlaying = newPlayingState;
       _updatePipPlaybackState(newPlayingState);
 
       // Callbacks basados en el cambio de estado
@@ -338,23 +408,23 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
         final currentPosition = widget.controller.value.position;
         final newPosition =
             currentPosition - Duration(seconds: widget.skipDuration);
-        widget.controller
-            .seekTo(newPosition < Duration.zero ? Duration.zero : newPosition);
+        PlaybackQoeRecorder.seekTo(widget.controller,
+            newPosition < Duration.zero ? Duration.zero : newPosition);
         break;
       case 'forward10':
         final currentPosition = widget.controller.value.position;
         final duration = widget.controller.value.duration;
         final newPosition =
             currentPosition + Duration(seconds: widget.skipDuration);
-        widget.controller
-            .seekTo(newPosition > duration ? duration : newPosition);
+        PlaybackQoeRecorder.seekTo(
+            widget.controller, newPosition > duration ? duration : newPosition);
         break;
     }
   }
 
   void _updatePipPlaybackState(bool isPlaying) {
     // Solo actualizar en Android cuando está en modo PiP
-    if (Platform.isAndroid && _isInPictureInPictureMode) {
+    if (isAndroid && _isInPictureInPictureMode) {
       PictureInPictureService.updatePlaybackState(isPlaying: isPlaying);
     }
   }
@@ -377,8 +447,8 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
   void _skipBackward() {
     final newPosition = widget.controller.value.position -
         Duration(seconds: widget.skipDuration);
-    widget.controller
-        .seekTo(newPosition < Duration.zero ? Duration.zero : newPosition);
+    PlaybackQoeRecorder.seekTo(widget.controller,
+        newPosition < Duration.zero ? Duration.zero : newPosition);
     _showControlsTemporarily();
   }
 
@@ -386,8 +456,8 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
     final newPosition = widget.controller.value.position +
         Duration(seconds: widget.skipDuration);
     final maxPosition = widget.controller.value.duration;
-    widget.controller
-        .seekTo(newPosition > maxPosition ? maxPosition : newPosition);
+    PlaybackQoeRecorder.seekTo(widget.controller,
+        newPosition > maxPosition ? maxPosition : newPosition);
     _showControlsTemporarily();
   }
 
@@ -460,17 +530,13 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
       return;
     }
 
-    setState(() {
-      _showControls = true;
-    });
+    _showControls = true;
     _controlsAnimationController.forward();
 
     _hideControlsTimer?.cancel();
     _hideControlsTimer = Timer(const Duration(seconds: 2), () {
       if (mounted) {
-        setState(() {
-          _showControls = false;
-        });
+        _showControls = false;
         _controlsAnimationController.reverse();
       }
     });
@@ -480,9 +546,7 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
     _checkPictureInPictureState();
 
     if (_showControls) {
-      setState(() {
-        _showControls = false;
-      });
+      _showControls = false;
       _controlsAnimationController.reverse();
     } else {
       _showControlsTemporarily();
@@ -515,394 +579,428 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
 
             // Indicador de carga cuando el video está inicializando o buffering
             // En Android, no mostrar vista negra durante PiP
-            if ((!widget.controller.value.isInitialized ||
-                    widget.controller.value.isBuffering) &&
-                !(Platform.isAndroid && _isInPictureInPictureMode))
-              Container(
-                color: Colors.black.withOpacity(0.6),
-                child: Center(
-                  child: Column(
-                    mainAxisAlignment: MainAxisAlignment.center,
-                    children: [
-                      const CircularProgressIndicator(
-                        valueColor: AlwaysStoppedAnimation<Color>(Colors.white),
-                        strokeWidth: 3,
+            if (!(isAndroid && _isInPictureInPictureMode))
+              ListenableBuilder(
+                listenable: Listenable.merge(
+                    [_playback.isInitialized, _playback.isBuffering]),
+                builder: (context, _) {
+                  final isBuffering = _playback.isBuffering.value;
+                  if (_playback.isInitialized.value && !isBuffering) {
+                    return const SizedBox.shrink();
+                  }
+                  final overlay = Container(
+                    color: Colors.black.withOpacity(0.6),
+                    child: Center(
+                      child: Column(
+                        mainAxisAlignment: MainAxisAlignment.center,
+                        children: [
+                          const CircularProgressIndicator(
+                            valueColor:
+                                AlwaysStoppedAnimation<Color>(Colors.white),
+                            strokeWidth: 3,
+                          ),
+                          const SizedBox(height: 16),
+                          Text(
+                            isBuffering ? 'Cargando...' : 'Cargando video...',
+                            style: const TextStyle(
+                              color: Colors.white,
+                              fontSize: 16,
+                              fontWeight: FontWeight.w500,
+                            ),
+                          ),
+                        ],
                       ),
-                      const SizedBox(height: 16),
-                      Text(
-                        widget.controller.value.isBuffering
-                            ? 'Cargando...'
-                            : 'Cargando video...',
-                        style: const TextStyle(
-                          color: Colors.white,
-                          fontSize: 16,
-                          fontWeight: FontWeight.w500,
-                        ),
+                    ),
+                  );
+                  final poster = widget.previewImageUrl;
+                  if (_playback.isInitialized.value ||
+                      poster == null ||
+                      poster.isEmpty) {
+                    return overlay;
+                  }
+                  // Mientras inicializa, el poster de la caché compartida
+                  return Stack(
+                    fit: StackFit.expand,
+                    children: [
+                      PosterView(
+                        url: poster,
+                        placeholder: const SizedBox.shrink(),
                       ),
+                      overlay,
                     ],
-                  ),
-                ),
+                  );
+                },
+              ),
+
+            // Subtítulos, por encima de la barra de progreso
+            if (widget.subtitles != null)
+              SubtitleOverlay(
+                controller: widget.subtitles!,
+                bottomPadding: _isInPictureInPictureMode ? 8 : 72,
               ),
 
             // Controles overlay
             // No mostrar controles en modo PiP para evitar overflow
             if (!_isInPictureInPictureMode)
               AnimatedBuilder(
-                animation: _controlsAnimation,
+                animation: _controlsListenable,
                 builder: (context, child) {
                   return Opacity(
                     opacity: _showControls ? 1.0 : 0.0,
-                    child: Container(
-                      decoration: BoxDecoration(
-                        gradient: LinearGradient(
-                          begin: Alignment.topCenter,
-                          end: Alignment.bottomCenter,
-                          colors: [
-                            Colors.black.withOpacity(0.3),
-                            Colors.transparent,
-                            Colors.transparent,
-                            Colors.black.withOpacity(0.5),
-                          ],
-                          stops: const [0.0, 0.3, 0.7, 1.0],
-                        ),
-                      ),
-                      child: SafeArea(
-                        child: Column(
-                          children: [
-                            Container(
-                              padding: const EdgeInsets.all(16),
-                              child: Row(
-                                mainAxisAlignment:
-                                    MainAxisAlignment.spaceBetween,
-                                children: [
-                                  // Botón de regresar en la izquierda (solo Android)
-                                  if (Platform.isAndroid)
-                                    _buildControlButton(
-                                      icon: Icons.arrow_back,
-                                      onPressed: _exitFullscreen,
-                                      tooltip: 'Regresar',
-                                      size: 40,
-                                    ),
-                                  // Controles de la derecha
-                                  Row(
-                                    children: [
-                                      if (Platform.isIOS)
-                                        AirPlayStatusButton(
-                                          width: 40,
-                                          height: 40,
-                                          onAirPlayStateChanged: (isActive) {
-                                            if (mounted) {
-                                              setState(() {
-                                                _isAirPlayActive = isActive;
-                                              });
-                                            }
-                                          },
-                                        ),
-                                      if (Platform.isAndroid &&
-                                          widget.enableAirPlay &&
-                                          _isAirPlaySupported)
-                                        const SizedBox(width: 8),
-
-                                      // Botón de Cast
-                                      if (Platform.isAndroid &&
-                                          widget.enableScreenSharing &&
-                                          _isScreenSharingSupported &&
-                                          !_isVideoSharingActive)
-                                        _screenSharingState ==
-                                                ScreenSharingState.connected
-                                            ? _buildTransmitButton()
-                                            : _buildControlButton(
-                                                icon: Icons.cast,
-                                                onPressed:
-                                                    _showScreenSharingDialog,
-                                                tooltip: 'Conectar a TV',
-                                                size: 40,
-                                              ),
-                                      if (Platform.isAndroid &&
-                                          widget.enableScreenSharing &&
-                                          _isScreenSharingSupported &&
-                                          !_isVideoSharingActive)
-                                        const SizedBox(width: 8),
-
-                                      // Botón para detener compartición cuando el video se esté compartiendo activamente
-                                      if (_isVideoSharingActive)
-                                        _buildStopSharingButton(),
-                                      if (_isVideoSharingActive)
-                                        const SizedBox(width: 8),
-                                      if (widget.enablePictureInPicture)
-                                        _buildControlButton(
-                                          icon: Icons.picture_in_picture_alt,
-                                          onPressed: _enterPictureInPicture,
-                                          tooltip: 'Picture-in-Picture',
-                                          size: 40,
-                                        ),
-                                      if (widget.enablePictureInPicture)
-                                        const SizedBox(width: 8),
-                                      _buildControlButton(
-                                        icon: Icons.fullscreen_exit,
-                                        onPressed: _exitFullscreen,
-                                        tooltip: 'Salir de pantalla completa',
-                                        size: 40,
-                                      ),
-                                    ],
-                                  ),
-                                ],
-                              ),
-                            ),
-                            const Spacer(),
-                            // Controles centrales
-                            Row(
-                              mainAxisAlignment: MainAxisAlignment.spaceEvenly,
-                              children: [
-                                _buildControlButton(
-                                  icon: Icons.replay_10,
-                                  onPressed: _skipBackward,
-                                  tooltip: 'Retroceder ${widget.skipDuration}s',
-                                  size: 45,
-                                  iconSize: 40,
-                                ),
-                                _buildControlButton(
-                                  icon: _isPlaying
-                                      ? Icons.pause_circle_filled
-                                      : Icons.play_circle_filled,
-                                  onPressed: _togglePlayPause,
-                                  tooltip: _isPlaying ? 'Pausar' : 'Reproducir',
-                                  size: 65,
-                                  iconSize: 60,
-                                ),
+                    child: child,
+                  );
+                },
+                child: Container(
+                  decoration: BoxDecoration(
+                    gradient: LinearGradient(
+                      begin: Alignment.topCenter,
+                      end: Alignment.bottomCenter,
+                      colors: [
+                        Colors.black.withOpacity(0.3),
+                        Colors.transparent,
+                        Colors.transparent,
+                        Colors.black.withOpacity(0.5),
+                      ],
+                      stops: const [0.0, 0.3, 0.7, 1.0],
+                    ),
+                  ),
+                  child: SafeArea(
+                    child: Column(
+                      children: [
+                        Container(
+                          padding: const EdgeInsets.all(16),
+                          child: Row(
+                            mainAxisAlignment:
+                                MainAxisAlignment.spaceBetween,
+                            children: [
+                              // Botón de regresar en la izquierda (solo Android)
+                              if (isAndroid)
                                 _buildControlButton(
-                                  icon: Icons.forward_10,
-                                  onPressed: _skipForward,
-                                  tooltip: 'Avanzar ${widget.skipDuration}s',
-                                  size: 45,
-                                  iconSize: 40,
+                                  icon: Icons.arrow_back,
+                                  onPressed: _exitFullscreen,
+                                  tooltip: 'Regresar',
+                                  size: 40,
                                 ),
-                              ],
-                            ),
-                            const Spacer(),
-                            // Barra inferior
-                            Container(
-                              padding: const EdgeInsets.all(16),
-                              child: Column(
+                              // Controles de la derecha
+                              Row(
                                 children: [
-                                  LayoutBuilder(
-                                    builder: (layoutContext, constraints) {
-                                      final width = constraints.maxWidth;
-
-                                      return GestureDetector(
-                                        behavior: HitTestBehavior.translucent,
-                                        onHorizontalDragStart: (details) {
-                                          setState(() {
-                                            _isDraggingProgressBar = true;
-                                            final localDx = details
-                                                .localPosition.dx
-                                                .clamp(0.0, width);
-                                            _dragProgress = (localDx / width)
-                                                .clamp(0.0, 1.0);
-                                          });
-                                          // Cancelar el timer de ocultar controles mientras se arrastra
-                                          _hideControlsTimer?.cancel();
-                                        },
-                                        onHorizontalDragUpdate: (details) {
+                                  if (isIOS)
+                                    AirPlayStatusButton(
+                                      width: 40,
+                                      height: 40,
+                                      onAirPlayStateChanged: (isActive) {
+                                        if (mounted) {
                                           setState(() {
-                                            final localDx = details
-                                                .localPosition.dx
-                                                .clamp(0.0, width);
-                                            _dragProgress = (localDx / width)
-                                                .clamp(0.0, 1.0);
+                                            _isAirPlayActive = isActive;
                                           });
-                                        },
-                                        onHorizontalDragEnd: (details) {
-                                          final duration =
-                                              widget.controller.value.duration;
-                                          if (duration.inMilliseconds > 0) {
-                                            widget.controller.seekTo(
-                                                duration * _dragProgress);
-                                          }
-                                          setState(() {
-                                            _isDraggingProgressBar = false;
-                                          });
-                                          // Reiniciar el timer para ocultar controles
-                                          _showControlsTemporarily();
-                                        },
-                                        onTapDown: (details) {
-                                          final localDx = details
-                                              .localPosition.dx
-                                              .clamp(0.0, width);
-                                          final relative =
-                                              (localDx / width).clamp(0.0, 1.0);
-                                          final duration =
-                                              widget.controller.value.duration;
-                                          if (duration.inMilliseconds > 0) {
-                                            widget.controller
-                                                .seekTo(duration * relative);
-                                          }
-                                        },
-                                        child: ValueListenableBuilder<
-                                            VideoPlayerValue>(
-                                          valueListenable: widget.controller,
-                                          builder: (context, value, _) {
-                                            final position = value.position;
-                                            final duration = value.duration;
-                                            final videoProgress =
-                                                duration.inMilliseconds > 0
-                                                    ? (position.inMilliseconds /
-                                                            duration
-                                                                .inMilliseconds)
-                                                        .clamp(0.0, 1.0)
-                                                    : 0.0;
-
-                                            // Usar el progreso del arrastre si está arrastrando,
-                                            // de lo contrario usar el progreso del video
-                                            final displayProgress =
-                                                _isDraggingProgressBar
-                                                    ? _dragProgress
-                                                    : videoProgress;
-
-                                            return Container(
-                                              height: 28,
-                                              alignment: Alignment.bottomCenter,
-                                              padding:
-                                                  const EdgeInsets.symmetric(
-                                                      horizontal: 0,
-                                                      vertical: 8),
-                                              child: Stack(
-                                                alignment: Alignment.centerLeft,
-                                                children: [
-                                                  // Fondo gris translúcido
-                                                  Container(
-                                                    height: 3,
-                                                    width: width,
-                                                    decoration: BoxDecoration(
-                                                      borderRadius:
-                                                          BorderRadius.circular(
-                                                              2),
-                                                      color: Colors.white
-                                                          .withOpacity(0.25),
-                                                    ),
-                                                  ),
-                                                  // Progreso naranja (YouTube-style)
-                                                  FractionallySizedBox(
-                                                    alignment:
-                                                        Alignment.centerLeft,
-                                                    widthFactor:
-                                                        displayProgress,
-                                                    child: Container(
-                                                      height: 3,
-                                                      decoration: BoxDecoration(
-                                                        borderRadius:
-                                                            BorderRadius
-                                                                .circular(2),
-                                                        gradient:
-                                                            LinearGradient(
-                                                          colors: [
-                                                            widget.primaryColor,
-                                                            widget
-                                                                .secondaryColor
-                                                          ],
-                                                        ),
-                                                      ),
-                                                    ),
-                                                  ),
-                                                  // Thumb circular - más grande cuando se arrastra
-                                                  Positioned(
-                                                    left: (width *
-                                                            displayProgress) -
-                                                        (_isDraggingProgressBar
-                                                            ? 8
-                                                            : 6),
-                                                    bottom:
-                                                        _isDraggingProgressBar
-                                                            ? -6
-                                                            : -4,
-                                                    child: AnimatedContainer(
-                                                      duration: const Duration(
-                                                          milliseconds: 100),
-                                                      width:
-                                                          _isDraggingProgressBar
-                                                              ? 16
-                                                              : 12,
-                                                      height:
-                                                          _isDraggingProgressBar
-                                                              ? 16
-                                                              : 12,
-                                                      decoration: BoxDecoration(
-                                                        color: Colors.white,
-                                                        shape: BoxShape.circle,
-                                                        boxShadow: [
-                                                          BoxShadow(
-                                                            color: Colors.black
-                                                                .withOpacity(
-                                                                    0.3),
-                                                            blurRadius: 3,
-                                                            offset:
-                                                                const Offset(
-                                                                    0, 1),
-                                                          ),
-                                                        ],
-                                                      ),
-                                                    ),
-                                                  ),
-                                                ],
-                                              ),
-                                            );
-                                          },
-                                        ),
-                                      );
-                                    },
-                                  ),
-
-                                  const SizedBox(height: 12),
-                                  // Tiempo y duración
-                                  ValueListenableBuilder<VideoPlayerValue>(
-                                    valueListenable: widget.controller,
-                                    builder: (context, value, _) {
-                                      final currentPosition =
-                                          _isDraggingProgressBar
-                                              ? value.duration * _dragProgress
-                                              : value.position;
-
-                                      return Row(
-                                        mainAxisAlignment:
-                                            MainAxisAlignment.spaceBetween,
-                                        children: [
-                                          Text(
-                                            _formatDuration(currentPosition),
-                                            style: TextStyle(
-                                              color: _isDraggingProgressBar
-                                                  ? widget.primaryColor
-                                                  : Colors.white,
-                                              fontSize: 14,
-                                              fontWeight: FontWeight.w500,
-                                            ),
-                                          ),
-                                          Text(
-                                            _formatDuration(value.duration),
-                                            style: const TextStyle(
-                                              color: Colors.white70,
-                                              fontSize: 14,
-                                            ),
+                                        }
+                                      },
+                                    ),
+                                  if (isAndroid &&
+                                      widget.enableAirPlay &&
+                                      _isAirPlaySupported)
+                                    const SizedBox(width: 8),
+
+                                  // Botón de subtítulos
+                                  if (widget.subtitles != null &&
+                                      widget.subtitles!.tracks.isNotEmpty) ...[
+                                    _buildSubtitlesButton(widget.subtitles!),
+                                    const SizedBox(width: 8),
+                                  ],
+
+                                  // Botón de Cast
+                                  if (isAndroid &&
+                                      widget.enableScreenSharing &&
+                                      _isScreenSharingSupported &&
+                                      !_isVideoSharingActive)
+                                    _screenSharingState ==
+                                            ScreenSharingState.connected
+                                        ? _buildTransmitButton()
+                                        : _buildControlButton(
+                                            icon: Icons.cast,
+                                            onPressed:
+                                                _showScreenSharingDialog,
+                                            tooltip: 'Conectar a TV',
+                                            size: 40,
                                           ),
-                                        ],
-                                      );
-                                    },
+                                  if (isAndroid &&
+                                      widget.enableScreenSharing &&
+                                      _isScreenSharingSupported &&
+                                      !_isVideoSharingActive)
+                                    const SizedBox(width: 8),
+
+                                  // Botón para detener compartición cuando el video se esté compartiendo activamente
+                                  if (_isVideoSharingActive)
+                                    _buildStopSharingButton(),
+                                  if (_isVideoSharingActive)
+                                    const SizedBox(width: 8),
+                                  if (widget.enablePictureInPicture)
+                                    _buildControlButton(
+                                      icon: Icons.picture_in_picture_alt,
+                                      onPressed: _enterPictureInPicture,
+                                      tooltip: 'Picture-in-Picture',
+                                      size: 40,
+                                    ),
+                                  if (widget.enablePictureInPicture)
+                                    const SizedBox(width: 8),
+                                  _buildControlButton(
+                                    icon: Icons.fullscreen_exit,
+                                    onPressed: _exitFullscreen,
+                                    tooltip: 'Salir de pantalla completa',
+                                    size: 40,
                                   ),
                                 ],
                               ),
+                            ],
+                          ),
+                        ),
+                        const Spacer(),
+                        // Controles centrales
+                        Row(
+                          mainAxisAlignment: MainAxisAlignment.spaceEvenly,
+                          children: [
+                            _buildControlButton(
+                              icon: Icons.replay_10,
+                              onPressed: _skipBackward,
+                              tooltip: 'Retroceder ${widget.skipDuration}s',
+                              size: 45,
+                              iconSize: 40,
+                            ),
+                            ValueListenableBuilder<bool>(
+                              valueListenable: _playingState,
+                              builder: (context, isPlaying, _) =>
+                                  _buildControlButton(
+                                icon: isPlaying
+                                    ? Icons.pause_circle_filled
+                                    : Icons.play_circle_filled,
+                                onPressed: _togglePlayPause,
+                                tooltip:
+                                    isPlaying ? 'Pausar' : 'Reproducir',
+                                size: 65,
+                                iconSize: 60,
+                              ),
+                            ),
+                            _buildControlButton(
+                              icon: Icons.forward_10,
+                              onPressed: _skipForward,
+                              tooltip: 'Avanzar ${widget.skipDuration}s',
+                              size: 45,
+                              iconSize: 40,
                             ),
                           ],
                         ),
+                        const Spacer(),
+                        // Barra inferior
+                        _buildBottomBar(),
+                      ],
+                    ),
+                  ),
+                ),
+              ),
+          ],
+        ),
+      ),
+    );
+  }
+
+  // Barra de progreso y tiempos. Un tick de posición o el arrastre solo
+  // reconstruyen y repintan esta barra, no la página completa.
+  Widget _buildBottomBar() {
+    return Container(
+      padding: const EdgeInsets.all(16),
+      child: RepaintBoundary(
+        child: ListenableBuilder(
+          listenable: _playback.progress,
+          builder: (context, _) {
+            final isDragging = _playback.dragProgress.value != null;
+            final displayProgress = _playback.displayProgress;
+            final duration = _playback.duration.value;
+            final currentPosition = isDragging
+                ? duration * displayProgress
+                : _playback.position.value;
+
+            return Column(
+              children: [
+                _buildProgressBar(displayProgress, isDragging),
+                const SizedBox(height: 12),
+                // Tiempo y duración
+                Row(
+                  mainAxisAlignment: MainAxisAlignment.spaceBetween,
+                  children: [
+                    Text(
+                      _formatDuration(currentPosition),
+                      style: TextStyle(
+                        color: isDragging ? widget.primaryColor : Colors.white,
+                        fontSize: 14,
+                        fontWeight: FontWeight.w500,
                       ),
                     ),
-                  );
-                },
+                    Text(
+                      _formatDuration(duration),
+                      style: const TextStyle(
+                        color: Colors.white70,
+                        fontSize: 14,
+                      ),
+                    ),
+                  ],
+                ),
+              ],
+            );
+          },
+        ),
+      ),
+    );
+  }
+
+  Widget _buildProgressBar(double displayProgress, bool isDragging) {
+    return LayoutBuilder(
+      builder: (layoutContext, constraints) {
+        final width = constraints.maxWidth;
+        double relativeOf(Offset localPosition) =>
+            (localPosition.dx.clamp(0.0, width) / width).clamp(0.0, 1.0);
+
+        return Stack(
+          clipBehavior: Clip.none,
+          children: [
+            _buildProgressTrack(displayProgress, isDragging, width, relativeOf),
+            // Miniatura sobre el punto de arrastre
+            if (isDragging && _thumbnailTrack != null)
+              _buildScrubPreview(_thumbnailTrack!, displayProgress, width),
+          ],
+        );
+      },
+    );
+  }
+
+  Widget _buildScrubPreview(
+      ThumbnailTrack track, double progress, double width) {
+    const previewWidth = 160.0;
+    final maxLeft = width > previewWidth ? width - previewWidth : 0.0;
+    return Positioned(
+      left: (width * progress - previewWidth / 2).clamp(0.0, maxLeft),
+      bottom: 40,
+      child: ScrubPreview(
+        track: track,
+        position: _playback.duration.value * progress,
+        width: previewWidth,
+      ),
+    );
+  }
+
+  Widget _buildProgressTrack(double displayProgress, bool isDragging,
+      double width, double Function(Offset) relativeOf) {
+    return GestureDetector(
+      behavior: HitTestBehavior.translucent,
+      onHorizontalDragStart: (details) {
+        _playback.dragProgress.value = relativeOf(details.localPosition);
+        // Cancelar el timer de ocultar controles mientras se arrastra
+        _hideControlsTimer?.cancel();
+      },
+      onHorizontalDragUpdate: (details) {
+        _playback.dragProgress.value = relativeOf(details.localPosition);
+      },
+      onHorizontalDragEnd: (details) {
+        final duration = widget.controller.value.duration;
+        final dragProgress = _playback.dragProgress.value;
+        if (duration.inMilliseconds > 0 && dragProgress != null) {
+          PlaybackQoeRecorder.seekTo(
+              widget.controller, duration * dragProgress);
+        }
+        _playback.dragProgress.value = null;
+        // Reiniciar el timer para ocultar controles
+        _showControlsTemporarily();
+      },
+      onTapDown: (details) {
+        final relative = relativeOf(details.localPosition);
+        final duration = widget.controller.value.duration;
+        if (duration.inMilliseconds > 0) {
+          PlaybackQoeRecorder.seekTo(
+              widget.controller, duration * relative);
+        }
+      },
+      child: Container(
+        height: 28,
+        alignment: Alignment.bottomCenter,
+        padding: const EdgeInsets.symmetric(horizontal: 0, vertical: 8),
+        child: Stack(
+          alignment: Alignment.centerLeft,
+          children: [
+            // Fondo gris translúcido
+            Container(
+              height: 3,
+              width: width,
+              decoration: BoxDecoration(
+                borderRadius: BorderRadius.circular(2),
+                color: Colors.white.withOpacity(0.25),
+              ),
+            ),
+            // Parte ya descargada
+            FractionallySizedBox(
+              alignment: Alignment.centerLeft,
+              widthFactor: _playback.bufferedProgress,
+              child: Container(
+                height: 3,
+                decoration: BoxDecoration(
+                  borderRadius: BorderRadius.circular(2),
+                  color: Colors.white.withOpacity(0.25),
+                ),
+              ),
+            ),
+            // Progreso naranja (YouTube-style)
+            FractionallySizedBox(
+              alignment: Alignment.centerLeft,
+              widthFactor: displayProgress,
+              child: Container(
+                height: 3,
+                decoration: BoxDecoration(
+                  borderRadius: BorderRadius.circular(2),
+                  gradient: LinearGradient(
+                    colors: [widget.primaryColor, widget.secondaryColor],
+                  ),
+                ),
               ),
+            ),
+            // Thumb circular - más grande cuando se arrastra
+            Positioned(
+              left: (width * displayProgress) - (isDragging ? 8 : 6),
+              bottom: isDragging ? -6 : -4,
+              child: AnimatedContainer(
+                duration: const Duration(milliseconds: 100),
+                width: isDragging ? 16 : 12,
+                height: isDragging ? 16 : 12,
+                decoration: BoxDecoration(
+                  color: Colors.white,
+                  shape: BoxShape.circle,
+                  boxShadow: [
+                    BoxShadow(
+                      color: Colors.black.withOpacity(0.3),
+                      blurRadius: 3,
+                      offset: const Offset(0, 1),
+                    ),
+                  ],
+                ),
+              ),
+            ),
           ],
         ),
       ),
     );
   }
 
+  Widget _buildSubtitlesButton(SubtitleController subtitles) {
+    return ValueListenableBuilder<SubtitleTrack?>(
+      valueListenable: subtitles.selectedTrack,
+      builder: (context, track, _) => _buildControlButton(
+        icon: track != null
+            ? Icons.closed_caption
+            : Icons.closed_caption_disabled,
+        onPressed: subtitles.toggle,
+        tooltip: track != null ? 'Ocultar subtítulos' : 'Mostrar subtítulos',
+        size: 40,
+      ),
+    );
+  }
+
   Widget _buildControlButton({
     required IconData icon,
     required VoidCallback onPressed,
@@ -1317,22 +1415,15 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
           _transmitCountdown = 8;
         });
 
-        _transmitDelayTimer?.cancel();
-        _transmitDelayTimer =
-            Timer.periodic(const Duration(seconds: 1), (timer) {
-          if (!mounted) {
-            timer.cancel();
-            return;
-          }
-
-          setState(() {
-            _transmitCountdown--;
-            if (_transmitCountdown <= 0) {
-              _canTransmit = true;
-              timer.cancel();
-            }
-          });
-        });
+        // La cuenta se descuenta con el tiempo real transcurrido, así sigue
+        // siendo correcta si el reloj se suspende en segundo plano
+        _transmitWait = const Duration(seconds: 8);
+        _transmitDelayTick?.cancel();
+        _transmitDelayTick = PlayerTickScheduler.instance.register(
+          'cast.transmitDelay',
+          interval: const Duration(seconds: 1),
+          onTick: _onTransmitDelayTick,
+        );
 
         ScaffoldMessenger.of(context).showSnackBar(
           SnackBar(
@@ -1369,19 +1460,18 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
     }
 
     try {
-      // Pausar el video en el celular antes de compartir
-      if (widget.controller.value.isPlaying) {
-        await widget.controller.pause();
-        setState(() {
-          _isPlaying = false;
-        });
-      }
-
+      // El celular sigue reproduciendo hasta que el receptor arranca
+      // (remotePlayingStream); el receptor empieza en la misma posición
       final success = await _screenSharingService!.shareVideo(
         videoUrl: widget.controller.dataSource,
         title: widget.videoTitle ?? 'Video Compartido',
         description:
             widget.videoDescription ?? 'Compartido desde Advanced Video Player',
+        thumbnailUrl: widget.previewImageUrl,
+        subtitleTracks: widget.subtitles?.tracks ?? const [],
+        activeSubtitleTrack: widget.subtitles?.selectedTrack.value,
+        startPosition: widget.controller.value.position,
+        playbackRate: widget.controller.value.playbackSpeed,
       );
 
       if (!mounted) return;
@@ -1418,6 +1508,12 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
     if (_screenSharingService == null) return;
 
     try {
+      // Seguir en el celular donde iba el receptor
+      final remote = await _screenSharingService!.remotePosition();
+      if (remote != null && mounted) {
+        await widget.controller.seekTo(remote.position);
+      }
+
       // Detener la reproducción en el dispositivo remoto
       await _screenSharingService!.controlPlayback(
         action: 'stop',
@@ -1433,7 +1529,7 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
         _transmitCountdown = 0;
       });
 
-      _transmitDelayTimer?.cancel();
+      _transmitDelayTick?.cancel();
 
       ScaffoldMessenger.of(context).showSnackBar(
         const SnackBar(
@@ -1453,6 +1549,23 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
     }
   }
 
+  void _onTransmitDelayTick(Duration elapsed) {
+    if (!mounted) {
+      _transmitDelayTick?.cancel();
+      return;
+    }
+
+    _transmitWait -= elapsed;
+    setState(() {
+      _transmitCountdown = (_transmitWait.inMilliseconds / 1000).ceil();
+      if (_transmitCountdown <= 0) {
+        _transmitCountdown = 0;
+        _canTransmit = true;
+        _transmitDelayTick?.cancel();
+      }
+    });
+  }
+
   void _showInfoDialog() {
     showDialog(
       context: context,
@@ -1477,14 +1590,20 @@ class _FullscreenVideoPageState extends State<FullscreenVideoPage>
   @override
   void dispose() {
     _hideControlsTimer?.cancel();
-    _pipStateTimer?.cancel();
+    _pipStateTick?.cancel();
     _hideAirPlayTimer?.cancel();
-    _transmitDelayTimer?.cancel();
+    _transmitDelayTick?.cancel();
     _controlsAnimationController.dispose();
+    widget.controller.removeListener(_videoListener);
+    _playback.position.removeListener(_syncSubtitles);
+    _playback.dispose();
+    _playingState.dispose();
+    _controlsVisible.dispose();
     _pipModeSubscription?.cancel();
     _screenSharingStateSubscription?.cancel();
     _screenSharingErrorSubscription?.cancel();
-    _screenSharingService?.dispose();
+    _remotePlayingSubscription?.cancel();
+    _disposeOwnScreenSharingService();
     super.dispose();
   }
 }
@@ -0,0 +1,216 @@
+import 'dart:async';
+import 'package:flutter/foundation.dart';
+import 'package:flutter/services.dart';
+import 'src/platform.dart';
+
+/// Variante de una playlist maestra HLS
+class HlsVariantInfo {
+  /// Posición en la playlist original
+  final int index;
+
+  /// Pico de bits por segundo (`BANDWIDTH`)
+  final int bandwidth;
+
+  /// Media de bits por segundo (`AVERAGE-BANDWIDTH`), o null
+  final int? averageBandwidth;
+  final int width;
+  final int height;
+  final String? codecs;
+
+  /// URL absoluta de la playlist de la variante
+  final String uri;
+
+  const HlsVariantInfo({
+    required this.index,
+    required this.bandwidth,
+    this.averageBandwidth,
+    this.width = 0,
+    this.height = 0,
+    this.codecs,
+    required this.uri,
+  });
+
+  static HlsVariantInfo? fromMap(Object? arguments) {
+    if (arguments is! Map) return null;
+    final average = (arguments['averageBandwidth'] as num?)?.toInt() ?? -1;
+    return HlsVariantInfo(
+      index: (arguments['index'] as num?)?.toInt() ?? 0,
+      bandwidth: (arguments['bandwidth'] as num?)?.toInt() ?? 0,
+      averageBandwidth: average >= 0 ? average : null,
+      width: (arguments['width'] as num?)?.toInt() ?? 0,
+      height: (arguments['height'] as num?)?.toInt() ?? 0,
+      codecs: arguments['codecs'] as String?,
+      uri: arguments['uri'] as String? ?? '',
+    );
+  }
+
+  @override
+  String toString() => '${height > 0 ? '${width}x$height ' : ''}'
+      '${bandwidth ~/ 1000} kbps';
+}
+
+/// Resultado de [HlsStartup.prepare]
+class HlsStartupSelection {
+  /// URL con la que preparar el reproductor: la local con la variante
+  /// elegida primero si se reescribió, o la original
+  final String url;
+
+  /// Si [url] es la playlist reescrita
+  final bool rewritten;
+
+  /// Variante de arranque, o null si no era una playlist maestra
+  final HlsVariantInfo? variant;
+
+  /// Variantes de la playlist maestra
+  final int variants;
+
+  /// Ancho de banda usado para elegir, en bits por segundo
+  final int estimateBps;
+
+  /// Si [estimateBps] viene de descargas recientes y no del valor por defecto
+  final bool estimated;
+
+  /// Motivo si no se pudo leer la playlist (se usa la URL original)
+  final String? error;
+
+  const HlsStartupSelection({
+    required this.url,
+    this.rewritten = false,
+    this.variant,
+    this.variants = 0,
+    this.estimateBps = 0,
+    this.estimated = false,
+    this.error,
+  });
+
+  static HlsStartupSelection fromMap(String url, Object? arguments) {
+    if (arguments is! Map) return HlsStartupSelection(url: url);
+    final selected = arguments['url'] as String? ?? url;
+    return HlsStartupSelection(
+      url: selected,
+      rewritten: selected != url,
+      variant: HlsVariantInfo.fromMap(arguments['variant']),
+      variants: (arguments['variants'] as num?)?.toInt() ?? 0,
+      estimateBps: (arguments['estimateBps'] as num?)?.toInt() ?? 0,
+      estimated: arguments['estimated'] == true,
+      error: arguments['error'] as String?,
+    );
+  }
+
+  @override
+  String toString() => 'HlsStartupSelection(${variant ?? 'sin variantes'}, '
+      'estimación ${estimateBps ~/ 1000} kbps${rewritten ? ', local' : ''})';
+}
+
+/// Arranque rápido de videos HLS (Android)
+///
+/// El plugin estima el ancho de banda con las descargas recientes (las
+/// playlists que lee y las que se reportan con [reportTransfer]: posters,
+/// miniaturas, subtítulos) y elige la variante de mayor calidad que cabe en
+/// el 75 % de la estimación. ExoPlayer arranca con la primera variante
+/// listada, así que con `rewrite` el plugin sirve desde `127.0.0.1` una copia
+/// de la playlist con esa variante primero. Sin descargas recientes se
+/// supone 1,5 Mbps.
+///
+/// La URL local es HTTP en claro: la app necesita permitir `127.0.0.1` en su
+/// `network_security_config` (ver README).
+///
+/// Ejemplo de uso:
+/// ```dart
+/// final selection = await HlsStartup.prepare(url, rewrite: true);
+/// final controller =
+///     VideoPlayerController.networkUrl(Uri.parse(selection.url));
+/// ```
+class HlsStartup {
+  static const MethodChannel _channel = MethodChannel('advanced_video_player');
+
+  /// Las descargas más pequeñas no se reportan: en ellas manda la latencia
+  static const int minReportBytes = 16 * 1024;
+
+  /// Las descargas reportadas se envían juntas tras esta espera
+  static const Duration reportDelay = Duration(seconds: 2);
+
+  static final List<int> _bytes = [];
+  static final List<int> _elapsedUs = [];
+  static Timer? _reportTimer;
+
+  /// Elige la variante de arranque de la playlist [url]
+  ///
+  /// Nunca falla: fuera de Android, o si la playlist no se puede leer,
+  /// responde con la URL original.
+  static Future<HlsStartupSelection> prepare(String url,
+      {bool rewrite = false}) async {
+    if (!isAndroid) return HlsStartupSelection(url: url);
+    try {
+      // Las descargas pendientes también cuentan para esta estimación
+      await flush();
+      final response = await _channel.invokeMethod('prepareHlsStartup', {
+        'url': url,
+        'rewrite': rewrite,
+      });
+      final selection = HlsStartupSelection.fromMap(url, response);
+      if (selection.error != null) {
+        debugPrint('[HlsStartup] ⚠️ Playlist sin leer: ${selection.error}');
+      }
+      return selection;
+    } on PlatformException catch (e) {
+      debugPrint('[HlsStartup] ❌ Error preparando $url: ${e.message}');
+      return HlsStartupSelection(url: url, error: e.message);
+    } on MissingPluginException {
+      return HlsStartupSelection(url: url);
+    }
+  }
+
+  /// Aporta una descarga de [bytes] a la estimación de ancho de banda
+  ///
+  /// [elapsed] se mide mejor desde el primer byte recibido; si solo se
+  /// conoce el tiempo total la estimación sale algo más baja, lo que para
+  /// elegir la variante de arranque es el lado seguro.
+  static void reportTransfer(int bytes, Duration elapsed) {
+    if (!isAndroid || bytes < minReportBytes || elapsed <= Duration.zero) {
+      return;
+    }
+    _bytes.add(bytes);
+    _elapsedUs.add(elapsed.inMicroseconds);
+    _reportTimer ??= Timer(reportDelay, flush);
+  }
+
+  /// Envía ya las descargas reportadas
+  static Future<void> flush() async {
+    _reportTimer?.cancel();
+    _reportTimer = null;
+    if (_bytes.isEmpty) return;
+    final bytes = List<int>.of(_bytes);
+    final elapsedUs = List<int>.of(_elapsedUs);
+    _bytes.clear();
+    _elapsedUs.clear();
+    try {
+      await _channel.invokeMethod('recordTransfers', {
+        'bytes': bytes,
+        'elapsedUs': elapsedUs,
+      });
+    } on PlatformException catch (e) {
+      debugPrint('[HlsStartup] ❌ Error reportando descargas: ${e.message}');
+    } on MissingPluginException {
+      // Sin plugin (tests): no hay estimador
+    }
+  }
+
+  /// Ancho de banda estimado en bits por segundo, o null sin descargas
+  /// recientes
+  static Future<int?> bandwidthEstimate() async {
+    if (!isAndroid) return null;
+    await flush();
+    final snapshot = await _channel.invokeMethod('getBandwidthEstimate');
+    final bps = snapshot is Map ? (snapshot['bitsPerSecond'] as num?) : null;
+    return bps != null && bps > 0 ? bps.toInt() : null;
+  }
+
+  /// Olvida las descargas anteriores (por ejemplo al cambiar de red)
+  static Future<void> resetBandwidthEstimate() async {
+    if (!isAndroid) return;
+    _bytes.clear();
+    _elapsedUs.clear();
+    await _channel.invokeMethod('resetBandwidthEstimate');
+  }
+}
@@ -0,0 +1,114 @@
+import 'dart:async';
+import 'package:flutter/services.dart';
+import 'poster_cache.dart';
+import 'scrub_thumbnails.dart';
+
+/// Escalón de recursos que liberó Android ante `onTrimMemory`
+///
+/// Son acumulativos: [discovery] incluye lo de [caches] y [sessions] lo de
+/// ambos.
+enum MemoryTrimTier {
+  /// Cachés que se reconstruyen solas
+  caches,
+
+  /// Además, se detuvo la búsqueda de dispositivos
+  discovery,
+
+  /// Además, se soltaron las sesiones y pools sin uso
+  sessions,
+}
+
+/// Aviso de presión de memoria del sistema
+class MemoryTrimEvent {
+  /// Nivel de `ComponentCallbacks2` (10 = `TRIM_MEMORY_RUNNING_LOW`, ...)
+  final int level;
+
+  /// Nombre del nivel (`runningLow`, `uiHidden`, `background`...)
+  final String levelName;
+
+  /// Escalón aplicado en el lado nativo
+  final MemoryTrimTier tier;
+
+  const MemoryTrimEvent({
+    required this.level,
+    required this.levelName,
+    required this.tier,
+  });
+
+  /// Si la interfaz de la app ya no está visible (nivel 20 o superior)
+  bool get uiHidden => level >= 20;
+
+  static MemoryTrimEvent? fromMap(Object? arguments) {
+    if (arguments is! Map) return null;
+    final level = (arguments['level'] as num?)?.toInt() ?? 0;
+    var tier = MemoryTrimTier.caches;
+    for (final value in MemoryTrimTier.values) {
+      if (value.name == arguments['tier']) tier = value;
+    }
+    return MemoryTrimEvent(
+      level: level,
+      levelName: arguments['levelName'] as String? ?? 'level$level',
+      tier: tier,
+    );
+  }
+
+  @override
+  String toString() => 'MemoryTrimEvent($levelName, ${tier.name})';
+}
+
+/// Presión de memoria informada por Android (`onTrimMemory`)
+///
+/// El plugin suelta sus propios recursos nativos por escalones y avisa aquí.
+/// Con cada aviso se vacía [PosterCache] y, con la interfaz oculta, las
+/// miniaturas de [ThumbnailTileCache]. Los [VideoFeedController] con
+/// reproductores liberan además los decodificadores precargados fuera de
+/// pantalla.
+///
+/// Ejemplo de uso:
+/// ```dart
+/// MemoryPressure.events.listen((event) {
+///   if (event.tier == MemoryTrimTier.sessions) myCache.clear();
+/// });
+/// ```
+class MemoryPressure {
+  static const MethodChannel _channel = MethodChannel('advanced_video_player');
+  static final StreamController<MemoryTrimEvent> _controller =
+      StreamController<MemoryTrimEvent>.broadcast();
+  static bool _handlerInstalled = false;
+  static MemoryTrimEvent? _last;
+
+  /// Avisos de presión de memoria
+  static Stream<MemoryTrimEvent> get events {
+    ensureInitialized();
+    return _controller.stream;
+  }
+
+  /// Último aviso recibido (null si no hubo ninguno)
+  static MemoryTrimEvent? get last => _last;
+
+  /// Empieza a recibir los avisos del lado nativo (lo llaman los
+  /// reproductores al crearse)
+  static void ensureInitialized() {
+    if (_handlerInstalled) return;
+    _handlerInstalled = true;
+    _channel.setMethodCallHandler(_handleMethodCall);
+  }
+
+  static Future<dynamic> _handleMethodCall(MethodCall call) async {
+    if (call.method != 'onTrimMemory') return;
+    final event = MemoryTrimEvent.fromMap(call.arguments);
+    if (event == null) return;
+    dispatch(event);
+  }
+
+  /// Aplica un aviso como si llegara de Android (también para tests)
+  static void dispatch(MemoryTrimEvent event) {
+    _last = event;
+    PosterCache.clear();
+    if (event.uiHidden) {
+      // Con la interfaz visible puede haber una miniatura en pantalla
+      ThumbnailTileCache.instance.clear();
+    }
+    _controller.add(event);
+  }
+}
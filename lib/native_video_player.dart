@@ -1,6 +1,8 @@
 import 'package:flutter/foundation.dart';
 import 'package:flutter/services.dart';
 import 'package:flutter/widgets.dart';
+import 'channel_trace.dart';
+import 'src/platform.dart';
 
 /// Widget de reproductor de video nativo con soporte PiP sin dummy views
 ///
@@ -102,7 +104,7 @@ class _NativeVideoPlayerState extends State<NativeVideoPlayer> {
 
   @override
   Widget build(BuildContext context) {
-    if (defaultTargetPlatform == TargetPlatform.iOS) {
+    if (isIOS) {
       return UiKitView(
         viewType: 'advanced_video_player/native_view',
         creationParams: {
@@ -143,7 +145,9 @@ class NativeVideoPlayerController {
   late final MethodChannel _methodChannel;
 
   NativeVideoPlayerController._(this.viewId) {
-    _methodChannel = MethodChannel('advanced_video_player/native_view_$viewId');
+    _methodChannel = TracedMethodChannel(
+        'advanced_video_player/native_view_$viewId',
+        scope: 'nativeView');
   }
 
   /// Inicia el modo Picture-in-Picture
@@ -1,5 +1,6 @@
 import 'dart:async';
 import 'package:flutter/services.dart';
+import 'channel_trace.dart';
 
 /// Servicio para manejar Picture-in-Picture (PiP) en dispositivos móviles
 ///
@@ -22,7 +23,7 @@ import 'package:flutter/services.dart';
 /// ```
 class PictureInPictureService {
   static const MethodChannel _channel =
-      MethodChannel('picture_in_picture_service');
+      TracedMethodChannel('picture_in_picture_service', scope: 'pip');
   static const EventChannel _eventChannel =
       EventChannel('picture_in_picture_service_events');
 
@@ -41,7 +42,8 @@ class PictureInPictureService {
           final args = Map<String, dynamic>.from(call.arguments);
           final action = args['action'] as String?;
           if (action != null && _onPipControlCallback != null) {
-            _onPipControlCallback!(action);
+            TracedMethodChannel.timeIncoming('pip.onPipControl', args,
+                () => _onPipControlCallback!(action));
           }
         }
         break;
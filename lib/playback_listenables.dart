@@ -0,0 +1,125 @@
+import 'package:flutter/foundation.dart';
+import 'package:video_player/video_player.dart';
+
+/// Estado de reproducción separado en [ValueListenable]s independientes
+///
+/// `VideoPlayerController` notifica un único valor con todo el estado, de modo
+/// que escuchar el controller (o llamar a `setState` desde su listener)
+/// reconstruye la UI completa en cada tick de posición. Esta clase reparte ese
+/// valor en notificadores por campo que solo avisan cuando su campo cambia:
+/// la barra de progreso escucha [position], el botón de reproducción
+/// [isPlaying], el indicador de carga [isBuffering], etc.
+///
+/// Ejemplo de uso:
+/// ```dart
+/// final playback = PlaybackListenables()..attach(controller);
+///
+/// RepaintBoundary(
+///   child: ValueListenableBuilder<Duration>(
+///     valueListenable: playback.position,
+///     builder: (context, position, _) => Text('$position'),
+///   ),
+/// );
+///
+/// // Al destruir el widget
+/// playback.dispose();
+/// ```
+class PlaybackListenables {
+  /// Posición actual
+  final ValueNotifier<Duration> position = ValueNotifier(Duration.zero);
+
+  /// Duración total
+  final ValueNotifier<Duration> duration = ValueNotifier(Duration.zero);
+
+  /// Rangos ya descargados
+  final ValueNotifier<List<DurationRange>> buffered =
+      ValueNotifier(const <DurationRange>[]);
+
+  /// Si el video se está reproduciendo
+  final ValueNotifier<bool> isPlaying = ValueNotifier(false);
+
+  /// Si el video está esperando datos
+  final ValueNotifier<bool> isBuffering = ValueNotifier(false);
+
+  /// Si el controller terminó de inicializarse
+  final ValueNotifier<bool> isInitialized = ValueNotifier(false);
+
+  /// Progreso (0 a 1) mientras el usuario arrastra la barra, o null
+  final ValueNotifier<double?> dragProgress = ValueNotifier(null);
+
+  VideoPlayerController? _controller;
+
+  /// Controller que alimenta los notificadores (null si no hay ninguno)
+  VideoPlayerController? get controller => _controller;
+
+  /// Empieza a seguir a [controller] (deja de seguir al anterior)
+  void attach(VideoPlayerController controller) {
+    if (identical(controller, _controller)) return;
+    detach();
+    _controller = controller;
+    controller.addListener(_sync);
+    _sync();
+  }
+
+  /// Deja de seguir al controller actual
+  void detach() {
+    _controller?.removeListener(_sync);
+    _controller = null;
+  }
+
+  void _sync() {
+    final value = _controller?.value;
+    if (value == null) return;
+    position.value = value.position;
+    duration.value = value.duration;
+    isPlaying.value = value.isPlaying;
+    isBuffering.value = value.isBuffering;
+    isInitialized.value = value.isInitialized;
+    if (!_sameRanges(buffered.value, value.buffered)) {
+      buffered.value = List.unmodifiable(value.buffered);
+    }
+  }
+
+  /// Progreso mostrado: el del arrastre si lo hay, si no el de la posición
+  double get displayProgress {
+    final dragging = dragProgress.value;
+    if (dragging != null) return dragging;
+    final total = duration.value.inMilliseconds;
+    if (total <= 0) return 0.0;
+    return (position.value.inMilliseconds / total).clamp(0.0, 1.0);
+  }
+
+  /// Fracción descargada (hasta el final del último rango)
+  double get bufferedProgress {
+    final total = duration.value.inMilliseconds;
+    if (total <= 0 || buffered.value.isEmpty) return 0.0;
+    var end = Duration.zero;
+    for (final range in buffered.value) {
+      if (range.end > end) end = range.end;
+    }
+    return (end.inMilliseconds / total).clamp(0.0, 1.0);
+  }
+
+  /// Escucha los campos que usa una barra de progreso
+  late final Listenable progress =
+      Listenable.merge([position, duration, buffered, dragProgress]);
+
+  void dispose() {
+    detach();
+    position.dispose();
+    duration.dispose();
+    buffered.dispose();
+    isPlaying.dispose();
+    isBuffering.dispose();
+    isInitialized.dispose();
+    dragProgress.dispose();
+  }
+
+  static bool _sameRanges(List<DurationRange> a, List<DurationRange> b) {
+    if (a.length != b.length) return false;
+    for (var i = 0; i < a.length; i++) {
+      if (a[i].start != b[i].start || a[i].end != b[i].end) return false;
+    }
+    return true;
+  }
+}
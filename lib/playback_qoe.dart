@@ -0,0 +1,422 @@
+import 'dart:async';
+import 'dart:typed_data';
+import 'package:flutter/services.dart';
+import 'package:video_player/video_player.dart';
+import 'channel_trace.dart';
+
+// Tipos de registro; deben coincidir con QoeRecorder.java
+const int _typeSessionStart = 1;
+const int _typeStartup = 2;
+const int _typeStallStart = 3;
+const int _typeStallEnd = 4;
+const int _typeSeek = 5;
+const int _typeCastRequested = 6;
+const int _typeCastConnected = 7;
+const int _typeHandoffToCast = 8;
+const int _typeCastLoadFailed = 9;
+const int _typeCastEnded = 10;
+const int _typeHandoffToLocal = 11;
+const int _typeError = 12;
+const int _typeSessionEnd = 13;
+
+// sessionId:i64, timestampMs:i64, type:i32, source:i32, value:i64
+const int _recordSize = 32;
+
+const MethodChannel _qoeChannel =
+    TracedMethodChannel('advanced_video_player');
+
+/// Traspaso de la reproducción entre el dispositivo y un receptor Cast
+class QoeHandoff {
+  /// `true` si la reproducción pasó al receptor, `false` si volvió al dispositivo
+  final bool toCast;
+
+  /// Tiempo que tardó el traspaso
+  final Duration duration;
+
+  /// Momento en el que terminó el traspaso
+  final DateTime at;
+
+  const QoeHandoff({
+    required this.toCast,
+    required this.duration,
+    required this.at,
+  });
+
+  Map<String, dynamic> toJson() => {
+        'toCast': toCast,
+        'durationMs': duration.inMilliseconds,
+        'at': at.millisecondsSinceEpoch,
+      };
+}
+
+/// Métricas de calidad de experiencia de una sesión de reproducción
+class QoeSession {
+  final int sessionId;
+
+  /// Hash del identificador de contenido (ver [PlaybackQoe.contentKeyFor])
+  int contentKey = 0;
+
+  DateTime? startedAt;
+  DateTime? endedAt;
+
+  /// Tiempo desde que se pidió el video hasta que estuvo listo para reproducir
+  Duration? startupTime;
+
+  int stallCount = 0;
+  Duration stallDuration = Duration.zero;
+
+  /// Latencia de cada salto: desde la petición hasta que vuelve a haber imagen
+  final List<Duration> seekLatencies = [];
+
+  /// Tiempo de conexión con el receptor Cast
+  Duration? castConnectTime;
+  int castLoadFailures = 0;
+  final List<QoeHandoff> handoffs = [];
+
+  int errorCount = 0;
+
+  /// Última posición conocida al cerrar la sesión
+  Duration? lastPosition;
+
+  QoeSession(this.sessionId);
+
+  /// `false` si la sesión seguía abierta cuando se drenaron los registros
+  bool get isComplete => endedAt != null;
+
+  Map<String, dynamic> toJson() => {
+        'sessionId': sessionId,
+        'contentKey': contentKey,
+        'startedAt': startedAt?.millisecondsSinceEpoch,
+        'endedAt': endedAt?.millisecondsSinceEpoch,
+        'startupMs': startupTime?.inMilliseconds,
+        'stallCount': stallCount,
+        'stallMs': stallDuration.inMilliseconds,
+        'seekLatenciesMs': seekLatencies.map((d) => d.inMilliseconds).toList(),
+        'castConnectMs': castConnectTime?.inMilliseconds,
+        'castLoadFailures': castLoadFailures,
+        'handoffs': handoffs.map((h) => h.toJson()).toList(),
+        'errorCount': errorCount,
+        'lastPositionMs': lastPosition?.inMilliseconds,
+      };
+}
+
+/// Grabador de QoE de una sesión de reproducción
+///
+/// Cada evento se escribe como registro binario de tamaño fijo en un buffer
+/// preasignado que se envía en bloque al almacén nativo (un buffer circular
+/// en disco), así que grabar un evento no reserva memoria ni cruza el canal.
+///
+/// Ejemplo de uso:
+/// ```dart
+/// final qoe = PlaybackQoeRecorder.start(contentId: 'movie-42');
+/// qoe.attach(controller);
+/// ...
+/// await PlaybackQoeRecorder.seekTo(controller, const Duration(seconds: 30));
+/// ...
+/// qoe.end(position: controller.value.position);
+/// ```
+class PlaybackQoeRecorder {
+  static final Expando<PlaybackQoeRecorder> _attached =
+      Expando<PlaybackQoeRecorder>('PlaybackQoeRecorder');
+  static int _lastSessionId = 0;
+
+  final int sessionId;
+
+  bool _hasPlayed = false;
+  bool _lastBuffering = false;
+  bool _ended = false;
+  int? _stallStartMs;
+  int? _seekStartMs;
+  bool _seekIssued = false;
+  int? _remoteEndedAtMs;
+
+  PlaybackQoeRecorder._(this.sessionId);
+
+  /// Abre una nueva sesión para [contentId]
+  factory PlaybackQoeRecorder.start({required String contentId}) {
+    var id = DateTime.now().microsecondsSinceEpoch;
+    if (id <= _lastSessionId) {
+      id = _lastSessionId + 1;
+    }
+    _lastSessionId = id;
+    final recorder = PlaybackQoeRecorder._(id);
+    _QoeBuffer.add(
+        id, _typeSessionStart, PlaybackQoe.contentKeyFor(contentId));
+    return recorder;
+  }
+
+  /// Grabador asociado a un reproductor con [attach], si existe
+  static PlaybackQoeRecorder? of(Object player) => _attached[player];
+
+  /// Salta a [position] midiendo la latencia si [controller] tiene grabador
+  static Future<void> seekTo(
+      VideoPlayerController controller, Duration position) {
+    final recorder = of(controller);
+    if (recorder == null) {
+      return controller.seekTo(position);
+    }
+    return recorder.timeSeek(controller.seekTo(position));
+  }
+
+  /// Asocia este grabador a un reproductor (controller nativo o de video_player)
+  void attach(Object player) {
+    _attached[player] = this;
+  }
+
+  /// Registra el tiempo de arranque (carga hasta listo para reproducir)
+  void markStartup(Duration elapsed) {
+    _add(_typeStartup, elapsed.inMilliseconds);
+  }
+
+  /// Actualiza el estado de reproducción; detecta cortes por buffering,
+  /// el fin de los saltos y la vuelta a reproducción local tras Cast
+  void updatePlayback({required bool isPlaying, required bool isBuffering}) {
+    if (_ended) return;
+    _lastBuffering = isBuffering;
+    final now = _QoeBuffer.nowMs();
+
+    if (_seekStartMs != null && _seekIssued && !isBuffering) {
+      _add(_typeSeek, now - _seekStartMs!);
+      _seekStartMs = null;
+      _seekIssued = false;
+    }
+
+    if (isPlaying && !isBuffering) {
+      _hasPlayed = true;
+      if (_remoteEndedAtMs != null) {
+        _add(_typeHandoffToLocal, now - _remoteEndedAtMs!);
+        _remoteEndedAtMs = null;
+      }
+    }
+
+    // El buffering durante un salto cuenta como latencia del salto, no como corte
+    final stalled =
+        _hasPlayed && isPlaying && isBuffering && _seekStartMs == null;
+    if (stalled && _stallStartMs == null) {
+      _stallStartMs = now;
+      _add(_typeStallStart, 0);
+    } else if (!stalled && _stallStartMs != null) {
+      _add(_typeStallEnd, now - _stallStartMs!);
+      _stallStartMs = null;
+    }
+  }
+
+  /// Mide un salto: desde ahora hasta que [seek] termina y deja de haber buffering
+  Future<void> timeSeek(Future<void> seek) async {
+    if (_ended) return seek;
+    _seekStartMs ??= _QoeBuffer.nowMs();
+    _seekIssued = false;
+    try {
+      await seek;
+    } finally {
+      _seekIssued = true;
+      if (!_lastBuffering) {
+        updatePlayback(isPlaying: false, isBuffering: false);
+      }
+    }
+  }
+
+  /// Marca que se va a compartir a Cast; los eventos nativos de Cast se
+  /// atribuyen a esta sesión
+  Future<void> markCastRequested() {
+    _add(_typeCastRequested, 0);
+    return _QoeBuffer.flush();
+  }
+
+  /// Marca que la sesión Cast terminó; el traspaso de vuelta se mide hasta
+  /// que el reproductor local vuelve a reproducir
+  void markRemoteEnded() {
+    _remoteEndedAtMs ??= _QoeBuffer.nowMs();
+  }
+
+  void markError() {
+    _add(_typeError, 0);
+  }
+
+  /// Cierra la sesión
+  void end({Duration? position}) {
+    if (_ended) return;
+    if (_stallStartMs != null) {
+      _add(_typeStallEnd, _QoeBuffer.nowMs() - _stallStartMs!);
+      _stallStartMs = null;
+    }
+    _add(_typeSessionEnd, position?.inMilliseconds ?? -1);
+    _ended = true;
+    _QoeBuffer.flush();
+  }
+
+  void _add(int type, int value) {
+    if (_ended) return;
+    _QoeBuffer.add(sessionId, type, value);
+  }
+}
+
+/// Acceso en bloque a las sesiones de QoE guardadas (Android)
+///
+/// Ejemplo de uso:
+/// ```dart
+/// final sessions = await PlaybackQoe.drainSessions();
+/// await uploader.send(sessions.map((s) => s.toJson()).toList());
+/// ```
+class PlaybackQoe {
+  /// Devuelve las sesiones registradas y las marca como leídas
+  static Future<List<QoeSession>> drainSessions() async =>
+      parseRecords(await drainRecords());
+
+  /// Devuelve las sesiones registradas sin marcarlas como leídas
+  static Future<List<QoeSession>> exportSessions() async =>
+      parseRecords(await exportRecords());
+
+  /// Registros binarios sin procesar, marcándolos como leídos
+  static Future<Uint8List> drainRecords() => _read('qoeDrain');
+
+  /// Registros binarios sin procesar, sin marcarlos como leídos
+  static Future<Uint8List> exportRecords() => _read('qoeExport');
+
+  /// Envía al almacén nativo los eventos pendientes
+  static Future<void> flush() => _QoeBuffer.flush();
+
+  /// Hash con el que se identifica el contenido en [QoeSession.contentKey]
+  static int contentKeyFor(String contentId) {
+    var hash = 0xcbf29ce484222325;
+    for (final unit in contentId.codeUnits) {
+      hash ^= unit;
+      hash *= 0x100000001b3;
+    }
+    return hash;
+  }
+
+  /// Agrupa registros binarios por sesión
+  static List<QoeSession> parseRecords(Uint8List bytes) {
+    final data = ByteData.sublistView(bytes);
+    final count = bytes.lengthInBytes ~/ _recordSize;
+
+    // Los eventos nativos y los de Dart se escriben en lotes distintos:
+    // ordenar por timestamp para reconstruir la secuencia real
+    final order = List<int>.generate(count, (i) => i);
+    int timestampOf(int i) =>
+        data.getInt64(i * _recordSize + 8, Endian.little);
+    order.sort((a, b) {
+      final byTime = timestampOf(a).compareTo(timestampOf(b));
+      return byTime != 0 ? byTime : a.compareTo(b);
+    });
+
+    final sessions = <int, QoeSession>{};
+    for (final i in order) {
+      final offset = i * _recordSize;
+      final sessionId = data.getInt64(offset, Endian.little);
+      if (sessionId == 0) continue; // Evento nativo sin sesión activa
+      final at = DateTime.fromMillisecondsSinceEpoch(
+          data.getInt64(offset + 8, Endian.little));
+      final type = data.getInt32(offset + 16, Endian.little);
+      final value = data.getInt64(offset + 24, Endian.little);
+      final session =
+          sessions.putIfAbsent(sessionId, () => QoeSession(sessionId));
+
+      switch (type) {
+        case _typeSessionStart:
+          session.startedAt = at;
+          session.contentKey = value;
+          break;
+        case _typeStartup:
+          session.startupTime = Duration(milliseconds: value);
+          break;
+        case _typeStallStart:
+          session.stallCount++;
+          break;
+        case _typeStallEnd:
+          session.stallDuration += Duration(milliseconds: value);
+          break;
+        case _typeSeek:
+          session.seekLatencies.add(Duration(milliseconds: value));
+          break;
+        case _typeCastConnected:
+          session.castConnectTime = Duration(milliseconds: value);
+          break;
+        case _typeHandoffToCast:
+          session.handoffs.add(QoeHandoff(
+              toCast: true, duration: Duration(milliseconds: value), at: at));
+          break;
+        case _typeHandoffToLocal:
+          session.handoffs.add(QoeHandoff(
+              toCast: false, duration: Duration(milliseconds: value), at: at));
+          break;
+        case _typeCastLoadFailed:
+          session.castLoadFailures++;
+          break;
+        case _typeError:
+          session.errorCount++;
+          break;
+        case _typeSessionEnd:
+          session.endedAt = at;
+          if (value >= 0) {
+            session.lastPosition = Duration(milliseconds: value);
+          }
+          break;
+        case _typeCastRequested:
+        case _typeCastEnded:
+        default:
+          break;
+      }
+    }
+    return sessions.values.toList();
+  }
+
+  static Future<Uint8List> _read(String method) async {
+    await _QoeBuffer.flush();
+    try {
+      final result = await _qoeChannel.invokeMethod(method);
+      if (result is Uint8List) {
+        return result;
+      }
+    } catch (e) {
+      // Plataforma sin almacén de QoE
+    }
+    return Uint8List(0);
+  }
+}
+
+/// Buffer compartido de registros pendientes de enviar al almacén nativo
+class _QoeBuffer {
+  static const int _capacity = 128;
+  static const Duration _flushInterval = Duration(seconds: 2);
+
+  static final Uint8List _bytes = Uint8List(_capacity * _recordSize);
+  static final ByteData _data = ByteData.sublistView(_bytes);
+  static final Stopwatch _clock = Stopwatch()..start();
+  static final int _epochMs = DateTime.now().millisecondsSinceEpoch;
+  static int _count = 0;
+  static Timer? _flushTimer;
+
+  // Reloj de pared sin reservar un DateTime por evento
+  static int nowMs() => _epochMs + _clock.elapsedMilliseconds;
+
+  static void add(int sessionId, int type, int value) {
+    final offset = _count * _recordSize;
+    _data.setInt64(offset, sessionId, Endian.little);
+    _data.setInt64(offset + 8, nowMs(), Endian.little);
+    _data.setInt32(offset + 16, type, Endian.little);
+    _data.setInt32(offset + 20, 0, Endian.little);
+    _data.setInt64(offset + 24, value, Endian.little);
+    _count++;
+    if (_count == _capacity) {
+      flush();
+    } else {
+      _flushTimer ??= Timer(_flushInterval, flush);
+    }
+  }
+
+  static Future<void> flush() async {
+    _flushTimer?.cancel();
+    _flushTimer = null;
+    if (_count == 0) return;
+    final records = Uint8List.fromList(
+        Uint8List.sublistView(_bytes, 0, _count * _recordSize));
+    _count = 0;
+    try {
+      await _qoeChannel.invokeMethod('qoeAppend', {'records': records});
+    } catch (e) {
+      // Sin implementación nativa los registros se descartan
+    }
+  }
+}
@@ -0,0 +1,275 @@
+import 'dart:async';
+import 'dart:collection';
+import 'package:flutter/widgets.dart';
+
+/// Tarea periódica registrada en un [PlayerTickScheduler]
+///
+/// Se obtiene con [PlayerTickScheduler.register] y se libera con [cancel].
+class PlayerTick {
+  /// Nombre de la tarea en las métricas (por ejemplo `native.progress`)
+  final String name;
+
+  /// Intervalo con la app en primer plano y la tarea visible
+  final Duration interval;
+
+  /// Multiplicador del intervalo cuando [visible] es false (0 = suspender)
+  final int hiddenFactor;
+
+  /// Multiplicador del intervalo con la app en segundo plano (0 = suspender)
+  final int backgroundFactor;
+
+  final void Function(Duration elapsed) _onTick;
+  final PlayerTickScheduler _scheduler;
+  bool _visible = true;
+  bool _cancelled = false;
+  Duration _lastTick;
+  int _ticks = 0;
+
+  PlayerTick._(
+    this._scheduler,
+    this.name,
+    this.interval,
+    this.hiddenFactor,
+    this.backgroundFactor,
+    this._onTick,
+    this._lastTick,
+  );
+
+  /// Si alguna UI muestra el resultado de la tarea
+  ///
+  /// Con false la cadencia se multiplica por [hiddenFactor].
+  bool get visible => _visible;
+  set visible(bool value) {
+    if (_visible == value || _cancelled) return;
+    _visible = value;
+    _scheduler._reschedule();
+  }
+
+  /// Veces que se ha ejecutado la tarea
+  int get ticks => _ticks;
+
+  /// Intervalo actual, o null si la tarea está suspendida
+  Duration? get effectiveInterval {
+    if (_cancelled) return null;
+    var factor = 1;
+    if (!_visible) factor *= hiddenFactor;
+    if (_scheduler._inBackground) factor *= backgroundFactor;
+    return factor == 0 ? null : interval * factor;
+  }
+
+  /// Deja de ejecutar la tarea
+  void cancel() {
+    if (_cancelled) return;
+    _cancelled = true;
+    _scheduler._remove(this);
+  }
+}
+
+/// Reloj único para las tareas periódicas de los reproductores
+///
+/// En lugar de un `Timer.periodic` por tarea (progreso nativo, estado de PiP,
+/// estado de AirPlay, cuenta atrás de transmisión), todas se registran aquí y
+/// comparten un único timer que se arma para el siguiente vencimiento. Los
+/// vencimientos se alinean a una rejilla de [quantum], así que tareas de
+/// 500 ms y 2 s despiertan juntas en lugar de por separado.
+///
+/// La cadencia de cada tarea se escala según su visibilidad
+/// ([PlayerTick.visible]) y el [AppLifecycleState]: en `paused`, `hidden` o
+/// `detached` se aplica [PlayerTick.backgroundFactor]. Al volver a primer
+/// plano las tareas atrasadas se ejecutan enseguida, y reciben el tiempo
+/// transcurrido desde su última ejecución. Sin tareas activas el reloj no
+/// tiene timer armado ni observa el ciclo de vida.
+///
+/// Ejemplo de uso:
+/// ```dart
+/// final tick = PlayerTickScheduler.instance.register(
+///   'mi.tarea',
+///   interval: const Duration(seconds: 1),
+///   hiddenFactor: 4,
+///   onTick: (elapsed) => actualizar(),
+/// );
+///
+/// // Cuando los controles se ocultan
+/// tick.visible = false;
+///
+/// // Al destruir el widget
+/// tick.cancel();
+/// ```
+class PlayerTickScheduler with WidgetsBindingObserver {
+  /// Reloj compartido por todos los reproductores
+  static final PlayerTickScheduler instance = PlayerTickScheduler();
+
+  /// Resolución de la rejilla en la que se alinean los vencimientos
+  static const Duration quantum = Duration(milliseconds: 250);
+
+  static const Duration _rateWindow = Duration(minutes: 1);
+
+  final Duration Function() _defaultNow;
+  late Duration Function() _now;
+  final List<PlayerTick> _ticks = [];
+  final Queue<Duration> _recentWakeups = Queue();
+  final Map<String, int> _ticksByName = {};
+  Timer? _timer;
+  Duration? _armedFor;
+  bool _observing = false;
+  bool _inBackground = false;
+  int _wakeups = 0;
+
+  /// [now] permite inyectar el reloj en tests (por defecto un [Stopwatch]);
+  /// con timers simulados debe ser el reloj de esos timers, por ejemplo
+  /// `tester.binding.clock`
+  PlayerTickScheduler({Duration Function()? now})
+      : _defaultNow = now ?? _stopwatchClock() {
+    _now = _defaultNow;
+  }
+
+  /// Reloj de la instancia compartida en tests con timers simulados (null
+  /// vuelve al de por defecto); se cambia entre tests, sin tareas activas
+  @visibleForTesting
+  set debugNow(Duration Function()? now) => _now = now ?? _defaultNow;
+
+  static Duration Function() _stopwatchClock() {
+    final stopwatch = Stopwatch()..start();
+    return () => stopwatch.elapsed;
+  }
+
+  /// Registra una tarea que se ejecuta cada [interval]
+  ///
+  /// [onTick] recibe el tiempo real transcurrido desde la ejecución anterior,
+  /// que puede ser mayor que [interval] si la tarea estuvo ralentizada o
+  /// suspendida. Por defecto la tarea mantiene su cadencia cuando no es
+  /// visible y se suspende en segundo plano.
+  PlayerTick register(
+    String name, {
+    required Duration interval,
+    int hiddenFactor = 1,
+    int backgroundFactor = 0,
+    required void Function(Duration elapsed) onTick,
+  }) {
+    assert(interval > Duration.zero);
+    assert(hiddenFactor >= 0 && backgroundFactor >= 0);
+    final tick = PlayerTick._(this, name, interval, hiddenFactor,
+        backgroundFactor, onTick, _now());
+    _ticks.add(tick);
+    if (!_observing) {
+      WidgetsBinding.instance.addObserver(this);
+      _observing = true;
+      final state = WidgetsBinding.instance.lifecycleState;
+      if (state != null) _inBackground = _isBackground(state);
+    }
+    _reschedule();
+    return tick;
+  }
+
+  /// Tareas registradas
+  int get activeTicks => _ticks.length;
+
+  /// Veces que el reloj ha despertado desde que se creó
+  int get wakeups => _wakeups;
+
+  /// Despertares durante el último minuto
+  int get wakeupsPerMinute {
+    _pruneWakeups(_now());
+    return _recentWakeups.length;
+  }
+
+  /// Contadores para las métricas del plugin
+  ///
+  /// `ticker.wakeups`, `ticker.wakeupsPerMinute`, `ticker.activeTicks` y las
+  /// ejecuciones por tarea como `ticker.<nombre>`.
+  Map<String, int> metricCounters() => {
+        'ticker.wakeups': _wakeups,
+        'ticker.wakeupsPerMinute': wakeupsPerMinute,
+        'ticker.activeTicks': _ticks.length,
+        for (final entry in _ticksByName.entries)
+          'ticker.${entry.key}': entry.value,
+      };
+
+  @override
+  void didChangeAppLifecycleState(AppLifecycleState state) {
+    final background = _isBackground(state);
+    if (background == _inBackground) return;
+    _inBackground = background;
+    _reschedule();
+  }
+
+  static bool _isBackground(AppLifecycleState state) {
+    // inactive incluye PiP y diálogos del sistema: la UI sigue a la vista
+    return state == AppLifecycleState.paused ||
+        state == AppLifecycleState.hidden ||
+        state == AppLifecycleState.detached;
+  }
+
+  void _remove(PlayerTick tick) {
+    _ticks.remove(tick);
+    if (_ticks.isEmpty && _observing) {
+      WidgetsBinding.instance.removeObserver(this);
+      _observing = false;
+    }
+    _reschedule();
+  }
+
+  // Arma el timer para el próximo vencimiento, alineado a la rejilla
+  void _reschedule() {
+    Duration? next;
+    for (final tick in _ticks) {
+      final interval = tick.effectiveInterval;
+      if (interval == null) continue;
+      final due = tick._lastTick + interval;
+      if (next == null || due < next) next = due;
+    }
+
+    if (next == null) {
+      _timer?.cancel();
+      _timer = null;
+      _armedFor = null;
+      return;
+    }
+
+    final now = _now();
+    final slot = quantum.inMicroseconds;
+    final aligned = Duration(
+        microseconds: (next.inMicroseconds + slot - 1) ~/ slot * slot);
+    final at = aligned < now ? now : aligned;
+    if (_timer != null && _armedFor == at) return;
+    _timer?.cancel();
+    _armedFor = at;
+    _timer = Timer(at - now, _fire);
+  }
+
+  void _fire() {
+    _timer = null;
+    _armedFor = null;
+    // Un timer que dispara unos microsegundos antes de su vencimiento sigue
+    // ejecutando sus tareas gracias al margen de horizon
+    final now = _now();
+    _wakeups++;
+    _recentWakeups.addLast(now);
+    _pruneWakeups(now);
+
+    // Media rejilla de margen para que tareas casi vencidas no despierten
+    // el reloj otra vez unos milisegundos después
+    final horizon = now + quantum ~/ 2;
+    for (final tick in List.of(_ticks)) {
+      final interval = tick.effectiveInterval;
+      if (interval == null || tick._lastTick + interval > horizon) continue;
+      final elapsed = now - tick._lastTick;
+      tick._lastTick = now;
+      tick._ticks++;
+      _ticksByName[tick.name] = (_ticksByName[tick.name] ?? 0) + 1;
+      try {
+        tick._onTick(elapsed);
+      } catch (e) {
+        debugPrint('[PlayerTickScheduler] Error en la tarea ${tick.name}: $e');
+      }
+    }
+    _reschedule();
+  }
+
+  void _pruneWakeups(Duration now) {
+    while (_recentWakeups.isNotEmpty &&
+        now - _recentWakeups.first > _rateWindow) {
+      _recentWakeups.removeFirst();
+    }
+  }
+}
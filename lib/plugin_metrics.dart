@@ -0,0 +1,240 @@
+import 'dart:async';
+import 'package:flutter/services.dart';
+import 'player_tick_scheduler.dart';
+
+/// Resumen de un histograma de latencias registrado por el plugin nativo
+class LatencySummary {
+  /// Número de muestras registradas
+  final int count;
+
+  final Duration min;
+  final Duration max;
+  final Duration mean;
+  final Duration p50;
+  final Duration p90;
+  final Duration p95;
+  final Duration p99;
+  final Duration p999;
+
+  const LatencySummary({
+    required this.count,
+    required this.min,
+    required this.max,
+    required this.mean,
+    required this.p50,
+    required this.p90,
+    required this.p95,
+    required this.p99,
+    required this.p999,
+  });
+
+  factory LatencySummary.fromMap(Map<dynamic, dynamic> map) {
+    Duration micros(String key) =>
+        Duration(microseconds: (map[key] as num?)?.toInt() ?? 0);
+    return LatencySummary(
+      count: (map['count'] as num?)?.toInt() ?? 0,
+      min: micros('minUs'),
+      max: micros('maxUs'),
+      mean: micros('meanUs'),
+      p50: micros('p50Us'),
+      p90: micros('p90Us'),
+      p95: micros('p95Us'),
+      p99: micros('p99Us'),
+      p999: micros('p999Us'),
+    );
+  }
+
+  /// Representación plana (en microsegundos) para enviar a telemetría propia
+  Map<String, int> toJson() => {
+        'count': count,
+        'minUs': min.inMicroseconds,
+        'maxUs': max.inMicroseconds,
+        'meanUs': mean.inMicroseconds,
+        'p50Us': p50.inMicroseconds,
+        'p90Us': p90.inMicroseconds,
+        'p95Us': p95.inMicroseconds,
+        'p99Us': p99.inMicroseconds,
+        'p999Us': p999.inMicroseconds,
+      };
+}
+
+/// Foto de las métricas del plugin nativo
+///
+/// Los nombres siguen el formato `<área>.<operación>`, por ejemplo
+/// `channel.discoverDevices`, `cast.connect`, `cast.load` o `pip.enter`.
+/// Los contadores de resultado usan sufijos como `.success` o `.error`.
+/// [PluginDiagnostics.getMetrics] añade los contadores `ticker.*` de
+/// [PlayerTickScheduler], como `ticker.wakeupsPerMinute`.
+class PluginMetrics {
+  /// Tiempo desde el último reinicio de métricas
+  final Duration uptime;
+
+  /// Contadores por nombre
+  final Map<String, int> counters;
+
+  /// Histogramas de latencia por nombre
+  final Map<String, LatencySummary> latencies;
+
+  const PluginMetrics({
+    required this.uptime,
+    required this.counters,
+    required this.latencies,
+  });
+
+  factory PluginMetrics.fromMap(Map<dynamic, dynamic> map) {
+    final counters = <String, int>{};
+    final rawCounters = map['counters'];
+    if (rawCounters is Map) {
+      rawCounters.forEach((key, value) {
+        if (key is String && value is num) {
+          counters[key] = value.toInt();
+        }
+      });
+    }
+
+    final latencies = <String, LatencySummary>{};
+    final rawHistograms = map['histograms'];
+    if (rawHistograms is Map) {
+      rawHistograms.forEach((key, value) {
+        if (key is String && value is Map) {
+          latencies[key] = LatencySummary.fromMap(value);
+        }
+      });
+    }
+
+    return PluginMetrics(
+      uptime: Duration(milliseconds: (map['uptimeMs'] as num?)?.toInt() ?? 0),
+      counters: counters,
+      latencies: latencies,
+    );
+  }
+
+  Map<String, dynamic> toJson() => {
+        'uptimeMs': uptime.inMilliseconds,
+        'counters': counters,
+        'latencies':
+            latencies.map((name, summary) => MapEntry(name, summary.toJson())),
+      };
+}
+
+/// Listener, callback o receiver que el plugin nativo mantiene registrado
+class LiveRegistration {
+  /// Clave única del registro (por ejemplo `cast.mediaRouterCallback`)
+  final String key;
+
+  /// Ámbito del registro: `engine` o `activity`
+  final String scope;
+
+  /// Tipo del objeto registrado (por ejemplo `BroadcastReceiver`)
+  final String type;
+
+  /// Tiempo que lleva registrado
+  final Duration age;
+
+  const LiveRegistration({
+    required this.key,
+    required this.scope,
+    required this.type,
+    required this.age,
+  });
+
+  factory LiveRegistration.fromMap(Map<dynamic, dynamic> map) {
+    return LiveRegistration(
+      key: map['key'] as String? ?? '',
+      scope: map['scope'] as String? ?? '',
+      type: map['type'] as String? ?? '',
+      age: Duration(milliseconds: (map['ageMs'] as num?)?.toInt() ?? 0),
+    );
+  }
+
+  Map<String, dynamic> toJson() => {
+        'key': key,
+        'scope': scope,
+        'type': type,
+        'ageMs': age.inMilliseconds,
+      };
+}
+
+/// Acceso a las métricas y diagnósticos del plugin nativo
+///
+/// Ejemplo de uso:
+/// ```dart
+/// final metrics = await PluginDiagnostics.getMetrics();
+/// final connect = metrics?.latencies['cast.connect'];
+/// print('p99 conexión Cast: ${connect?.p99.inMilliseconds} ms');
+/// ```
+class PluginDiagnostics {
+  static const MethodChannel _channel = MethodChannel('advanced_video_player');
+
+  /// Obtiene las métricas actuales, o `null` si la plataforma no las soporta
+  static Future<PluginMetrics?> getMetrics() async {
+    try {
+      final result = await _channel.invokeMethod('getMetrics');
+      if (result is Map) {
+        final metrics = PluginMetrics.fromMap(result);
+        // Los despertares del reloj de tareas periódicas se cuentan en Dart
+        metrics.counters.addAll(PlayerTickScheduler.instance.metricCounters());
+        return metrics;
+      }
+      return null;
+    } catch (e) {
+      return null;
+    }
+  }
+
+  /// Lista los listeners y receivers que el plugin mantiene registrados
+  ///
+  /// Útil en depuración para comprobar que no se acumulan registros al
+  /// conectar Cast varias veces o al recrear la Activity. Devuelve una lista
+  /// vacía si la plataforma no lo soporta.
+  static Future<List<LiveRegistration>> getLiveRegistrations() async {
+    try {
+      final result = await _channel.invokeMethod('getLiveRegistrations');
+      if (result is List) {
+        return result
+            .whereType<Map>()
+            .map(LiveRegistration.fromMap)
+            .toList(growable: false);
+      }
+      return const [];
+    } catch (e) {
+      return const [];
+    }
+  }
+
+  /// Reinicia todos los contadores e histogramas
+  static Future<bool> resetMetrics() async {
+    try {
+      final result = await _channel.invokeMethod('resetMetrics');
+      return result == true;
+    } catch (e) {
+      return false;
+    }
+  }
+
+  /// Empieza a grabar las llamadas que llegan a los canales del plugin
+  ///
+  /// Solo Android. Las llamadas se guardan en un archivo binario compacto (en
+  /// [path], o en la caché de la app) para reproducirlas después en la JVM.
+  /// Devuelve la ruta del archivo, o `null` si no se pudo grabar.
+  static Future<String?> startCallRecording({String? path}) async {
+    try {
+      final result =
+          await _channel.invokeMethod('startCallRecording', {'path': path});
+      return result as String?;
+    } catch (e) {
+      return null;
+    }
+  }
+
+  /// Termina la grabación y devuelve su resumen (`path`, `calls`, `bytes` y
+  /// `truncated`), o `null` si no se estaba grabando
+  static Future<Map<String, dynamic>?> stopCallRecording() async {
+    try {
+      final result = await _channel.invokeMethod('stopCallRecording');
+      return result is Map ? Map<String, dynamic>.from(result) : null;
+    } catch (e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,229 @@
+import 'dart:collection';
+import 'dart:typed_data';
+import 'dart:ui' as ui;
+import 'package:flutter/services.dart';
+import 'package:flutter/widgets.dart';
+import 'hls_startup.dart';
+
+/// Caché LRU compartida de imágenes de preview (posters)
+///
+/// Guarda los bytes descargados de cada poster, de modo que el reproductor
+/// en línea, la pantalla completa y la prelectura de elementos siguientes no
+/// vuelven a descargar la misma imagen. La imagen decodificada se genera al
+/// tamaño en que se muestra (ver [PosterImageProvider]) y la guarda el
+/// `ImageCache` de Flutter.
+///
+/// Ejemplo de uso:
+/// ```dart
+/// // Precargar los posters de los siguientes elementos de un feed
+/// PosterCache.prefetch(items.skip(index + 1).take(3).map((i) => i.poster));
+/// ```
+class PosterCache {
+  /// Máximo de bytes (codificados) que se conservan
+  static int maxBytes = 8 * 1024 * 1024;
+
+  /// Máximo de posters que se conservan
+  static int maxEntries = 48;
+
+  static final LinkedHashMap<String, Uint8List> _entries = LinkedHashMap();
+  static final Map<String, Future<Uint8List>> _pending = {};
+  static int _bytes = 0;
+
+  /// Bytes ocupados actualmente
+  static int get currentBytes => _bytes;
+
+  /// Posters guardados actualmente
+  static int get length => _entries.length;
+
+  /// Si el poster de [url] ya está descargado
+  static bool contains(String url) => _entries.containsKey(url);
+
+  /// Bytes del poster de [url], descargándolo si hace falta
+  ///
+  /// Las peticiones simultáneas de la misma URL comparten una descarga.
+  static Future<Uint8List> load(String url) {
+    final cached = _entries.remove(url);
+    if (cached != null) {
+      // Reinsertar para marcarlo como usado recientemente
+      _entries[url] = cached;
+      return SynchronousFuture(cached);
+    }
+    return _pending[url] ??= _download(url).whenComplete(() {
+      _pending.remove(url);
+    });
+  }
+
+  /// Descarga en segundo plano los posters que no estén en caché
+  static Future<void> prefetch(Iterable<String?> urls) async {
+    final loads = <Future<void>>[];
+    for (final url in urls) {
+      if (url == null || url.isEmpty || contains(url)) continue;
+      loads.add(load(url).then((_) {}, onError: (Object e) {
+        debugPrint('[PosterCache] Error precargando $url: $e');
+      }));
+    }
+    await Future.wait(loads);
+  }
+
+  /// Quita [url] de la caché
+  static void evict(String url) {
+    final bytes = _entries.remove(url);
+    if (bytes != null) _bytes -= bytes.lengthInBytes;
+  }
+
+  /// Vacía la caché
+  static void clear() {
+    _entries.clear();
+    _bytes = 0;
+  }
+
+  static Future<Uint8List> _download(String url) async {
+    final stopwatch = Stopwatch()..start();
+    final data = await NetworkAssetBundle(Uri.parse(url)).load(url);
+    HlsStartup.reportTransfer(data.lengthInBytes, stopwatch.elapsed);
+    final bytes =
+        data.buffer.asUint8List(data.offsetInBytes, data.lengthInBytes);
+    _put(url, bytes);
+    return bytes;
+  }
+
+  static void _put(String url, Uint8List bytes) {
+    final previous = _entries.remove(url);
+    if (previous != null) _bytes -= previous.lengthInBytes;
+    // Un poster más grande que toda la caché no se guarda
+    if (bytes.lengthInBytes > maxBytes) return;
+    _entries[url] = bytes;
+    _bytes += bytes.lengthInBytes;
+    while (_entries.length > maxEntries || _bytes > maxBytes) {
+      final oldest = _entries.keys.first;
+      _bytes -= _entries.remove(oldest)!.lengthInBytes;
+    }
+  }
+}
+
+/// Poster de [PosterCache] decodificado al tamaño en que se muestra
+///
+/// [width] y [height] son el tamaño del área en píxeles físicos. La imagen
+/// se reduce (nunca se amplía) lo justo para cubrir esa área con
+/// `BoxFit.cover`, manteniendo su proporción. Los tamaños se redondean a múltiplos de
+/// [sizeStep] para que áreas parecidas compartan la misma imagen decodificada.
+@immutable
+class PosterImageProvider extends ImageProvider<PosterImageProvider> {
+  /// Paso de redondeo de los tamaños de decodificación, en píxeles
+  static const int sizeStep = 64;
+
+  final String url;
+  final int? width;
+  final int? height;
+
+  PosterImageProvider(this.url, {int? width, int? height})
+      : width = _roundUp(width),
+        height = _roundUp(height);
+
+  static int? _roundUp(int? value) {
+    if (value == null || value <= 0) return null;
+    return (value + sizeStep - 1) ~/ sizeStep * sizeStep;
+  }
+
+  @override
+  Future<PosterImageProvider> obtainKey(ImageConfiguration configuration) {
+    return SynchronousFuture(this);
+  }
+
+  @override
+  ImageStreamCompleter loadImage(
+      PosterImageProvider key, ImageDecoderCallback decode) {
+    return MultiFrameImageStreamCompleter(
+      codec: _loadCodec(key, decode),
+      scale: 1.0,
+      debugLabel: key.url,
+      informationCollector: () => <DiagnosticsNode>[
+        DiagnosticsProperty<ImageProvider>('Image provider', this),
+      ],
+    );
+  }
+
+  static Future<ui.Codec> _loadCodec(
+      PosterImageProvider key, ImageDecoderCallback decode) async {
+    final bytes = await PosterCache.load(key.url);
+    final buffer = await ui.ImmutableBuffer.fromUint8List(bytes);
+    return decode(buffer, getTargetSize: (intrinsicWidth, intrinsicHeight) {
+      return key._coverSize(intrinsicWidth, intrinsicHeight);
+    });
+  }
+
+  // Tamaño mínimo que cubre el área sin ampliar la imagen
+  ui.TargetImageSize _coverSize(int intrinsicWidth, int intrinsicHeight) {
+    if (intrinsicWidth <= 0 || intrinsicHeight <= 0) {
+      return const ui.TargetImageSize();
+    }
+    var scale = 0.0;
+    if (width != null) scale = width! / intrinsicWidth;
+    if (height != null) {
+      final byHeight = height! / intrinsicHeight;
+      if (byHeight > scale) scale = byHeight;
+    }
+    if (scale <= 0 || scale >= 1) return const ui.TargetImageSize();
+    return ui.TargetImageSize(
+      width: (intrinsicWidth * scale).ceil(),
+      height: (intrinsicHeight * scale).ceil(),
+    );
+  }
+
+  @override
+  bool operator ==(Object other) {
+    return other is PosterImageProvider &&
+        other.url == url &&
+        other.width == width &&
+        other.height == height;
+  }
+
+  @override
+  int get hashCode => Object.hash(url, width, height);
+
+  @override
+  String toString() =>
+      '${objectRuntimeType(this, 'PosterImageProvider')}("$url", '
+      'width: $width, height: $height)';
+}
+
+/// Muestra un poster de [PosterCache] decodificado al tamaño de su área
+///
+/// Mientras carga (o si falla) muestra [placeholder].
+class PosterView extends StatelessWidget {
+  final String url;
+  final Widget placeholder;
+  final BoxFit fit;
+
+  const PosterView({
+    super.key,
+    required this.url,
+    required this.placeholder,
+    this.fit = BoxFit.cover,
+  });
+
+  @override
+  Widget build(BuildContext context) {
+    final pixelRatio = MediaQuery.maybeDevicePixelRatioOf(context) ?? 1.0;
+    return LayoutBuilder(
+      builder: (context, constraints) {
+        int? physical(double logical) =>
+            logical.isFinite ? (logical * pixelRatio).ceil() : null;
+        return Image(
+          image: PosterImageProvider(
+            url,
+            width: physical(constraints.maxWidth),
+            height: physical(constraints.maxHeight),
+          ),
+          fit: fit,
+          gaplessPlayback: true,
+          frameBuilder: (context, child, frame, wasSynchronouslyLoaded) {
+            if (frame == null && !wasSynchronouslyLoaded) return placeholder;
+            return child;
+          },
+          errorBuilder: (context, error, stackTrace) => placeholder,
+        );
+      },
+    );
+  }
+}
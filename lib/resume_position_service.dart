@@ -0,0 +1,84 @@
+import 'dart:async';
+import 'package:flutter/services.dart';
+import 'channel_trace.dart';
+
+/// Posición guardada para reanudar un contenido
+class ResumePosition {
+  /// Última posición de reproducción conocida
+  final Duration position;
+
+  /// Duración total del contenido cuando se guardó la posición
+  final Duration duration;
+
+  const ResumePosition({required this.position, required this.duration});
+}
+
+/// Servicio para guardar y recuperar la posición donde el usuario dejó un video
+///
+/// Las posiciones se guardan en un almacén nativo (Android) indexado por
+/// identificador de contenido. Las escrituras se agrupan en el lado nativo,
+/// por lo que llamar a [savePosition] con frecuencia no genera una escritura
+/// a disco por llamada. En plataformas sin implementación nativa todas las
+/// operaciones devuelven valores vacíos sin lanzar errores.
+///
+/// Ejemplo de uso:
+/// ```dart
+/// final saved = await ResumePositionService.getPosition('movie-42');
+/// if (saved != null) {
+///   await controller.seekTo(saved.position);
+/// }
+/// ```
+class ResumePositionService {
+  static const MethodChannel _channel =
+      TracedMethodChannel('advanced_video_player');
+
+  /// Obtiene la posición guardada para [contentId], o `null` si no existe
+  static Future<ResumePosition?> getPosition(String contentId) async {
+    try {
+      final result = await _channel.invokeMethod('getResumePosition', {
+        'contentId': contentId,
+      });
+      if (result is Map) {
+        return ResumePosition(
+          position: Duration(
+              milliseconds: (result['positionMs'] as num?)?.toInt() ?? 0),
+          duration: Duration(
+              milliseconds: (result['durationMs'] as num?)?.toInt() ?? 0),
+        );
+      }
+      return null;
+    } catch (e) {
+      return null;
+    }
+  }
+
+  /// Guarda la posición actual de [contentId]
+  static Future<bool> savePosition(
+    String contentId, {
+    required Duration position,
+    required Duration duration,
+  }) async {
+    try {
+      final result = await _channel.invokeMethod('saveResumePosition', {
+        'contentId': contentId,
+        'positionMs': position.inMilliseconds,
+        'durationMs': duration.inMilliseconds,
+      });
+      return result == true;
+    } catch (e) {
+      return false;
+    }
+  }
+
+  /// Elimina la posición guardada de [contentId] (por ejemplo al terminar el video)
+  static Future<bool> clearPosition(String contentId) async {
+    try {
+      final result = await _channel.invokeMethod('clearResumePosition', {
+        'contentId': contentId,
+      });
+      return result == true;
+    } catch (e) {
+      return false;
+    }
+  }
+}
@@ -1,6 +1,8 @@
 import 'dart:async';
-import 'dart:io';
 import 'package:flutter/services.dart';
+import 'channel_trace.dart';
+import 'subtitles.dart';
+import 'src/platform.dart';
 
 /// Estados de la conexión de compartir pantalla
 ///
@@ -20,6 +22,132 @@ enum ScreenSharingState {
   error,
 }
 
+/// Dispositivo devuelto por [ScreenSharingService.discoverDeviceInfos]
+///
+/// En Android incluye los datos del receptor Cast (modelo, capacidades, IP),
+/// para elegir la variante del stream antes de llamar a
+/// [ScreenSharingService.shareVideo]. El SDK de Cast no informa de los
+/// códecs: [supports4k] y [supportsHevc] se deducen del modelo y son null si
+/// el modelo no es conocido.
+class CastDeviceInfo {
+  final String id;
+  final String name;
+
+  /// `chromecast`, `group` (grupo de altavoces), `remote` (otra ruta de
+  /// reproducción remota), `dlna` (renderizador UPnP) o `shareplay`
+  final String type;
+  final String? modelName;
+  final String? deviceVersion;
+  final String? ipAddress;
+
+  /// `tv`, `speaker` o `unknown`
+  final String deviceType;
+  final bool supportsVideo;
+  final bool supportsAudio;
+  final bool volumeControl;
+  final bool? supports4k;
+  final bool? supportsHevc;
+
+  const CastDeviceInfo({
+    required this.id,
+    required this.name,
+    required this.type,
+    this.modelName,
+    this.deviceVersion,
+    this.ipAddress,
+    this.deviceType = 'unknown',
+    this.supportsVideo = true,
+    this.supportsAudio = true,
+    this.volumeControl = false,
+    this.supports4k,
+    this.supportsHevc,
+  });
+
+  /// Construye el dispositivo a partir del mapa del canal nativo
+  factory CastDeviceInfo.fromMap(Map<String, dynamic> map) {
+    final capabilities = map['capabilities'];
+    bool capability(String key) =>
+        capabilities is Map ? capabilities[key] == true : true;
+    return CastDeviceInfo(
+      id: map['id'] as String? ?? '',
+      name: map['name'] as String? ?? '',
+      type: map['type'] as String? ?? 'chromecast',
+      modelName: map['modelName'] as String?,
+      deviceVersion: map['deviceVersion'] as String?,
+      ipAddress: map['ipAddress'] as String?,
+      deviceType: map['deviceType'] as String? ?? 'unknown',
+      supportsVideo: capability('videoOut'),
+      supportsAudio: capability('audioOut'),
+      volumeControl: map['volumeControl'] == true,
+      supports4k: map['supports4k'] as bool?,
+      supportsHevc: map['supportsHevc'] as bool?,
+    );
+  }
+
+  @override
+  String toString() => 'CastDeviceInfo($name, $type, $modelName)';
+}
+
+/// Posición del contenido en el receptor
+class RemotePlaybackPosition {
+  final Duration position;
+  final bool playing;
+
+  const RemotePlaybackPosition(this.position, {this.playing = false});
+
+  static RemotePlaybackPosition? fromMap(Object? map) {
+    if (map is! Map) return null;
+    final positionMs = map['positionMs'];
+    if (positionMs is! num) return null;
+    return RemotePlaybackPosition(
+      Duration(milliseconds: positionMs.toInt()),
+      playing: map['playing'] == true,
+    );
+  }
+}
+
+/// Último receptor Cast usado, recordado entre ejecuciones de la app
+///
+/// Si [sessionAlive] es true, la sesión se reanudó al arrancar y
+/// [ScreenSharingService.connectToDevice] con este receptor termina en el acto.
+class LastCastDevice {
+  final CastDeviceInfo device;
+
+  /// Cuándo se conectó por última vez
+  final DateTime savedAt;
+
+  /// Si el receptor aparece ahora en la red
+  final bool available;
+
+  /// Si la sesión con el receptor sigue viva
+  final bool sessionAlive;
+
+  const LastCastDevice({
+    required this.device,
+    required this.savedAt,
+    this.available = false,
+    this.sessionAlive = false,
+  });
+
+  static LastCastDevice? fromMap(Object? map) {
+    if (map is! Map) return null;
+    final converted = Map<String, dynamic>.from(map);
+    return LastCastDevice(
+      device: CastDeviceInfo.fromMap(converted),
+      savedAt: DateTime.fromMillisecondsSinceEpoch(
+        (converted['savedAt'] as num?)?.toInt() ?? 0,
+      ),
+      available: converted['available'] == true,
+      sessionAlive: converted['sessionAlive'] == true,
+    );
+  }
+
+  @override
+  String toString() =>
+      'LastCastDevice(${device.name}, disponible: $available, '
+      'sesión: $sessionAlive)';
+}
+
 /// Servicio para manejar el compartir pantalla (SharePlay en iOS, Google Cast en Android)
 ///
 /// Este servicio permite compartir videos con otros dispositivos usando
@@ -29,9 +157,15 @@ enum ScreenSharingState {
 ///
 /// Implementado usando canales de método nativos sin dependencias externas.
 ///
+/// Cada reproductor debe usar su propia instancia, creada con [create]: el
+/// plugin nativo le asigna un handle ([playerId]) y mantiene su estado aparte,
+/// de modo que varios reproductores en pantalla no se pisan entre sí. La
+/// instancia por defecto (`ScreenSharingService()`) se mantiene por
+/// compatibilidad y usa el handle `0`.
+///
 /// Ejemplo de uso:
 /// ```dart
-/// final service = ScreenSharingService();
+/// final service = await ScreenSharingService.create();
 /// await service.initialize();
 ///
 /// // Buscar dispositivos disponibles
@@ -45,14 +179,62 @@ enum ScreenSharingState {
 ///   videoUrl: 'https://example.com/video.mp4',
 ///   title: 'Mi Video',
 /// );
+///
+/// // Liberar el handle cuando el reproductor se destruye
+/// service.dispose();
 /// ```
 class ScreenSharingService {
-  static const MethodChannel _channel = MethodChannel('screen_sharing');
+  static const MethodChannel _channel = TracedMethodChannel('screen_sharing');
+
+  /// Clave con la que viaja el handle del reproductor en los argumentos
+  static const String playerIdKey = 'playerId';
+
+  /// Handle usado por las llamadas sin reproductor propio
+  static const int defaultPlayerId = 0;
+
+  // Handles locales cuando la plataforma no implementa `createPlayer`
+  static int _lastLocalId = 1 << 20;
 
   static final ScreenSharingService _instance =
-      ScreenSharingService._internal();
+      ScreenSharingService._internal(defaultPlayerId);
+  static final Map<int, ScreenSharingService> _players = {
+    defaultPlayerId: _instance,
+  };
+  static bool _handlerInstalled = false;
+  static final StreamController<Map<String, dynamic>> _routeController =
+      StreamController<Map<String, dynamic>>.broadcast();
+
+  /// Cambios en los dispositivos Cast descubiertos (`event`: `added`,
+  /// `removed`, `changed`, `selected` o `unselected`, con `id` y `name`)
+  ///
+  /// El descubrimiento es único por proceso: todos los reproductores y
+  /// engines reciben los mismos eventos. Android los entrega en lotes cada
+  /// 250 ms, ya fusionados por dispositivo: uno que aparece y desaparece en
+  /// la misma ventana no genera eventos.
+  static Stream<Map<String, dynamic>> get routeChanges =>
+      _routeController.stream;
+
   factory ScreenSharingService() => _instance;
-  ScreenSharingService._internal();
+  ScreenSharingService._internal(this.playerId);
+
+  /// Crea una instancia con su propio handle nativo
+  static Future<ScreenSharingService> create() async {
+    int? playerId;
+    try {
+      final result = await _channel.invokeMethod('createPlayer');
+      if (result is int) {
+        playerId = result;
+      }
+    } catch (e) {
+      // iOS y versiones anteriores del plugin no tienen registro de reproductores
+    }
+    final service = ScreenSharingService._internal(playerId ?? ++_lastLocalId);
+    _players[service.playerId] = service;
+    return service;
+  }
+
+  /// Handle del reproductor en el plugin nativo
+  final int playerId;
 
   // Streams para notificar cambios de estado
   final StreamController<ScreenSharingState> _stateController =
@@ -61,12 +243,24 @@ class ScreenSharingService {
       StreamController<String>.broadcast();
   final StreamController<Map<String, dynamic>> _deviceController =
       StreamController<Map<String, dynamic>>.broadcast();
+  final StreamController<Duration> _remotePlayingController =
+      StreamController<Duration>.broadcast();
 
   // Getters para los streams
   Stream<ScreenSharingState> get stateStream => _stateController.stream;
   Stream<String> get errorStream => _errorController.stream;
   Stream<Map<String, dynamic>> get deviceStream => _deviceController.stream;
 
+  /// El receptor empezó a reproducir el video enviado (con su posición): a
+  /// partir de aquí el reproductor local puede soltar su decodificador
+  Stream<Duration> get remotePlayingStream => _remotePlayingController.stream;
+
+  Duration? _lastRemotePosition;
+
+  /// Última posición conocida del receptor; al terminar la sesión es la
+  /// posición desde la que seguir en local
+  Duration? get lastRemotePosition => _lastRemotePosition;
+
   ScreenSharingState _currentState = ScreenSharingState.disconnected;
   ScreenSharingState get currentState => _currentState;
 
@@ -78,11 +272,14 @@ class ScreenSharingService {
     if (_isInitialized) return true;
 
     try {
-      // Configurar el canal de método
-      _channel.setMethodCallHandler(_handleMethodCall);
+      // Configurar el canal de método (compartido por todas las instancias)
+      if (!_handlerInstalled) {
+        _channel.setMethodCallHandler(_dispatchMethodCall);
+        _handlerInstalled = true;
+      }
 
       // Inicializar según la plataforma
-      final result = await _channel.invokeMethod('initialize');
+      final result = await _channel.invokeMethod('initialize', _arguments());
       if (result == true) {
         _isInitialized = true;
         _updateState(ScreenSharingState.disconnected);
@@ -112,7 +309,8 @@ class ScreenSharingService {
     }
 
     try {
-      final result = await _channel.invokeMethod('discoverDevices');
+      final result =
+          await _channel.invokeMethod('discoverDevices', _arguments());
       if (result is List) {
         // Conversión segura de tipos mixtos desde Java
         return result.map((item) {
@@ -149,6 +347,12 @@ class ScreenSharingService {
     }
   }
 
+  /// Igual que [discoverDevices], con los datos de cada dispositivo tipados
+  Future<List<CastDeviceInfo>> discoverDeviceInfos() async {
+    final devices = await discoverDevices();
+    return devices.map(CastDeviceInfo.fromMap).toList();
+  }
+
   /// Conecta a un dispositivo específico
   Future<bool> connectToDevice(String deviceId, String deviceName) async {
     if (!_isInitialized) {
@@ -158,10 +362,12 @@ class ScreenSharingService {
     try {
       _updateState(ScreenSharingState.connecting);
 
-      final result = await _channel.invokeMethod('connectToDevice', {
-        'deviceId': deviceId,
-        'deviceName': deviceName,
-      });
+      final result = await _channel.invokeMethod(
+          'connectToDevice',
+          _arguments({
+            'deviceId': deviceId,
+            'deviceName': deviceName,
+          }));
 
       if (result == true) {
         _updateState(ScreenSharingState.connected);
@@ -196,12 +402,35 @@ class ScreenSharingService {
     }
   }
 
+  /// Último receptor Cast usado (solo Android), o null si no hay ninguno
+  ///
+  /// Sirve para ofrecer "Conectar a <nombre>" sin esperar al descubrimiento.
+  Future<LastCastDevice?> lastDevice() async {
+    try {
+      final result = await _channel.invokeMethod('getLastDevice', _arguments());
+      return LastCastDevice.fromMap(result);
+    } catch (e) {
+      return null;
+    }
+  }
+
   /// Comparte un video específico
+  ///
+  /// Las pistas WebVTT de [subtitleTracks] se envían al receptor como pistas
+  /// de texto y [activeSubtitleTrack] queda activa; el receptor Cast por
+  /// defecto no admite SRT, así que esas pistas se omiten.
+  ///
+  /// El receptor empieza en [startPosition] y a [playbackRate], para seguir
+  /// donde iba el reproductor local.
   Future<bool> shareVideo({
     required String videoUrl,
     required String title,
     String? description,
     String? thumbnailUrl,
+    List<SubtitleTrack> subtitleTracks = const [],
+    SubtitleTrack? activeSubtitleTrack,
+    Duration startPosition = Duration.zero,
+    double playbackRate = 1.0,
   }) async {
     if (_currentState != ScreenSharingState.connected) {
       _errorController.add('No hay dispositivo conectado');
@@ -209,12 +438,23 @@ class ScreenSharingService {
     }
 
     try {
-      final result = await _channel.invokeMethod('shareVideo', {
-        'videoUrl': videoUrl,
-        'title': title,
-        'description': description ?? '',
-        'thumbnailUrl': thumbnailUrl ?? '',
-      });
+      final result = await _channel.invokeMethod(
+          'shareVideo',
+          _arguments({
+            'videoUrl': videoUrl,
+            'title': title,
+            'description': description ?? '',
+            'thumbnailUrl': thumbnailUrl ?? '',
+            'subtitleTracks': [
+              for (final track in subtitleTracks)
+                {
+                  ...track.toMap(),
+                  'active': identical(track, activeSubtitleTrack),
+                },
+            ],
+            'positionMs': startPosition.inMilliseconds,
+            'playbackRate': playbackRate,
+          }));
       return result == true;
     } catch (e) {
       _errorController.add('Error compartiendo video: $e');
@@ -238,20 +478,36 @@ class ScreenSharingService {
     }
 
     try {
-      final result = await _channel.invokeMethod('controlPlayback', {
-        'action': action,
-        'position': position,
-      });
+      final result = await _channel.invokeMethod(
+          'controlPlayback',
+          _arguments({
+            'action': action,
+            'position': position,
+          }));
       return result == true;
     } catch (e) {
       return false;
     }
   }
 
+  /// Posición actual del contenido en el receptor (null si no hay nada
+  /// cargado)
+  Future<RemotePlaybackPosition?> remotePosition() async {
+    try {
+      final result =
+          await _channel.invokeMethod('getRemotePosition', _arguments());
+      final position = RemotePlaybackPosition.fromMap(result);
+      if (position != null) _lastRemotePosition = position.position;
+      return position;
+    } catch (e) {
+      return null;
+    }
+  }
+
   /// Desconecta del dispositivo actual
   Future<bool> disconnect() async {
     try {
-      final result = await _channel.invokeMethod('disconnect');
+      final result = await _channel.invokeMethod('disconnect', _arguments());
       if (result == true) {
         _updateState(ScreenSharingState.disconnected);
         return true;
@@ -263,6 +519,37 @@ class ScreenSharingService {
     }
   }
 
+  /// Argumentos de una llamada con el handle de este reproductor
+  Map<String, dynamic> _arguments([Map<String, dynamic>? arguments]) {
+    return {...?arguments, playerIdKey: playerId};
+  }
+
+  /// Entrega una llamada nativa a la instancia indicada en `playerId`, o a
+  /// todas si la llamada no lleva handle
+  static Future<dynamic> _dispatchMethodCall(MethodCall call) async {
+    final arguments = call.arguments;
+    if (call.method == 'onRoutesChanged') {
+      // Android agrupa los eventos de cada ventana en una sola llamada
+      final events = arguments is Map ? arguments['events'] : null;
+      if (events is List) {
+        for (final event in events) {
+          if (event is Map) {
+            _routeController.add(Map<String, dynamic>.from(event));
+          }
+        }
+      }
+      return;
+    }
+    final target = arguments is Map ? arguments[playerIdKey] : null;
+    if (target is int) {
+      await _players[target]?._handleMethodCall(call);
+      return;
+    }
+    for (final service in _players.values.toList()) {
+      await service._handleMethodCall(call);
+    }
+  }
+
   /// Maneja las llamadas de método desde el código nativo
   Future<dynamic> _handleMethodCall(MethodCall call) async {
     switch (call.method) {
@@ -270,8 +557,16 @@ class ScreenSharingService {
         _deviceController.add(Map<String, dynamic>.from(call.arguments));
         break;
       case 'onDeviceDisconnected':
+        _rememberRemotePosition(call.arguments);
         _updateState(ScreenSharingState.disconnected);
         break;
+      case 'onRemotePlaying':
+        _rememberRemotePosition(call.arguments);
+        final position = _lastRemotePosition;
+        if (position != null && !_remotePlayingController.isClosed) {
+          _remotePlayingController.add(position);
+        }
+        break;
       case 'onError':
         _errorController.add(call.arguments.toString());
         _updateState(ScreenSharingState.error);
@@ -292,8 +587,16 @@ class ScreenSharingService {
     }
   }
 
+  void _rememberRemotePosition(Object? arguments) {
+    final positionMs = arguments is Map ? arguments['positionMs'] : null;
+    if (positionMs is num) {
+      _lastRemotePosition = Duration(milliseconds: positionMs.toInt());
+    }
+  }
+
   /// Actualiza el estado actual
   void _updateState(ScreenSharingState newState) {
+    if (_stateController.isClosed) return;
     _currentState = newState;
     _stateController.add(newState);
   }
@@ -329,7 +632,7 @@ class ScreenSharingService {
       return supported;
     } catch (e) {
       // En caso de error, asumir que está soportado en iOS 15+
-      if (Platform.isIOS) {
+      if (isIOS) {
         return true;
       }
 
@@ -339,18 +642,25 @@ class ScreenSharingService {
 
   /// Obtiene el nombre de la plataforma actual
   static String getPlatformName() {
-    if (Platform.isAndroid) {
+    if (isAndroid) {
       return 'Android Cast';
-    } else if (Platform.isIOS) {
+    } else if (isIOS) {
       return 'SharePlay';
     }
     return 'Desconocido';
   }
 
-  /// Limpia los recursos
+  /// Limpia los recursos y libera el handle nativo del reproductor
   void dispose() {
+    if (playerId != defaultPlayerId) {
+      _players.remove(playerId);
+      _channel
+          .invokeMethod('disposePlayer', _arguments())
+          .catchError((_) => null);
+    }
     _stateController.close();
     _errorController.close();
     _deviceController.close();
+    _remotePlayingController.close();
   }
 }
@@ -0,0 +1,377 @@
+import 'dart:collection';
+import 'dart:convert';
+import 'dart:typed_data';
+import 'dart:ui' as ui;
+import 'package:flutter/material.dart';
+import 'package:flutter/services.dart';
+import 'hls_startup.dart';
+import 'subtitles.dart';
+
+/// Miniatura de una pista de miniaturas: imagen (o zona de un sprite) que
+/// representa un intervalo del video
+@immutable
+class ThumbnailCue {
+  final Duration start;
+  final Duration end;
+
+  /// URL absoluta de la imagen o del sprite
+  final String imageUrl;
+
+  /// Zona del sprite (`#xywh=x,y,w,h`), o null si es la imagen completa
+  final Rect? region;
+
+  const ThumbnailCue({
+    required this.start,
+    required this.end,
+    required this.imageUrl,
+    this.region,
+  });
+
+  /// Clave de la miniatura en [ThumbnailTileCache]
+  String get tileKey => region == null
+      ? imageUrl
+      : '$imageUrl#${region!.left.toInt()},${region!.top.toInt()},'
+          '${region!.width.toInt()},${region!.height.toInt()}';
+}
+
+/// Pista WebVTT de miniaturas para la vista previa al arrastrar
+///
+/// Es el formato habitual de los reproductores web: cada subtítulo apunta a
+/// una imagen, normalmente una zona de un sprite con `#xywh=x,y,w,h`:
+///
+/// ```
+/// WEBVTT
+///
+/// 00:00.000 --> 00:05.000
+/// sprites/sheet0.jpg#xywh=0,0,160,90
+/// ```
+///
+/// Las URLs relativas se resuelven respecto de la URL de la pista.
+/// [cueAt] es una búsqueda binaria sobre los inicios ordenados.
+class ThumbnailTrack {
+  final List<ThumbnailCue> cues;
+  final Int64List _starts;
+
+  ThumbnailTrack._(this.cues)
+      : _starts = Int64List.fromList(
+            [for (final cue in cues) cue.start.inMicroseconds]);
+
+  static final RegExp _xywh = RegExp(r'#xywh=(\d+),(\d+),(\d+),(\d+)$');
+
+  /// Interpreta el texto de una pista ya descargada
+  factory ThumbnailTrack.parse(String vtt, {required Uri baseUri}) {
+    final cues = <ThumbnailCue>[];
+    SubtitleParser(onCue: (cue) {
+      final reference = cue.text.split('\n').first.trim();
+      final match = _xywh.firstMatch(reference);
+      final path =
+          match == null ? reference : reference.substring(0, match.start);
+      cues.add(ThumbnailCue(
+        start: cue.start,
+        end: cue.end,
+        imageUrl: baseUri.resolve(path).toString(),
+        region: match == null
+            ? null
+            : Rect.fromLTWH(
+                double.parse(match.group(1)!),
+                double.parse(match.group(2)!),
+                double.parse(match.group(3)!),
+                double.parse(match.group(4)!),
+              ),
+      ));
+    })
+      ..add(vtt)
+      ..close();
+    cues.sort((a, b) => a.start.compareTo(b.start));
+    return ThumbnailTrack._(cues);
+  }
+
+  /// Descarga e interpreta la pista de [url]
+  static Future<ThumbnailTrack> load(String url) async {
+    final uri = Uri.parse(url);
+    final data = await NetworkAssetBundle(uri).load(url);
+    final text = utf8.decode(
+        data.buffer.asUint8List(data.offsetInBytes, data.lengthInBytes),
+        allowMalformed: true);
+    return ThumbnailTrack.parse(text, baseUri: uri);
+  }
+
+  /// Miniatura de [position], o null si no hay ninguna
+  ThumbnailCue? cueAt(Duration position) {
+    final t = position.inMicroseconds;
+    if (_starts.isEmpty || t < _starts.first) return null;
+    var low = 0;
+    var high = _starts.length - 1;
+    while (low < high) {
+      final mid = (low + high + 1) >> 1;
+      if (_starts[mid] <= t) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    final cue = cues[low];
+    return t < cue.end.inMicroseconds ? cue : null;
+  }
+}
+
+/// Caché LRU de miniaturas decodificadas, limitada por memoria
+///
+/// Cada sprite se descarga una vez y se decodifica solo mientras se recortan
+/// sus miniaturas (se conservan los [maxSheets] más recientes, porque al
+/// arrastrar se recorren miniaturas consecutivas del mismo sprite). Las
+/// miniaturas recortadas ocupan `ancho × alto × 4` bytes cada una y se
+/// descartan las menos usadas al superar [maxBytes].
+class ThumbnailTileCache {
+  /// Caché compartida por todos los reproductores
+  static final ThumbnailTileCache instance = ThumbnailTileCache();
+
+  /// Memoria máxima de las miniaturas decodificadas
+  int maxBytes;
+
+  /// Sprites decodificados que se conservan
+  int maxSheets;
+
+  /// Sprites descargados (sin decodificar) que se conservan
+  int maxSheetBytesEntries;
+
+  final LinkedHashMap<String, ui.Image> _tiles = LinkedHashMap();
+  final LinkedHashMap<String, ui.Image> _sheets = LinkedHashMap();
+  final LinkedHashMap<String, Uint8List> _sheetBytes = LinkedHashMap();
+  final Map<String, Future<ui.Image?>> _pendingTiles = {};
+  final Map<String, Future<ui.Image>> _pendingSheets = {};
+  int _bytes = 0;
+
+  ThumbnailTileCache({
+    this.maxBytes = 12 * 1024 * 1024,
+    this.maxSheets = 2,
+    this.maxSheetBytesEntries = 8,
+  });
+
+  /// Memoria ocupada por las miniaturas
+  int get currentBytes => _bytes;
+
+  /// Miniatura ya decodificada de [cue], o null si no está en caché
+  ui.Image? peek(ThumbnailCue cue) {
+    final tile = _tiles.remove(cue.tileKey);
+    if (tile != null) _tiles[cue.tileKey] = tile;
+    return tile;
+  }
+
+  /// Miniatura de [cue] (null si no se pudo cargar)
+  Future<ui.Image?> tile(ThumbnailCue cue) {
+    final cached = peek(cue);
+    if (cached != null) return Future.value(cached);
+    final key = cue.tileKey;
+    return _pendingTiles[key] ??= _loadTile(cue).whenComplete(() {
+      _pendingTiles.remove(key);
+    });
+  }
+
+  Future<ui.Image?> _loadTile(ThumbnailCue cue) async {
+    try {
+      final sheet = await _sheet(cue.imageUrl);
+      final region = cue.region ??
+          Rect.fromLTWH(
+              0, 0, sheet.width.toDouble(), sheet.height.toDouble());
+      final width = region.width.round();
+      final height = region.height.round();
+      final recorder = ui.PictureRecorder();
+      Canvas(recorder).drawImageRect(
+        sheet,
+        region,
+        Rect.fromLTWH(0, 0, width.toDouble(), height.toDouble()),
+        Paint()..filterQuality = FilterQuality.medium,
+      );
+      final picture = recorder.endRecording();
+      final tile = picture.toImageSync(width, height);
+      picture.dispose();
+      _putTile(cue.tileKey, tile);
+      return tile;
+    } catch (e) {
+      debugPrint('[ThumbnailTileCache] Error cargando ${cue.tileKey}: $e');
+      return null;
+    }
+  }
+
+  Future<ui.Image> _sheet(String url) {
+    final cached = _sheets.remove(url);
+    if (cached != null) {
+      _sheets[url] = cached;
+      return Future.value(cached);
+    }
+    return _pendingSheets[url] ??= _decodeSheet(url).whenComplete(() {
+      _pendingSheets.remove(url);
+    });
+  }
+
+  Future<ui.Image> _decodeSheet(String url) async {
+    var bytes = _sheetBytes.remove(url);
+    if (bytes == null) {
+      final stopwatch = Stopwatch()..start();
+      final data = await NetworkAssetBundle(Uri.parse(url)).load(url);
+      HlsStartup.reportTransfer(data.lengthInBytes, stopwatch.elapsed);
+      bytes = data.buffer.asUint8List(data.offsetInBytes, data.lengthInBytes);
+    }
+    _sheetBytes[url] = bytes;
+    while (_sheetBytes.length > maxSheetBytesEntries) {
+      _sheetBytes.remove(_sheetBytes.keys.first);
+    }
+
+    final codec = await ui.instantiateImageCodec(bytes);
+    final frame = await codec.getNextFrame();
+    codec.dispose();
+    _sheets[url] = frame.image;
+    while (_sheets.length > maxSheets) {
+      _sheets.remove(_sheets.keys.first)!.dispose();
+    }
+    return frame.image;
+  }
+
+  void _putTile(String key, ui.Image tile) {
+    final previous = _tiles.remove(key);
+    if (previous != null) {
+      _bytes -= _sizeOf(previous);
+      previous.dispose();
+    }
+    _tiles[key] = tile;
+    _bytes += _sizeOf(tile);
+    while (_bytes > maxBytes && _tiles.length > 1) {
+      final oldest = _tiles.remove(_tiles.keys.first)!;
+      _bytes -= _sizeOf(oldest);
+      oldest.dispose();
+    }
+  }
+
+  static int _sizeOf(ui.Image image) => image.width * image.height * 4;
+
+  /// Libera todas las imágenes decodificadas
+  void clear() {
+    for (final image in _tiles.values) {
+      image.dispose();
+    }
+    for (final image in _sheets.values) {
+      image.dispose();
+    }
+    _tiles.clear();
+    _sheets.clear();
+    _sheetBytes.clear();
+    _bytes = 0;
+  }
+}
+
+/// Vista previa de la miniatura de [position] mientras se arrastra
+///
+/// Mientras se carga la miniatura nueva mantiene la anterior, para que no
+/// parpadee al arrastrar rápido. Debajo muestra el tiempo.
+class ScrubPreview extends StatefulWidget {
+  final ThumbnailTrack track;
+  final Duration position;
+  final double width;
+  final ThumbnailTileCache? cache;
+
+  const ScrubPreview({
+    super.key,
+    required this.track,
+    required this.position,
+    this.width = 160,
+    this.cache,
+  });
+
+  @override
+  State<ScrubPreview> createState() => _ScrubPreviewState();
+}
+
+class _ScrubPreviewState extends State<ScrubPreview> {
+  ui.Image? _image;
+  ThumbnailCue? _cue;
+
+  ThumbnailTileCache get _cache => widget.cache ?? ThumbnailTileCache.instance;
+
+  @override
+  void initState() {
+    super.initState();
+    _update();
+  }
+
+  @override
+  void didUpdateWidget(ScrubPreview oldWidget) {
+    super.didUpdateWidget(oldWidget);
+    _update();
+  }
+
+  void _update() {
+    final cue = widget.track.cueAt(widget.position);
+    if (cue == null || identical(cue, _cue)) return;
+    _cue = cue;
+    final cached = _cache.peek(cue);
+    if (cached != null) {
+      _show(cached);
+      return;
+    }
+    _cache.tile(cue).then((image) {
+      // Solo si sigue siendo la miniatura pedida más reciente
+      if (!mounted || image == null || !identical(cue, _cue)) return;
+      setState(() {
+        _show(image);
+      });
+    });
+  }
+
+  // La caché puede liberar su imagen en cualquier momento: se muestra un clon
+  void _show(ui.Image image) {
+    _image?.dispose();
+    _image = image.clone();
+  }
+
+  @override
+  void dispose() {
+    _image?.dispose();
+    super.dispose();
+  }
+
+  String _format(Duration duration) {
+    final minutes = duration.inMinutes;
+    final seconds = duration.inSeconds % 60;
+    return '$minutes:${seconds.toString().padLeft(2, '0')}';
+  }
+
+  @override
+  Widget build(BuildContext context) {
+    final image = _image;
+    return IgnorePointer(
+      child: Column(
+        mainAxisSize: MainAxisSize.min,
+        children: [
+          if (image != null)
+            Container(
+              width: widget.width,
+              height: widget.width * image.height / image.width,
+              decoration: BoxDecoration(
+                border: Border.all(color: Colors.white, width: 2),
+                borderRadius: BorderRadius.circular(6),
+              ),
+              clipBehavior: Clip.antiAlias,
+              child: RawImage(image: image, fit: BoxFit.cover),
+            ),
+          const SizedBox(height: 6),
+          Container(
+            padding: const EdgeInsets.symmetric(horizontal: 8, vertical: 2),
+            decoration: BoxDecoration(
+              color: Colors.black.withOpacity(0.7),
+              borderRadius: BorderRadius.circular(4),
+            ),
+            child: Text(
+              _format(widget.position),
+              style: const TextStyle(
+                color: Colors.white,
+                fontSize: 13,
+                fontWeight: FontWeight.w600,
+              ),
+            ),
+          ),
+        ],
+      ),
+    );
+  }
+}
@@ -0,0 +1,10 @@
+import 'package:flutter/foundation.dart';
+
+// Plataforma según defaultTargetPlatform y no dart:io, para que los tests y
+// benchmarks puedan forzarla con debugDefaultTargetPlatformOverride
+
+/// Si la app corre (o el test simula) Android
+bool get isAndroid => defaultTargetPlatform == TargetPlatform.android;
+
+/// Si la app corre (o el test simula) iOS
+bool get isIOS => defaultTargetPlatform == TargetPlatform.iOS;
@@ -0,0 +1,568 @@
+import 'dart:async';
+import 'dart:convert';
+import 'dart:io';
+import 'package:flutter/material.dart';
+import 'hls_startup.dart';
+import 'player_tick_scheduler.dart';
+
+/// Formato de un archivo de subtítulos
+enum SubtitleFormat {
+  /// WebVTT (`.vtt`)
+  webVtt,
+
+  /// SubRip (`.srt`)
+  srt,
+}
+
+/// Pista de subtítulos externa (sidecar)
+class SubtitleTrack {
+  /// URL del archivo `.vtt` o `.srt`
+  final String url;
+
+  /// Código de idioma (por ejemplo `es` o `en-US`)
+  final String language;
+
+  /// Nombre que se muestra al usuario (por defecto el idioma)
+  final String label;
+
+  /// Formato; si es null se deduce de la extensión de [url]
+  final SubtitleFormat? format;
+
+  /// Si se activa al abrir el reproductor
+  final bool isDefault;
+
+  /// Archivo que sigue creciendo (directos): se vuelve a consultar cada
+  /// [SubtitleController.livePollInterval] pidiendo solo los bytes nuevos
+  final bool live;
+
+  const SubtitleTrack({
+    required this.url,
+    required this.language,
+    String? label,
+    this.format,
+    this.isDefault = false,
+    this.live = false,
+  }) : label = label ?? language;
+
+  /// Formato efectivo de la pista
+  SubtitleFormat get resolvedFormat {
+    if (format != null) return format!;
+    final path = Uri.tryParse(url)?.path.toLowerCase() ?? url.toLowerCase();
+    return path.endsWith('.srt') ? SubtitleFormat.srt : SubtitleFormat.webVtt;
+  }
+
+  /// Tipo MIME de la pista
+  String get mimeType => resolvedFormat == SubtitleFormat.srt
+      ? 'application/x-subrip'
+      : 'text/vtt';
+
+  Map<String, dynamic> toMap() => {
+        'url': url,
+        'language': language,
+        'label': label,
+        'mimeType': mimeType,
+      };
+}
+
+/// Un subtítulo con su intervalo de tiempo
+@immutable
+class SubtitleCue {
+  final Duration start;
+  final Duration end;
+  final String text;
+
+  const SubtitleCue({
+    required this.start,
+    required this.end,
+    required this.text,
+  });
+
+  @override
+  String toString() => 'SubtitleCue($start --> $end, "$text")';
+}
+
+/// Parser incremental de WebVTT y SRT
+///
+/// Recibe el archivo por trozos con [add] (por ejemplo a medida que llega
+/// de la red) y emite cada subtítulo en cuanto su bloque está completo, sin
+/// esperar al final del archivo. [close] procesa el último bloque.
+class SubtitleParser {
+  final void Function(SubtitleCue cue) onCue;
+  final StringBuffer _pending = StringBuffer();
+  bool _started = false;
+
+  static final RegExp _blockSeparator = RegExp(r'\n{2,}');
+  static final RegExp _tag = RegExp(r'<[^>]*>');
+
+  SubtitleParser({required this.onCue});
+
+  /// Procesa un trozo del archivo
+  void add(String chunk) {
+    if (!_started) {
+      _started = true;
+      if (chunk.startsWith('\uFEFF')) chunk = chunk.substring(1);
+    }
+    _pending.write(chunk.replaceAll('\r', ''));
+    final text = _pending.toString();
+    final lastBreak = text.lastIndexOf('\n\n');
+    if (lastBreak < 0) return;
+    _pending
+      ..clear()
+      ..write(text.substring(lastBreak + 2));
+    _parseBlocks(text.substring(0, lastBreak));
+  }
+
+  /// Procesa lo que quede pendiente (fin del archivo)
+  void close() {
+    final text = _pending.toString();
+    _pending.clear();
+    _parseBlocks(text);
+  }
+
+  void _parseBlocks(String text) {
+    for (final block in text.split(_blockSeparator)) {
+      final cue = _parseBlock(block);
+      if (cue != null) onCue(cue);
+    }
+  }
+
+  SubtitleCue? _parseBlock(String block) {
+    final lines = block.trim().split('\n');
+    // Cabecera WEBVTT, NOTE, STYLE, REGION: no tienen línea de tiempos
+    final timing = lines.indexWhere((line) => line.contains('-->'));
+    if (timing < 0) return null;
+    final parts = lines[timing].split('-->');
+    final start = parseTimestamp(parts[0].trim());
+    // Tras el fin pueden venir ajustes de posición (WebVTT)
+    final endText = parts[1].trim().split(RegExp(r'\s+')).first;
+    final end = parseTimestamp(endText);
+    if (start == null || end == null || end <= start) return null;
+    final text = lines
+        .skip(timing + 1)
+        .map((line) => _decodeEntities(line.replaceAll(_tag, '')).trim())
+        .where((line) => line.isNotEmpty)
+        .join('\n');
+    if (text.isEmpty) return null;
+    return SubtitleCue(start: start, end: end, text: text);
+  }
+
+  static String _decodeEntities(String text) {
+    if (!text.contains('&')) return text;
+    return text
+        .replaceAll('&lt;', '<')
+        .replaceAll('&gt;', '>')
+        .replaceAll('&nbsp;', ' ')
+        .replaceAll('&lrm;', '')
+        .replaceAll('&rlm;', '')
+        .replaceAll('&amp;', '&');
+  }
+
+  /// Convierte `hh:mm:ss.mmm`, `mm:ss.mmm` o `hh:mm:ss,mmm` (SRT)
+  static Duration? parseTimestamp(String value) {
+    final fields = value.replaceAll(',', '.').split(':');
+    if (fields.length < 2 || fields.length > 3) return null;
+    final seconds = fields.last.split('.');
+    final hours = fields.length == 3 ? int.tryParse(fields[0]) : 0;
+    final minutes = int.tryParse(fields[fields.length - 2]);
+    final secs = int.tryParse(seconds[0]);
+    var millis = 0;
+    if (seconds.length > 1) {
+      final fraction = seconds[1].padRight(3, '0').substring(0, 3);
+      millis = int.tryParse(fraction) ?? -1;
+    }
+    if (hours == null || minutes == null || secs == null || millis < 0) {
+      return null;
+    }
+    return Duration(
+      hours: hours,
+      minutes: minutes,
+      seconds: secs,
+      milliseconds: millis,
+    );
+  }
+}
+
+/// Índice de intervalos para buscar los subtítulos activos en O(log n)
+///
+/// Los extremos de todos los subtítulos dividen la línea de tiempo en
+/// tramos; para cada tramo se guarda (una sola vez) la lista de subtítulos
+/// activos. [cuesAt] es una búsqueda binaria sobre los tramos que devuelve
+/// esa lista ya construida, así que consultar en cada tick de posición no
+/// reserva memoria y, mientras no cambie el tramo, devuelve la misma
+/// instancia. Durante la carga incremental los subtítulos llegan en orden y
+/// se añaden al final de los tramos; solo uno que empieza antes del último
+/// extremo marca el índice para reconstruirlo en la siguiente consulta.
+class SubtitleIndex {
+  final List<SubtitleCue> _cues = [];
+  List<int> _bounds = [];
+  List<List<SubtitleCue>> _segments = [];
+  bool _dirty = false;
+
+  /// Subtítulos en el índice
+  int get length => _cues.length;
+
+  /// Añade un subtítulo
+  void add(SubtitleCue cue) {
+    _cues.add(cue);
+    if (_dirty) return;
+    final start = cue.start.inMicroseconds;
+    final end = cue.end.inMicroseconds;
+    final bounds = _bounds;
+    if (bounds.isNotEmpty && start < bounds.last) {
+      // Se solapa con los tramos existentes: reconstruir
+      _dirty = true;
+      return;
+    }
+    // Ninguno de los anteriores sigue activo desde el último extremo
+    if (bounds.isEmpty || start > bounds.last) {
+      if (bounds.isNotEmpty) _segments.add(const <SubtitleCue>[]);
+      bounds.add(start);
+    }
+    if (end > start) {
+      bounds.add(end);
+      _segments.add(List.unmodifiable([cue]));
+    }
+  }
+
+  /// Vacía el índice
+  void clear() {
+    _cues.clear();
+    _bounds = [];
+    _segments = [];
+    _dirty = false;
+  }
+
+  /// Subtítulos activos en [position] (lista vacía si no hay ninguno)
+  List<SubtitleCue> cuesAt(Duration position) {
+    if (_dirty) _rebuild();
+    final t = position.inMicroseconds;
+    final bounds = _bounds;
+    if (bounds.isEmpty || t < bounds.first || t >= bounds.last) {
+      return const [];
+    }
+    // Último tramo que empieza en o antes de t
+    var low = 0;
+    var high = bounds.length - 2;
+    while (low < high) {
+      final mid = (low + high + 1) >> 1;
+      if (bounds[mid] <= t) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return _segments[low];
+  }
+
+  void _rebuild() {
+    _dirty = false;
+    final byStart = List.of(_cues)..sort((a, b) => a.start.compareTo(b.start));
+    final points = <int>{
+      for (final cue in byStart) ...[
+        cue.start.inMicroseconds,
+        cue.end.inMicroseconds,
+      ],
+    }.toList()
+      ..sort();
+
+    final segments = <List<SubtitleCue>>[];
+    final active = <SubtitleCue>[];
+    var next = 0;
+    for (var i = 0; i < points.length - 1; i++) {
+      final point = points[i];
+      active.removeWhere((cue) => cue.end.inMicroseconds <= point);
+      while (next < byStart.length &&
+          byStart[next].start.inMicroseconds <= point) {
+        active.add(byStart[next++]);
+      }
+      // Tramos consecutivos con los mismos subtítulos comparten la lista
+      final previous = segments.isEmpty ? null : segments.last;
+      if (previous != null && _sameCues(previous, active)) {
+        segments.add(previous);
+      } else {
+        segments.add(active.isEmpty
+            ? const <SubtitleCue>[]
+            : List.unmodifiable(active));
+      }
+    }
+    _bounds = points;
+    _segments = segments;
+  }
+
+  static bool _sameCues(List<SubtitleCue> a, List<SubtitleCue> b) {
+    if (a.length != b.length) return false;
+    for (var i = 0; i < a.length; i++) {
+      if (!identical(a[i], b[i])) return false;
+    }
+    return true;
+  }
+}
+
+/// Subtítulos de un reproductor: pistas, pista elegida y subtítulos activos
+///
+/// Las pistas se descargan en streaming y se indexan a medida que llegan,
+/// así que los primeros subtítulos se muestran antes de terminar la
+/// descarga. Cada pista se descarga una sola vez aunque se cambie de pista
+/// varias veces; la pantalla completa reutiliza el mismo controlador que el
+/// reproductor en línea.
+///
+/// Ejemplo de uso:
+/// ```dart
+/// final subtitles = SubtitleController(tracks: [
+///   SubtitleTrack(url: 'https://example.com/es.vtt', language: 'es',
+///       isDefault: true),
+/// ]);
+///
+/// // En cada tick de posición
+/// subtitles.updatePosition(controller.value.position);
+///
+/// // En el árbol de widgets, encima del video
+/// SubtitleOverlay(controller: subtitles);
+/// ```
+class SubtitleController {
+  /// Cada cuánto se consultan las pistas [SubtitleTrack.live]
+  static const Duration livePollInterval = Duration(seconds: 6);
+
+  final List<SubtitleTrack> tracks;
+
+  /// Subtítulos a mostrar en la posición actual
+  final ValueNotifier<List<SubtitleCue>> activeCues = ValueNotifier(const []);
+
+  /// Pista elegida (null = subtítulos desactivados)
+  final ValueNotifier<SubtitleTrack?> selectedTrack = ValueNotifier(null);
+
+  final Map<String, _LoadedTrack> _loaded = {};
+  Duration _position = Duration.zero;
+  bool _disposed = false;
+
+  /// Activa la pista marcada con [SubtitleTrack.isDefault], si hay alguna
+  SubtitleController({required this.tracks}) {
+    for (final track in tracks) {
+      if (track.isDefault) {
+        select(track);
+        break;
+      }
+    }
+  }
+
+  /// Cambia de pista (null desactiva los subtítulos)
+  void select(SubtitleTrack? track) {
+    if (_disposed) return;
+    final previous = selectedTrack.value;
+    if (previous != null && !identical(previous, track)) {
+      _loaded[previous.url]?.pause();
+    }
+    selectedTrack.value = track;
+    if (track != null) {
+      final loaded = _loaded.putIfAbsent(
+          track.url, () => _LoadedTrack(track, _onCuesAdded));
+      loaded.resume();
+    }
+    _refresh();
+  }
+
+  /// Activa la pista por defecto (o la primera) si no hay ninguna elegida, y
+  /// la desactiva si la hay
+  void toggle() {
+    if (selectedTrack.value != null) {
+      select(null);
+      return;
+    }
+    if (tracks.isEmpty) return;
+    select(tracks.firstWhere((t) => t.isDefault, orElse: () => tracks.first));
+  }
+
+  /// Informa la posición de reproducción
+  void updatePosition(Duration position) {
+    _position = position;
+    _refresh();
+  }
+
+  void _onCuesAdded(_LoadedTrack track) {
+    if (identical(selectedTrack.value, track.track)) _refresh();
+  }
+
+  void _refresh() {
+    if (_disposed) return;
+    final track = selectedTrack.value;
+    final cues = track == null
+        ? const <SubtitleCue>[]
+        : _loaded[track.url]!.index.cuesAt(_position);
+    if (!identical(cues, activeCues.value)) activeCues.value = cues;
+  }
+
+  void dispose() {
+    _disposed = true;
+    for (final loaded in _loaded.values) {
+      loaded.dispose();
+    }
+    _loaded.clear();
+    activeCues.dispose();
+    selectedTrack.dispose();
+  }
+}
+
+/// Descarga e índice de una pista
+class _LoadedTrack {
+  final SubtitleTrack track;
+  final void Function(_LoadedTrack track) onCuesAdded;
+  final SubtitleIndex index = SubtitleIndex();
+  late SubtitleParser _parser = _newParser();
+  HttpClient? _client;
+  PlayerTick? _liveTick;
+  int _receivedBytes = 0;
+  bool _active = false;
+  bool _loading = false;
+  bool _complete = false;
+  bool _disposed = false;
+
+  _LoadedTrack(this.track, this.onCuesAdded);
+
+  SubtitleParser _newParser() => SubtitleParser(onCue: index.add);
+
+  void resume() {
+    _active = true;
+    if (!_complete) {
+      _load();
+    } else if (track.live && _liveTick == null) {
+      _liveTick = PlayerTickScheduler.instance.register(
+        'subtitles.live',
+        interval: SubtitleController.livePollInterval,
+        onTick: (_) => _load(),
+      );
+    }
+  }
+
+  void pause() {
+    _active = false;
+    _liveTick?.cancel();
+    _liveTick = null;
+  }
+
+  Future<void> _load() async {
+    if (_loading || _disposed) return;
+    _loading = true;
+    try {
+      final client = _client ??= HttpClient();
+      final request = await client.getUrl(Uri.parse(track.url));
+      if (_receivedBytes > 0) {
+        request.headers.set(HttpHeaders.rangeHeader, 'bytes=$_receivedBytes-');
+      }
+      final response = await request.close();
+      if (response.statusCode == HttpStatus.requestedRangeNotSatisfiable) {
+        // Nada nuevo desde la última consulta
+        await response.drain<void>();
+        return;
+      }
+      if (response.statusCode != HttpStatus.ok &&
+          response.statusCode != HttpStatus.partialContent) {
+        await response.drain<void>();
+        throw HttpException('HTTP ${response.statusCode}', uri: request.uri);
+      }
+      if (response.statusCode == HttpStatus.ok && _receivedBytes > 0) {
+        // El servidor no admite rangos: se vuelve a indexar el archivo
+        _receivedBytes = 0;
+        index.clear();
+        _parser = _newParser();
+      }
+
+      // Medido desde el primer bloque, sin contar la latencia de la petición
+      final transfer = Stopwatch();
+      var transferBytes = 0;
+      await for (final chunk in response
+          .map((bytes) {
+            _receivedBytes += bytes.length;
+            if (transfer.isRunning) {
+              transferBytes += bytes.length;
+            } else {
+              transfer.start();
+            }
+            return bytes;
+          })
+          .transform(utf8.decoder)) {
+        if (_disposed) return;
+        final before = index.length;
+        _parser.add(chunk);
+        if (index.length != before) onCuesAdded(this);
+      }
+
+      HlsStartup.reportTransfer(transferBytes, transfer.elapsed);
+
+      // En directo el último bloque puede seguir creciendo
+      if (!track.live) _parser.close();
+      _complete = true;
+      onCuesAdded(this);
+      if (_active) resume();
+    } catch (e) {
+      debugPrint('[Subtitles] Error cargando ${track.url}: $e');
+    } finally {
+      _loading = false;
+    }
+  }
+
+  void dispose() {
+    _disposed = true;
+    pause();
+    _client?.close(force: true);
+  }
+}
+
+/// Dibuja los subtítulos activos de un [SubtitleController]
+///
+/// Solo se reconstruye cuando cambian los subtítulos activos, no en cada
+/// tick de posición. No intercepta toques.
+class SubtitleOverlay extends StatelessWidget {
+  final SubtitleController controller;
+
+  /// Separación desde el borde inferior
+  final double bottomPadding;
+
+  final TextStyle? style;
+
+  const SubtitleOverlay({
+    super.key,
+    required this.controller,
+    this.bottomPadding = 24,
+    this.style,
+  });
+
+  @override
+  Widget build(BuildContext context) {
+    return IgnorePointer(
+      child: RepaintBoundary(
+        child: ValueListenableBuilder<List<SubtitleCue>>(
+          valueListenable: controller.activeCues,
+          builder: (context, cues, _) {
+            if (cues.isEmpty) return const SizedBox.shrink();
+            return Align(
+              alignment: Alignment.bottomCenter,
+              child: Padding(
+                padding: EdgeInsets.fromLTRB(24, 0, 24, bottomPadding),
+                child: DecoratedBox(
+                  decoration: BoxDecoration(
+                    color: Colors.black.withOpacity(0.6),
+                    borderRadius: BorderRadius.circular(4),
+                  ),
+                  child: Padding(
+                    padding:
+                        const EdgeInsets.symmetric(horizontal: 8, vertical: 4),
+                    child: Text(
+                      cues.map((cue) => cue.text).join('\n'),
+                      textAlign: TextAlign.center,
+                      style: style ??
+                          const TextStyle(
+                            color: Colors.white,
+                            fontSize: 16,
+                            height: 1.3,
+                          ),
+                    ),
+                  ),
+                ),
+              ),
+            );
+          },
+        ),
+      ),
+    );
+  }
+}
@@ -0,0 +1,235 @@
+import 'dart:async';
+import 'dart:io';
+import 'package:flutter/services.dart';
+import 'memory_pressure.dart';
+
+/// Capacidad del dispositivo para decodificar varios videos a la vez
+enum DeviceClass {
+  /// Dispositivos con poca RAM o pocos núcleos
+  low,
+
+  /// Gama media
+  mid,
+
+  /// Gama alta
+  high,
+}
+
+/// Presupuesto de decodificadores de video según la clase del dispositivo
+///
+/// En Android la clase se calcula con `ActivityManager.isLowRamDevice()`, la
+/// clase de memoria de la app y el número de núcleos; en iOS solo con los
+/// núcleos.
+class VideoFeedBudget {
+  static const MethodChannel _channel = MethodChannel('advanced_video_player');
+
+  /// Decodificadores simultáneos permitidos por clase de dispositivo
+  static const Map<DeviceClass, int> decodersPerClass = {
+    DeviceClass.low: 2,
+    DeviceClass.mid: 3,
+    DeviceClass.high: 4,
+  };
+
+  static Future<DeviceClass>? _deviceClass;
+
+  /// Clase del dispositivo actual (se calcula una sola vez)
+  static Future<DeviceClass> deviceClass() {
+    return _deviceClass ??= _detectDeviceClass();
+  }
+
+  /// Máximo de reproductores con decodificador activo en este dispositivo
+  static Future<int> maxDecoders() async {
+    return decodersPerClass[await deviceClass()]!;
+  }
+
+  static Future<DeviceClass> _detectDeviceClass() async {
+    var cores = Platform.numberOfProcessors;
+    try {
+      final info = await _channel.invokeMethod('getDeviceClass');
+      if (info is Map) {
+        cores = (info['cores'] as num?)?.toInt() ?? cores;
+        final lowRam = info['lowRam'] == true;
+        final memoryClassMb = (info['memoryClassMb'] as num?)?.toInt() ?? 0;
+        if (lowRam || memoryClassMb < 192 || cores <= 4) {
+          return DeviceClass.low;
+        }
+        if (memoryClassMb >= 384 && cores >= 8) {
+          return DeviceClass.high;
+        }
+        return DeviceClass.mid;
+      }
+    } catch (e) {
+      // La plataforma no informa memoria: decidir solo por núcleos
+    }
+    if (cores <= 4) return DeviceClass.low;
+    return cores >= 6 ? DeviceClass.high : DeviceClass.mid;
+  }
+}
+
+/// Reproductor gestionado por un [VideoFeedController]
+///
+/// [AdvancedVideoPlayer] implementa esta interfaz cuando recibe
+/// `feedController` y `feedIndex`.
+abstract class VideoFeedSlot {
+  /// Inicializa el reproductor (pausado) si no lo está
+  Future<void> activateForFeed();
+
+  /// Libera el decodificador conservando la última imagen mostrada
+  Future<void> releaseForFeed();
+}
+
+/// Modo feed: limita cuántos reproductores de una lista tienen decodificador
+///
+/// Cada reproductor informa qué fracción de su área es visible. El controlador
+/// mantiene activos los visibles (los más visibles primero) y precarga los
+/// [preloadCount] siguientes en la dirección del scroll, sin superar
+/// [maxActivePlayers]. El resto libera su `VideoPlayerController`.
+///
+/// Ante presión de memoria ([MemoryPressure]) libera los precargados que no
+/// se ven y deja de precargar hasta el siguiente scroll.
+///
+/// Ejemplo de uso:
+/// ```dart
+/// final feed = VideoFeedController(preloadCount: 1);
+///
+/// ListView.builder(
+///   // El cacheExtent debe alcanzar a los elementos que se precargan
+///   cacheExtent: 600,
+///   itemBuilder: (context, index) => AdvancedVideoPlayer(
+///     videoSource: urls[index],
+///     feedController: feed,
+///     feedIndex: index,
+///   ),
+/// );
+/// ```
+class VideoFeedController {
+  /// Elementos siguientes (en la dirección del scroll) que se precargan
+  final int preloadCount;
+
+  int? _maxActivePlayers;
+  final Map<int, VideoFeedSlot> _slots = {};
+  final Map<int, double> _visibility = {};
+  final Set<int> _active = {};
+  bool _rebalanceScheduled = false;
+  bool _scrollingForward = true;
+  int? _lastFirstVisible;
+  // Tras un aviso de memoria no se precarga hasta que cambie lo visible
+  bool _preloadSuspended = false;
+  StreamSubscription<MemoryTrimEvent>? _trimSubscription;
+
+  /// Si [maxActivePlayers] es null se usa el presupuesto de
+  /// [VideoFeedBudget] para la clase del dispositivo
+  VideoFeedController({this.preloadCount = 1, int? maxActivePlayers})
+      : _maxActivePlayers = maxActivePlayers {
+    if (_maxActivePlayers == null) {
+      VideoFeedBudget.maxDecoders().then((value) {
+        _maxActivePlayers ??= value;
+        _scheduleRebalance();
+      });
+    }
+  }
+
+  /// Máximo de reproductores con decodificador (null mientras se calcula)
+  int? get maxActivePlayers => _maxActivePlayers;
+
+  /// Índices con decodificador activo en este momento
+  Set<int> get activeIndexes => Set.unmodifiable(_active);
+
+  /// Registra el reproductor del elemento [index]
+  void attach(int index, VideoFeedSlot slot) {
+    final previous = _slots[index];
+    if (previous != null && !identical(previous, slot)) {
+      _active.remove(index);
+    }
+    _slots[index] = slot;
+    _visibility.putIfAbsent(index, () => 0);
+    // Solo se escuchan los avisos de memoria mientras haya reproductores
+    _trimSubscription ??= MemoryPressure.events.listen((event) {
+      trimMemory(event.tier);
+    });
+    _scheduleRebalance();
+  }
+
+  /// Quita el reproductor del elemento [index] (al destruirse el widget)
+  void detach(int index, VideoFeedSlot slot) {
+    if (!identical(_slots[index], slot)) return;
+    _slots.remove(index);
+    _visibility.remove(index);
+    _active.remove(index);
+    if (_slots.isEmpty) {
+      _trimSubscription?.cancel();
+      _trimSubscription = null;
+    }
+    _scheduleRebalance();
+  }
+
+  /// Libera los decodificadores activos que no se ven (precargados) y
+  /// suspende la precarga hasta el siguiente scroll
+  void trimMemory(MemoryTrimTier tier) {
+    _preloadSuspended = true;
+    for (final index in _active.toList()) {
+      if ((_visibility[index] ?? 0) > 0) continue;
+      _active.remove(index);
+      _slots[index]?.releaseForFeed();
+    }
+  }
+
+  /// Informa la fracción visible (0 a 1) del elemento [index]
+  void reportVisibility(int index, double fraction) {
+    if (!_slots.containsKey(index) || _visibility[index] == fraction) return;
+    _visibility[index] = fraction;
+    _scheduleRebalance();
+  }
+
+  // Agrupa todos los cambios de un frame en un solo reparto
+  void _scheduleRebalance() {
+    if (_rebalanceScheduled) return;
+    _rebalanceScheduled = true;
+    scheduleMicrotask(() {
+      _rebalanceScheduled = false;
+      _rebalance();
+    });
+  }
+
+  void _rebalance() {
+    final budget = _maxActivePlayers;
+    if (budget == null) return;
+
+    final visible = _visibility.entries.where((e) => e.value > 0).toList()
+      ..sort((a, b) {
+        final byFraction = b.value.compareTo(a.value);
+        return byFraction != 0 ? byFraction : a.key.compareTo(b.key);
+      });
+
+    final wanted = <int>[for (final entry in visible) entry.key];
+    if (wanted.isNotEmpty) {
+      var first = wanted.first;
+      var last = wanted.first;
+      for (final index in wanted) {
+        if (index < first) first = index;
+        if (index > last) last = index;
+      }
+      if (_lastFirstVisible != null && first != _lastFirstVisible) {
+        _scrollingForward = first > _lastFirstVisible!;
+        _preloadSuspended = false;
+      }
+      _lastFirstVisible = first;
+
+      // Precargar los siguientes en la dirección del scroll
+      for (var i = 1; i <= (_preloadSuspended ? 0 : preloadCount); i++) {
+        final index = _scrollingForward ? last + i : first - i;
+        if (_slots.containsKey(index)) wanted.add(index);
+      }
+    }
+
+    final keep = wanted.take(budget).toSet();
+    for (final index in _active.difference(keep).toList()) {
+      _active.remove(index);
+      _slots[index]?.releaseForFeed();
+    }
+    for (final index in keep.difference(_active)) {
+      _active.add(index);
+      _slots[index]!.activateForFeed();
+    }
+  }
+}
@@ -0,0 +1,311 @@
+import 'dart:async';
+import 'package:flutter/foundation.dart';
+import 'package:flutter/services.dart';
+import 'package:video_player/video_player.dart';
+import 'player_tick_scheduler.dart';
+
+/// Datos para unirse a una fiesta de visionado
+///
+/// El líder la muestra (por ejemplo como QR con `qr_flutter` a partir de
+/// [toUri]) y cada seguidor la lee con [parse].
+class WatchPartyInvite {
+  /// IP del líder en la red local
+  final String host;
+  final int port;
+
+  /// Código de seis cifras de la fiesta
+  final int code;
+
+  const WatchPartyInvite({
+    required this.host,
+    required this.port,
+    required this.code,
+  });
+
+  static WatchPartyInvite? fromMap(Object? arguments) {
+    if (arguments is! Map) return null;
+    final host = arguments['host'] as String?;
+    final port = (arguments['port'] as num?)?.toInt();
+    final code = (arguments['code'] as num?)?.toInt();
+    if (host == null || port == null || code == null) return null;
+    return WatchPartyInvite(host: host, port: port, code: code);
+  }
+
+  /// `avp-party://192.168.1.20:47000?code=123456`
+  Uri toUri() => Uri(
+        scheme: 'avp-party',
+        host: host,
+        port: port,
+        queryParameters: {'code': code.toString().padLeft(6, '0')},
+      );
+
+  /// Lee una invitación de [toUri]; null si el texto no lo es
+  static WatchPartyInvite? parse(String text) {
+    final uri = Uri.tryParse(text.trim());
+    if (uri == null || uri.scheme != 'avp-party' || !uri.hasPort) return null;
+    final code = int.tryParse(uri.queryParameters['code'] ?? '');
+    if (uri.host.isEmpty || code == null) return null;
+    return WatchPartyInvite(host: uri.host, port: uri.port, code: code);
+  }
+
+  @override
+  String toString() => toUri().toString();
+}
+
+/// Resultado de una corrección de un seguidor
+class WatchPartySync {
+  /// Si el líder está reproduciendo
+  final bool playing;
+
+  /// Velocidad aplicada: la del líder con un pequeño ajuste si hay desvío
+  final double rate;
+
+  /// Si el desvío era demasiado grande y se saltó a [target]
+  final bool seek;
+
+  /// Posición del líder en el momento de la corrección
+  final Duration target;
+
+  /// Líder menos seguidor (positivo si el seguidor iba atrasado)
+  final Duration error;
+
+  /// Reloj del líder menos el local, ida y vuelta y jitter de la red
+  final double clockOffsetMs;
+  final double roundTripMs;
+  final double jitterMs;
+
+  const WatchPartySync({
+    required this.playing,
+    required this.rate,
+    required this.seek,
+    required this.target,
+    required this.error,
+    required this.clockOffsetMs,
+    required this.roundTripMs,
+    required this.jitterMs,
+  });
+
+  static WatchPartySync? fromMap(Object? arguments) {
+    if (arguments is! Map) return null;
+    double number(String key) => (arguments[key] as num?)?.toDouble() ?? 0;
+    return WatchPartySync(
+      playing: arguments['playing'] == true,
+      rate: (arguments['rate'] as num?)?.toDouble() ?? 1.0,
+      seek: arguments['seek'] == true,
+      target: Duration(milliseconds: number('targetMs').round()),
+      error: Duration(milliseconds: number('errorMs').round()),
+      clockOffsetMs: number('clockOffsetMs'),
+      roundTripMs: number('roundTripMs'),
+      jitterMs: number('jitterMs'),
+    );
+  }
+
+  @override
+  String toString() => 'WatchPartySync(error ${error.inMilliseconds} ms, '
+      'rate ${rate.toStringAsFixed(3)}${seek ? ', seek' : ''})';
+}
+
+/// Reproducción sincronizada entre teléfonos de la misma red Wi-Fi (Android)
+///
+/// Un teléfono crea la fiesta con [host] y los demás se unen con [join]. El
+/// plugin sincroniza los relojes por UDP al estilo NTP y el líder envía su
+/// posición, velocidad y pausa; cada seguidor compara su posición con la del
+/// líder cada [syncInterval] y corrige los desvíos pequeños con la velocidad
+/// (±1–5 %) en lugar de saltar, así no se vacía el búfer. Solo salta si se
+/// aleja más de 1,5 s.
+///
+/// Las dos cadencias corren en [PlayerTickScheduler] (`watchParty.sync` y
+/// `watchParty.publish`) y siguen en segundo plano a la misma cadencia: la
+/// fiesta debe mantenerse sincronizada aunque se vea en PiP o con la
+/// pantalla apagada.
+///
+/// Ejemplo de uso:
+/// ```dart
+/// final party = await WatchParty.host();
+/// party.attach(controller);
+/// // Mostrar party.invite!.toUri() como QR
+///
+/// // En otro teléfono
+/// final party = await WatchParty.join(WatchPartyInvite.parse(qrText)!);
+/// party.attach(controller);
+/// ```
+class WatchParty {
+  static const MethodChannel _channel = MethodChannel('advanced_video_player');
+
+  /// Cada cuánto corrige un seguidor
+  static const Duration syncInterval = Duration(milliseconds: 250);
+
+  /// Cada cuánto publica el líder aunque nada cambie
+  static const Duration leaderRefreshInterval = Duration(seconds: 1);
+
+  // Un salto del líder se publica en el acto si su posición se aleja esto de
+  // lo esperado (value.position llega con hasta 500 ms de retraso)
+  static const int _leaderJumpMs = 1000;
+
+  /// Invitación de la fiesta (solo en el líder)
+  final WatchPartyInvite? invite;
+
+  final bool isLeader;
+
+  final StreamController<WatchPartySync> _syncController =
+      StreamController<WatchPartySync>.broadcast();
+  VideoPlayerController? _controller;
+  PlayerTick? _tick;
+  bool _busy = false;
+  bool _closed = false;
+  int _followers = 0;
+  WatchPartySync? _lastSync;
+
+  // Último estado publicado por el líder
+  bool? _sentPlaying;
+  double? _sentRate;
+  int _sentPositionMs = 0;
+  final Stopwatch _sinceSent = Stopwatch();
+
+  WatchParty._(this.isLeader, this.invite);
+
+  /// Crea una fiesta con este teléfono como líder
+  static Future<WatchParty> host({int port = 0}) async {
+    final invite = WatchPartyInvite.fromMap(
+        await _channel.invokeMethod('hostWatchParty', {'port': port}));
+    if (invite == null) {
+      throw PlatformException(
+          code: 'WATCH_PARTY_ERROR', message: 'Respuesta inesperada');
+    }
+    return WatchParty._(true, invite);
+  }
+
+  /// Se une a la fiesta de [invite] como seguidor
+  static Future<WatchParty> join(WatchPartyInvite invite) async {
+    await _channel.invokeMethod('joinWatchParty', {
+      'host': invite.host,
+      'port': invite.port,
+      'code': invite.code,
+    });
+    return WatchParty._(false, null);
+  }
+
+  /// Correcciones del seguidor (para mostrar el desfase o depurar)
+  Stream<WatchPartySync> get syncStream => _syncController.stream;
+
+  /// Última corrección (null en el líder o antes de sincronizar)
+  WatchPartySync? get lastSync => _lastSync;
+
+  /// Seguidores conectados (solo en el líder)
+  int get followers => _followers;
+
+  /// Sincroniza [controller]: el líder lo publica y el seguidor lo corrige
+  void attach(VideoPlayerController controller) {
+    detach();
+    _controller = controller;
+    if (isLeader) {
+      controller.addListener(_onLeaderChanged);
+      _tick = PlayerTickScheduler.instance.register(
+        'watchParty.publish',
+        interval: leaderRefreshInterval,
+        backgroundFactor: 1,
+        onTick: (_) => _publish(),
+      );
+      _publish();
+    } else {
+      _tick = PlayerTickScheduler.instance.register(
+        'watchParty.sync',
+        interval: syncInterval,
+        backgroundFactor: 1,
+        onTick: (_) => _sync(),
+      );
+    }
+  }
+
+  /// Deja de sincronizar el reproductor (sin salir de la fiesta)
+  void detach() {
+    _tick?.cancel();
+    _tick = null;
+    _controller?.removeListener(_onLeaderChanged);
+    _controller = null;
+    _sentPlaying = null;
+  }
+
+  /// Sale de la fiesta y cierra el socket
+  Future<void> leave() async {
+    if (_closed) return;
+    _closed = true;
+    detach();
+    await _syncController.close();
+    await _channel.invokeMethod('leaveWatchParty');
+  }
+
+  void _onLeaderChanged() {
+    final value = _controller?.value;
+    if (value == null || !value.isInitialized) return;
+    final expectedMs = _sentPositionMs +
+        (_sentPlaying == true
+            ? (_sinceSent.elapsedMilliseconds * (_sentRate ?? 1.0)).round()
+            : 0);
+    if (value.isPlaying != _sentPlaying ||
+        value.playbackSpeed != _sentRate ||
+        (value.position.inMilliseconds - expectedMs).abs() > _leaderJumpMs) {
+      _publish();
+    }
+  }
+
+  Future<void> _publish() async {
+    final controller = _controller;
+    if (_busy || controller == null || !controller.value.isInitialized) {
+      return;
+    }
+    _busy = true;
+    try {
+      // value.position se refresca cada 500 ms; la del reproductor es exacta
+      final position = await controller.position ?? controller.value.position;
+      final value = controller.value;
+      _sentPlaying = value.isPlaying;
+      _sentRate = value.playbackSpeed;
+      _sentPositionMs = position.inMilliseconds;
+      _sinceSent
+        ..reset()
+        ..start();
+      final followers = await _channel.invokeMethod<int>('updateWatchParty', {
+        'positionMs': position.inMilliseconds,
+        'playing': value.isPlaying,
+        'rate': value.playbackSpeed,
+      });
+      _followers = followers ?? _followers;
+    } on PlatformException catch (e) {
+      debugPrint('[WatchParty] ❌ Error publicando: ${e.message}');
+    } finally {
+      _busy = false;
+    }
+  }
+
+  Future<void> _sync() async {
+    final controller = _controller;
+    if (_busy || controller == null || !controller.value.isInitialized) {
+      return;
+    }
+    _busy = true;
+    try {
+      final position = await controller.position ?? controller.value.position;
+      final response = await _channel.invokeMethod('syncWatchParty', {
+        'positionMs': position.inMilliseconds,
+      });
+      final sync = WatchPartySync.fromMap(response);
+      if (sync == null || _controller != controller) return;
+      _lastSync = sync;
+      if (sync.seek) await controller.seekTo(sync.target);
+      if ((controller.value.playbackSpeed - sync.rate).abs() > 0.0005) {
+        await controller.setPlaybackSpeed(sync.rate);
+      }
+      if (sync.playing && !controller.value.isPlaying) {
+        await controller.play();
+      } else if (!sync.playing && controller.value.isPlaying) {
+        await controller.pause();
+      }
+      if (!_syncController.isClosed) _syncController.add(sync);
+    } on PlatformException catch (e) {
+      debugPrint('[WatchParty] ❌ Error sincronizando: ${e.message}');
+    } finally {
+      _busy = false;
+    }
+  }
+}
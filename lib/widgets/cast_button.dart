@@ -1,6 +1,6 @@
 import 'package:flutter/material.dart';
-import 'package:flutter/foundation.dart';
 import 'package:flutter/services.dart';
+import '../src/platform.dart';
 
 /// Botón nativo de transmisión (Google Cast)
 class CastButton extends StatelessWidget {
@@ -11,7 +11,7 @@ class CastButton extends StatelessWidget {
 
   @override
   Widget build(BuildContext context) {
-    if (defaultTargetPlatform == TargetPlatform.android) {
+    if (isAndroid) {
       return SizedBox(
         width: width,
         height: height,
@@ -31,4 +31,245 @@ void main() {
     await tester.pumpWidget(const SizedBox.shrink());
     await tester.pumpAndSettle();
   });
+
+  test('VideoFeedController respeta el presupuesto y precarga el siguiente',
+      () async {
+    final feed = VideoFeedController(preloadCount: 1, maxActivePlayers: 2);
+    final slots = List.generate(5, (_) => _FakeFeedSlot());
+    for (var i = 0; i < slots.length; i++) {
+      feed.attach(i, slots[i]);
+    }
+
+    feed.reportVisibility(0, 1.0);
+    await Future<void>.delayed(Duration.zero);
+    expect(feed.activeIndexes, {0, 1});
+
+    // Scroll hacia abajo: el 0 sale de pantalla y se precarga el 3
+    feed.reportVisibility(0, 0.0);
+    feed.reportVisibility(1, 1.0);
+    feed.reportVisibility(2, 0.2);
+    await Future<void>.delayed(Duration.zero);
+    expect(feed.activeIndexes, {1, 2});
+    expect(slots[0].releases, 1);
+
+    feed.detach(1, slots[1]);
+    await Future<void>.delayed(Duration.zero);
+    expect(feed.activeIndexes, {2, 3});
+  });
+
+  test('VideoFeedController libera los precargados ante presión de memoria',
+      () async {
+    final feed = VideoFeedController(preloadCount: 1, maxActivePlayers: 3);
+    final slots = List.generate(4, (_) => _FakeFeedSlot());
+    for (var i = 0; i < slots.length; i++) {
+      feed.attach(i, slots[i]);
+    }
+    feed.reportVisibility(0, 1.0);
+    await Future<void>.delayed(Duration.zero);
+    expect(feed.activeIndexes, {0, 1});
+
+    MemoryPressure.dispatch(const MemoryTrimEvent(
+      level: 10,
+      levelName: 'runningLow',
+      tier: MemoryTrimTier.discovery,
+    ));
+    await Future<void>.delayed(Duration.zero);
+    expect(feed.activeIndexes, {0});
+    expect(slots[1].releases, 1);
+
+    // Sin scroll no se vuelve a precargar
+    feed.reportVisibility(0, 0.9);
+    await Future<void>.delayed(Duration.zero);
+    expect(feed.activeIndexes, {0});
+
+    // Al hacer scroll se retoma la precarga
+    feed.reportVisibility(0, 0.0);
+    feed.reportVisibility(1, 1.0);
+    await Future<void>.delayed(Duration.zero);
+    expect(feed.activeIndexes, {1, 2});
+
+    for (var i = 0; i < slots.length; i++) {
+      feed.detach(i, slots[i]);
+    }
+  });
+
+  test('PosterImageProvider agrupa tamaños parecidos en una decodificación',
+      () {
+    final inline = PosterImageProvider('https://example.com/p.jpg',
+        width: 1000, height: 560);
+    final similar = PosterImageProvider('https://example.com/p.jpg',
+        width: 1020, height: 570);
+    expect(inline, similar);
+    expect(inline.width, 1024);
+    expect(inline.height, 576);
+    expect(PosterImageProvider('https://example.com/p.jpg', width: 2000),
+        isNot(inline));
+  });
+
+  test('SubtitleParser procesa WebVTT por trozos y SRT', () {
+    final cues = <SubtitleCue>[];
+    final parser = SubtitleParser(onCue: cues.add);
+    const vtt = 'WEBVTT\n\nNOTE comentario\n\n'
+        '00:01.000 --> 00:04.000 align:center\n<i>Hola</i> &amp; adiós\n\n'
+        '1\n00:00:03.500 --> 00:00:06.000\nSegunda línea\n\n';
+    // Trozos pequeños, cortando bloques y timestamps por la mitad
+    for (var i = 0; i < vtt.length; i += 7) {
+      parser.add(vtt.substring(i, i + 7 > vtt.length ? vtt.length : i + 7));
+    }
+    parser.close();
+    expect(cues.map((c) => c.text), ['Hola & adiós', 'Segunda línea']);
+    expect(cues.first.start, const Duration(seconds: 1));
+
+    final srt = <SubtitleCue>[];
+    SubtitleParser(onCue: srt.add)
+      ..add('1\r\n00:00:01,250 --> 00:00:02,000\r\nUno\r\n\r\n2\r\n')
+      ..add('00:00:02,000 --> 00:00:03,000\r\nDos')
+      ..close();
+    expect(srt.map((c) => c.start.inMilliseconds), [1250, 2000]);
+  });
+
+  test('SubtitleIndex devuelve los subtítulos activos sin crear listas', () {
+    final index = SubtitleIndex();
+    SubtitleCue cue(int start, int end, String text) => SubtitleCue(
+        start: Duration(seconds: start),
+        end: Duration(seconds: end),
+        text: text);
+    final a = cue(1, 4, 'a');
+    final b = cue(3, 6, 'b');
+    final c = cue(8, 9, 'c');
+    index
+      ..add(c)
+      ..add(a)
+      ..add(b);
+
+    expect(index.cuesAt(Duration.zero), isEmpty);
+    expect(index.cuesAt(const Duration(seconds: 2)), [a]);
+    expect(index.cuesAt(const Duration(milliseconds: 3500)), [a, b]);
+    expect(index.cuesAt(const Duration(seconds: 4)), [b]);
+    expect(index.cuesAt(const Duration(seconds: 7)), isEmpty);
+    expect(index.cuesAt(const Duration(seconds: 9)), isEmpty);
+    // Dentro del mismo tramo se devuelve la misma instancia
+    expect(
+        identical(index.cuesAt(const Duration(milliseconds: 1100)),
+            index.cuesAt(const Duration(milliseconds: 2900))),
+        isTrue);
+  });
+
+  test('SubtitleIndex añade en orden sin reconstruir los tramos', () {
+    final index = SubtitleIndex();
+    SubtitleCue cue(int start, int end, String text) => SubtitleCue(
+        start: Duration(seconds: start),
+        end: Duration(seconds: end),
+        text: text);
+    final a = cue(1, 3, 'a');
+    final b = cue(3, 5, 'b');
+    final c = cue(7, 8, 'c');
+    index
+      ..add(a)
+      ..add(b);
+    final first = index.cuesAt(const Duration(seconds: 2));
+    expect(first, [a]);
+
+    // Empieza tras el último extremo: los tramos anteriores no cambian
+    index.add(c);
+    expect(identical(index.cuesAt(const Duration(seconds: 2)), first),
+        isTrue);
+    expect(index.cuesAt(const Duration(seconds: 4)), [b]);
+    expect(index.cuesAt(const Duration(seconds: 6)), isEmpty);
+    expect(index.cuesAt(const Duration(milliseconds: 7500)), [c]);
+    expect(index.cuesAt(const Duration(seconds: 8)), isEmpty);
+
+    // Uno fuera de orden obliga a reconstruir
+    final d = cue(2, 4, 'd');
+    index.add(d);
+    expect(index.cuesAt(const Duration(milliseconds: 2500)), [a, d]);
+    expect(index.cuesAt(const Duration(milliseconds: 3500)), [d, b]);
+    expect(index.length, 4);
+  });
+
+  test('ThumbnailTrack resuelve sprites #xywh y busca por tiempo', () {
+    final track = ThumbnailTrack.parse(
+      'WEBVTT\n\n'
+          '00:05.000 --> 00:10.000\nsheet0.jpg#xywh=160,0,160,90\n\n'
+          '00:00.000 --> 00:05.000\nsheet0.jpg#xywh=0,0,160,90\n\n'
+          '00:10.000 --> 00:15.000\n/thumbs/full.jpg\n\n',
+      baseUri: Uri.parse('https://cdn.example.com/video/thumbs.vtt'),
+    );
+    expect(track.cues, hasLength(3));
+    final second = track.cueAt(const Duration(seconds: 7))!;
+    expect(second.imageUrl, 'https://cdn.example.com/video/sheet0.jpg');
+    expect(second.region, const Rect.fromLTWH(160, 0, 160, 90));
+    expect(second.tileKey, isNot(track.cues.first.tileKey));
+    final last = track.cueAt(const Duration(seconds: 12))!;
+    expect(last.imageUrl, 'https://cdn.example.com/thumbs/full.jpg');
+    expect(last.region, isNull);
+    expect(track.cueAt(const Duration(seconds: 15)), isNull);
+  });
+
+  testWidgets('PlayerTickScheduler agrupa las tareas en un solo reloj',
+      (WidgetTester tester) async {
+    final start = tester.binding.clock.now();
+    final scheduler = PlayerTickScheduler(
+        now: () => tester.binding.clock.now().difference(start));
+    var fast = 0;
+    var slow = 0;
+    Duration? slowElapsed;
+    final fastTick = scheduler.register(
+      'fast',
+      interval: const Duration(milliseconds: 500),
+      hiddenFactor: 4,
+      onTick: (_) => fast++,
+    );
+    final slowTick = scheduler.register(
+      'slow',
+      interval: const Duration(seconds: 2),
+      onTick: (elapsed) {
+        slow++;
+        slowElapsed = elapsed;
+      },
+    );
+
+    // Los vencimientos de 2 s coinciden con los de 500 ms
+    await tester.pump(const Duration(seconds: 2));
+    expect(fast, 4);
+    expect(slow, 1);
+    expect(scheduler.wakeups, 4);
+
+    // Oculta: la tarea rápida pasa a 2 s y despierta con la lenta
+    fastTick.visible = false;
+    await tester.pump(const Duration(seconds: 4));
+    expect(fast, 6);
+    expect(slow, 3);
+    expect(scheduler.wakeups, 6);
+
+    // En segundo plano no despierta; al volver se pone al día
+    scheduler.didChangeAppLifecycleState(AppLifecycleState.paused);
+    await tester.pump(const Duration(seconds: 10));
+    expect(scheduler.wakeups, 6);
+    scheduler.didChangeAppLifecycleState(AppLifecycleState.resumed);
+    await tester.pump();
+    expect(fast, 7);
+    expect(slow, 4);
+    expect(slowElapsed, const Duration(seconds: 10));
+    expect(scheduler.wakeups, 7);
+    expect(scheduler.metricCounters()['ticker.wakeupsPerMinute'], 7);
+
+    // Sin tareas no queda ningún timer armado
+    fastTick.cancel();
+    slowTick.cancel();
+    expect(scheduler.activeTicks, 0);
+    await tester.pump(const Duration(minutes: 1));
+    expect(scheduler.wakeups, 7);
+  });
+}
+
+class _FakeFeedSlot implements VideoFeedSlot {
+  int activations = 0;
+  int releases = 0;
+
+  @override
+  Future<void> activateForFeed() async => activations++;
+
+  @override
+  Future<void> releaseForFeed() async => releases++;
 }
@@ -0,0 +1,440 @@
+import 'dart:async';
+import 'dart:convert';
+import 'dart:io';
+import 'dart:math' as math;
+
+import 'package:flutter/rendering.dart';
+import 'package:flutter/services.dart';
+import 'package:flutter/widgets.dart';
+import 'package:flutter_test/flutter_test.dart';
+import 'package:advanced_video_player/player_tick_scheduler.dart';
+import 'package:video_player_platform_interface/video_player_platform_interface.dart';
+
+// Infraestructura de los benchmarks de frames: plataforma de video falsa,
+// canales del plugin simulados y registro de tiempos por fase.
+//
+// Variables de entorno:
+// - BENCHMARK_OUTPUT: archivo JSON de resultados
+//   (por defecto build/benchmarks/player_frames.json)
+// - BENCHMARK_BASELINE: resultados anteriores con los que comparar; el test
+//   falla si aumentan las reconstrucciones o repintados por frame, o si los
+//   tiempos empeoran más que la tolerancia
+// - BENCHMARK_TOLERANCE: tolerancia de los tiempos (por defecto 0.25 = 25%)
+
+/// Implementación de [VideoPlayerPlatform] sin decodificador
+///
+/// Cada video se "inicializa" al instante con [duration] y [size]; la
+/// posición solo avanza cuando el benchmark llama a [advance].
+class FakeVideoPlayerPlatform extends VideoPlayerPlatform {
+  Duration duration = const Duration(minutes: 10);
+  Size size = const Size(1920, 1080);
+
+  final Map<int, StreamController<VideoEvent>> _events = {};
+  final Map<int, Duration> _positions = {};
+  final Set<int> _playing = {};
+  int _nextTextureId = 0;
+
+  /// Llamadas recibidas por método, para el reporte
+  final Map<String, int> calls = {};
+
+  void _count(String method) => calls[method] = (calls[method] ?? 0) + 1;
+
+  /// Avanza la posición de los videos que se están reproduciendo
+  void advance(Duration step) {
+    for (final textureId in _playing) {
+      final next = _positions[textureId]! + step;
+      _positions[textureId] = next > duration ? duration : next;
+    }
+  }
+
+  /// Emite un evento (por ejemplo buffering) para todos los videos
+  void emit(VideoEvent event) {
+    for (final events in _events.values) {
+      events.add(event);
+    }
+  }
+
+  @override
+  Future<void> init() async {}
+
+  @override
+  Future<int?> create(DataSource dataSource) async {
+    _count('create');
+    final textureId = _nextTextureId++;
+    final events = StreamController<VideoEvent>();
+    _events[textureId] = events;
+    _positions[textureId] = Duration.zero;
+    events.add(VideoEvent(
+      eventType: VideoEventType.initialized,
+      duration: duration,
+      size: size,
+    ));
+    return textureId;
+  }
+
+  @override
+  Stream<VideoEvent> videoEventsFor(int textureId) =>
+      _events[textureId]!.stream;
+
+  @override
+  Future<void> dispose(int textureId) async {
+    _count('dispose');
+    _playing.remove(textureId);
+    _positions.remove(textureId);
+    await _events.remove(textureId)?.close();
+  }
+
+  @override
+  Future<void> play(int textureId) async {
+    _count('play');
+    _playing.add(textureId);
+  }
+
+  @override
+  Future<void> pause(int textureId) async {
+    _count('pause');
+    _playing.remove(textureId);
+  }
+
+  @override
+  Future<void> seekTo(int textureId, Duration position) async {
+    _count('seekTo');
+    _positions[textureId] = position;
+  }
+
+  @override
+  Future<Duration> getPosition(int textureId) async {
+    _count('getPosition');
+    return _positions[textureId] ?? Duration.zero;
+  }
+
+  @override
+  Future<void> setLooping(int textureId, bool looping) async {}
+
+  @override
+  Future<void> setVolume(int textureId, double volume) async {}
+
+  @override
+  Future<void> setPlaybackSpeed(int textureId, double speed) async {}
+
+  @override
+  Future<void> setMixWithOthers(bool mixWithOthers) async {}
+
+  @override
+  Widget buildView(int textureId) =>
+      const ColoredBox(color: Color(0xFF000000));
+}
+
+/// Respuestas simuladas de los canales del plugin
+///
+/// Cuenta las llamadas por `canal.método` y, para el reproductor nativo de
+/// iOS, simula la posición en [nativePosition].
+class PluginChannelMocks {
+  PluginChannelMocks(this._messenger);
+
+  final TestDefaultBinaryMessenger _messenger;
+  final List<String> _channels = [];
+  final Map<String, int> calls = {};
+  int _nextPlayerId = 1;
+
+  /// Estado del reproductor nativo de iOS
+  double nativePosition = 0;
+  double nativeDuration = 600;
+  bool nativePlaying = true;
+
+  static const List<Map<String, dynamic>> devices = [
+    {'id': 'tv-sala', 'name': 'TV Sala', 'type': 'chromecast'},
+    {'id': 'tv-cuarto', 'name': 'TV Cuarto', 'type': 'chromecast'},
+  ];
+
+  void install() {
+    _mock('advanced_video_player', (call) async {
+      switch (call.method) {
+        case 'getDeviceClass':
+          return {'cores': 8, 'lowRam': false, 'memoryClassMb': 512};
+        case 'getResumePosition':
+          return null;
+        case 'isAirPlayActive':
+          return false;
+        default:
+          return true;
+      }
+    });
+    _mock('screen_sharing', (call) async {
+      switch (call.method) {
+        case 'createPlayer':
+          return _nextPlayerId++;
+        case 'discoverDevices':
+          return devices;
+        default:
+          return true;
+      }
+    });
+    _mock('picture_in_picture_service', (call) async {
+      switch (call.method) {
+        case 'isInPictureInPictureMode':
+          return false;
+        case 'getPictureInPictureInfo':
+          return <String, dynamic>{};
+        default:
+          return true;
+      }
+    });
+    _mock('picture_in_picture_service_events', (call) async => null);
+    // Las vistas nativas (UiKitView) registran sus canales al crearse
+    _mock(SystemChannels.platform_views.name, (call) async {
+      if (call.method == 'create' && call.arguments is Map) {
+        _installNativeView((call.arguments as Map)['id'] as int);
+      }
+      return null;
+    });
+  }
+
+  void _installNativeView(int viewId) {
+    _mock('advanced_video_player/native_view_events_$viewId',
+        (call) async => null);
+    _mock('advanced_video_player/native_view_$viewId', (call) async {
+      switch (call.method) {
+        case 'getCurrentPosition':
+          return nativePosition;
+        case 'getDuration':
+          return nativeDuration;
+        case 'isBuffering':
+          return false;
+        case 'isPlaying':
+          return nativePlaying;
+        case 'play':
+          nativePlaying = true;
+          return null;
+        case 'pause':
+          nativePlaying = false;
+          return null;
+        case 'seek':
+          nativePosition = ((call.arguments as Map)['time'] as num).toDouble();
+          return null;
+        default:
+          return null;
+      }
+    });
+  }
+
+  /// Avanza la posición del reproductor nativo si está reproduciendo
+  void advanceNative(Duration step) {
+    if (!nativePlaying) return;
+    nativePosition = math.min(
+        nativeDuration, nativePosition + step.inMicroseconds / 1000000);
+  }
+
+  void _mock(String name, Future<Object?> Function(MethodCall call) handler) {
+    _channels.add(name);
+    _messenger.setMockMethodCallHandler(MethodChannel(name), (call) {
+      final key = '$name.${call.method}';
+      calls[key] = (calls[key] ?? 0) + 1;
+      return handler(call);
+    });
+  }
+
+  void uninstall() {
+    for (final name in _channels) {
+      _messenger.setMockMethodCallHandler(MethodChannel(name), null);
+    }
+    _channels.clear();
+  }
+}
+
+/// Hace que [PlayerTickScheduler.instance] mida el tiempo con el reloj de
+/// los timers simulados de `testWidgets`, como lo hacen sus timers
+void installTickClock() {
+  final binding = TestWidgetsFlutterBinding.instance;
+  final epoch = DateTime.utc(2000);
+  PlayerTickScheduler.instance.debugNow =
+      () => binding.clock.now().difference(epoch);
+}
+
+/// Devuelve a [PlayerTickScheduler.instance] su reloj por defecto
+void uninstallTickClock() {
+  PlayerTickScheduler.instance.debugNow = null;
+}
+
+/// Tiempos y contadores de un frame
+class FrameSample {
+  final int buildMicros;
+  final int layoutMicros;
+  final int paintMicros;
+  final int rebuilds;
+  final int paints;
+
+  const FrameSample(this.buildMicros, this.layoutMicros, this.paintMicros,
+      this.rebuilds, this.paints);
+}
+
+/// Registra frames separando build, layout y paint
+///
+/// Cada frame se bombea por fases ([EnginePhase.build], luego
+/// [EnginePhase.layout], luego [EnginePhase.paint]); el tiempo de cada
+/// llamada incluye solo el trabajo pendiente de esa fase. Las
+/// reconstrucciones se cuentan con [debugOnRebuildDirtyWidget] y los
+/// repintados con [debugOnProfilePaint].
+class FrameRecorder {
+  final List<FrameSample> frames = [];
+  final Map<String, int> rebuildsByWidget = {};
+  final Map<String, int> paintsByRenderObject = {};
+  int _rebuilds = 0;
+  int _paints = 0;
+
+  /// Avanza el reloj [elapsed] y registra el frame resultante
+  Future<void> frame(WidgetTester tester,
+      [Duration elapsed = Duration.zero]) async {
+    _rebuilds = 0;
+    _paints = 0;
+    debugOnRebuildDirtyWidget = (element, builtOnce) {
+      _rebuilds++;
+      final name = element.widget.runtimeType.toString();
+      rebuildsByWidget[name] = (rebuildsByWidget[name] ?? 0) + 1;
+    };
+    debugOnProfilePaint = (renderObject) {
+      _paints++;
+      final name = renderObject.runtimeType.toString();
+      paintsByRenderObject[name] = (paintsByRenderObject[name] ?? 0) + 1;
+    };
+    try {
+      final stopwatch = Stopwatch()..start();
+      await tester.pump(elapsed, EnginePhase.build);
+      final build = stopwatch.elapsedMicroseconds;
+      stopwatch.reset();
+      await tester.pump(Duration.zero, EnginePhase.layout);
+      final layout = stopwatch.elapsedMicroseconds;
+      stopwatch.reset();
+      await tester.pump(Duration.zero, EnginePhase.paint);
+      final paint = stopwatch.elapsedMicroseconds;
+      stopwatch.stop();
+      frames.add(FrameSample(build, layout, paint, _rebuilds, _paints));
+    } finally {
+      debugOnRebuildDirtyWidget = null;
+      debugOnProfilePaint = null;
+    }
+    // Composición y semántica, fuera de la medición
+    await tester.pump();
+  }
+
+  /// Registra [count] frames separados por [interval]
+  Future<void> record(WidgetTester tester, int count, Duration interval,
+      {void Function()? beforeFrame}) async {
+    for (var i = 0; i < count; i++) {
+      beforeFrame?.call();
+      await frame(tester, interval);
+    }
+  }
+}
+
+/// Resultado de un escenario
+class ScenarioResult {
+  final String name;
+  final FrameRecorder recorder;
+  final Map<String, int> channelCalls;
+
+  ScenarioResult(this.name, this.recorder, this.channelCalls);
+
+  Map<String, dynamic> toJson() {
+    final frames = recorder.frames;
+    return {
+      'frames': frames.length,
+      'buildMicros': _stats(frames.map((f) => f.buildMicros)),
+      'layoutMicros': _stats(frames.map((f) => f.layoutMicros)),
+      'paintMicros': _stats(frames.map((f) => f.paintMicros)),
+      'rebuildsPerFrame': _stats(frames.map((f) => f.rebuilds)),
+      'paintsPerFrame': _stats(frames.map((f) => f.paints)),
+      'rebuilds': frames.fold<int>(0, (sum, f) => sum + f.rebuilds),
+      'paints': frames.fold<int>(0, (sum, f) => sum + f.paints),
+      'topRebuilds': _top(recorder.rebuildsByWidget),
+      'topPaints': _top(recorder.paintsByRenderObject),
+      'channelCalls': Map.fromEntries(channelCalls.entries.toList()
+        ..sort((a, b) => a.key.compareTo(b.key))),
+    };
+  }
+
+  static Map<String, num> _stats(Iterable<int> values) {
+    final sorted = values.toList()..sort();
+    if (sorted.isEmpty) return {'mean': 0, 'p50': 0, 'p90': 0, 'max': 0};
+    int at(double q) =>
+        sorted[math.min(sorted.length - 1, (q * sorted.length).floor())];
+    final mean = sorted.fold<int>(0, (sum, v) => sum + v) / sorted.length;
+    return {
+      'mean': double.parse(mean.toStringAsFixed(1)),
+      'p50': at(0.5),
+      'p90': at(0.9),
+      'max': sorted.last,
+    };
+  }
+
+  static Map<String, int> _top(Map<String, int> counts) {
+    final entries = counts.entries.toList()
+      ..sort((a, b) => b.value.compareTo(a.value));
+    return Map.fromEntries(entries.take(10));
+  }
+}
+
+/// Reúne los escenarios, escribe el JSON y compara con la línea base
+class BenchmarkReport {
+  BenchmarkReport(this.suite);
+
+  final String suite;
+  final Map<String, ScenarioResult> scenarios = {};
+
+  void add(ScenarioResult result) => scenarios[result.name] = result;
+
+  Map<String, dynamic> toJson() => {
+        'suite': suite,
+        'schema': 1,
+        'dart': Platform.version.split(' ').first,
+        'scenarios': {
+          for (final entry in scenarios.entries)
+            entry.key: entry.value.toJson(),
+        },
+      };
+
+  /// Escribe el reporte (E/S síncrona: los tests corren en un reloj falso)
+  File write() {
+    final path = Platform.environment['BENCHMARK_OUTPUT'] ??
+        'build/benchmarks/$suite.json';
+    final file = File(path)..parent.createSync(recursive: true);
+    file.writeAsStringSync(
+        const JsonEncoder.withIndent('  ').convert(toJson()));
+    return file;
+  }
+
+  /// Diferencias respecto de la línea base en BENCHMARK_BASELINE
+  ///
+  /// Devuelve una lista vacía si no hay línea base o si no hay regresiones.
+  List<String> regressions() {
+    final path = Platform.environment['BENCHMARK_BASELINE'];
+    if (path == null || !File(path).existsSync()) return const [];
+    final tolerance =
+        double.tryParse(Platform.environment['BENCHMARK_TOLERANCE'] ?? '') ??
+            0.25;
+    final baseline = jsonDecode(File(path).readAsStringSync())
+        as Map<String, dynamic>;
+    final previous = baseline['scenarios'] as Map<String, dynamic>? ?? {};
+    final current = toJson()['scenarios'] as Map<String, dynamic>;
+    final problems = <String>[];
+    for (final name in current.keys) {
+      final before = previous[name] as Map<String, dynamic>?;
+      if (before == null) continue;
+      final now = current[name] as Map<String, dynamic>;
+      // Los contadores son deterministas: no pueden aumentar
+      for (final key in ['rebuildsPerFrame', 'paintsPerFrame']) {
+        final was = (before[key] as Map)['mean'] as num;
+        final value = (now[key] as Map)['mean'] as num;
+        if (value > was) problems.add('$name.$key: $was -> $value');
+      }
+      for (final key in ['buildMicros', 'layoutMicros', 'paintMicros']) {
+        final was = (before[key] as Map)['p50'] as num;
+        final value = (now[key] as Map)['p50'] as num;
+        if (was > 0 && value > was * (1 + tolerance)) {
+          problems.add('$name.$key.p50: $was -> $value');
+        }
+      }
+    }
+    return problems;
+  }
+}
@@ -0,0 +1,231 @@
+import 'package:flutter/material.dart';
+import 'package:flutter_test/flutter_test.dart';
+import 'package:advanced_video_player/advanced_video_player.dart';
+import 'package:advanced_video_player/fullscreen_video_page.dart';
+import 'package:video_player/video_player.dart';
+import 'package:video_player_platform_interface/video_player_platform_interface.dart';
+
+import 'benchmark_harness.dart';
+
+// Benchmarks de frames de los widgets del reproductor.
+//
+// Cada escenario reproduce una interacción real (arranque, mostrar/ocultar
+// controles, ticks de reproducción, seek, diálogo de Cast) con la plataforma
+// de video y los canales del plugin simulados, y registra por frame los
+// tiempos de build/layout/paint y las reconstrucciones y repintados.
+//
+// Se ejecuta con `flutter test test/benchmarks` y escribe el JSON en
+// build/benchmarks/player_frames.json (ver benchmark_harness.dart).
+
+const String _url = 'https://example.com/video.mp4';
+const Duration _frame = Duration(milliseconds: 16);
+const Duration _tick = Duration(milliseconds: 500);
+
+final BenchmarkReport _report = BenchmarkReport('player_frames');
+late FakeVideoPlayerPlatform _platform;
+late PluginChannelMocks _channels;
+
+final TargetPlatformVariant _android =
+    TargetPlatformVariant.only(TargetPlatform.android);
+final TargetPlatformVariant _iOS =
+    TargetPlatformVariant.only(TargetPlatform.iOS);
+
+void main() {
+  TestWidgetsFlutterBinding.ensureInitialized();
+
+  setUp(() {
+    _platform = FakeVideoPlayerPlatform();
+    VideoPlayerPlatform.instance = _platform;
+    _channels = PluginChannelMocks(
+      TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger,
+    )..install();
+    installTickClock();
+  });
+
+  tearDown(() {
+    _channels.uninstall();
+    uninstallTickClock();
+  });
+
+  tearDownAll(() {
+    final file = _report.write();
+    debugPrint('📊 Benchmark de frames escrito en ${file.path}');
+    final regressions = _report.regressions();
+    expect(regressions, isEmpty, reason: regressions.join('\n'));
+  });
+
+  group('AdvancedVideoPlayer', () {
+    testWidgets('arranque, controles y paso a pantalla completa',
+        (WidgetTester tester) async {
+      await tester.pumpWidget(const MaterialApp(
+        home: Scaffold(
+          body: AdvancedVideoPlayer(
+            videoSource: _url,
+            videoTitle: 'Benchmark',
+          ),
+        ),
+      ));
+
+      final startup = FrameRecorder();
+      await startup.record(tester, 20, _frame);
+      _add('advanced_video_player.startup', startup);
+
+      // Tocar una zona sin botones alterna los controles
+      final player = find.byType(AdvancedVideoPlayer);
+      final blank = tester.getTopLeft(player) + const Offset(20, 90);
+      final controls = FrameRecorder();
+      await tester.tapAt(blank);
+      await controls.record(tester, 20, _frame);
+      await tester.tapAt(blank);
+      await controls.record(tester, 20, _frame);
+      _add('advanced_video_player.controls', controls);
+
+      // Reproducir abre la pantalla completa
+      final fullscreen = FrameRecorder();
+      await tester.tap(find.byTooltip('Reproducir en pantalla completa'));
+      await fullscreen.record(tester, 30, _frame);
+      await fullscreen.record(tester, 20, _tick,
+          beforeFrame: () => _platform.advance(_tick));
+      _add('advanced_video_player.play_to_fullscreen', fullscreen);
+
+      tester.state<NavigatorState>(find.byType(Navigator)).pop();
+      await tester.pumpAndSettle();
+      await _tearDownTree(tester);
+    }, variant: _android);
+  });
+
+  group('FullscreenVideoPage', () {
+    testWidgets('reproducción, seek, controles y diálogo de Cast',
+        (WidgetTester tester) async {
+      final controller = VideoPlayerController.networkUrl(Uri.parse(_url));
+      await controller.initialize();
+      await controller.play();
+
+      await tester.pumpWidget(MaterialApp(
+        home: FullscreenVideoPage(
+          controller: controller,
+          primaryColor: const Color(0xFF6366F1),
+          secondaryColor: const Color(0xFF8B5CF6),
+          skipDuration: 10,
+          videoTitle: 'Benchmark',
+        ),
+      ));
+      await tester.pump(_frame);
+
+      final playback = FrameRecorder();
+      await playback.record(tester, 40, _tick,
+          beforeFrame: () => _platform.advance(_tick));
+      _add('fullscreen_video_page.playback', playback);
+
+      // Los controles se ocultaron solos; se muestran para interactuar
+      final blank = tester.getTopLeft(find.byType(FullscreenVideoPage)) +
+          const Offset(20, 150);
+      await tester.tapAt(blank);
+      await tester.pump(_frame);
+
+      final seek = FrameRecorder();
+      await tester.tap(find.byTooltip('Avanzar 10s'));
+      await seek.record(tester, 10, _frame);
+      await tester.tap(find.byTooltip('Retroceder 10s'));
+      await seek.record(tester, 10, _frame);
+      final bar = find.byWidgetPredicate((widget) =>
+          widget is GestureDetector &&
+          widget.onHorizontalDragStart != null);
+      final gesture = await tester.startGesture(
+          tester.getCenter(bar.first) - const Offset(100, 0));
+      for (var i = 0; i < 20; i++) {
+        await gesture.moveBy(const Offset(10, 0));
+        await seek.frame(tester, _frame);
+      }
+      await gesture.up();
+      await seek.record(tester, 10, _frame);
+      _add('fullscreen_video_page.seek', seek);
+
+      final controls = FrameRecorder();
+      await tester.tapAt(blank);
+      await controls.record(tester, 20, _frame);
+      await tester.tapAt(blank);
+      await controls.record(tester, 20, _frame);
+      // Ocultado automático
+      await controls.record(tester, 4, const Duration(seconds: 1));
+      _add('fullscreen_video_page.controls', controls);
+
+      final cast = FrameRecorder();
+      await tester.tapAt(blank);
+      await tester.pump(_frame);
+      await tester.tap(find.byTooltip('Conectar a TV'));
+      await cast.record(tester, 30, _frame);
+      await tester.tap(find.text('Más información'));
+      await cast.record(tester, 20, _frame);
+      await tester.tap(find.text('Cerrar'));
+      await cast.record(tester, 20, _frame);
+      _add('fullscreen_video_page.cast_dialog', cast);
+
+      await _tearDownTree(tester);
+      await controller.dispose();
+    }, variant: _android);
+  });
+
+  group('Pantalla completa nativa (iOS)', () {
+    testWidgets('reproducción, controles y seek',
+        (WidgetTester tester) async {
+      await tester.pumpWidget(MaterialApp(
+        home: nativeFullscreenPageForTesting(url: _url),
+      ));
+      await tester.pump(_frame);
+
+      final playback = FrameRecorder();
+      await playback.record(tester, 40, _tick,
+          beforeFrame: () => _channels.advanceNative(_tick));
+      _add('native_fullscreen_page.playback', playback);
+
+      final blank = tester.getTopLeft(find.byType(Scaffold).first) +
+          const Offset(20, 150);
+      final controls = FrameRecorder();
+      await tester.tapAt(blank);
+      await controls.record(tester, 20, _frame);
+      await tester.tapAt(blank);
+      await controls.record(tester, 20, _frame);
+      _add('native_fullscreen_page.controls', controls);
+
+      // Con los controles visibles: pausa, avance y arrastre del slider
+      await tester.tapAt(blank);
+      await tester.pump(_frame);
+      final seek = FrameRecorder();
+      await tester.tap(find.byIcon(Icons.pause).first);
+      await seek.record(tester, 10, _frame);
+      await tester.tap(find.byIcon(Icons.forward_10));
+      await seek.record(tester, 15, _frame);
+      final gesture = await tester.startGesture(
+          tester.getCenter(find.byType(Slider)) - const Offset(100, 0));
+      for (var i = 0; i < 20; i++) {
+        await gesture.moveBy(const Offset(10, 0));
+        await seek.frame(tester, _frame);
+      }
+      await gesture.up();
+      await seek.record(tester, 10, _frame);
+      _add('native_fullscreen_page.seek', seek);
+
+      await _tearDownTree(tester);
+    }, variant: _iOS);
+  });
+}
+
+// Guarda el escenario con las llamadas a canales acumuladas hasta ahora
+void _add(String name, FrameRecorder recorder) {
+  final calls = <String, int>{
+    ..._channels.calls,
+    for (final entry in _platform.calls.entries)
+      'video_player.${entry.key}': entry.value,
+  };
+  _report.add(ScenarioResult(name, recorder, calls));
+  _channels.calls.clear();
+  _platform.calls.clear();
+}
+
+// Desmonta el árbol y deja vencer los timers pendientes (ocultar controles,
+// sondeo de PiP, envío de QoE)
+Future<void> _tearDownTree(WidgetTester tester) async {
+  await tester.pumpWidget(const SizedBox.shrink());
+  await tester.pump(const Duration(seconds: 10));
+}
@@ -0,0 +1,406 @@
+import 'dart:convert';
+
+import 'package:flutter/material.dart';
+import 'package:flutter/rendering.dart';
+import 'package:flutter_test/flutter_test.dart';
+import 'package:advanced_video_player/advanced_video_player.dart';
+import 'package:advanced_video_player/fullscreen_video_page.dart';
+import 'package:advanced_video_player/playback_listenables.dart';
+import 'package:video_player/video_player.dart';
+import 'package:video_player_platform_interface/video_player_platform_interface.dart';
+
+import 'benchmark_harness.dart';
+
+// Costo de un tick de posición en los controles.
+//
+// - Con los widgets reales: AdvancedVideoPlayer abre FullscreenVideoPage y,
+//   con los controles visibles, la plataforma de video falsa avanza la
+//   posición; ni la página ni sus botones deben reconstruirse o repintarse.
+// - Ahorro frente al patrón anterior: los mismos controles con setState
+//   desde el listener del controller (línea base) y con PlaybackListenables
+//   detrás de un RepaintBoundary; informa `buildTimeSavedPercent`.
+//
+// Se ejecuta con `flutter test test/benchmarks` y escribe una línea JSON por
+// variante con los tiempos de frame y las reconstrucciones/repintados de los
+// controles que no dependen de la posición.
+
+const String _url = 'https://example.com/video.mp4';
+const Duration _frame = Duration(milliseconds: 16);
+const Duration _tick = Duration(milliseconds: 500);
+
+// Los controles se ocultan 2 s después de mostrarse: cada ronda muestra los
+// controles y mide tres ticks antes de que se oculten
+const int _rounds = 10;
+const int _ticksPerRound = 3;
+const Duration _controlsAnimation = Duration(milliseconds: 350);
+
+// Ticks de la comparación con la línea base
+const int _overlayTicks = 120;
+
+late FakeVideoPlayerPlatform _platform;
+late PluginChannelMocks _channels;
+
+void main() {
+  TestWidgetsFlutterBinding.ensureInitialized();
+
+  setUp(() {
+    _platform = FakeVideoPlayerPlatform();
+    VideoPlayerPlatform.instance = _platform;
+    _channels = PluginChannelMocks(
+      TestDefaultBinaryMessengerBinding.instance.defaultBinaryMessenger,
+    )..install();
+    installTickClock();
+  });
+
+  tearDown(() {
+    _channels.uninstall();
+    uninstallTickClock();
+  });
+
+  testWidgets('un tick de posición solo reconstruye la barra de progreso',
+      (WidgetTester tester) async {
+    await tester.pumpWidget(const MaterialApp(
+      home: Scaffold(
+        body: AdvancedVideoPlayer(
+          videoSource: _url,
+          videoTitle: 'Benchmark',
+        ),
+      ),
+    ));
+    for (var i = 0; i < 20; i++) {
+      await tester.pump(_frame);
+    }
+
+    // Reproducir abre la pantalla completa
+    await tester.tap(find.byTooltip('Reproducir en pantalla completa'));
+    for (var i = 0; i < 30; i++) {
+      await tester.pump(_frame);
+    }
+    final page = find.byType(FullscreenVideoPage);
+    expect(page, findsOneWidget);
+    // Vencen los timers del arranque (AirPlay, primer ocultado)
+    await tester.pump(const Duration(seconds: 3));
+
+    final blank = tester.getTopLeft(page) + const Offset(20, 150);
+    final result = _PlayerResult();
+    for (var round = 0; round < _rounds; round++) {
+      await _showControls(tester, blank);
+      // Botones de la página: no dependen de la posición
+      final buttons =
+          find.descendant(of: page, matching: find.byType(Tooltip));
+      final staticElements = _elementsUnder(buttons);
+      final staticRenderObjects = {
+        for (final element in staticElements)
+          if (element is RenderObjectElement) element.renderObject,
+      };
+      expect(staticRenderObjects, isNotEmpty);
+
+      for (var i = 0; i < _ticksPerRound; i++) {
+        _platform.advance(_tick);
+        debugOnRebuildDirtyWidget = (element, builtOnce) {
+          final name = element.widget.runtimeType.toString();
+          result.rebuildsByWidget[name] =
+              (result.rebuildsByWidget[name] ?? 0) + 1;
+          if (staticElements.contains(element)) result.staticBuilds++;
+        };
+        debugOnProfilePaint = (renderObject) {
+          if (staticRenderObjects.contains(renderObject)) {
+            result.staticPaints++;
+          }
+        };
+        try {
+          final stopwatch = Stopwatch()..start();
+          await tester.pump(_tick);
+          stopwatch.stop();
+          result.frameMicros += stopwatch.elapsedMicroseconds;
+          result.ticks++;
+        } finally {
+          debugOnRebuildDirtyWidget = null;
+          debugOnProfilePaint = null;
+        }
+      }
+      expect(_controlsShown(tester), isTrue,
+          reason: 'los controles se ocultaron durante la medición');
+    }
+
+    debugPrint(jsonEncode(result.toJson()));
+
+    // Ni el reproductor ni la página ni sus botones se tocan en un tick
+    expect(result.rebuildsByWidget['AdvancedVideoPlayer'], isNull);
+    expect(result.rebuildsByWidget['FullscreenVideoPage'], isNull);
+    expect(result.staticBuilds, 0);
+    expect(result.staticPaints, 0);
+    // Solo la barra inferior sigue la posición
+    expect(result.rebuildsByWidget['ListenableBuilder'],
+        greaterThanOrEqualTo(result.ticks));
+
+    tester.state<NavigatorState>(find.byType(Navigator)).pop();
+    await tester.pumpAndSettle();
+    // Desmonta el árbol y deja vencer los timers pendientes
+    await tester.pumpWidget(const SizedBox.shrink());
+    await tester.pump(const Duration(seconds: 10));
+  }, variant: TargetPlatformVariant.only(TargetPlatform.android));
+
+  testWidgets('ahorro de build: setState frente a PlaybackListenables',
+      (WidgetTester tester) async {
+    final baseline = await _run(tester, 'setState', (controller, playback) {
+      return _SetStateOverlay(controller: controller);
+    });
+    final split = await _run(tester, 'listenables', (controller, playback) {
+      return _ListenableOverlay(playback: playback);
+    });
+
+    debugPrint(jsonEncode(baseline.toJson()));
+    debugPrint(jsonEncode(split.toJson()));
+    debugPrint(jsonEncode({
+      'benchmark': 'progress_repaint',
+      'buildTimeSavedPercent': baseline.meanFrameMicros <= 0
+          ? 0
+          : (100 * (1 - split.meanFrameMicros / baseline.meanFrameMicros))
+              .round(),
+    }));
+
+    // Antes: cada tick reconstruía y repintaba todos los controles
+    expect(baseline.staticBuilds, _overlayTicks);
+    expect(baseline.staticPaints, greaterThanOrEqualTo(_overlayTicks));
+    // Ahora: los controles estáticos no se tocan
+    expect(split.staticBuilds, 0);
+    expect(split.staticPaints, 0);
+    expect(split.progressBuilds, _overlayTicks);
+  });
+}
+
+class _PlayerResult {
+  final Map<String, int> rebuildsByWidget = {};
+  int staticBuilds = 0;
+  int staticPaints = 0;
+  int frameMicros = 0;
+  int ticks = 0;
+
+  Map<String, dynamic> toJson() => {
+        'benchmark': 'progress_repaint',
+        'variant': 'player',
+        'ticks': ticks,
+        'meanFrameMicros': ticks == 0 ? 0 : (frameMicros / ticks).round(),
+        'staticBuilds': staticBuilds,
+        'staticPaints': staticPaints,
+        'rebuildsByWidget': rebuildsByWidget,
+      };
+}
+
+// Los controles ocultos quedan en el árbol con opacidad 0
+bool _controlsShown(WidgetTester tester) {
+  final opacity = find.ancestor(
+    of: find.byTooltip('Avanzar 10s'),
+    matching: find.byType(Opacity),
+  );
+  return tester.widget<Opacity>(opacity.first).opacity > 0;
+}
+
+// Deja los controles visibles con el ocultado automático recién programado
+Future<void> _showControls(WidgetTester tester, Offset blank) async {
+  if (_controlsShown(tester)) {
+    await tester.tapAt(blank);
+    await tester.pump(_controlsAnimation);
+  }
+  await tester.tapAt(blank);
+  await tester.pump(_controlsAnimation);
+}
+
+Set<Element> _elementsUnder(Finder finder) {
+  final elements = <Element>{};
+  void visit(Element element) {
+    elements.add(element);
+    element.visitChildren(visit);
+  }
+
+  for (final element in finder.evaluate()) {
+    visit(element);
+  }
+  return elements;
+}
+
+class _OverlayResult {
+  final String variant;
+  final int staticBuilds;
+  final int staticPaints;
+  final int progressBuilds;
+  final int totalFrameMicros;
+
+  _OverlayResult(this.variant, this.staticBuilds, this.staticPaints,
+      this.progressBuilds, this.totalFrameMicros);
+
+  double get meanFrameMicros => totalFrameMicros / _overlayTicks;
+
+  Map<String, dynamic> toJson() => {
+        'benchmark': 'progress_repaint',
+        'variant': variant,
+        'ticks': _overlayTicks,
+        'meanFrameMicros': meanFrameMicros.round(),
+        'staticBuilds': staticBuilds,
+        'staticPaints': staticPaints,
+        'progressBuilds': progressBuilds,
+      };
+}
+
+Future<_OverlayResult> _run(
+  WidgetTester tester,
+  String variant,
+  Widget Function(VideoPlayerController, PlaybackListenables) overlay,
+) async {
+  final controller =
+      VideoPlayerController.networkUrl(Uri.parse('https://example.com/a.mp4'));
+  controller.value = controller.value.copyWith(
+    isInitialized: true,
+    isPlaying: true,
+    duration: const Duration(minutes: 10),
+  );
+  final playback = PlaybackListenables()..attach(controller);
+
+  await tester.pumpWidget(MaterialApp(
+    home: Scaffold(body: overlay(controller, playback)),
+  ));
+  _Counters.reset();
+
+  final stopwatch = Stopwatch();
+  for (var i = 1; i <= _overlayTicks; i++) {
+    controller.value = controller.value.copyWith(position: _tick * i);
+    stopwatch.start();
+    await tester.pump();
+    stopwatch.stop();
+  }
+
+  final result = _OverlayResult(
+    variant,
+    _Counters.staticBuilds,
+    _Counters.staticPaints,
+    _Counters.progressBuilds,
+    stopwatch.elapsedMicroseconds,
+  );
+
+  await tester.pumpWidget(const SizedBox.shrink());
+  playback.dispose();
+  await controller.dispose();
+  return result;
+}
+
+class _Counters {
+  static int staticBuilds = 0;
+  static int staticPaints = 0;
+  static int progressBuilds = 0;
+
+  static void reset() {
+    staticBuilds = 0;
+    staticPaints = 0;
+    progressBuilds = 0;
+  }
+}
+
+// Controles que no dependen de la posición (botones, barra superior, etc.)
+class _StaticControls extends StatelessWidget {
+  const _StaticControls();
+
+  @override
+  Widget build(BuildContext context) {
+    _Counters.staticBuilds++;
+    return CustomPaint(
+      painter: _CountingPainter(),
+      child: Wrap(
+        children: [
+          for (var i = 0; i < 150; i++)
+            IconButton(
+              icon: const Icon(Icons.play_arrow),
+              tooltip: 'Botón $i',
+              onPressed: () {},
+            ),
+        ],
+      ),
+    );
+  }
+}
+
+class _CountingPainter extends CustomPainter {
+  @override
+  void paint(Canvas canvas, Size size) {
+    _Counters.staticPaints++;
+  }
+
+  @override
+  bool shouldRepaint(_CountingPainter oldDelegate) => false;
+}
+
+Widget _progress(Duration position, Duration duration) {
+  _Counters.progressBuilds++;
+  final total = duration.inMilliseconds;
+  return Column(
+    children: [
+      LinearProgressIndicator(
+        value: total > 0 ? position.inMilliseconds / total : 0,
+      ),
+      Text('${position.inSeconds} / ${duration.inSeconds}'),
+    ],
+  );
+}
+
+// Patrón anterior: setState en cada notificación del controller
+class _SetStateOverlay extends StatefulWidget {
+  final VideoPlayerController controller;
+
+  const _SetStateOverlay({required this.controller});
+
+  @override
+  State<_SetStateOverlay> createState() => _SetStateOverlayState();
+}
+
+class _SetStateOverlayState extends State<_SetStateOverlay> {
+  @override
+  void initState() {
+    super.initState();
+    widget.controller.addListener(_onTick);
+  }
+
+  void _onTick() => setState(() {});
+
+  @override
+  void dispose() {
+    widget.controller.removeListener(_onTick);
+    super.dispose();
+  }
+
+  @override
+  Widget build(BuildContext context) {
+    final value = widget.controller.value;
+    return Column(
+      children: [
+        // ignore: prefer_const_constructors
+        _StaticControls(),
+        _progress(value.position, value.duration),
+      ],
+    );
+  }
+}
+
+// Patrón nuevo: solo la barra escucha la posición, detrás de un
+// RepaintBoundary
+class _ListenableOverlay extends StatelessWidget {
+  final PlaybackListenables playback;
+
+  const _ListenableOverlay({required this.playback});
+
+  @override
+  Widget build(BuildContext context) {
+    return Column(
+      children: [
+        // ignore: prefer_const_constructors
+        _StaticControls(),
+        RepaintBoundary(
+          child: ListenableBuilder(
+            listenable: playback.progress,
+            builder: (context, _) =>
+                _progress(playback.position.value, playback.duration.value),
+          ),
+        ),
+      ],
+    );
+  }
+}